@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.collection.DecoratingSimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The number of decimals coordinates are rounded to, read from the handler
+ * properties. Parsers snap the coordinates of parsed geometries to this
+ * grid in place, and optionally store them as floats, which keeps about 7
+ * significant digits. Generators write copies of the geometries rounded to
+ * the grid, so all output formats show the same coordinates.
+ */
+public class CoordinatePrecision {
+
+    /** The decimals parsed coordinates are rounded to. */
+    public static final String INPUT_DECIMALS = "inputdecimals";
+
+    /** Whether parsed coordinates are stored as floats. */
+    public static final String FLOAT_COORDINATES = "floatcoordinates";
+
+    /** The decimals written coordinates are rounded to. */
+    public static final String OUTPUT_DECIMALS = "outputdecimals";
+
+    /** Keeps the coordinates as they are. */
+    public static final CoordinatePrecision FULL = new CoordinatePrecision(-1, false);
+
+    private final int decimals;
+
+    private final boolean floatCoordinates;
+
+    private final PrecisionModel precisionModel;
+
+    /**
+     * @param decimals
+     *            the decimals, negative for full precision
+     * @param floatCoordinates
+     *            whether {@link #snap(Geometry)} stores the coordinates as
+     *            floats
+     */
+    public CoordinatePrecision(int decimals,
+            boolean floatCoordinates) {
+        this.decimals = decimals;
+        this.floatCoordinates = floatCoordinates;
+        this.precisionModel = decimals >= 0 ? new PrecisionModel(Math.pow(10, decimals)) : new PrecisionModel();
+    }
+
+    /**
+     * @param properties
+     *            the parser properties, may be <code>null</code>
+     * @return the precision of parsed coordinates
+     */
+    public static CoordinatePrecision forInput(JsonNode properties) {
+        if (properties == null) {
+            return FULL;
+        }
+        int decimals = properties.hasNonNull(INPUT_DECIMALS) ? properties.get(INPUT_DECIMALS).asInt(-1) : -1;
+        boolean floatCoordinates = properties.hasNonNull(FLOAT_COORDINATES) && properties.get(FLOAT_COORDINATES)
+                .asBoolean();
+        return new CoordinatePrecision(decimals, floatCoordinates);
+    }
+
+    /**
+     * @param properties
+     *            the generator properties, may be <code>null</code>
+     * @return the precision of written coordinates
+     */
+    public static CoordinatePrecision forOutput(JsonNode properties) {
+        if (properties == null || !properties.hasNonNull(OUTPUT_DECIMALS)) {
+            return FULL;
+        }
+        return new CoordinatePrecision(properties.get(OUTPUT_DECIMALS).asInt(-1), false);
+    }
+
+    /**
+     * @return the decimals, negative for full precision
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * @param defaultDecimals
+     *            the decimals of an encoder that requires a number
+     * @return the decimals, or the default for full precision
+     */
+    public int getDecimals(int defaultDecimals) {
+        return decimals >= 0 ? decimals : defaultDecimals;
+    }
+
+    public boolean isReduced() {
+        return decimals >= 0;
+    }
+
+    public boolean isFloatCoordinates() {
+        return floatCoordinates;
+    }
+
+    public PrecisionModel getPrecisionModel() {
+        return precisionModel;
+    }
+
+    /**
+     * Rounds the X and Y ordinates of a parsed geometry in place, and copies
+     * it to float coordinate sequences if configured.
+     *
+     * @param geometry
+     *            the geometry, may be <code>null</code>
+     * @return the geometry or its float copy
+     */
+    public Geometry snap(Geometry geometry) {
+        if (geometry == null) {
+            return null;
+        }
+        if (isReduced()) {
+            geometry.apply(new SnapFilter(precisionModel));
+        }
+        if (!floatCoordinates || geometry.getFactory()
+                .getCoordinateSequenceFactory() == PackedCoordinateSequenceFactory.FLOAT_FACTORY) {
+            return geometry;
+        }
+        Geometry copy = new GeometryFactory(geometry.getPrecisionModel(), geometry.getSRID(),
+                PackedCoordinateSequenceFactory.FLOAT_FACTORY).createGeometry(geometry);
+        copy.setUserData(geometry.getUserData());
+        return copy;
+    }
+
+    /**
+     * @param geometry
+     *            the geometry, may be <code>null</code>
+     * @return a copy with rounded X and Y ordinates, or the geometry for
+     *         full precision
+     */
+    public Geometry reduce(Geometry geometry) {
+        if (geometry == null || !isReduced()) {
+            return geometry;
+        }
+        Geometry copy = geometry.copy();
+        copy.apply(new SnapFilter(precisionModel));
+        return copy;
+    }
+
+    /**
+     * @param features
+     *            the features to write
+     * @return the features with {@link #reduce(Geometry) reduced} geometries,
+     *         copied while iterating
+     */
+    public SimpleFeatureCollection reduce(SimpleFeatureCollection features) {
+        if (features == null || !isReduced()) {
+            return features;
+        }
+        return new DecoratingSimpleFeatureCollection(features) {
+            @Override
+            public SimpleFeatureIterator features() {
+                return new DecoratingSimpleFeatureIterator(delegate.features()) {
+                    @Override
+                    public SimpleFeature next() {
+                        return reduce(super.next());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @param features
+     *            the features to write
+     * @return the features with {@link #reduce(Geometry) reduced} geometries
+     *         if they are simple features, otherwise the features
+     */
+    public FeatureCollection<?, ?> reduce(FeatureCollection<?, ?> features) {
+        if (features instanceof SimpleFeatureCollection) {
+            return reduce((SimpleFeatureCollection) features);
+        }
+        return features;
+    }
+
+    private SimpleFeature reduce(SimpleFeature feature) {
+        Object[] values = feature.getAttributes().toArray();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof Geometry) {
+                values[i] = reduce((Geometry) values[i]);
+            }
+        }
+        SimpleFeature reduced = SimpleFeatureBuilder.build(feature.getFeatureType(), values, feature.getID());
+        reduced.getUserData().putAll(feature.getUserData());
+        return reduced;
+    }
+
+    private static final class SnapFilter implements CoordinateSequenceFilter {
+
+        private final PrecisionModel precisionModel;
+
+        private SnapFilter(PrecisionModel precisionModel) {
+            this.precisionModel = precisionModel;
+        }
+
+        @Override
+        public void filter(CoordinateSequence sequence,
+                int i) {
+            sequence.setOrdinate(i, CoordinateSequence.X, precisionModel.makePrecise(sequence.getOrdinate(i,
+                    CoordinateSequence.X)));
+            sequence.setOrdinate(i, CoordinateSequence.Y, precisionModel.makePrecise(sequence.getOrdinate(i,
+                    CoordinateSequence.Y)));
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
+        }
+    }
+
+}
@@ -82,22 +82,30 @@ import org.geotools.feature.type.GeometryDescriptorImpl;
 import org.geotools.feature.type.GeometryTypeImpl;
 import org.geotools.filter.identity.GmlObjectIdImpl;
 import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiLineString;
 import org.locationtech.jts.geom.MultiPoint;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.n52.faroe.Validation;
 import org.n52.faroe.annotation.Configurable;
 import org.n52.faroe.annotation.Setting;
 import org.n52.iceland.service.ServiceSettings;
 import org.n52.javaps.annotation.ConfigurableClass;
 import org.n52.javaps.annotation.Properties;
+import org.n52.javaps.gt.io.binary.VectorCodec;
 import org.n52.javaps.gt.io.datahandler.parser.GML2Handler;
+import org.n52.javaps.gt.io.feature.AttributeDictionary;
+import org.n52.javaps.gt.io.feature.GeometryFixupFeatureCollection;
+import org.n52.javaps.gt.io.feature.SpillingFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.SchemaRepository;
 import org.n52.svalbard.encode.exception.EncodingException;
@@ -121,6 +129,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 @Configurable
 @Properties(
         defaultPropertyFileName = "gthelper.default.json",
@@ -133,6 +143,14 @@ public class GTHelper implements ConfigurableClass {
 
     private static final String LOCATION = "location";
 
+    private static final String FEATURE_HEAP_BUDGET = "featureheapbudgetmb";
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private static final String COORDINATE_SEQUENCE = "coordinatesequence";
+
+    private static final String ATTRIBUTE_DICTIONARY_SIZE = "attributedictionarysize";
+
     private static final List<Provider<ElementXmlStreamWriter>> ELEMENT_WRITERS = Arrays.asList(GML3SchemaWriter::new);
 
     private String serviceURL;
@@ -141,6 +159,12 @@ public class GTHelper implements ConfigurableClass {
 
     private String defaultNamespaceURI = "http://52north.org";
 
+    private long featureHeapBudget = -1;
+
+    private GeometryFactory geometryFactory;
+
+    private int attributeDictionarySize = -1;
+
     public String getNamespaceURI() {
         if (namespaceURI == null) {
             try {
@@ -153,6 +177,178 @@ public class GTHelper implements ConfigurableClass {
         return namespaceURI;
     }
 
+    /**
+     * @return the estimated heap size in bytes a feature collection created
+     *         by this helper may use before spilling to disk, from the
+     *         property <code>featureheapbudgetmb</code>; 0 uses a sixteenth
+     *         of the maximum heap
+     */
+    public long getFeatureHeapBudget() {
+        if (featureHeapBudget < 0) {
+            long budget = 0;
+            try {
+                JsonNode properties = getProperties();
+                if (properties.hasNonNull(FEATURE_HEAP_BUDGET)) {
+                    budget = properties.get(FEATURE_HEAP_BUDGET).asLong() * MEGABYTE;
+                }
+            } catch (Exception e) {
+                LOGGER.error("Could not get properties, using default feature heap budget.", e);
+            }
+            featureHeapBudget = budget > 0 ? budget : Runtime.getRuntime().maxMemory() / 16;
+        }
+        return featureHeapBudget;
+    }
+
+    /**
+     * @return a dictionary for the string attributes of one parse, holding
+     *         at most the number of values from the property
+     *         <code>attributedictionarysize</code>; 0 disables deduplication
+     */
+    public AttributeDictionary createAttributeDictionary() {
+        if (attributeDictionarySize < 0) {
+            int size = AttributeDictionary.DEFAULT_CAPACITY;
+            try {
+                JsonNode properties = getProperties();
+                if (properties.hasNonNull(ATTRIBUTE_DICTIONARY_SIZE)) {
+                    size = Math.max(0, properties.get(ATTRIBUTE_DICTIONARY_SIZE).asInt());
+                }
+            } catch (Exception e) {
+                LOGGER.error("Could not get properties, using default attribute dictionary size.", e);
+            }
+            attributeDictionarySize = size;
+        }
+        return new AttributeDictionary(attributeDictionarySize);
+    }
+
+    /**
+     * @return the factory for the geometries created by the parsers, with
+     *         the coordinate sequences from the property
+     *         <code>coordinatesequence</code>: <code>array</code> (default)
+     *         for a coordinate object per vertex, <code>double</code> or
+     *         <code>float</code> for packed sequences
+     */
+    public synchronized GeometryFactory getGeometryFactory() {
+        if (geometryFactory == null) {
+            String sequence = "array";
+            try {
+                JsonNode properties = getProperties();
+                if (properties.hasNonNull(COORDINATE_SEQUENCE)) {
+                    sequence = properties.get(COORDINATE_SEQUENCE).asText();
+                }
+            } catch (Exception e) {
+                LOGGER.error("Could not get properties, using coordinate array sequences.", e);
+            }
+            switch (sequence.toLowerCase()) {
+            case "double":
+                geometryFactory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+                break;
+            case "float":
+                geometryFactory = new GeometryFactory(PackedCoordinateSequenceFactory.FLOAT_FACTORY);
+                break;
+            case "array":
+                geometryFactory = new GeometryFactory();
+                break;
+            default:
+                LOGGER.warn("Unknown coordinate sequence " + sequence + ", using coordinate array sequences.");
+                geometryFactory = new GeometryFactory();
+                break;
+            }
+        }
+        return geometryFactory;
+    }
+
+    /**
+     * Copies a geometry created by a parser that does not take a geometry
+     * factory to the coordinate sequences of {@link #getGeometryFactory()},
+     * keeping its SRID and user data.
+     *
+     * @param geometry
+     *            the geometry, may be <code>null</code>
+     * @return the copy, or the geometry if it already has these coordinate
+     *         sequences
+     */
+    public Geometry pack(Geometry geometry) {
+        GeometryFactory factory = getGeometryFactory();
+        CoordinateSequenceFactory sequenceFactory = factory.getCoordinateSequenceFactory();
+        if (geometry == null || sequenceFactory instanceof CoordinateArraySequenceFactory || geometry.getFactory()
+                .getCoordinateSequenceFactory() == sequenceFactory) {
+            return geometry;
+        }
+        Geometry packed = factory.createGeometry(geometry);
+        packed.setSRID(geometry.getSRID());
+        packed.setUserData(geometry.getUserData());
+        return packed;
+    }
+
+    /**
+     * Creates an empty collection that spills its features to disk once they
+     * exceed the {@link #getFeatureHeapBudget() heap budget}. Features with
+     * attributes {@link VectorCodec} cannot encode stay on the heap.
+     *
+     * @param featureType
+     *            the type of the features
+     * @return the collection
+     */
+    public SpillingFeatureCollection createFeatureCollection(SimpleFeatureType featureType) {
+        return new SpillingFeatureCollection(featureType, VectorCodec.canEncode(featureType)
+                ? getFeatureHeapBudget() : Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies parsed features into a collection created by
+     * {@link #createFeatureCollection(SimpleFeatureType)}, so large inputs do
+     * not stay on the heap. The parsers pass a
+     * {@link org.n52.javaps.gt.io.feature.StreamedFeatureCollection}, so each
+     * feature is copied right after it is parsed and the parsed document is
+     * never held as a whole next to the copy. The
+     * geometries are {@link #pack(Geometry) packed} and repeated string
+     * values {@link #createAttributeDictionary() deduplicated} on the way;
+     * default geometries resolved by a {@link GeometryFixupFeatureCollection}
+     * are {@link GeometryFixupFeatureCollection#materialize(SimpleFeature)
+     * stored} in the copies.
+     *
+     * @param features
+     *            the features
+     * @return the copy, or the features if they have no type
+     */
+    public SimpleFeatureCollection createFeatureCollection(SimpleFeatureCollection features) {
+        return createFeatureCollection(features, CoordinatePrecision.FULL);
+    }
+
+    /**
+     * Like {@link #createFeatureCollection(SimpleFeatureCollection)}, but
+     * additionally {@link CoordinatePrecision#snap(Geometry) snaps} the
+     * geometries to the given precision.
+     *
+     * @param features
+     *            the features
+     * @param precision
+     *            the precision of the parsed coordinates
+     * @return the copy, or the features if they have no type
+     */
+    public SimpleFeatureCollection createFeatureCollection(SimpleFeatureCollection features,
+            CoordinatePrecision precision) {
+        if (features == null || features.getSchema() == null || features instanceof SpillingFeatureCollection) {
+            return features;
+        }
+        SpillingFeatureCollection result = createFeatureCollection(features.getSchema());
+        AttributeDictionary dictionary = createAttributeDictionary();
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = dictionary.intern(GeometryFixupFeatureCollection.materialize(iterator
+                        .next()));
+                for (int i = 0; i < feature.getAttributeCount(); i++) {
+                    Object value = feature.getAttribute(i);
+                    if (value instanceof Geometry) {
+                        feature.setAttribute(i, precision.snap(pack((Geometry) value)));
+                    }
+                }
+                result.add(feature);
+            }
+        }
+        return result;
+    }
+
     @Setting(ServiceSettings.SERVICE_URL)
     public void setServiceURL(URI serviceURL) {
         Validation.notNull("serviceURL", serviceURL);
@@ -434,11 +630,24 @@ public class GTHelper implements ConfigurableClass {
     public SimpleFeatureCollection createSimpleFeatureCollectionFromSimpleFeatureList(List<SimpleFeature> featureList) {
 
         if (featureList.size() > 0) {
-            return new ListFeatureCollection(featureList.get(0).getFeatureType(), featureList);
+            SpillingFeatureCollection result = createFeatureCollection(featureList.get(0).getFeatureType());
+            result.addAll(featureList);
+            return result;
         }
         return new DefaultFeatureCollection();
     }
 
+    /**
+     * Sets the default geometry of each feature without one to a geometry
+     * attribute, iterating the whole collection.
+     *
+     * @param fc
+     *            the features, changed in place
+     * @deprecated use {@link GeometryFixupFeatureCollection#wrap}, which
+     *             resolves the default geometry lazily and only for feature
+     *             types that need it
+     */
+    @Deprecated
     public void checkGeometries(SimpleFeatureCollection fc) {
 
         SimpleFeatureIterator featureIterator = fc.features();
@@ -480,7 +689,7 @@ public class GTHelper implements ConfigurableClass {
 
     public SimpleFeatureCollection createCorrectFeatureCollection(FeatureCollection<?, ?> fc) {
 
-        List<SimpleFeature> simpleFeatureList = new ArrayList<SimpleFeature>();
+        SpillingFeatureCollection resultFeatureCollection = null;
         SimpleFeatureType featureType = null;
         FeatureIterator<?> iterator = fc.features();
         String uuid = UUID.randomUUID().toString();
@@ -493,16 +702,22 @@ public class GTHelper implements ConfigurableClass {
                         feature.getFeatureType().getCoordinateReferenceSystem());
                 QName qname = createGML3SchemaForFeatureType(featureType);
                 SchemaRepository.registerSchemaLocation(qname.getNamespaceURI(), qname.getLocalPart());
+                resultFeatureCollection = createFeatureCollection(featureType);
             }
             SimpleFeature resultFeature = createFeature("ID" + i, (Geometry) feature.getDefaultGeometry(), featureType,
                     feature.getProperties());
 
-            simpleFeatureList.add(resultFeature);
+            // features without geometry are dropped, see createFeature
+            if (resultFeature != null) {
+                resultFeatureCollection.add(resultFeature);
+            }
             i++;
         }
         iterator.close();
 
-        ListFeatureCollection resultFeatureCollection = new ListFeatureCollection(featureType, simpleFeatureList);
+        if (resultFeatureCollection == null) {
+            return new ListFeatureCollection(featureType, new ArrayList<SimpleFeature>());
+        }
         return resultFeatureCollection;
     }
 
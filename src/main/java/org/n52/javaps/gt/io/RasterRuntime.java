@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
+import javax.media.jai.TileScheduler;
+
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.javaps.annotation.ConfigurableClass;
+import org.n52.javaps.annotation.Properties;
+import org.n52.javaps.gt.io.util.CompressionExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.media.jai.util.CacheDiagnostics;
+
+/**
+ * Configures the JVM wide JAI tile cache and tile scheduler once, from
+ * <code>rasterruntime.json</code>, instead of every raster handler resetting
+ * them per request. A tile cache capacity of 0 uses a quarter of the maximum
+ * heap, a parallelism of 0 the number of available processors. The number of
+ * threads of the {@link CompressionExecutor} shared by the tile and zip
+ * encoders is set here as well, 0 again meaning one per processor. The
+ * memory used by the tile cache and its number of tiles are available through
+ * the getters and logged on shutdown; the hit rate only with diagnostics
+ * enabled, which they are not by default.
+ */
+@Properties(
+        defaultPropertyFileName = "rasterruntime.default.json",
+        propertyFileName = "rasterruntime.json")
+public class RasterRuntime implements ConfigurableClass, Destroyable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(RasterRuntime.class);
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private static final String TILE_CACHE_CAPACITY = "tilecachecapacitymb";
+
+    private static final String TILE_CACHE_THRESHOLD = "tilecachememorythreshold";
+
+    private static final String PARALLELISM = "tileschedulerparallelism";
+
+    private static final String PREFETCH_PARALLELISM = "tileschedulerprefetchparallelism";
+
+    private static final String COMPRESSION_THREADS = "compressionthreads";
+
+    private static final String DIAGNOSTICS = "diagnostics";
+
+    private final AtomicBoolean configured = new AtomicBoolean();
+
+    private volatile boolean diagnostics;
+
+    public void init() {
+        if (!configured.compareAndSet(false, true)) {
+            return;
+        }
+        JsonNode properties = null;
+        try {
+            properties = getProperties();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, using default raster runtime settings.", e);
+        }
+
+        JAI jai = JAI.getDefaultInstance();
+
+        long capacity = getLong(properties, TILE_CACHE_CAPACITY, 0) * MEGABYTE;
+        if (capacity <= 0) {
+            capacity = Runtime.getRuntime().maxMemory() / 4;
+        }
+        TileCache tileCache = jai.getTileCache();
+        tileCache.setMemoryCapacity(capacity);
+        tileCache.setMemoryThreshold((float) getDouble(properties, TILE_CACHE_THRESHOLD, 0.75));
+        // the counters add work to every tile cache access, so they are off
+        // unless explicitly requested
+        diagnostics = getBoolean(properties, DIAGNOSTICS, false) && tileCache instanceof CacheDiagnostics;
+        if (diagnostics) {
+            ((CacheDiagnostics) tileCache).enableDiagnostics();
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        int parallelism = (int) getLong(properties, PARALLELISM, 0);
+        int prefetchParallelism = (int) getLong(properties, PREFETCH_PARALLELISM, 0);
+        TileScheduler scheduler = jai.getTileScheduler();
+        scheduler.setParallelism(parallelism > 0 ? parallelism : processors);
+        scheduler.setPrefetchParallelism(prefetchParallelism > 0 ? prefetchParallelism : processors);
+
+        CompressionExecutor.setThreads((int) getLong(properties, COMPRESSION_THREADS, 0));
+
+        LOGGER.info("JAI tile cache capacity set to " + capacity / MEGABYTE + " MB, tile scheduler parallelism to "
+                + scheduler.getParallelism() + ", compression threads to " + CompressionExecutor.getThreads()
+                + ".");
+    }
+
+    public long getMemoryCapacity() {
+        return JAI.getDefaultInstance().getTileCache().getMemoryCapacity();
+    }
+
+    /**
+     * @return the memory used by cached tiles in bytes, -1 if the tile cache
+     *         does not report it
+     */
+    public long getMemoryUsed() {
+        CacheDiagnostics cache = getCache();
+        return cache == null ? -1 : cache.getCacheMemoryUsed();
+    }
+
+    /**
+     * @return the number of cached tiles, -1 if the tile cache does not
+     *         report it
+     */
+    public long getTileCount() {
+        CacheDiagnostics cache = getCache();
+        return cache == null ? -1 : cache.getCacheTileCount();
+    }
+
+    /**
+     * @return the number of tile requests served from the cache, -1 if
+     *         diagnostics are disabled or not available
+     */
+    public long getHitCount() {
+        CacheDiagnostics diagnostics = getDiagnostics();
+        return diagnostics == null ? -1 : diagnostics.getCacheHitCount();
+    }
+
+    /**
+     * @return the number of tile requests not served from the cache, -1 if
+     *         diagnostics are disabled or not available
+     */
+    public long getMissCount() {
+        CacheDiagnostics diagnostics = getDiagnostics();
+        return diagnostics == null ? -1 : diagnostics.getCacheMissCount();
+    }
+
+    /**
+     * @return the ratio of tile requests served from the cache, -1 if
+     *         diagnostics are disabled or nothing was requested yet
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long misses = getMissCount();
+        if (hits < 0 || hits + misses <= 0) {
+            return -1;
+        }
+        return (double) hits / (hits + misses);
+    }
+
+    @Override
+    public void destroy() {
+        CompressionExecutor.shutdown();
+        if (getDiagnostics() != null) {
+            LOGGER.info(String.format("JAI tile cache: %d tiles, %d of %d MB used, hit rate %.2f", getTileCount(),
+                    getMemoryUsed() / MEGABYTE, getMemoryCapacity() / MEGABYTE, getHitRate()));
+        } else if (getCache() != null) {
+            LOGGER.info(String.format("JAI tile cache: %d tiles, %d of %d MB used", getTileCount(), getMemoryUsed()
+                    / MEGABYTE, getMemoryCapacity() / MEGABYTE));
+        }
+    }
+
+    /**
+     * @return the tile cache if it reports its memory and tiles, which the
+     *         default cache does without diagnostics
+     */
+    private CacheDiagnostics getCache() {
+        TileCache tileCache = JAI.getDefaultInstance().getTileCache();
+        return tileCache instanceof CacheDiagnostics ? (CacheDiagnostics) tileCache : null;
+    }
+
+    /**
+     * @return the tile cache if it counts hits and misses
+     */
+    private CacheDiagnostics getDiagnostics() {
+        return diagnostics ? getCache() : null;
+    }
+
+    private long getLong(JsonNode properties,
+            String key,
+            long defaultValue) {
+        return properties != null && properties.has(key) ? properties.get(key).asLong(defaultValue) : defaultValue;
+    }
+
+    private double getDouble(JsonNode properties,
+            String key,
+            double defaultValue) {
+        return properties != null && properties.has(key) ? properties.get(key).asDouble(defaultValue) : defaultValue;
+    }
+
+    private boolean getBoolean(JsonNode properties,
+            String key,
+            boolean defaultValue) {
+        return properties != null && properties.has(key) ? properties.get(key).asBoolean(defaultValue) : defaultValue;
+    }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.binary;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.media.jai.PlanarImage;
+import javax.media.jai.TiledImage;
+
+import org.geotools.coverage.NoDataContainer;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.util.CoverageUtilities;
+import org.geotools.geometry.GeneralEnvelope;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.opengis.geometry.Envelope;
+import org.opengis.metadata.spatial.PixelOrientation;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.datum.PixelInCell;
+import org.opengis.referencing.operation.MathTransform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact binary format for grid coverages, e.g. to pass raster results
+ * between nodes without encoding them as GeoTIFF.
+ * <p>
+ * A stream starts with a header (name, envelope, CRS as WKT, grid to world
+ * transformation and no data value) that can be read on its own with
+ * {@link #readHeader(InputStream)}, followed by the tiles of the image (see
+ * {@link TileStream}). Tiles are written as they are rendered and are
+ * optionally deflated at the fastest level; partial reads decode only the
+ * tiles of the requested region. The format is not self-delimiting beyond
+ * the tiles, so the same stream can carry further data.
+ */
+public final class RasterCodec {
+
+    /**
+     * The georeferencing and layout of an encoded coverage.
+     */
+    public static final class Header {
+
+        private final String name;
+
+        private final CoordinateReferenceSystem crs;
+
+        private final GeneralEnvelope envelope;
+
+        private final AffineTransform gridToCRS;
+
+        private final Double noData;
+
+        private final TileStream.Layout layout;
+
+        private Header(String name,
+                CoordinateReferenceSystem crs,
+                GeneralEnvelope envelope,
+                AffineTransform gridToCRS,
+                Double noData,
+                TileStream.Layout layout) {
+            this.name = name;
+            this.crs = crs;
+            this.envelope = envelope;
+            this.gridToCRS = gridToCRS;
+            this.noData = noData;
+            this.layout = layout;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public CoordinateReferenceSystem getCoordinateReferenceSystem() {
+            return crs;
+        }
+
+        public GeneralEnvelope getEnvelope() {
+            return new GeneralEnvelope(envelope);
+        }
+
+        /**
+         * @return the transformation from the upper left corner of a pixel to
+         *         world coordinates
+         */
+        public AffineTransform getGridToCRS() {
+            return new AffineTransform(gridToCRS);
+        }
+
+        /**
+         * @return the no data value, <code>null</code> if there is none
+         */
+        public Double getNoData() {
+            return noData;
+        }
+
+        public int getWidth() {
+            return layout.getWidth();
+        }
+
+        public int getHeight() {
+            return layout.getHeight();
+        }
+
+        public int getDataType() {
+            return layout.getDataType();
+        }
+
+        public int getNumBands() {
+            return layout.getNumBands();
+        }
+    }
+
+    /** The default width and height of the tiles. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final int MAGIC = 0x4E353252;
+
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static Logger LOGGER = LoggerFactory.getLogger(RasterCodec.class);
+
+    private final boolean compress;
+
+    private final int tileSize;
+
+    /**
+     * Creates a codec that deflates the tiles.
+     */
+    public RasterCodec() {
+        this(true, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * @param compress
+     *            whether tiles are deflated when written
+     * @param tileSize
+     *            the width and height of the tiles when writing
+     */
+    public RasterCodec(boolean compress,
+            int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.compress = compress;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Writes a coverage. The stream is flushed but not closed.
+     *
+     * @param coverage
+     *            the coverage
+     * @param out
+     *            the stream
+     * @throws IOException
+     *             if writing fails or the grid to world transformation of the
+     *             coverage is not affine
+     */
+    public void write(GridCoverage2D coverage,
+            OutputStream out) throws IOException {
+        MathTransform transform = coverage.getGridGeometry().getGridToCRS2D(PixelOrientation.UPPER_LEFT);
+        if (!(transform instanceof AffineTransform)) {
+            throw new IOException("Grid to world transformation is not affine: " + transform);
+        }
+        AffineTransform gridToCRS = new AffineTransform((AffineTransform) transform);
+        // the stream starts at pixel 0
+        gridToCRS.translate(coverage.getRenderedImage().getMinX(), coverage.getRenderedImage().getMinY());
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        CodecIO.writeString(data, coverage.getName().toString());
+        CodecIO.writeCRS(data, coverage.getCoordinateReferenceSystem());
+        Envelope envelope = coverage.getEnvelope();
+        for (int i = 0; i < 2; i++) {
+            data.writeDouble(envelope.getMinimum(i));
+            data.writeDouble(envelope.getMaximum(i));
+        }
+        double[] matrix = new double[6];
+        gridToCRS.getMatrix(matrix);
+        for (double value : matrix) {
+            data.writeDouble(value);
+        }
+        NoDataContainer noData = CoverageUtilities.getNoDataProperty(coverage);
+        data.writeBoolean(noData != null);
+        if (noData != null) {
+            data.writeDouble(noData.getAsSingleValue());
+        }
+        TileStream.write(coverage.getRenderedImage(), tileSize, compress, data);
+        data.flush();
+    }
+
+    /**
+     * Reads the header of a stream, leaving it positioned at the tiles.
+     *
+     * @param in
+     *            the stream
+     * @return the header
+     * @throws IOException
+     *             if the stream is not a raster stream
+     */
+    public Header readHeader(InputStream in) throws IOException {
+        return readHeader(CodecIO.toDataInput(in));
+    }
+
+    private Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a raster stream.");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported raster stream version " + version);
+        }
+        String name = CodecIO.readString(in);
+        CoordinateReferenceSystem crs = CodecIO.readCRS(in);
+        double[] minimum = new double[2];
+        double[] maximum = new double[2];
+        for (int i = 0; i < 2; i++) {
+            minimum[i] = in.readDouble();
+            maximum[i] = in.readDouble();
+        }
+        GeneralEnvelope envelope = new GeneralEnvelope(minimum, maximum);
+        envelope.setCoordinateReferenceSystem(crs);
+        double[] matrix = new double[6];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = in.readDouble();
+        }
+        Double noData = in.readBoolean() ? in.readDouble() : null;
+        return new Header(name, crs, envelope, new AffineTransform(matrix), noData, TileStream.readLayout(in));
+    }
+
+    /**
+     * Reads a coverage.
+     *
+     * @param in
+     *            the stream
+     * @return the coverage
+     * @throws IOException
+     *             if reading fails
+     */
+    public GridCoverage2D read(InputStream in) throws IOException {
+        return read(in, null);
+    }
+
+    /**
+     * Reads part of a coverage; tiles outside of the region are skipped
+     * without decoding them. The stream is positioned after the tiles
+     * afterwards.
+     *
+     * @param in
+     *            the stream
+     * @param region
+     *            the pixels to read, all if <code>null</code>
+     * @return the coverage, <code>null</code> if the region does not
+     *         intersect the coverage
+     * @throws IOException
+     *             if reading fails
+     */
+    public GridCoverage2D read(InputStream in,
+            Rectangle region) throws IOException {
+        DataInputStream data = CodecIO.toDataInput(in);
+        Header header = readHeader(data);
+        TileStream.Layout layout = header.layout;
+        Rectangle bounds = new Rectangle(0, 0, layout.getWidth(), layout.getHeight());
+        if (region != null) {
+            bounds = bounds.intersection(region);
+        }
+        if (bounds.isEmpty()) {
+            TileStream.read(data, layout, bounds, tile -> {
+            });
+            return null;
+        }
+
+        TiledImage image = new TiledImage(bounds.x, bounds.y, bounds.width, bounds.height, 0, 0, layout
+                .createSampleModel(layout.getTileWidth(), layout.getTileHeight()), PlanarImage.createColorModel(
+                        layout.createSampleModel(1, 1)));
+        TileStream.read(data, layout, bounds, image::setData);
+        LOGGER.debug("Read " + bounds + " of " + header.getName());
+
+        GridGeometry2D gridGeometry = new GridGeometry2D(new GridEnvelope2D(bounds), PixelInCell.CELL_CORNER,
+                new AffineTransform2D(header.gridToCRS), header.crs, null);
+        Map<String, Object> properties = new HashMap<>();
+        if (header.noData != null) {
+            CoverageUtilities.setNoDataProperty(properties, header.noData);
+        }
+        return new GridCoverageFactory().create(header.name, image, gridGeometry, null, null, properties);
+    }
+
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.binary;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The pixel part of the binary raster format: the layout of the image
+ * followed by its tiles in row major order. Every tile holds the pixel
+ * interleaved samples of its part of the image in big endian order, stored
+ * as is or deflated, and is prefixed with its length, so readers can skip
+ * tiles they do not need without decoding them.
+ */
+final class TileStream {
+
+    /**
+     * The layout of an image in a tile stream.
+     */
+    static final class Layout {
+
+        private final int width;
+
+        private final int height;
+
+        private final int tileWidth;
+
+        private final int tileHeight;
+
+        private final int dataType;
+
+        private final int numBands;
+
+        Layout(int width,
+                int height,
+                int tileWidth,
+                int tileHeight,
+                int dataType,
+                int numBands) {
+            this.width = width;
+            this.height = height;
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            this.dataType = dataType;
+            this.numBands = numBands;
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        int getHeight() {
+            return height;
+        }
+
+        int getTileWidth() {
+            return tileWidth;
+        }
+
+        int getTileHeight() {
+            return tileHeight;
+        }
+
+        int getDataType() {
+            return dataType;
+        }
+
+        int getNumBands() {
+            return numBands;
+        }
+
+        int getTilesAcross() {
+            return (width + tileWidth - 1) / tileWidth;
+        }
+
+        int getTilesDown() {
+            return (height + tileHeight - 1) / tileHeight;
+        }
+
+        /**
+         * @return the bounds of a tile, clipped to the image
+         */
+        Rectangle getTileBounds(int tileX,
+                int tileY) {
+            int x = tileX * tileWidth;
+            int y = tileY * tileHeight;
+            return new Rectangle(x, y, Math.min(tileWidth, width - x), Math.min(tileHeight, height - y));
+        }
+
+        SampleModel createSampleModel(int sampleModelWidth,
+                int sampleModelHeight) {
+            return new PixelInterleavedSampleModel(dataType, sampleModelWidth, sampleModelHeight, numBands,
+                    sampleModelWidth * numBands, IntStream.range(0, numBands).toArray());
+        }
+    }
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 1;
+
+    private TileStream() {
+    }
+
+    /**
+     * Writes the layout and tiles of an image. Pixel coordinates in the
+     * stream start at 0, regardless of the origin of the image.
+     */
+    static void write(RenderedImage image,
+            int tileSize,
+            boolean compress,
+            DataOutputStream out) throws IOException {
+        Layout layout = new Layout(image.getWidth(), image.getHeight(), Math.min(tileSize, image.getWidth()), Math
+                .min(tileSize, image.getHeight()), image.getSampleModel().getDataType(), image.getSampleModel()
+                        .getNumBands());
+        out.writeInt(layout.getWidth());
+        out.writeInt(layout.getHeight());
+        out.writeInt(layout.getTileWidth());
+        out.writeInt(layout.getTileHeight());
+        out.writeByte(layout.getDataType());
+        out.writeShort(layout.getNumBands());
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            byte[] compressed = new byte[0];
+            for (int tileY = 0; tileY < layout.getTilesDown(); tileY++) {
+                for (int tileX = 0; tileX < layout.getTilesAcross(); tileX++) {
+                    Rectangle bounds = layout.getTileBounds(tileX, tileY);
+                    bounds.translate(image.getMinX(), image.getMinY());
+                    byte[] data = toBytes(image.getData(bounds), bounds, layout.getDataType());
+                    if (deflater == null) {
+                        writeTile(out, STORED, data, data.length);
+                        continue;
+                    }
+                    if (compressed.length < data.length + 64) {
+                        compressed = new byte[data.length + 64];
+                    }
+                    deflater.reset();
+                    deflater.setInput(data);
+                    deflater.finish();
+                    int length = deflater.deflate(compressed);
+                    if (deflater.finished() && length < data.length) {
+                        writeTile(out, DEFLATED, compressed, length);
+                    } else {
+                        writeTile(out, STORED, data, data.length);
+                    }
+                }
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeTile(DataOutputStream out,
+            int method,
+            byte[] data,
+            int length) throws IOException {
+        out.writeByte(method);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    private static byte[] toBytes(Raster raster,
+            Rectangle bounds,
+            int dataType) {
+        int samples = bounds.width * bounds.height * raster.getNumBands();
+        ByteBuffer buffer = ByteBuffer.allocate(samples * DataBuffer.getDataTypeSize(dataType) / 8);
+        switch (dataType) {
+        case DataBuffer.TYPE_FLOAT:
+            buffer.asFloatBuffer().put(raster.getPixels(bounds.x, bounds.y, bounds.width, bounds.height,
+                    (float[]) null));
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            buffer.asDoubleBuffer().put(raster.getPixels(bounds.x, bounds.y, bounds.width, bounds.height,
+                    (double[]) null));
+            break;
+        default:
+            int[] pixels = raster.getPixels(bounds.x, bounds.y, bounds.width, bounds.height, (int[]) null);
+            for (int sample : pixels) {
+                if (dataType == DataBuffer.TYPE_BYTE) {
+                    buffer.put((byte) sample);
+                } else if (dataType == DataBuffer.TYPE_INT) {
+                    buffer.putInt(sample);
+                } else {
+                    buffer.putShort((short) sample);
+                }
+            }
+            break;
+        }
+        return buffer.array();
+    }
+
+    static Layout readLayout(DataInputStream in) throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        int tileWidth = in.readInt();
+        int tileHeight = in.readInt();
+        int dataType = in.readByte();
+        int numBands = in.readShort();
+        if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0 || numBands <= 0
+                || dataType < DataBuffer.TYPE_BYTE || dataType > DataBuffer.TYPE_DOUBLE) {
+            throw new IOException("Invalid raster layout.");
+        }
+        return new Layout(width, height, tileWidth, tileHeight, dataType, numBands);
+    }
+
+    /**
+     * Reads the tiles that intersect a region and skips the others; the
+     * stream is positioned after the last tile afterwards.
+     *
+     * @param consumer
+     *            receives the tiles intersecting the region, in stream pixel
+     *            coordinates
+     */
+    static void read(DataInputStream in,
+            Layout layout,
+            Rectangle region,
+            Consumer<Raster> consumer) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            byte[] data = new byte[0];
+            for (int tileY = 0; tileY < layout.getTilesDown(); tileY++) {
+                for (int tileX = 0; tileX < layout.getTilesAcross(); tileX++) {
+                    int method = in.readByte();
+                    int length = in.readInt();
+                    Rectangle bounds = layout.getTileBounds(tileX, tileY);
+                    if (!bounds.intersects(region)) {
+                        skipFully(in, length);
+                        continue;
+                    }
+                    if (data.length < length) {
+                        data = new byte[length];
+                    }
+                    in.readFully(data, 0, length);
+                    int samples = bounds.width * bounds.height * layout.getNumBands();
+                    int size = samples * DataBuffer.getDataTypeSize(layout.getDataType()) / 8;
+                    ByteBuffer buffer;
+                    if (method == DEFLATED) {
+                        buffer = ByteBuffer.wrap(inflate(inflater, data, length, size));
+                    } else if (method == STORED && length == size) {
+                        buffer = ByteBuffer.wrap(data, 0, length);
+                    } else {
+                        throw new IOException("Invalid tile " + tileX + "," + tileY);
+                    }
+                    consumer.accept(toRaster(buffer, samples, layout, bounds));
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] inflate(Inflater inflater,
+            byte[] data,
+            int length,
+            int size) throws IOException {
+        byte[] inflated = new byte[size];
+        inflater.reset();
+        inflater.setInput(data, 0, length);
+        try {
+            int offset = 0;
+            while (offset < size && !inflater.finished()) {
+                int count = inflater.inflate(inflated, offset, size - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != size) {
+                throw new IOException("Truncated tile data.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid tile data.", e);
+        }
+        return inflated;
+    }
+
+    private static Raster toRaster(ByteBuffer buffer,
+            int samples,
+            Layout layout,
+            Rectangle bounds) {
+        WritableRaster raster = Raster.createWritableRaster(layout.createSampleModel(bounds.width, bounds.height),
+                new Point(bounds.x, bounds.y));
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        switch (layout.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            buffer.get(((DataBufferByte) dataBuffer).getData(), 0, samples);
+            break;
+        case DataBuffer.TYPE_USHORT:
+            buffer.asShortBuffer().get(((DataBufferUShort) dataBuffer).getData(), 0, samples);
+            break;
+        case DataBuffer.TYPE_SHORT:
+            buffer.asShortBuffer().get(((DataBufferShort) dataBuffer).getData(), 0, samples);
+            break;
+        case DataBuffer.TYPE_INT:
+            buffer.asIntBuffer().get(((DataBufferInt) dataBuffer).getData(), 0, samples);
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            buffer.asFloatBuffer().get(((DataBufferFloat) dataBuffer).getData(), 0, samples);
+            break;
+        default:
+            buffer.asDoubleBuffer().get(((DataBufferDouble) dataBuffer).getData(), 0, samples);
+            break;
+        }
+        return raster;
+    }
+
+    private static void skipFully(DataInputStream in,
+            int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+}
@@ -0,0 +1,631 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * A compact binary format for simple features, e.g. to persist jobs or
+ * cache results without encoding them as GML.
+ * <p>
+ * A stream starts with the feature type (names, attribute types and the CRS
+ * of geometry attributes as WKT), followed by blocks of up to
+ * {@value #BLOCK_SIZE} features and an empty block. Within a block the
+ * values are stored column by column: the feature ids, then per attribute a
+ * bitmap of the non null values followed by the values, geometries as WKB.
+ * Both directions stream: {@link #openWriter(SimpleFeatureType,
+ * OutputStream)} buffers a single block, {@link #open(InputStream)} decodes
+ * a block at a time.
+ * <p>
+ * Attributes of types without a binary representation are written as their
+ * string value and read as strings.
+ */
+public final class VectorCodec {
+
+    /**
+     * Features read from a stream, decoded block by block.
+     */
+    public final class FeatureStream implements Iterator<SimpleFeature> {
+
+        private final DataInputStream in;
+
+        private final SimpleFeatureType featureType;
+
+        private final int[] typeCodes;
+
+        private List<SimpleFeature> block = new ArrayList<>();
+
+        private int index;
+
+        private boolean finished;
+
+        private FeatureStream(DataInputStream in,
+                SimpleFeatureType featureType,
+                int[] typeCodes) {
+            this.in = in;
+            this.featureType = featureType;
+            this.typeCodes = typeCodes;
+        }
+
+        public SimpleFeatureType getFeatureType() {
+            return featureType;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < block.size()) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                block = readBlock(in, featureType, typeCodes);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read features.", e);
+            }
+            index = 0;
+            finished = block.isEmpty();
+            return !finished;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return block.get(index++);
+        }
+    }
+
+    /**
+     * Writes features of a single type, buffering up to {@value #BLOCK_SIZE}
+     * features.
+     */
+    public final class FeatureWriter implements Flushable {
+
+        private final DataOutputStream out;
+
+        private final int[] typeCodes;
+
+        private final List<SimpleFeature> block = new ArrayList<>(BLOCK_SIZE);
+
+        private FeatureWriter(DataOutputStream out,
+                int[] typeCodes) {
+            this.out = out;
+            this.typeCodes = typeCodes;
+        }
+
+        public void write(SimpleFeature feature) throws IOException {
+            block.add(feature);
+            if (block.size() == BLOCK_SIZE) {
+                writeBlock(out, block, typeCodes);
+                block.clear();
+            }
+        }
+
+        /**
+         * Writes the buffered features as a block, which may be shorter than
+         * {@value #BLOCK_SIZE}, and flushes the stream.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (!block.isEmpty()) {
+                writeBlock(out, block, typeCodes);
+                block.clear();
+            }
+            out.flush();
+        }
+
+        /**
+         * Writes the buffered features and the end of the stream. The stream
+         * is flushed but not closed.
+         */
+        public void finish() throws IOException {
+            if (!block.isEmpty()) {
+                writeBlock(out, block, typeCodes);
+                block.clear();
+            }
+            out.writeInt(0);
+            out.flush();
+        }
+    }
+
+    /** The maximum number of features per block. */
+    public static final int BLOCK_SIZE = 1024;
+
+    private static final int MAGIC = 0x4E353256;
+
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int STRING = 0;
+
+    private static final int BOOLEAN = 1;
+
+    private static final int BYTE = 2;
+
+    private static final int SHORT = 3;
+
+    private static final int INTEGER = 4;
+
+    private static final int LONG = 5;
+
+    private static final int FLOAT = 6;
+
+    private static final int DOUBLE = 7;
+
+    private static final int DATE = 8;
+
+    private static final int SQL_DATE = 9;
+
+    private static final int TIMESTAMP = 10;
+
+    private static final int BIG_DECIMAL = 11;
+
+    private static final int BIG_INTEGER = 12;
+
+    private static final int GEOMETRY = 13;
+
+    /** Written as string, read as string. */
+    private static final int OTHER = 14;
+
+    private static final Class<?>[] BINDINGS = { String.class, Boolean.class, Byte.class, Short.class,
+            Integer.class, Long.class, Float.class, Double.class, Date.class, java.sql.Date.class, Timestamp.class,
+            BigDecimal.class, BigInteger.class, Geometry.class, String.class };
+
+    private final GeometryFactory geometryFactory;
+
+    public VectorCodec() {
+        this(new GeometryFactory());
+    }
+
+    /**
+     * @param geometryFactory
+     *            the factory of the geometries read
+     */
+    public VectorCodec(GeometryFactory geometryFactory) {
+        this.geometryFactory = geometryFactory;
+    }
+
+    private static int getTypeCode(Class<?> binding) {
+        if (Geometry.class.isAssignableFrom(binding)) {
+            return GEOMETRY;
+        }
+        // subclasses before their super classes
+        for (int code = BIG_INTEGER; code >= 0; code--) {
+            if (BINDINGS[code].isAssignableFrom(binding)) {
+                return code;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * @param featureType
+     *            a feature type
+     * @return whether all attributes of the type are read back with their
+     *         type, none is written as string
+     */
+    public static boolean canEncode(SimpleFeatureType featureType) {
+        for (AttributeDescriptor descriptor : featureType.getAttributeDescriptors()) {
+            if (getTypeCode(descriptor.getType().getBinding()) == OTHER) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes features. The stream is flushed but not closed.
+     *
+     * @param features
+     *            the features
+     * @param out
+     *            the stream
+     * @throws IOException
+     *             if writing fails
+     */
+    public void write(SimpleFeatureCollection features,
+            OutputStream out) throws IOException {
+        FeatureWriter writer = openWriter(features.getSchema(), out);
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+        writer.finish();
+    }
+
+    /**
+     * Writes the feature type and returns a writer for the features.
+     *
+     * @param featureType
+     *            the type of the features
+     * @param out
+     *            the stream, not closed by the writer
+     * @return the writer
+     * @throws IOException
+     *             if writing fails
+     */
+    public FeatureWriter openWriter(SimpleFeatureType featureType,
+            OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+
+        CodecIO.writeString(data, featureType.getTypeName());
+        String namespace = featureType.getName().getNamespaceURI();
+        CodecIO.writeString(data, namespace == null ? "" : namespace);
+        GeometryDescriptor defaultGeometry = featureType.getGeometryDescriptor();
+        CodecIO.writeString(data, defaultGeometry == null ? "" : defaultGeometry.getLocalName());
+        List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        int[] typeCodes = new int[descriptors.size()];
+        data.writeInt(descriptors.size());
+        for (int i = 0; i < typeCodes.length; i++) {
+            AttributeDescriptor descriptor = descriptors.get(i);
+            Class<?> binding = descriptor.getType().getBinding();
+            typeCodes[i] = getTypeCode(binding);
+            CodecIO.writeString(data, descriptor.getLocalName());
+            data.writeByte(typeCodes[i]);
+            if (typeCodes[i] == GEOMETRY) {
+                CodecIO.writeString(data, binding.getName());
+                CodecIO.writeCRS(data, ((GeometryDescriptor) descriptor).getCoordinateReferenceSystem());
+            }
+        }
+        return new FeatureWriter(data, typeCodes);
+    }
+
+    private void writeBlock(DataOutputStream out,
+            List<SimpleFeature> block,
+            int[] typeCodes) throws IOException {
+        out.writeInt(block.size());
+        for (SimpleFeature feature : block) {
+            CodecIO.writeString(out, feature.getID());
+        }
+        WKBWriter writer2D = new WKBWriter(2);
+        WKBWriter writer3D = new WKBWriter(3);
+        byte[] bitmap = new byte[(block.size() + 7) / 8];
+        for (int attribute = 0; attribute < typeCodes.length; attribute++) {
+            Arrays.fill(bitmap, (byte) 0);
+            for (int i = 0; i < block.size(); i++) {
+                if (block.get(i).getAttribute(attribute) != null) {
+                    bitmap[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            out.write(bitmap);
+            for (SimpleFeature feature : block) {
+                Object value = feature.getAttribute(attribute);
+                if (value != null) {
+                    writeValue(out, typeCodes[attribute], value, writer2D, writer3D);
+                }
+            }
+        }
+    }
+
+    private void writeValue(DataOutputStream out,
+            int typeCode,
+            Object value,
+            WKBWriter writer2D,
+            WKBWriter writer3D) throws IOException {
+        switch (typeCode) {
+        case BOOLEAN:
+            out.writeBoolean((Boolean) value);
+            break;
+        case BYTE:
+            out.writeByte(((Number) value).byteValue());
+            break;
+        case SHORT:
+            out.writeShort(((Number) value).shortValue());
+            break;
+        case INTEGER:
+            out.writeInt(((Number) value).intValue());
+            break;
+        case LONG:
+            out.writeLong(((Number) value).longValue());
+            break;
+        case FLOAT:
+            out.writeFloat(((Number) value).floatValue());
+            break;
+        case DOUBLE:
+            out.writeDouble(((Number) value).doubleValue());
+            break;
+        case DATE:
+        case SQL_DATE:
+            out.writeLong(((Date) value).getTime());
+            break;
+        case TIMESTAMP:
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+            break;
+        case GEOMETRY:
+            Geometry geometry = (Geometry) value;
+            boolean hasZ = !geometry.isEmpty() && !Double.isNaN(geometry.getCoordinate().getZ());
+            byte[] wkb = (hasZ ? writer3D : writer2D).write(geometry);
+            out.writeInt(wkb.length);
+            out.write(wkb);
+            break;
+        default:
+            CodecIO.writeString(out, value.toString());
+            break;
+        }
+    }
+
+    /**
+     * Reads all features of a stream.
+     *
+     * @param in
+     *            the stream
+     * @return the features
+     * @throws IOException
+     *             if reading fails
+     */
+    public SimpleFeatureCollection read(InputStream in) throws IOException {
+        FeatureStream stream = open(in);
+        List<SimpleFeature> features = new ArrayList<>();
+        try {
+            stream.forEachRemaining(features::add);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return new ListFeatureCollection(stream.getFeatureType(), features);
+    }
+
+    /**
+     * Reads the feature type of a stream. The features are decoded while
+     * iterating; the stream is positioned after the last block once the
+     * iteration is finished.
+     *
+     * @param in
+     *            the stream
+     * @return the features
+     * @throws IOException
+     *             if the stream is not a feature stream
+     */
+    public FeatureStream open(InputStream in) throws IOException {
+        return open(in, null);
+    }
+
+    /**
+     * Like {@link #open(InputStream)}, but creates the features with a known
+     * type, e.g. the type the stream was written with, instead of the type
+     * restored from the stream.
+     *
+     * @param in
+     *            the stream
+     * @param featureType
+     *            the type of the features, must have the attributes of the
+     *            stream; <code>null</code> to restore it from the stream
+     * @return the features
+     * @throws IOException
+     *             if the stream is not a feature stream of the type
+     */
+    public FeatureStream open(InputStream in,
+            SimpleFeatureType featureType) throws IOException {
+        DataInputStream data = CodecIO.toDataInput(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a feature stream.");
+        }
+        int version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported feature stream version " + version);
+        }
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(CodecIO.readString(data));
+        String namespace = CodecIO.readString(data);
+        if (!namespace.isEmpty()) {
+            builder.setNamespaceURI(namespace);
+        }
+        String defaultGeometry = CodecIO.readString(data);
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid attribute count " + count);
+        }
+        int[] typeCodes = new int[count];
+        for (int i = 0; i < count; i++) {
+            String name = CodecIO.readString(data);
+            typeCodes[i] = data.readByte();
+            if (typeCodes[i] < 0 || typeCodes[i] >= BINDINGS.length) {
+                throw new IOException("Invalid type of attribute " + name);
+            }
+            if (typeCodes[i] == GEOMETRY) {
+                Class<?> binding = getGeometryBinding(CodecIO.readString(data));
+                builder.crs(CodecIO.readCRS(data));
+                builder.add(name, binding);
+            } else {
+                builder.add(name, BINDINGS[typeCodes[i]]);
+            }
+        }
+        if (featureType != null) {
+            if (featureType.getAttributeCount() != count) {
+                throw new IOException("Feature type " + featureType.getTypeName() + " does not match the stream.");
+            }
+            return new FeatureStream(data, featureType, typeCodes);
+        }
+        if (!defaultGeometry.isEmpty()) {
+            builder.setDefaultGeometry(defaultGeometry);
+        }
+        return new FeatureStream(data, builder.buildFeatureType(), typeCodes);
+    }
+
+    private static Class<?> getGeometryBinding(String className) throws IOException {
+        try {
+            Class<?> binding = Class.forName(className, false, Geometry.class.getClassLoader());
+            if (Geometry.class.isAssignableFrom(binding)) {
+                return binding;
+            }
+        } catch (ClassNotFoundException e) {
+            // unknown geometry type
+        }
+        throw new IOException("Invalid geometry type " + className);
+    }
+
+    private List<SimpleFeature> readBlock(DataInputStream in,
+            SimpleFeatureType featureType,
+            int[] typeCodes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > BLOCK_SIZE) {
+            throw new IOException("Invalid block size " + count);
+        }
+        List<SimpleFeature> block = new ArrayList<>(count);
+        if (count == 0) {
+            return block;
+        }
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = CodecIO.readString(in);
+        }
+        Object[][] values = new Object[count][typeCodes.length];
+        WKBReader reader = new WKBReader(geometryFactory);
+        byte[] bitmap = new byte[(count + 7) / 8];
+        for (int attribute = 0; attribute < typeCodes.length; attribute++) {
+            in.readFully(bitmap);
+            // like the GML parsers, attach the CRS to the geometries
+            CoordinateReferenceSystem crs = typeCodes[attribute] == GEOMETRY ? getCRS(featureType, attribute)
+                    : null;
+            for (int i = 0; i < count; i++) {
+                if ((bitmap[i >> 3] & 1 << (i & 7)) != 0) {
+                    values[i][attribute] = readValue(in, typeCodes[attribute], reader);
+                    if (crs != null) {
+                        ((Geometry) values[i][attribute]).setUserData(crs);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            block.add(SimpleFeatureBuilder.build(featureType, values[i], ids[i]));
+        }
+        return block;
+    }
+
+    private static CoordinateReferenceSystem getCRS(SimpleFeatureType featureType,
+            int attribute) {
+        AttributeDescriptor descriptor = featureType.getDescriptor(attribute);
+        return descriptor instanceof GeometryDescriptor ? ((GeometryDescriptor) descriptor)
+                .getCoordinateReferenceSystem() : null;
+    }
+
+    private Object readValue(DataInputStream in,
+            int typeCode,
+            WKBReader reader) throws IOException {
+        switch (typeCode) {
+        case BOOLEAN:
+            return in.readBoolean();
+        case BYTE:
+            return in.readByte();
+        case SHORT:
+            return in.readShort();
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case FLOAT:
+            return in.readFloat();
+        case DOUBLE:
+            return in.readDouble();
+        case DATE:
+            return new Date(in.readLong());
+        case SQL_DATE:
+            return new java.sql.Date(in.readLong());
+        case TIMESTAMP:
+            Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        case BIG_DECIMAL:
+            return new BigDecimal(CodecIO.readString(in));
+        case BIG_INTEGER:
+            return new BigInteger(CodecIO.readString(in));
+        case GEOMETRY:
+            byte[] wkb = new byte[in.readInt()];
+            in.readFully(wkb);
+            try {
+                return reader.read(wkb);
+            } catch (ParseException e) {
+                throw new IOException("Invalid geometry.", e);
+            }
+        default:
+            return CodecIO.readString(in);
+        }
+    }
+
+}
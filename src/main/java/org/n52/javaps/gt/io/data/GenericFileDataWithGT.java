@@ -55,6 +55,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.zip.ZipEntry;
@@ -62,44 +63,34 @@ import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.geotools.coverage.grid.GridCoverage2D;
-import org.geotools.data.DataStore;
-import org.geotools.data.DefaultTransaction;
-import org.geotools.data.FeatureStore;
-import org.geotools.data.Transaction;
-import org.geotools.data.collection.ListFeatureCollection;
-import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
-import org.geotools.feature.GeometryAttributeImpl;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
-import org.geotools.feature.type.GeometryDescriptorImpl;
-import org.geotools.feature.type.GeometryTypeImpl;
-import org.geotools.filter.identity.GmlObjectIdImpl;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.MultiPolygon;
-import org.n52.javaps.gt.io.data.binding.complex.GTRasterDataBinding;
+import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.datahandler.generator.GTBinDirectorySHPGenerator;
 import org.n52.javaps.gt.io.datahandler.generator.GeotiffGenerator;
 import org.n52.javaps.gt.io.datahandler.parser.GML2BasicParser;
 import org.n52.javaps.gt.io.datahandler.parser.GML3BasicParser;
+import org.n52.javaps.gt.io.feature.ConcatenatedFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
+import org.n52.javaps.gt.io.util.ParallelZipWriter;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry.Lease;
+import org.n52.javaps.gt.io.util.ShapefileSplitter;
+import org.n52.javaps.gt.io.util.TypeSplitShapefileExporter;
 import org.n52.javaps.io.DecodingException;
-import org.n52.javaps.io.EncodingException;
 import org.n52.javaps.io.GenericFileDataConstants;
 import org.n52.shetland.ogc.wps.Format;
-import org.opengis.feature.GeometryAttribute;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeType;
-import org.opengis.feature.type.GeometryDescriptor;
-import org.opengis.feature.type.GeometryType;
 import org.opengis.feature.type.PropertyType;
-import org.opengis.filter.identity.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -184,7 +175,20 @@ public class GenericFileDataWithGT {
                 LOGGER.info("Not all files are available, but the available ones are zipped.");
             }
 
-            is = new FileInputStream(org.n52.javaps.utils.IOUtils.zip(allFiles));
+            // shapefiles beyond the size limit are split into parts (see
+            // ShapefileSplitter) and mixed geometries by geometry type (see
+            // TypeSplitShapefileExporter)
+            List<File> zipFiles = new ArrayList<>(Arrays.asList(allFiles));
+            List<File> shpFiles = getShapefileParts(primaryFile);
+            for (File part : shpFiles.subList(1, shpFiles.size())) {
+                String partBase = part.getName().substring(0, part.getName().lastIndexOf("."));
+                for (String extension : extensions) {
+                    zipFiles.add(new File(directory, partBase + "." + extension));
+                }
+                zipFiles.add(part);
+            }
+
+            is = new FileInputStream(ParallelZipWriter.zip(zipFiles.toArray(new File[zipFiles.size()])));
         } else {
             is = new FileInputStream(primaryFile);
         }
@@ -204,126 +208,113 @@ public class GenericFileDataWithGT {
 
             primaryFile = File.createTempFile("primary", ".tif");
 
-            FileOutputStream outputStream = new FileOutputStream(primaryFile);
-
-            InputStream is = generator.generate(null, new GTRasterDataBinding(payload), new Format().withMimeType(
-                    mimeType));
-
-            IOUtils.copy(is, outputStream);
-
-            is.close();
+            generator.write(payload, new Format().withMimeType(mimeType), primaryFile);
 
-        } catch (IOException | EncodingException e) {
+        } catch (IOException e) {
             LOGGER.error("Could not generate GeoTiff.");
         }
     }
 
     public static File getShpFile(FeatureCollection<?, ?> collection) throws IOException, IllegalAttributeException {
 
-        SimpleFeatureType type = null;
-        SimpleFeatureBuilder build = null;
-        FeatureIterator<?> iterator = collection.features();
-        List<SimpleFeature> featureList = new ArrayList<>();
-        Transaction transaction = new DefaultTransaction("create");
-        FeatureStore<SimpleFeatureType, SimpleFeature> store = null;
         String uuid = UUID.randomUUID().toString();
         File shp = File.createTempFile("Shape_" + uuid, SHP);
         shp.deleteOnExit();
-        while (iterator.hasNext()) {
-            SimpleFeature sf = (SimpleFeature) iterator.next();
-            // create SimpleFeatureType
-            if (type == null) {
-                SimpleFeatureType inType = (SimpleFeatureType) collection.getSchema();
-                SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
-                builder.setName(inType.getName());
-                builder.setNamespaceURI(inType.getName().getNamespaceURI());
-
-                if (collection.getSchema().getCoordinateReferenceSystem() == null) {
-                    builder.setCRS(DefaultGeographicCRS.WGS84);
-                } else {
-                    builder.setCRS(collection.getSchema().getCoordinateReferenceSystem());
-                }
 
-                builder.setDefaultGeometry(sf.getDefaultGeometryProperty().getName().getLocalPart());
-
-                /*
-                 * seems like the geometries must always be the first property..
-                 *
-                 * @see also ShapeFileDataStore.java getSchema() method
-                 */
-                Property geomProperty = sf.getDefaultGeometryProperty();
-
-                // TODO: check if that makes any sense at all
-                if (geomProperty.getType().getBinding().getSimpleName().equals("Geometry")) {
-                    Geometry g = (Geometry) geomProperty.getValue();
-                    if (g != null) {
-                        GeometryAttribute geo = null;
-                        if (g instanceof MultiPolygon) {
-
-                            GeometryAttribute oldGeometryDescriptor = sf.getDefaultGeometryProperty();
-                            GeometryType type1 = new GeometryTypeImpl(geomProperty.getName(), MultiPolygon.class,
-                                    oldGeometryDescriptor.getType().getCoordinateReferenceSystem(),
-                                    oldGeometryDescriptor.getType().isIdentified(), oldGeometryDescriptor.getType()
-                                            .isAbstract(), oldGeometryDescriptor.getType().getRestrictions(),
-                                    oldGeometryDescriptor.getType().getSuper(), oldGeometryDescriptor.getType()
-                                            .getDescription());
-
-                            GeometryDescriptor newGeometryDescriptor = new GeometryDescriptorImpl(type1, geomProperty
-                                    .getName(), 0, 1, true, null);
-                            Identifier identifier = new GmlObjectIdImpl(sf.getID());
-                            geo = new GeometryAttributeImpl((Object) g, newGeometryDescriptor, identifier);
-                            sf.setDefaultGeometryProperty(geo);
-                            sf.setDefaultGeometry(g);
-                        }
-                        // TODO: implement other cases
+        // collections with generic geometries are written as one shapefile
+        // per geometry type, corrected like the shapefile generator output,
+        // the first one is returned
+        if (collection.getSchema() instanceof SimpleFeatureType && TypeSplitShapefileExporter.hasGenericGeometry(
+                (SimpleFeatureType) collection.getSchema())) {
+            List<File> shpFiles = new GTBinDirectorySHPGenerator(new GTHelper()).writeShapefile(collection, shp);
+            if (shpFiles.isEmpty()) {
+                throw new IOException("Could not create shapefile, the feature collection contains no geometries.");
+            }
+            return shpFiles.get(0);
+        }
 
-                        if (geo != null) {
-                            builder.add(geo.getName().getLocalPart(), geo.getType().getBinding());
-                        }
+        SimpleFeatureType type = null;
+        SimpleFeatureBuilder build = null;
+        FeatureIterator<?> iterator = collection.features();
+        ShapefileSplitter splitter = null;
+        try {
+            while (iterator.hasNext()) {
+                SimpleFeature sf = (SimpleFeature) iterator.next();
+                // create SimpleFeatureType
+                if (type == null) {
+                    SimpleFeatureType inType = (SimpleFeatureType) collection.getSchema();
+                    SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+                    builder.setName(inType.getName());
+                    builder.setNamespaceURI(inType.getName().getNamespaceURI());
+
+                    if (collection.getSchema().getCoordinateReferenceSystem() == null) {
+                        builder.setCRS(DefaultGeographicCRS.WGS84);
+                    } else {
+                        builder.setCRS(collection.getSchema().getCoordinateReferenceSystem());
                     }
-                } else if (isSupportedShapefileType(geomProperty.getType()) && (geomProperty.getValue() != null)) {
-                    builder.add(geomProperty.getName().getLocalPart(), geomProperty.getType().getBinding());
-                }
 
-                for (Property prop : sf.getProperties()) {
+                    builder.setDefaultGeometry(sf.getDefaultGeometryProperty().getName().getLocalPart());
+
+                    /*
+                     * seems like the geometries must always be the first property..
+                     *
+                     * @see also ShapeFileDataStore.java getSchema() method
+                     */
+                    Property geomProperty = sf.getDefaultGeometryProperty();
 
-                    if (isSupportedShapefileType(prop.getType()) && (prop.getValue() != null)) {
-                        builder.add(prop.getName().getLocalPart(), prop.getType().getBinding());
+                    if (isSupportedShapefileType(geomProperty.getType()) && (geomProperty.getValue() != null)) {
+                        builder.add(geomProperty.getName().getLocalPart(), geomProperty.getType().getBinding());
                     }
-                }
 
-                type = builder.buildFeatureType();
+                    for (Property prop : sf.getProperties()) {
+
+                        if (isSupportedShapefileType(prop.getType()) && (prop.getValue() != null)) {
+                            builder.add(prop.getName().getLocalPart(), prop.getType().getBinding());
+                        }
+                    }
+
+                    type = builder.buildFeatureType();
 
-                ShapefileDataStore dataStore = new ShapefileDataStore(shp.toURI().toURL());
-                dataStore.createSchema(type);
-                dataStore.forceSchemaCRS(type.getCoordinateReferenceSystem());
+                    splitter = new ShapefileSplitter(shp, type);
 
-                String typeName = dataStore.getTypeNames()[0];
-                store = (FeatureStore<SimpleFeatureType, SimpleFeature>) dataStore.getFeatureSource(typeName);
+                    build = new SimpleFeatureBuilder(type);
+                }
+                for (AttributeType attributeType : type.getTypes()) {
+                    build.add(sf.getProperty(attributeType.getName()).getValue());
+                }
 
-                store.setTransaction(transaction);
+                SimpleFeature newSf = build.buildFeature(sf.getIdentifier().getID());
 
-                build = new SimpleFeatureBuilder(type);
+                splitter.write(newSf);
             }
-            for (AttributeType attributeType : type.getTypes()) {
-                build.add(sf.getProperty(attributeType.getName()).getValue());
+        } finally {
+            iterator.close();
+            if (splitter != null) {
+                splitter.close();
             }
+        }
 
-            SimpleFeature newSf = build.buildFeature(sf.getIdentifier().getID());
-
-            featureList.add(newSf);
+        if (splitter == null) {
+            throw new IOException("Could not create shapefile, the feature collection is empty.");
         }
+        return shp;
+    }
 
-        try {
-            store.addFeatures(new ListFeatureCollection(featureList.get(0).getFeatureType(), featureList));
-            transaction.commit();
-            return shp;
-        } catch (Exception e1) {
-            transaction.rollback();
-            throw new IOException(e1.getMessage());
-        } finally {
-            transaction.close();
+    /**
+     * @param shpFile
+     *            the first .shp file of a shapefile output
+     * @return the file itself, followed by the additional parts and the
+     *         shapefiles of the other geometry types written with it
+     */
+    private static List<File> getShapefileParts(File shpFile) {
+        List<File> shpFiles = new ArrayList<>();
+        shpFiles.add(shpFile);
+        shpFiles.addAll(ShapefileSplitter.getAdditionalParts(shpFile));
+        for (File related : TypeSplitShapefileExporter.getRelatedShapefiles(shpFile)) {
+            shpFiles.add(related);
+            shpFiles.addAll(ShapefileSplitter.getAdditionalParts(related));
         }
+        return shpFiles;
     }
 
     private static boolean isSupportedShapefileType(PropertyType type) {
@@ -370,11 +361,19 @@ public class GenericFileDataWithGT {
 
         while ((entry = zipInputStream.getNextEntry()) != null) {
 
-            String currentExtension = entry.getName();
-            int beginIndex = currentExtension.lastIndexOf(".") + 1;
-            currentExtension = currentExtension.substring(beginIndex);
+            if (entry.isDirectory()) {
+                continue;
+            }
+
+            // the entry names are kept, so that the parts of split
+            // shapefiles can be told apart, but reduced to safe characters
+            String entryName = entry.getName();
+            entryName = entryName.substring(Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\')) + 1);
+            int beginIndex = entryName.lastIndexOf(".") + 1;
+            String currentExtension = entryName.substring(beginIndex);
+            String entryBaseName = beginIndex > 0 ? entryName.substring(0, beginIndex - 1) : entryName;
 
-            String fileName = baseFileName + "." + currentExtension;
+            String fileName = baseFileName + "_" + sanitize(entryBaseName) + "." + sanitize(currentExtension);
 
             File currentFile = createFileInDirectory(writeDirectory, fileName);
 
@@ -382,7 +381,7 @@ public class GenericFileDataWithGT {
 
             IOUtils.copy(zipInputStream, fos);
 
-            if (currentExtension.equalsIgnoreCase(extension)) {
+            if (returnFile == null && currentExtension.equalsIgnoreCase(extension)) {
                 returnFile = currentFile.getAbsolutePath();
             }
 
@@ -392,6 +391,10 @@ public class GenericFileDataWithGT {
         return returnFile;
     }
 
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9_\\-]", "_");
+    }
+
     private File createFileInDirectory(File writeDirectory,
             String fileName) throws IOException {
 
@@ -454,12 +457,29 @@ public class GenericFileDataWithGT {
             File shpFile = new File(fileName);
 
             try {
-                DataStore store = new ShapefileDataStore(shpFile.toURI().toURL());
-                SimpleFeatureCollection features = store.getFeatureSource(store.getTypeNames()[0]).getFeatures();
+                List<File> shpFiles = getShapefileParts(shpFile);
                 if (!tempDir.delete()) {
                     LOGGER.trace("Could not delete temporary directory: " + tempDir.getAbsolutePath());
                 }
-                return new GTVectorDataBinding(features);
+                // the parts stay open until the binding is disposed or, see
+                // ShapefileDataStoreRegistry, the features are unreachable
+                List<Lease> leases = new ArrayList<>();
+                List<SimpleFeatureCollection> parts = new ArrayList<>();
+                try {
+                    for (File part : shpFiles) {
+                        Lease lease = ShapefileDataStoreRegistry.getInstance().acquire(part);
+                        leases.add(lease);
+                        parts.add(lease.getFeatures());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    leases.forEach(Lease::close);
+                    throw e;
+                }
+                if (parts.size() == 1) {
+                    return new GTVectorDataBinding(parts.get(0), leases.get(0));
+                }
+                return new GTVectorDataBinding(new ConcatenatedFeatureCollection(parts), () -> leases.forEach(
+                        Lease::close));
             } catch (MalformedURLException e) {
                 String message = "Something went wrong while creating data store.";
                 LOGGER.error(message, e);
@@ -562,7 +582,18 @@ public class GenericFileDataWithGT {
         return fileExtension;
     }
 
+    /**
+     * @return the stream this object was created from or, for data written
+     *         to a file such as coverages, a new stream of that file
+     */
     public InputStream getDataStream() {
+        if (dataStream == null && primaryFile != null && primaryFile.isFile()) {
+            try {
+                return new FileInputStream(primaryFile);
+            } catch (FileNotFoundException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
         return dataStream;
     }
 }
@@ -47,7 +47,12 @@
  */
 package org.n52.javaps.gt.io.data.binding.complex;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.n52.javaps.gt.io.binary.RasterCodec;
 import org.n52.javaps.io.complex.ComplexData;
 
 public class GTRasterDataBinding implements ComplexData<GridCoverage2D> {
@@ -56,7 +61,7 @@ public class GTRasterDataBinding implements ComplexData<GridCoverage2D> {
      */
     private static final long serialVersionUID = 8482405246163382956L;
 
-    protected GridCoverage2D payload;
+    protected transient GridCoverage2D payload;
 
     public GTRasterDataBinding(GridCoverage2D coverage) {
         this.payload = coverage;
@@ -69,4 +74,23 @@ public class GTRasterDataBinding implements ComplexData<GridCoverage2D> {
     public Class<GridCoverage2D> getSupportedClass() {
         return GridCoverage2D.class;
     }
+
+    /**
+     * Writes the coverage in the format of {@link RasterCodec}.
+     */
+    private synchronized void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        GridCoverage2D coverage = getPayload();
+        oos.writeBoolean(coverage != null);
+        if (coverage != null) {
+            new RasterCodec().write(coverage, oos);
+        }
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        if (ois.readBoolean()) {
+            payload = new RasterCodec().read(ois);
+        }
+    }
 }
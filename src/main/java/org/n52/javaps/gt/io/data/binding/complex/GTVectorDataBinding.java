@@ -47,20 +47,21 @@
  */
 package org.n52.javaps.gt.io.data.binding.complex;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.n52.javaps.gt.io.binary.VectorCodec;
 import org.n52.javaps.gt.io.data.GenericFileDataWithGT;
-import org.n52.javaps.gt.io.datahandler.generator.GML3BasicGenerator;
-import org.n52.javaps.gt.io.datahandler.parser.GML3BasicParser;
-import org.n52.javaps.io.DecodingException;
+import org.n52.javaps.gt.io.feature.FeatureIndex;
 import org.n52.javaps.io.complex.ComplexData;
-import org.n52.shetland.ogc.wps.Format;
+import org.opengis.feature.simple.SimpleFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,8 +76,30 @@ public class GTVectorDataBinding implements ComplexData<SimpleFeatureCollection>
 
     protected transient SimpleFeatureCollection featureCollection;
 
+    private transient Closeable resource;
+
+    private transient FeatureIndex index;
+
+    /**
+     * @param payload
+     *            the features, closed by {@link #dispose()} if they are
+     *            {@link Closeable}, e.g. spilled to disk
+     */
     public GTVectorDataBinding(SimpleFeatureCollection payload) {
+        this(payload, payload instanceof Closeable ? (Closeable) payload : null);
+    }
+
+    /**
+     * @param payload
+     *            the features
+     * @param resource
+     *            the resource backing the features (e.g. a data store lease),
+     *            closed by {@link #dispose()}
+     */
+    public GTVectorDataBinding(SimpleFeatureCollection payload,
+            Closeable resource) {
         this.featureCollection = payload;
+        this.resource = resource;
     }
 
     public Class<SimpleFeatureCollection> getSupportedClass() {
@@ -98,20 +121,85 @@ public class GTVectorDataBinding implements ComplexData<SimpleFeatureCollection>
 
     }
 
-    private synchronized void writeObject(java.io.ObjectOutputStream oos) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        GML3BasicGenerator generator = new GML3BasicGenerator();
-        generator.writeToStream(this, out);
-        oos.writeObject(out.toByteArray());
+    /**
+     * @return whether the spatial index has been built or set
+     */
+    public synchronized boolean hasIndex() {
+        return index != null;
     }
 
-    private void readObject(java.io.ObjectInputStream oos) throws IOException, ClassNotFoundException,
-            DecodingException {
-        GML3BasicParser parser = new GML3BasicParser();
-        InputStream stream = new ByteArrayInputStream(((String) oos.readObject()).getBytes(StandardCharsets.UTF_8));
-        // use a default configuration for the parser by requesting the first
-        // supported format and schema
-        GTVectorDataBinding data = (GTVectorDataBinding) parser.parse(null, stream, new Format("text/xml"));
-        this.featureCollection = data.getPayload();
+    /**
+     * @return the spatial index of the payload, built on first access if the
+     *         parser did not set one
+     */
+    public synchronized FeatureIndex getIndex() {
+        if (index == null && featureCollection != null) {
+            index = FeatureIndex.build(featureCollection);
+        }
+        return index;
+    }
+
+    /**
+     * @param index
+     *            the spatial index of the payload, e.g. built while parsing
+     */
+    public synchronized void setIndex(FeatureIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @param envelope
+     *            the envelope, in the coordinate reference system of the
+     *            payload
+     * @return the features whose default geometry envelope intersects the
+     *         envelope
+     */
+    public List<SimpleFeature> query(Envelope envelope) {
+        return getIndex().query(envelope);
+    }
+
+    /**
+     * @param geometry
+     *            the geometry, in the coordinate reference system of the
+     *            payload
+     * @return the features whose default geometry intersects the geometry
+     */
+    public List<SimpleFeature> queryIntersecting(Geometry geometry) {
+        return getIndex().queryIntersecting(geometry);
+    }
+
+    /**
+     * Releases the resource backing the payload, if any, before the binding is
+     * collected. The payload must not be used afterwards. Without this call the
+     * resource is released once the binding and its payload are unreachable.
+     */
+    public synchronized void dispose() {
+        index = null;
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not release resource of feature collection.", e);
+            }
+            resource = null;
+        }
+    }
+
+    /**
+     * Writes the features in the format of {@link VectorCodec}.
+     */
+    private synchronized void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeBoolean(featureCollection != null);
+        if (featureCollection != null) {
+            new VectorCodec().write(featureCollection, oos);
+        }
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        if (ois.readBoolean()) {
+            this.featureCollection = new VectorCodec().read(ois);
+        }
     }
 }
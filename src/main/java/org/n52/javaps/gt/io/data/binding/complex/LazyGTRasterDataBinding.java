@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.data.binding.complex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.GridCoverage2DReader;
+import org.geotools.coverage.grid.io.OverviewPolicy;
+import org.geotools.geometry.GeneralEnvelope;
+import org.geotools.referencing.CRS;
+import org.opengis.geometry.Envelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link GTRasterDataBinding} backed by a {@link GridCoverage2DReader}.
+ * Nothing is decoded until a coverage is requested: processes can ask for a
+ * window, an overview level and a band subset through
+ * {@link #read(Envelope, int, int[])}, and only that part is read. The full
+ * coverage is read on the first call of {@link #getPayload()}, for consumers
+ * that are not aware of this binding.
+ */
+public class LazyGTRasterDataBinding extends GTRasterDataBinding {
+
+    private static final long serialVersionUID = -3164937626512830719L;
+
+    private static Logger LOGGER = LoggerFactory.getLogger(LazyGTRasterDataBinding.class);
+
+    private transient GridCoverage2DReader reader;
+
+    private transient Closeable resource;
+
+    public LazyGTRasterDataBinding(GridCoverage2DReader reader) {
+        super(null);
+        this.reader = reader;
+    }
+
+    /**
+     * @param reader
+     *            the reader
+     * @param resource
+     *            the resource the reader reads from (e.g. an image input
+     *            stream), closed by {@link #dispose()}
+     */
+    public LazyGTRasterDataBinding(GridCoverage2DReader reader,
+            Closeable resource) {
+        super(null);
+        this.reader = reader;
+        this.resource = resource;
+    }
+
+    public GridCoverage2DReader getReader() {
+        return reader;
+    }
+
+    public GeneralEnvelope getEnvelope() {
+        return reader.getOriginalEnvelope();
+    }
+
+    public CoordinateReferenceSystem getCoordinateReferenceSystem() {
+        return reader.getCoordinateReferenceSystem();
+    }
+
+    /**
+     * @return the number of resolution levels, 1 for the full resolution
+     *         plus one per overview
+     */
+    public int getResolutionLevelCount() {
+        try {
+            return reader.getResolutionLevels().length;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read resolution levels.", e);
+            return 1;
+        }
+    }
+
+    @Override
+    public synchronized GridCoverage2D getPayload() {
+        if (payload == null) {
+            try {
+                payload = reader.read(null);
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Reads part of the raster.
+     *
+     * @param envelope
+     *            the area to read, the whole raster if <code>null</code>; it
+     *            is transformed to the native CRS if necessary and clipped
+     *            to the raster extent
+     * @param resolutionLevel
+     *            0 for the full resolution, <code>n</code> for the
+     *            <code>n</code>th overview
+     * @param bands
+     *            the indices of the bands to read, all bands if
+     *            <code>null</code>
+     * @return the coverage, <code>null</code> if the envelope does not
+     *         intersect the raster
+     * @throws IOException
+     *             if reading fails
+     */
+    public GridCoverage2D read(Envelope envelope,
+            int resolutionLevel,
+            int[] bands) throws IOException {
+        GeneralEnvelope original = reader.getOriginalEnvelope();
+        GeneralEnvelope requested = new GeneralEnvelope(original);
+        if (envelope != null) {
+            requested = toNativeEnvelope(envelope);
+            requested.intersect(original);
+            if (requested.isEmpty()) {
+                return null;
+            }
+        }
+
+        double[][] resolutions = reader.getResolutionLevels();
+        double[] resolution = resolutions[Math.max(0, Math.min(resolutionLevel, resolutions.length - 1))];
+        int width = Math.max(1, (int) Math.ceil(requested.getSpan(0) / resolution[0]));
+        int height = Math.max(1, (int) Math.ceil(requested.getSpan(1) / resolution[1]));
+        GridGeometry2D gridGeometry = new GridGeometry2D(new GridEnvelope2D(0, 0, width, height), requested);
+
+        List<GeneralParameterValue> parameters = new ArrayList<>();
+        ParameterValue<GridGeometry2D> gridGeometryParameter = AbstractGridFormat.READ_GRIDGEOMETRY2D.createValue();
+        gridGeometryParameter.setValue(gridGeometry);
+        parameters.add(gridGeometryParameter);
+
+        ParameterValue<OverviewPolicy> overviewPolicy = AbstractGridFormat.OVERVIEW_POLICY.createValue();
+        overviewPolicy.setValue(OverviewPolicy.NEAREST);
+        parameters.add(overviewPolicy);
+
+        ParameterValue<Boolean> deferred = AbstractGridFormat.USE_JAI_IMAGEREAD.createValue();
+        deferred.setValue(Boolean.TRUE);
+        parameters.add(deferred);
+
+        if (bands != null) {
+            ParameterValue<int[]> bandsParameter = AbstractGridFormat.BANDS.createValue();
+            bandsParameter.setValue(bands);
+            parameters.add(bandsParameter);
+        }
+
+        return reader.read(parameters.toArray(new GeneralParameterValue[parameters.size()]));
+    }
+
+    /**
+     * Disposes the coverage read by {@link #getPayload()}, if any, the reader
+     * and the resource it reads from.
+     */
+    public synchronized void dispose() {
+        if (payload != null) {
+            payload.dispose(true);
+            payload = null;
+        }
+        if (reader != null) {
+            reader.dispose();
+        }
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not release resource of raster reader.", e);
+            }
+            resource = null;
+        }
+    }
+
+    private GeneralEnvelope toNativeEnvelope(Envelope envelope) throws IOException {
+        return toNativeEnvelope(envelope, reader.getCoordinateReferenceSystem());
+    }
+
+    static GeneralEnvelope toNativeEnvelope(Envelope envelope,
+            CoordinateReferenceSystem nativeCRS) throws IOException {
+        CoordinateReferenceSystem crs = envelope.getCoordinateReferenceSystem();
+        if (crs == null || nativeCRS == null || CRS.equalsIgnoreMetadata(crs, nativeCRS)) {
+            GeneralEnvelope result = new GeneralEnvelope(envelope);
+            result.setCoordinateReferenceSystem(nativeCRS);
+            return result;
+        }
+        try {
+            return CRS.transform(envelope, nativeCRS);
+        } catch (TransformException e) {
+            throw new IOException("Could not transform requested envelope to " + nativeCRS.getName(), e);
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.data.binding.complex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.processing.CoverageProcessor;
+import org.geotools.geometry.GeneralEnvelope;
+import org.geotools.referencing.CRS;
+import org.opengis.geometry.Envelope;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link GTRasterDataBinding} composed of several tiles, e.g. the GeoTIFFs
+ * of a zipped tiled scene. Only the tile envelopes are kept; a tile is opened
+ * when a read intersects it and stays open until {@link #dispose()}. Reads
+ * of several tiles are composed with the GeoTools <code>Mosaic</code>
+ * operation, so the pixels are decoded only when the result is rendered.
+ * <p>
+ * All tiles must share the coordinate reference system.
+ */
+public class LazyMosaicGTRasterDataBinding extends GTRasterDataBinding {
+
+    /**
+     * Opens a tile of the mosaic.
+     */
+    @FunctionalInterface
+    public interface Tile {
+
+        /**
+         * @return the tile, disposed by the mosaic
+         * @throws IOException
+         *             if the tile cannot be opened
+         */
+        LazyGTRasterDataBinding open() throws IOException;
+    }
+
+    private static final long serialVersionUID = 3510528613390460367L;
+
+    private static Logger LOGGER = LoggerFactory.getLogger(LazyMosaicGTRasterDataBinding.class);
+
+    private final transient List<Tile> tiles;
+
+    private final transient List<GeneralEnvelope> envelopes;
+
+    private final transient Map<Integer, LazyGTRasterDataBinding> openTiles = new HashMap<>();
+
+    private transient CoordinateReferenceSystem crs;
+
+    private transient GeneralEnvelope envelope;
+
+    /**
+     * Opens every tile once to read its envelope.
+     *
+     * @param tiles
+     *            the tiles
+     * @throws IOException
+     *             if a tile cannot be opened or its coordinate reference
+     *             system differs from the first tile
+     */
+    public LazyMosaicGTRasterDataBinding(List<Tile> tiles) throws IOException {
+        super(null);
+        if (tiles.isEmpty()) {
+            throw new IllegalArgumentException("A mosaic needs at least one tile.");
+        }
+        this.tiles = new ArrayList<>(tiles);
+        this.envelopes = new ArrayList<>(tiles.size());
+        for (Tile tile : tiles) {
+            LazyGTRasterDataBinding binding = tile.open();
+            try {
+                GeneralEnvelope tileEnvelope = new GeneralEnvelope(binding.getEnvelope());
+                CoordinateReferenceSystem tileCRS = binding.getCoordinateReferenceSystem();
+                if (crs == null) {
+                    crs = tileCRS;
+                    envelope = new GeneralEnvelope(tileEnvelope);
+                } else if (tileCRS != null && !CRS.equalsIgnoreMetadata(crs, tileCRS)) {
+                    throw new IOException("Tile " + envelopes.size() + " is in " + tileCRS.getName()
+                            + ", expected " + crs.getName());
+                } else {
+                    envelope.add(tileEnvelope);
+                }
+                envelopes.add(tileEnvelope);
+            } finally {
+                binding.dispose();
+            }
+        }
+        envelope.setCoordinateReferenceSystem(crs);
+        LOGGER.debug("Indexed " + tiles.size() + " tiles, mosaic envelope " + envelope);
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    public GeneralEnvelope getEnvelope() {
+        return new GeneralEnvelope(envelope);
+    }
+
+    public CoordinateReferenceSystem getCoordinateReferenceSystem() {
+        return crs;
+    }
+
+    /**
+     * @return the number of tiles opened by reads so far
+     */
+    public synchronized int getOpenTileCount() {
+        return openTiles.size();
+    }
+
+    /**
+     * Reads the whole mosaic on the first call; as with
+     * {@link #read(Envelope, int, int[])} the tiles are decoded only when the
+     * coverage is rendered.
+     */
+    @Override
+    public synchronized GridCoverage2D getPayload() {
+        if (payload == null) {
+            try {
+                payload = read(null, 0, null);
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Reads part of the mosaic, opening only the tiles that intersect the
+     * envelope.
+     *
+     * @param envelope
+     *            the area to read, the whole mosaic if <code>null</code>
+     * @param resolutionLevel
+     *            0 for the full resolution, <code>n</code> for the
+     *            <code>n</code>th overview of the tiles
+     * @param bands
+     *            the indices of the bands to read, all bands if
+     *            <code>null</code>
+     * @return the coverage, <code>null</code> if the envelope does not
+     *         intersect the mosaic
+     * @throws IOException
+     *             if reading a tile fails
+     * @see LazyGTRasterDataBinding#read(Envelope, int, int[])
+     */
+    public GridCoverage2D read(Envelope envelope,
+            int resolutionLevel,
+            int[] bands) throws IOException {
+        GeneralEnvelope requested = new GeneralEnvelope(this.envelope);
+        if (envelope != null) {
+            requested = LazyGTRasterDataBinding.toNativeEnvelope(envelope, crs);
+            requested.intersect(this.envelope);
+            if (requested.isEmpty()) {
+                return null;
+            }
+        }
+
+        List<GridCoverage2D> coverages = new ArrayList<>();
+        for (int i = 0; i < envelopes.size(); i++) {
+            GeneralEnvelope intersection = new GeneralEnvelope(envelopes.get(i));
+            intersection.intersect(requested);
+            if (intersection.isEmpty()) {
+                continue;
+            }
+            GridCoverage2D coverage = getTile(i).read(intersection, resolutionLevel, bands);
+            if (coverage != null) {
+                coverages.add(coverage);
+            }
+        }
+        if (coverages.isEmpty()) {
+            return null;
+        }
+        if (coverages.size() == 1) {
+            return coverages.get(0);
+        }
+        return mosaic(coverages);
+    }
+
+    private GridCoverage2D mosaic(List<GridCoverage2D> coverages) {
+        CoverageProcessor processor = CoverageProcessor.getInstance();
+        ParameterValueGroup parameters = processor.getOperation("Mosaic").getParameters();
+        parameters.parameter("Sources").setValue(coverages);
+        return (GridCoverage2D) processor.doOperation(parameters);
+    }
+
+    private synchronized LazyGTRasterDataBinding getTile(int index) throws IOException {
+        LazyGTRasterDataBinding tile = openTiles.get(index);
+        if (tile == null) {
+            tile = tiles.get(index).open();
+            openTiles.put(index, tile);
+            LOGGER.debug("Opened tile " + index + " of " + tiles.size());
+        }
+        return tile;
+    }
+
+    /**
+     * Disposes the coverage read by {@link #getPayload()}, if any, and the
+     * opened tiles.
+     */
+    public synchronized void dispose() {
+        if (payload != null) {
+            payload.dispose(true);
+            payload = null;
+        }
+        for (LazyGTRasterDataBinding tile : openTiles.values()) {
+            tile.dispose();
+        }
+        openTiles.clear();
+    }
+
+}
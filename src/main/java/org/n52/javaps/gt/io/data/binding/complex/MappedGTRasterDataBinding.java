@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.data.binding.complex;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.GridCoverage2DReader;
+import org.geotools.coverage.util.CoverageUtilities;
+import org.geotools.gce.geotiff.GeoTiffIIOMetadataDecoder;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.opengis.referencing.datum.PixelInCell;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link LazyGTRasterDataBinding} whose full coverage is backed by an
+ * image that reads the pixels without ImageIO, e.g. a memory mapped
+ * uncompressed GeoTIFF. The reader provides the georeferencing and serves
+ * windowed reads.
+ */
+public class MappedGTRasterDataBinding extends LazyGTRasterDataBinding {
+
+    private static final long serialVersionUID = -6907218418869520512L;
+
+    private static Logger LOGGER = LoggerFactory.getLogger(MappedGTRasterDataBinding.class);
+
+    private transient RenderedImage image;
+
+    /**
+     * @param reader
+     *            the reader of the file
+     * @param image
+     *            the first image of the file
+     */
+    public MappedGTRasterDataBinding(GridCoverage2DReader reader,
+            RenderedImage image) {
+        super(reader);
+        this.image = image;
+    }
+
+    /**
+     * Wraps the image on the first call, the pixels are read when tiles are
+     * requested.
+     */
+    @Override
+    public synchronized GridCoverage2D getPayload() {
+        if (payload == null) {
+            GridCoverage2DReader reader = getReader();
+            GridGeometry2D gridGeometry = new GridGeometry2D(new GridEnvelope2D(image.getMinX(), image.getMinY(),
+                    image.getWidth(), image.getHeight()), PixelInCell.CELL_CORNER, reader.getOriginalGridToWorld(
+                            PixelInCell.CELL_CORNER), reader.getCoordinateReferenceSystem(), null);
+            Map<String, Object> properties = new HashMap<>();
+            if (reader instanceof GeoTiffReader) {
+                GeoTiffIIOMetadataDecoder metadata = ((GeoTiffReader) reader).getMetadata();
+                if (metadata != null && metadata.hasNoData()) {
+                    CoverageUtilities.setNoDataProperty(properties, metadata.getNoData());
+                }
+            }
+            try {
+                payload = new GridCoverageFactory().create(reader.getGridCoverageNames()[0], image, gridGeometry,
+                        null, null, properties);
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            }
+        }
+        return payload;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        super.dispose();
+        image = null;
+    }
+
+}
@@ -51,9 +51,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 
-import org.geotools.data.DataStore;
-import org.geotools.data.shapefile.ShapefileDataStore;
-import org.geotools.data.simple.SimpleFeatureCollection;
+import org.n52.javaps.gt.io.util.ParallelZipWriter;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry.Lease;
 import org.n52.javaps.io.GenericFileDataConstants;
 import org.n52.javaps.io.complex.ComplexData;
 import org.slf4j.Logger;
@@ -71,6 +71,10 @@ public class ShapefileBinding implements ComplexData<File> {
 
     protected String mimeType;
 
+    private transient File zippedPayload;
+
+    private transient GTVectorDataBinding vectorBinding;
+
     public ShapefileBinding(File shapeFile) {
         this.shpFile = shapeFile;
         mimeType = GenericFileDataConstants.MIME_TYPE_ZIPPED_SHP;
@@ -90,7 +94,16 @@ public class ShapefileBinding implements ComplexData<File> {
         return mimeType;
     }
 
-    public File getZippedPayload() {
+    /**
+     * Zips the shapefile components on first access, later calls return the
+     * same archive as long as it exists.
+     *
+     * @return the zipped shapefile, <code>null</code> if zipping failed
+     */
+    public synchronized File getZippedPayload() {
+        if (zippedPayload != null && zippedPayload.exists()) {
+            return zippedPayload;
+        }
         String path = shpFile.getAbsolutePath();
         String baseName = path.substring(0, path.length() - ".shp".length());
         File shx = new File(baseName + ".shx");
@@ -98,19 +111,34 @@ public class ShapefileBinding implements ComplexData<File> {
         File prj = new File(baseName + ".prj");
         File zipped = null;
         try {
-            zipped = org.n52.javaps.utils.IOUtils.zip(shpFile, shx, dbf, prj);
+            zipped = ParallelZipWriter.zip(shpFile, shx, dbf, prj);
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
         }
+        zippedPayload = zipped;
         return zipped;
 
     }
 
-    public GTVectorDataBinding getPayloadAsGTVectorDataBinding() {
+    /**
+     * Opens the shapefile on first access, later calls return the same
+     * binding until {@link #dispose()} is called.
+     *
+     * @return the features of the shapefile
+     */
+    public synchronized GTVectorDataBinding getPayloadAsGTVectorDataBinding() {
+        if (vectorBinding != null) {
+            return vectorBinding;
+        }
         try {
-            DataStore store = new ShapefileDataStore(shpFile.toURI().toURL());
-            SimpleFeatureCollection features = store.getFeatureSource(store.getTypeNames()[0]).getFeatures();
-            return new GTVectorDataBinding(features);
+            Lease lease = ShapefileDataStoreRegistry.getInstance().acquire(shpFile);
+            try {
+                vectorBinding = new GTVectorDataBinding(lease.getFeatures(), lease);
+            } catch (IOException | RuntimeException e) {
+                lease.close();
+                throw e;
+            }
+            return vectorBinding;
         } catch (MalformedURLException e) {
             String message = "Something went wrong while creating data store.";
             LOGGER.error(message, e);
@@ -122,4 +150,16 @@ public class ShapefileBinding implements ComplexData<File> {
         }
     }
 
+    /**
+     * Releases the data store opened by
+     * {@link #getPayloadAsGTVectorDataBinding()} early. Without this call the
+     * store is released once the features are unreachable.
+     */
+    public synchronized void dispose() {
+        if (vectorBinding != null) {
+            vectorBinding.dispose();
+            vectorBinding = null;
+        }
+    }
+
 }
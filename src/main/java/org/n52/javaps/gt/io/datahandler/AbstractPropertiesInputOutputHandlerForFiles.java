@@ -52,6 +52,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.io.AbstractPropertiesInputOutputHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,6 +74,22 @@ public abstract class AbstractPropertiesInputOutputHandlerForFiles extends Abstr
         finalizeFiles = new ArrayList<File>();
     }
 
+    /**
+     * @return the precision parsed coordinates are snapped to, from the
+     *         handler properties
+     */
+    protected CoordinatePrecision getInputPrecision() {
+        return CoordinatePrecision.forInput(getProperties());
+    }
+
+    /**
+     * @return the precision coordinates are written with, from the handler
+     *         properties
+     */
+    protected CoordinatePrecision getOutputPrecision() {
+        return CoordinatePrecision.forOutput(getProperties());
+    }
+
     @Override
     public void destroy() {
         if (finalizeFiles != null) {
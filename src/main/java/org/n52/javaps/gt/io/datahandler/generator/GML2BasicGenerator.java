@@ -66,6 +66,7 @@ import org.geotools.gml.producer.FeatureTransformer;
 import org.geotools.gml.producer.FeatureTransformer.FeatureTypeNamespaces;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessOutputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
 import org.n52.javaps.gt.io.datahandler.parser.GML2Handler;
@@ -109,7 +110,8 @@ public class GML2BasicGenerator extends AbstractPropertiesInputOutputHandlerForF
 
     private void write(Data<?> data,
             Writer writer) throws IOException {
-        FeatureCollection<?, ?> fc = ((GTVectorDataBinding) data).getPayload();
+        CoordinatePrecision precision = getOutputPrecision();
+        FeatureCollection<?, ?> fc = precision.reduce(((GTVectorDataBinding) data).getPayload());
         // this might be a workaround...
         if (fc == null || fc.size() == 0) {
             writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
@@ -135,7 +137,7 @@ public class GML2BasicGenerator extends AbstractPropertiesInputOutputHandlerForF
 
         FeatureTransformer tx = new FeatureTransformer();
         tx.setFeatureBounding(featureTransformerIncludeBounding);
-        tx.setNumDecimals(featureTransformerDecimalPlaces);
+        tx.setNumDecimals(precision.getDecimals(featureTransformerDecimalPlaces));
         FeatureTypeNamespaces ftNames = tx.getFeatureTypeNamespaces();
         // StringBuffer typeNames = new StringBuffer();
 
@@ -64,9 +64,11 @@ import org.geotools.xsd.Configuration;
 import org.geotools.xsd.Encoder;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessOutputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.SpillingFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.EncodingException;
@@ -100,7 +102,10 @@ public class GML3BasicGenerator extends AbstractPropertiesInputOutputHandlerForF
             OutputStream os) {
         FeatureCollection<?, ?> fc = ((GTVectorDataBinding) coll).getPayload();
 
-        FeatureCollection<?, ?> correctFeatureCollection = gtHelper.createCorrectFeatureCollection(fc);
+        CoordinatePrecision precision = getOutputPrecision();
+
+        FeatureCollection<?, ?> correctFeatureCollection = gtHelper.createCorrectFeatureCollection(precision
+                .reduce(fc));
         // get the namespace from the features to pass into the encoder
         FeatureType schema = correctFeatureCollection.getSchema();
         String namespace = null;
@@ -131,6 +136,10 @@ public class GML3BasicGenerator extends AbstractPropertiesInputOutputHandlerForF
 
         }
 
+        if (precision.isReduced()) {
+            configuration.getDependency(GMLConfiguration.class).setNumDecimals(precision.getDecimals());
+        }
+
         fc.features().close();
         // use the gml namespace with the FeatureCollection element to start
         // parsing the collection
@@ -140,6 +149,10 @@ public class GML3BasicGenerator extends AbstractPropertiesInputOutputHandlerForF
         } catch (IOException e) {
             LOGGER.error("Exception while trying to encode FeatureCollection.", e);
             throw new RuntimeException(e);
+        } finally {
+            if (correctFeatureCollection instanceof SpillingFeatureCollection) {
+                ((SpillingFeatureCollection) correctFeatureCollection).close();
+            }
         }
 
     }
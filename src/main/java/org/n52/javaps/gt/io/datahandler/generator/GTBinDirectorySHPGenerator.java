@@ -49,29 +49,29 @@ package org.n52.javaps.gt.io.datahandler.generator;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import javax.inject.Inject;
 
-import org.geotools.data.DataStoreFactorySpi;
-import org.geotools.data.DefaultTransaction;
-import org.geotools.data.FeatureStore;
-import org.geotools.data.Transaction;
-import org.geotools.data.shapefile.ShapefileDataStore;
-import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Geometry;
 import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.util.ShapefileSplitter;
+import org.n52.javaps.gt.io.util.TypeSplitShapefileExporter;
 import org.n52.javaps.io.Data;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,6 +84,18 @@ public class GTBinDirectorySHPGenerator {
     @Inject
     private GTHelper gtHelper;
 
+    public GTBinDirectorySHPGenerator() {
+    }
+
+    /**
+     * @param gtHelper
+     *            the helper correcting the features, for use without
+     *            injection
+     */
+    public GTBinDirectorySHPGenerator(GTHelper gtHelper) {
+        this.gtHelper = gtHelper;
+    }
+
     public File writeFeatureCollectionToDirectory(Data<?> data) throws IOException {
         return writeFeatureCollectionToDirectory(data, null);
     }
@@ -93,27 +105,31 @@ public class GTBinDirectorySHPGenerator {
         GTVectorDataBinding binding = (GTVectorDataBinding) data;
         FeatureCollection<?, ?> originalCollection = binding.getPayload();
 
-        SimpleFeatureCollection collection = gtHelper.createCorrectFeatureCollection(originalCollection);
-
-        return createShapefileDirectory(collection, parent);
+        return createShapefileDirectory(originalCollection, parent);
     }
 
     /**
-     * Transforms the given {@link FeatureCollection} into a zipped SHP file
-     * (.shp, .shx, .dbf, .prj) and returs its Base64 encoding
+     * Writes the given {@link FeatureCollection} into a new directory as
+     * shapefile (.shp, .shx, .dbf, .prj). The features are corrected one by
+     * one while streaming them into a {@link ShapefileSplitter}, so
+     * collections larger than the shapefile size limit end up as several
+     * <code>_part_N</code> shapefiles in the same directory. Collections with
+     * mixed geometry types get the same correction, but are streamed into a
+     * {@link TypeSplitShapefileExporter} instead.
      *
      * @param collection
      *            the collection to transform
-     * @return the zipped shapefile
+     * @param parent
+     *            the directory to create the shapefile directory in, the
+     *            temporary directory if <code>null</code>
+     * @return the directory containing the shapefile(s)
      * @throws IOException
-     *             If an error occurs while creating the SHP file or encoding
-     *             the shapefile
+     *             If an error occurs while creating the SHP file
      * @throws IllegalAttributeException
      *             If an error occurs while writing the features into the the
      *             shapefile
      */
-    @SuppressWarnings("unchecked")
-    private File createShapefileDirectory(FeatureCollection<SimpleFeatureType, SimpleFeature> collection,
+    private File createShapefileDirectory(FeatureCollection<?, ?> collection,
             File parent) throws IOException, IllegalAttributeException {
 
         File parentCopy = parent;
@@ -133,57 +149,153 @@ public class GTBinDirectorySHPGenerator {
         if (!shpBaseDirectory.mkdir()) {
             throw new IllegalStateException("Could not create temporary shp directory.");
         }
+        shpBaseDirectory.deleteOnExit();
 
         File tempSHPfile = File.createTempFile("shp", SHP, shpBaseDirectory);
         tempSHPfile.deleteOnExit();
-        DataStoreFactorySpi dataStoreFactory = new ShapefileDataStoreFactory();
-        Map<String, Serializable> params = new HashMap<String, Serializable>();
-        params.put("url", tempSHPfile.toURI().toURL());
-        params.put("create spatial index", Boolean.TRUE);
-
-        ShapefileDataStore newDataStore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
-
-        newDataStore.createSchema(collection.getSchema());
-        if (collection.getSchema().getCoordinateReferenceSystem() == null) {
-            try {
-                newDataStore.forceSchemaCRS(CRS.decode("4326"));
-            } catch (FactoryException e) {
-                LOGGER.error("Could not decode CRS 4326");
-            }
-        } else {
-            newDataStore.forceSchemaCRS(collection.getSchema().getCoordinateReferenceSystem());
-        }
 
-        Transaction transaction = new DefaultTransaction("create");
+        writeShapefile(collection, tempSHPfile);
+
+        return shpBaseDirectory;
+    }
+
+    /**
+     * Writes the given {@link FeatureCollection} as shapefile. The features
+     * are corrected by {@link GTHelper} one by one, features without a
+     * coordinate reference system are written in EPSG:4326. Collections with
+     * mixed geometry types are written as one shapefile per type, see
+     * {@link TypeSplitShapefileExporter}, other collections are split into
+     * parts, see {@link ShapefileSplitter}.
+     *
+     * @param collection
+     *            the collection to transform
+     * @param shpFile
+     *            the .shp file to write, the file names of additional parts
+     *            and types are derived from it
+     * @return the .shp files written, the given one first if it was written;
+     *         empty if the collection has mixed geometry types and no
+     *         feature with a geometry
+     * @throws IOException
+     *             If an error occurs while creating the SHP file
+     * @throws IllegalAttributeException
+     *             If an error occurs while writing the features into the the
+     *             shapefile
+     */
+    public List<File> writeShapefile(FeatureCollection<?, ?> collection,
+            File shpFile) throws IOException, IllegalAttributeException {
+
+        // mixed geometry types are written to one shapefile per type
+        boolean splitByType = collection.getSchema() instanceof SimpleFeatureType && TypeSplitShapefileExporter
+                .hasGenericGeometry((SimpleFeatureType) collection.getSchema());
+        if (splitByType && !shpFile.delete()) {
+            LOGGER.debug("Could not delete " + shpFile);
+        }
 
-        String typeName = newDataStore.getTypeNames()[0];
-        FeatureStore<SimpleFeatureType, SimpleFeature> featureStore = (FeatureStore<SimpleFeatureType,
-                SimpleFeature>) newDataStore.getFeatureSource(typeName);
-        featureStore.setTransaction(transaction);
+        ShapefileSplitter splitter = null;
+        TypeSplitShapefileExporter exporter = null;
+        SimpleFeatureType featureType = null;
+        String uuid = UUID.randomUUID().toString();
+        FeatureIterator<?> iterator = collection.features();
         try {
-            featureStore.addFeatures(collection);
-            transaction.commit();
-        } catch (Exception problem) {
-            transaction.rollback();
+            int i = 0;
+            while (iterator.hasNext()) {
+                SimpleFeature feature = (SimpleFeature) iterator.next();
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+
+                if (featureType == null) {
+                    featureType = gtHelper.createFeatureType(feature.getProperties(), geometry, uuid, feature
+                            .getFeatureType().getCoordinateReferenceSystem());
+                    if (splitByType) {
+                        featureType = generalizeGeometry(featureType);
+                        exporter = createExporter(shpFile, featureType);
+                    } else {
+                        splitter = createSplitter(shpFile, featureType);
+                    }
+                }
+                SimpleFeature resultFeature = gtHelper.createFeature("ID" + i, geometry, featureType, feature
+                        .getProperties());
+                i++;
+
+                // features without geometry are dropped, see GTHelper
+                if (resultFeature == null) {
+                    continue;
+                }
+                if (exporter != null) {
+                    exporter.write(resultFeature);
+                } else {
+                    splitter.write(resultFeature);
+                }
+            }
+            if (featureType == null && !splitByType && collection.getSchema() instanceof SimpleFeatureType) {
+                splitter = createSplitter(shpFile, (SimpleFeatureType) collection.getSchema());
+            }
         } finally {
-            transaction.close();
+            iterator.close();
+            if (splitter != null) {
+                splitter.close();
+            }
+            if (exporter != null) {
+                exporter.close();
+            }
         }
 
-        // Zip the shapefile
-        String path = tempSHPfile.getAbsolutePath();
-        String baseName = path.substring(0, path.length() - SHP.length());
-        File shx = new File(baseName + ".shx");
-        File dbf = new File(baseName + ".dbf");
-        File prj = new File(baseName + ".prj");
+        if (exporter != null) {
+            return exporter.getShpFiles();
+        }
+        return splitter != null ? splitter.getShpFiles() : new ArrayList<>();
+    }
 
-        // mark created files for delete
-        tempSHPfile.deleteOnExit();
-        shx.deleteOnExit();
-        dbf.deleteOnExit();
-        prj.deleteOnExit();
-        shpBaseDirectory.deleteOnExit();
+    private ShapefileSplitter createSplitter(File shpFile,
+            SimpleFeatureType featureType) {
+        ShapefileSplitter splitter = new ShapefileSplitter(shpFile, featureType);
+        splitter.setCreateSpatialIndex(true);
+        if (featureType.getCoordinateReferenceSystem() == null) {
+            splitter.setCoordinateReferenceSystem(getDefaultCRS());
+        }
+        return splitter;
+    }
 
-        return shpBaseDirectory;
+    private TypeSplitShapefileExporter createExporter(File shpFile,
+            SimpleFeatureType featureType) {
+        TypeSplitShapefileExporter exporter = new TypeSplitShapefileExporter(shpFile, featureType);
+        exporter.setCreateSpatialIndex(true);
+        if (featureType.getCoordinateReferenceSystem() == null) {
+            exporter.setCoordinateReferenceSystem(getDefaultCRS());
+        }
+        return exporter;
+    }
+
+    private CoordinateReferenceSystem getDefaultCRS() {
+        try {
+            return CRS.decode("4326");
+        } catch (FactoryException e) {
+            LOGGER.error("Could not decode CRS 4326");
+            return null;
+        }
+    }
+
+    /**
+     * The corrected feature type is derived from the first feature, so its
+     * geometry is bound to that feature's type. For the type split output
+     * the geometry has to accept all types.
+     */
+    private SimpleFeatureType generalizeGeometry(SimpleFeatureType featureType) {
+        GeometryDescriptor geometry = featureType.getGeometryDescriptor();
+        if (geometry == null) {
+            return featureType;
+        }
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(featureType.getName());
+        builder.setCRS(featureType.getCoordinateReferenceSystem());
+        for (AttributeDescriptor descriptor : featureType.getAttributeDescriptors()) {
+            if (descriptor == geometry) {
+                builder.add(descriptor.getLocalName(), Geometry.class);
+            } else {
+                builder.add(descriptor);
+            }
+        }
+        builder.setDefaultGeometry(geometry.getLocalName());
+        return builder.buildFeatureType();
     }
 
 }
@@ -57,11 +57,11 @@ import javax.inject.Inject;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessOutputDescription;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.util.ParallelZipWriter;
 import org.n52.javaps.io.AbstractPropertiesInputOutputHandler;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.EncodingException;
 import org.n52.javaps.io.OutputHandler;
-import org.n52.javaps.utils.IOUtils;
 import org.n52.shetland.ogc.wps.Format;
 
 /**
@@ -84,7 +84,7 @@ public class GTBinZippedSHPGenerator extends AbstractPropertiesInputOutputHandle
     private File createZippedShapefile(File shapeDirectory) throws IOException {
         if (shapeDirectory != null && shapeDirectory.isDirectory()) {
             File[] files = shapeDirectory.listFiles();
-            return IOUtils.zip(files);
+            return ParallelZipWriter.zip(files);
         }
 
         return null;
@@ -58,6 +58,7 @@ import org.geotools.geojson.geom.GeometryJSON;
 import org.locationtech.jts.geom.Geometry;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessOutputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
 import org.n52.javaps.gt.io.util.FileConstants;
@@ -79,6 +80,12 @@ import org.n52.shetland.ogc.wps.Format;
         propertyFileName = "geojson.json")
 public class GeoJSONGenerator extends AbstractPropertiesInputOutputHandlerForFiles implements OutputHandler {
 
+    /**
+     * The decimals GeometryJSON writes by default, used if the properties do
+     * not set any.
+     */
+    private static final int DEFAULT_DECIMALS = 4;
+
     public GeoJSONGenerator() {
         super();
         addSupportedBinding(JTSGeometryBinding.class);
@@ -92,13 +99,17 @@ public class GeoJSONGenerator extends AbstractPropertiesInputOutputHandlerForFil
 
         File tempFile = File.createTempFile("wps", FileConstants.dot(FileConstants.SUFFIX_JSON));
 
+        CoordinatePrecision precision = getOutputPrecision();
+
+        GeometryJSON geometryJSON = new GeometryJSON(precision.getDecimals(DEFAULT_DECIMALS));
+
         if (data instanceof JTSGeometryBinding) {
 
             Geometry g = ((JTSGeometryBinding) data).getPayload();
 
             finalizeFiles.add(tempFile);
 
-            new GeometryJSON().write(g, tempFile);
+            geometryJSON.write(precision.reduce(g), tempFile);
 
             InputStream is = new FileInputStream(tempFile);
 
@@ -109,7 +120,7 @@ public class GeoJSONGenerator extends AbstractPropertiesInputOutputHandlerForFil
 
             finalizeFiles.add(tempFile);
 
-            new FeatureJSON().writeFeatureCollection(f, tempFile);
+            new FeatureJSON(geometryJSON).writeFeatureCollection(precision.reduce(f), tempFile);
 
             InputStream is = new FileInputStream(tempFile);
 
@@ -50,7 +50,6 @@ package org.n52.javaps.gt.io.datahandler.generator;
 import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -70,12 +69,11 @@ import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.data.binding.complex.GenericFileDataWithGTBinding;
 import org.n52.javaps.gt.io.data.binding.complex.ShapefileBinding;
 import org.n52.javaps.gt.io.util.FileConstants;
+import org.n52.javaps.gt.io.util.ParallelZipWriter;
 import org.n52.javaps.io.AbstractPropertiesInputOutputHandler;
 import org.n52.javaps.io.Data;
-import org.n52.javaps.io.EncodingException;
 import org.n52.javaps.io.OutputHandler;
 import org.n52.javaps.io.data.binding.complex.GeotiffBinding;
-import org.n52.javaps.utils.IOUtils;
 import org.n52.shetland.ogc.wps.Format;
 import org.opengis.referencing.ReferenceIdentifier;
 import org.slf4j.Logger;
@@ -154,7 +152,7 @@ public class GeoserverGenerator extends AbstractPropertiesInputOutputHandler imp
             File shx = new File(baseName + ".shx");
             File dbf = new File(baseName + ".dbf");
             File prj = new File(baseName + ".prj");
-            File zipped = IOUtils.zip(file, shx, dbf, prj);
+            File zipped = ParallelZipWriter.zip(file, shx, dbf, prj);
 
             file = zipped;
 
@@ -164,13 +162,9 @@ public class GeoserverGenerator extends AbstractPropertiesInputOutputHandler imp
 
             try {
                 file = File.createTempFile("primary", FileConstants.dot(FileConstants.SUFFIX_TIF));
-                FileOutputStream outputStream = new FileOutputStream(file);
+                geotiffGenerator.write(gtData.getPayload(), null, file);
 
-                InputStream is = geotiffGenerator.generate(null, gtData, null);
-                org.apache.commons.io.IOUtils.copy(is, outputStream);
-                is.close();
-
-            } catch (IOException | EncodingException e) {
+            } catch (IOException e) {
                 LOGGER.error("Could not generate GeoTiff.");
             }
 
@@ -47,6 +47,7 @@
  */
 package org.n52.javaps.gt.io.datahandler.generator;
 
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -54,7 +55,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.UUID;
 
-import javax.media.jai.JAI;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
@@ -66,6 +68,10 @@ import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessOutputDescription;
 import org.n52.javaps.gt.io.data.binding.complex.GTRasterDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.tiff.GeoTiffEncoder;
+import org.n52.javaps.gt.io.tiff.GeoTiffTags;
+import org.n52.javaps.gt.io.tiff.GeoTiffWriteProfile;
+import org.n52.javaps.gt.io.tiff.TiffPredictor;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.EncodingException;
@@ -82,6 +88,12 @@ import org.slf4j.LoggerFactory;
         defaultPropertyFileName = "geotiffhandler.default.json",
         propertyFileName = "geotiffgenerator.json")
 public class GeotiffGenerator extends AbstractPropertiesInputOutputHandlerForFiles implements OutputHandler {
+    /**
+     * Media type of Cloud Optimized GeoTIFF; requesting it enables the Cloud
+     * Optimized layout regardless of the configured profile.
+     */
+    public static final String MIME_TYPE_COG = "image/tiff; application=geotiff; profile=cloud-optimized";
+
     private static Logger LOGGER = LoggerFactory.getLogger(GeotiffGenerator.class);
 
     public GeotiffGenerator() {
@@ -90,24 +102,121 @@ public class GeotiffGenerator extends AbstractPropertiesInputOutputHandlerForFil
         addSupportedBinding(GeotiffBinding.class);
     }
 
+    /**
+     * @return the compression, predictor and tiling settings from the handler
+     *         properties
+     */
+    protected GeoTiffWriteProfile getWriteProfile() {
+        try {
+            return GeoTiffWriteProfile.fromProperties(getProperties());
+        } catch (Exception e) {
+            LOGGER.error("Could not read GeoTIFF write profile, using defaults.", e);
+            return new GeoTiffWriteProfile();
+        }
+    }
+
+    private static boolean isCloudOptimized(Format format) {
+        return format != null && format.getMimeType().map(mimeType -> mimeType.replace(" ", "").toLowerCase()
+                .contains("profile=cloud-optimized")).orElse(false);
+    }
+
+    private GeoTiffWriteProfile getWriteProfile(Format format) {
+        GeoTiffWriteProfile profile = getWriteProfile();
+        if (isCloudOptimized(format)) {
+            profile.setCloudOptimized(true);
+        }
+        return profile;
+    }
+
+    /**
+     * @return the GeoTIFF tags if the coverage can be written by
+     *         {@link GeoTiffEncoder}, otherwise <code>null</code>
+     */
+    private GeoTiffTags getEncoderTags(GridCoverage2D coverage,
+            GeoTiffWriteProfile profile) throws IOException {
+        RenderedImage image = coverage.getRenderedImage();
+        GeoTiffTags tags = GeoTiffEncoder.canEncode(image) ? GeoTiffTags.fromCoverage(coverage) : null;
+        if (tags == null) {
+            if (profile.isCloudOptimized()) {
+                LOGGER.warn("Cloud Optimized layout is not supported for " + image.getSampleModel()
+                        + ", writing a tiled GeoTIFF without overviews.");
+            }
+            LOGGER.debug("Using GeoTools GeoTIFF writer for " + image.getSampleModel());
+        }
+        return tags;
+    }
+
+    /**
+     * Writes a coverage as GeoTIFF directly to a file.
+     *
+     * @param coverage
+     *            the coverage
+     * @param format
+     *            the requested format, selects the Cloud Optimized layout
+     *            for its media type
+     * @param outputFile
+     *            the file to write
+     * @throws IOException
+     *             if writing fails
+     */
+    public void write(GridCoverage2D coverage,
+            Format format,
+            File outputFile) throws IOException {
+        GeoTiffWriteProfile profile = getWriteProfile(format);
+        GeoTiffTags tags = getEncoderTags(coverage, profile);
+        if (tags != null) {
+            try (ImageOutputStream out = new FileImageOutputStream(outputFile)) {
+                new GeoTiffEncoder(profile).encode(coverage.getRenderedImage(), tags, out);
+            }
+            return;
+        }
+        GeoTiffWriter geoTiffWriter = new GeoTiffWriter(outputFile);
+        try {
+            writeGeotiff(geoTiffWriter, coverage, profile);
+        } finally {
+            geoTiffWriter.dispose();
+        }
+    }
+
     private void writeGeotiff(GeoTiffWriter geoTiffWriter,
-            GridCoverage coverage) {
+            GridCoverage coverage,
+            GeoTiffWriteProfile profile) {
         GeoTiffFormat format = new GeoTiffFormat();
 
         GeoTiffWriteParams wp = new GeoTiffWriteParams();
 
-        wp.setCompressionMode(GeoTiffWriteParams.MODE_EXPLICIT);
-        wp.setCompressionType("LZW");
+        switch (profile.getCompression()) {
+        case NONE:
+            wp.setCompressionMode(GeoTiffWriteParams.MODE_DISABLED);
+            break;
+        case DEFLATE:
+            wp.setCompressionMode(GeoTiffWriteParams.MODE_EXPLICIT);
+            wp.setCompressionType("Deflate");
+            // the deflate level of the writer is 1 + 8 * quality
+            wp.setCompressionQuality(Math.max(0, Math.min(8, profile.getCompressionLevel() - 1)) / 8f);
+            break;
+        case PACKBITS:
+            wp.setCompressionMode(GeoTiffWriteParams.MODE_EXPLICIT);
+            wp.setCompressionType("PackBits");
+            break;
+        default:
+            wp.setCompressionMode(GeoTiffWriteParams.MODE_EXPLICIT);
+            wp.setCompressionType("LZW");
+            break;
+        }
         wp.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
-        int width = ((GridCoverage2D) coverage).getRenderedImage().getWidth();
-        int tileWidth = 1024;
-        if (width < 2048) {
-            tileWidth = Double.valueOf(Math.sqrt(width)).intValue();
+        RenderedImage image = ((GridCoverage2D) coverage).getRenderedImage();
+        TiffPredictor predictor = profile.getPredictor(image.getSampleModel().getDataType());
+        if (predictor != TiffPredictor.NONE) {
+            LOGGER.warn("The GeoTools GeoTIFF writer cannot apply the " + predictor + " predictor, writing "
+                    + image.getSampleModel() + " without predictor.");
         }
-        wp.setTiling(tileWidth, tileWidth);
+        wp.setForceToBigTIFF(new GeoTiffEncoder(profile).useBigTiff(image));
+        int tileSize = profile.getTileSize(image.getWidth(), image.getHeight(), image.getSampleModel()
+                .getDataType(), image.getSampleModel().getNumBands());
+        wp.setTiling(tileSize, tileSize);
         ParameterValueGroup paramWrite = format.getWriteParameters();
         paramWrite.parameter(AbstractGridFormat.GEOTOOLS_WRITE_PARAMS.getName().toString()).setValue(wp);
-        JAI.getDefaultInstance().getTileCache().setMemoryCapacity(256 * 1024 * 1024);
 
         try {
             geoTiffWriter.write(coverage, paramWrite.values().toArray(new GeneralParameterValue[1]));
@@ -126,17 +235,27 @@ public class GeotiffGenerator extends AbstractPropertiesInputOutputHandlerForFil
 
         if (data instanceof GTRasterDataBinding) {
 
-            GridCoverage coverage = ((GTRasterDataBinding) data).getPayload();
-            GeoTiffWriter geoTiffWriter = null;
-            String fileName = FileConstants.TMP_DIR_PATH + File.separatorChar + "temp" + UUID.randomUUID()
-                    + FileConstants.dot(FileConstants.SUFFIX_TMP);
-            File outputFile = new File(fileName);
-            this.finalizeFiles.add(outputFile);
+            GridCoverage2D coverage = ((GTRasterDataBinding) data).getPayload();
 
             try {
-                geoTiffWriter = new GeoTiffWriter(outputFile);
-                writeGeotiff(geoTiffWriter, coverage);
-                geoTiffWriter.dispose();
+                GeoTiffWriteProfile profile = getWriteProfile(format);
+                GeoTiffTags tags = getEncoderTags(coverage, profile);
+                if (tags != null) {
+                    // no seekable file needed, the tiles are buffered until
+                    // the directories are known
+                    return new GeoTiffEncoder(profile).encode(coverage.getRenderedImage(), tags);
+                }
+                String fileName = FileConstants.TMP_DIR_PATH + File.separatorChar + "temp" + UUID.randomUUID()
+                        + FileConstants.dot(FileConstants.SUFFIX_TMP);
+                File outputFile = new File(fileName);
+                this.finalizeFiles.add(outputFile);
+
+                GeoTiffWriter geoTiffWriter = new GeoTiffWriter(outputFile);
+                try {
+                    writeGeotiff(geoTiffWriter, coverage, profile);
+                } finally {
+                    geoTiffWriter.dispose();
+                }
                 stream = new FileInputStream(outputFile);
 
             } catch (IOException e) {
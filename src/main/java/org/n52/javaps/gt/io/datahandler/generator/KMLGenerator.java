@@ -61,6 +61,7 @@ import org.geotools.xsd.Configuration;
 import org.geotools.xsd.Encoder;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessOutputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
 import org.n52.javaps.io.Data;
@@ -88,7 +89,7 @@ public class KMLGenerator extends AbstractPropertiesInputOutputHandlerForFiles i
 
     private void writeToStream(Data<?> coll,
             OutputStream os) {
-        FeatureCollection<?, ?> fc = ((GTVectorDataBinding) coll).getPayload();
+        FeatureCollection<?, ?> fc = getOutputPrecision().reduce(((GTVectorDataBinding) coll).getPayload());
 
         Configuration configuration = new KMLConfiguration();
         Encoder encoder = new Encoder(configuration);
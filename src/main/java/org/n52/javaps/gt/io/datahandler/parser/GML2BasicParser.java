@@ -51,26 +51,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 
 import javax.inject.Inject;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.ParserConfigurationException;
 
-import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.gml2.GMLConfiguration;
 import org.geotools.gml3.ApplicationSchemaConfiguration;
 import org.geotools.xsd.Configuration;
-import org.geotools.xsd.Parser;
+import org.geotools.xsd.PullParser;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
 import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
+import org.n52.javaps.gt.io.feature.GeometryFixupFeatureCollection;
+import org.n52.javaps.gt.io.feature.StreamedFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
@@ -78,7 +76,6 @@ import org.n52.javaps.io.InputHandler;
 import org.n52.javaps.io.SchemaRepository;
 import org.n52.shetland.ogc.wps.Format;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -105,8 +102,20 @@ public class GML2BasicParser extends AbstractPropertiesInputOutputHandlerForFile
     }
 
     public GTVectorDataBinding parseXML(File file) {
+        return parseXML(file, FeatureSelection.ALL);
+    }
+
+    /**
+     * @param file
+     *            the GML 2 document
+     * @param selection
+     *            the features and attributes to keep
+     * @return the selected features
+     */
+    public GTVectorDataBinding parseXML(File file,
+            FeatureSelection selection) {
 
-        SimpleFeatureCollection fc = parseSimpleFeatureCollection(file);
+        SimpleFeatureCollection fc = parseSimpleFeatureCollection(file, selection);
 
         GTVectorDataBinding data = new GTVectorDataBinding(fc);
 
@@ -114,12 +123,22 @@ public class GML2BasicParser extends AbstractPropertiesInputOutputHandlerForFile
     }
 
     public SimpleFeatureCollection parseSimpleFeatureCollection(File file) {
+        return parseSimpleFeatureCollection(file, FeatureSelection.ALL);
+    }
+
+    /**
+     * @param file
+     *            the GML 2 document
+     * @param selection
+     *            the features and attributes to keep
+     * @return the selected features
+     */
+    public SimpleFeatureCollection parseSimpleFeatureCollection(File file,
+            FeatureSelection selection) {
         QName schematypeTuple = gtHelper.determineFeatureTypeSchema(file);
 
         Configuration configuration = null;
 
-        boolean shouldSetParserStrict = true;
-
         String schemaLocation = schematypeTuple.getLocalPart();
 
         if (schemaLocation != null && schematypeTuple.getNamespaceURI() != null) {
@@ -127,73 +146,52 @@ public class GML2BasicParser extends AbstractPropertiesInputOutputHandlerForFile
             configuration = new ApplicationSchemaConfiguration(schematypeTuple.getNamespaceURI(), schemaLocation);
         } else {
             configuration = new GMLConfiguration();
-            shouldSetParserStrict = false;
         }
 
-        Parser parser = new Parser(configuration);
-
-        // parse
+        // the features are selected and copied while they are parsed
         SimpleFeatureCollection fc = new DefaultFeatureCollection(null, null);
-        try {
-            Object parsedData = null;
-            try (InputStream in = new FileInputStream(file)) {
-                parser.setStrict(shouldSetParserStrict);
-                parsedData = parser.parse(in);
+        try (InputStream in = new FileInputStream(file)) {
+            try {
+                fc = StreamedFeatureCollection.pull(new PullParser(configuration, in, SimpleFeature.class), in);
             } catch (SAXException e5) {
                 // assume the xsd containing the schema was not found
-                configuration = new GMLConfiguration();
-                parser = new Parser(configuration);
-                parser.setStrict(false);
                 try {
-                    parsedData = parser.parse(new FileInputStream(file));
+                    InputStream retry = new FileInputStream(file);
+                    fc = StreamedFeatureCollection.pull(new PullParser(new GMLConfiguration(), retry,
+                            SimpleFeature.class), retry);
                 } catch (SAXException e) {
                     LOGGER.debug("Could not parse file: " + file.getAbsolutePath());
                 }
             }
-            if (parsedData instanceof SimpleFeatureCollection) {
-                fc = (SimpleFeatureCollection) parsedData;
-            } else if (parsedData != null) {
-                List<?> possibleSimpleFeatureList = (ArrayList<?>) ((HashMap<?, ?>) parsedData).get("featureMember");
-
-                if (possibleSimpleFeatureList != null) {
-                    List<SimpleFeature> simpleFeatureList = new ArrayList<SimpleFeature>();
-
-                    SimpleFeatureType sft = null;
-
-                    for (Object possibleSimpleFeature : possibleSimpleFeatureList) {
-
-                        if (possibleSimpleFeature instanceof SimpleFeature) {
-                            SimpleFeature sf = (SimpleFeature) possibleSimpleFeature;
-                            if (sft == null) {
-                                sft = sf.getType();
-                            }
-                            simpleFeatureList.add(sf);
-                        }
-                    }
-
-                    fc = new ListFeatureCollection(sft, simpleFeatureList);
-                } else {
-                    fc = (SimpleFeatureCollection) ((HashMap<?, ?>) parsedData).get("FeatureCollection");
-                }
-            }
 
-            gtHelper.checkGeometries(fc);
+            fc = gtHelper.createFeatureCollection(selection.apply(GeometryFixupFeatureCollection.wrap(fc)),
+                    getInputPrecision());
 
             return fc;
-        } catch (IOException | ParserConfigurationException e) {
+        } catch (IOException e) {
             LOGGER.error("Exception while trying to parse GML2 FeatureCollection.", e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Media types with selection parameters are supported like the plain
+     * media type, see {@link FeatureSelection#withoutSelection(Format)}.
+     */
+    @Override
+    public boolean isSupportedFormat(Format format) {
+        return super.isSupportedFormat(FeatureSelection.withoutSelection(format));
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream input,
             Format format) throws IOException, DecodingException {
 
+        FeatureSelection selection = FeatureSelection.fromFormat(format);
         try {
             File tempFile = FileConstants.writeTempFile(input);
-            GTVectorDataBinding data = parseXML(tempFile);
+            GTVectorDataBinding data = parseXML(tempFile, selection);
             return data;
         } catch (Exception e) {
             throw new IllegalArgumentException("Error while creating tempFile", e);
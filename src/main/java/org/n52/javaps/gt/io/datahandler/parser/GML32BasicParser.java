@@ -51,27 +51,25 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 import javax.inject.Inject;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
 
-import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.gml3.ApplicationSchemaConfiguration;
 import org.geotools.gml3.v3_2.GMLConfiguration;
 import org.geotools.xsd.Configuration;
-import org.geotools.xsd.Parser;
+import org.geotools.xsd.PullParser;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
 import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
+import org.n52.javaps.gt.io.feature.GeometryFixupFeatureCollection;
+import org.n52.javaps.gt.io.feature.StreamedFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
@@ -112,11 +110,21 @@ public class GML32BasicParser extends AbstractPropertiesInputOutputHandlerForFil
         this.configuration = config;
     }
 
+    /**
+     * Media types with selection parameters are supported like the plain
+     * media type, see {@link FeatureSelection#withoutSelection(Format)}.
+     */
+    @Override
+    public boolean isSupportedFormat(Format format) {
+        return super.isSupportedFormat(FeatureSelection.withoutSelection(format));
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream input,
             Format format) throws IOException, DecodingException {
 
+        FeatureSelection selection = FeatureSelection.fromFormat(format);
         File tempFile;
         try {
             tempFile = FileConstants.writeTempFile(input);
@@ -129,7 +137,7 @@ public class GML32BasicParser extends AbstractPropertiesInputOutputHandlerForFil
         in = new FileInputStream(tempFile);
 
             QName schematypeTuple = determineFeatureTypeSchema(tempFile);
-            return parse(in, schematypeTuple);
+            return parse(in, schematypeTuple, selection);
         } catch (Exception e) {
             throw new IllegalArgumentException("Error while creating tempFile", e);
         } finally {
@@ -145,62 +153,47 @@ public class GML32BasicParser extends AbstractPropertiesInputOutputHandlerForFil
 
     public GTVectorDataBinding parse(InputStream input,
             QName schematypeTuple) {
+        return parse(input, schematypeTuple, FeatureSelection.ALL);
+    }
+
+    /**
+     * @param input
+     *            the GML 3.2 document
+     * @param schematypeTuple
+     *            the namespace and schema location of the features
+     * @param selection
+     *            the features and attributes to keep
+     * @return the selected features
+     */
+    public GTVectorDataBinding parse(InputStream input,
+            QName schematypeTuple,
+            FeatureSelection selection) {
         if (configuration == null) {
             configuration = resolveConfiguration(schematypeTuple);
         }
 
-        Parser parser = new Parser(configuration);
-        parser.setStrict(true);
-
         // parse
-        SimpleFeatureCollection fc = resolveFeatureCollection(parser, input);
+        SimpleFeatureCollection fc = resolveFeatureCollection(input, selection);
 
         GTVectorDataBinding data = new GTVectorDataBinding(fc);
 
         return data;
     }
 
-    @SuppressWarnings("unchecked")
-    private SimpleFeatureCollection resolveFeatureCollection(Parser parser,
-            InputStream input) {
+    /**
+     * Pulls the features from the document one by one and selects and copies
+     * them while they are parsed.
+     */
+    private SimpleFeatureCollection resolveFeatureCollection(InputStream input,
+            FeatureSelection selection) {
         SimpleFeatureCollection fc = null;
         try {
-            Object parsedData = parser.parse(input);
-            if (parsedData instanceof SimpleFeatureCollection) {
-                fc = (SimpleFeatureCollection) parsedData;
-            } else {
-
-                List<SimpleFeature> featureList = null;
-
-                if (parsedData instanceof Map<?, ?>) {
-
-                    Map<?, ?> parsedMap = (Map<?, ?>) parsedData;
-
-                    Object featureMemberObject = parsedMap.get("featureMember");
-
-                    if (featureMemberObject != null && (featureMemberObject instanceof ArrayList<?>)) {
-
-                        List<?> featureMemberList = (List<?>) featureMemberObject;
-
-                        if (featureMemberList.get(0) instanceof SimpleFeature) {
-                            featureList = (ArrayList<SimpleFeature>) featureMemberList;
-                        }
-                    }
-                }
-                if (featureList != null) {
-                    if (featureList.size() > 0) {
-                        fc = new ListFeatureCollection(featureList.get(0).getFeatureType(), featureList);
-                    } else {
-                        fc = new DefaultFeatureCollection();
-                    }
-                } else {
-                    fc = (SimpleFeatureCollection) ((Map<?, ?>) parsedData).get("FeatureCollection");
-                }
-            }
+            fc = StreamedFeatureCollection.pull(new PullParser(configuration, input, SimpleFeature.class), input);
 
-            gtHelper.checkGeometries(fc);
+            fc = gtHelper.createFeatureCollection(selection.apply(GeometryFixupFeatureCollection.wrap(fc)),
+                    getInputPrecision());
 
-        } catch (IOException | SAXException | ParserConfigurationException e) {
+        } catch (IOException | SAXException e) {
             LOGGER.warn(e.getMessage(), e);
             throw new RuntimeException(e);
         }
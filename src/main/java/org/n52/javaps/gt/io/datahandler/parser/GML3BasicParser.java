@@ -51,37 +51,32 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
 
 import javax.inject.Inject;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.ParserConfigurationException;
 
-import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.feature.DefaultFeatureCollection;
-import org.geotools.feature.FeatureCollection;
 import org.geotools.gml3.ApplicationSchemaConfiguration;
 import org.geotools.gml3.GMLConfiguration;
 import org.geotools.xsd.Configuration;
 import org.geotools.xsd.Parser;
+import org.geotools.xsd.PullParser;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
+import org.n52.javaps.gt.io.feature.GeometryFixupFeatureCollection;
+import org.n52.javaps.gt.io.feature.StreamedFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
 import org.n52.javaps.io.InputHandler;
 import org.n52.javaps.io.SchemaRepository;
 import org.n52.shetland.ogc.wps.Format;
-import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -107,9 +102,10 @@ public class GML3BasicParser extends AbstractPropertiesInputOutputHandlerForFile
         addSupportedBinding(GTVectorDataBinding.class);
     }
 
-    private GTVectorDataBinding parseXML(File file) {
+    private GTVectorDataBinding parseXML(File file,
+            FeatureSelection selection) {
 
-        SimpleFeatureCollection fc = parseFeatureCollection(file);
+        SimpleFeatureCollection fc = parseFeatureCollection(file, selection);
 
         GTVectorDataBinding data = new GTVectorDataBinding(fc);
 
@@ -127,6 +123,20 @@ public class GML3BasicParser extends AbstractPropertiesInputOutputHandlerForFile
      * @return The parsed SimpleFeatureCollection
      */
     public SimpleFeatureCollection parseFeatureCollection(File file) {
+        return parseFeatureCollection(file, FeatureSelection.ALL);
+    }
+
+    /**
+     * Method to parse the selected features out of a file.
+     *
+     * @param file
+     *            File containing a SimpleFeatureCollection
+     * @param selection
+     *            The features and attributes to keep
+     * @return The parsed SimpleFeatureCollection
+     */
+    public SimpleFeatureCollection parseFeatureCollection(File file,
+            FeatureSelection selection) {
         QName schematypeTuple = gtHelper.determineFeatureTypeSchema(file);
 
         boolean schemaLocationIsRelative = false;
@@ -162,7 +172,8 @@ public class GML3BasicParser extends AbstractPropertiesInputOutputHandlerForFile
         parser.setStrict(shouldSetParserStrict);
 
         // parse
-        SimpleFeatureCollection fc = parseFeatureCollection(file, configuration, shouldSetParserStrict);
+        SimpleFeatureCollection fc = parseFeatureCollection(file, configuration, shouldSetParserStrict,
+                getInputPrecision(), selection);
 
         return fc;
     }
@@ -182,83 +193,84 @@ public class GML3BasicParser extends AbstractPropertiesInputOutputHandlerForFile
     public SimpleFeatureCollection parseFeatureCollection(File file,
             Configuration configuration,
             boolean shouldSetParserStrict) {
+        return parseFeatureCollection(file, configuration, shouldSetParserStrict, getInputPrecision());
+    }
 
-        Parser parser = new Parser(configuration);
+    /**
+     * Method to parse a SimpleFeatureCollection out of a file.
+     *
+     * @param file
+     *            File containing a SimpleFeatureCollection
+     * @param configuration
+     *            The Configuration for the Parser
+     * @param shouldSetParserStrict
+     *            Boolean specifying whether the Parser should be set to strict
+     *            or not.
+     * @param precision
+     *            The precision the parsed coordinates are snapped to
+     * @return The parsed SimpleFeatureCollection
+     */
+    public SimpleFeatureCollection parseFeatureCollection(File file,
+            Configuration configuration,
+            boolean shouldSetParserStrict,
+            CoordinatePrecision precision) {
+        return parseFeatureCollection(file, configuration, shouldSetParserStrict, precision, FeatureSelection.ALL);
+    }
 
-        parser.setStrict(shouldSetParserStrict);
+    /**
+     * Method to parse the selected features out of a file. The features are
+     * pulled from the document one by one and copied while they are parsed,
+     * rejected features are not retained.
+     *
+     * @param file
+     *            File containing a SimpleFeatureCollection
+     * @param configuration
+     *            The Configuration for the Parser
+     * @param shouldSetParserStrict
+     *            Ignored, the pull parser cannot be set to strict.
+     * @param precision
+     *            The precision the parsed coordinates are snapped to
+     * @param selection
+     *            The features and attributes to keep
+     * @return The parsed SimpleFeatureCollection
+     */
+    public SimpleFeatureCollection parseFeatureCollection(File file,
+            Configuration configuration,
+            boolean shouldSetParserStrict,
+            CoordinatePrecision precision,
+            FeatureSelection selection) {
 
-        // parse
-        SimpleFeatureCollection fc = new DefaultFeatureCollection(null, null);
+        SimpleFeatureCollection fc;
         try (InputStream in = new FileInputStream(file)) {
-            Object parsedData = parser.parse(in);
-            if (parsedData instanceof FeatureCollection) {
-                fc = (SimpleFeatureCollection) parsedData;
-            } else if (parsedData instanceof HashMap) {
-                List<?> possibleSimpleFeatureList = (ArrayList<?>) ((HashMap<?, ?>) parsedData).get("featureMember");
-
-                if (possibleSimpleFeatureList != null) {
-                    List<SimpleFeature> simpleFeatureList = new ArrayList<SimpleFeature>();
-
-                    SimpleFeatureType sft = null;
-
-                    for (Object possibleSimpleFeature : possibleSimpleFeatureList) {
-
-                        if (possibleSimpleFeature instanceof SimpleFeature) {
-                            SimpleFeature sf = (SimpleFeature) possibleSimpleFeature;
-                            if (sft == null) {
-                                sft = sf.getType();
-                            }
-                            simpleFeatureList.add(sf);
-                        }
-                    }
-
-                    fc = new ListFeatureCollection(sft, simpleFeatureList);
-                } else {
-                    fc = (SimpleFeatureCollection) ((HashMap<?, ?>) parsedData).get("FeatureCollection");
-                }
-            } else if (parsedData instanceof SimpleFeature) {
-
-                Collection<? extends Property> values = ((SimpleFeature) parsedData).getValue();
-                for (Property value : values) {
-                    Object tempValue = value.getValue();
-                    if (value.getType().getBinding().isAssignableFrom(FeatureCollection.class)) {
-                        if (tempValue instanceof ArrayList) {
-                            ArrayList<?> list = (ArrayList<?>) tempValue;
-                            List<SimpleFeature> simpleFeatureList = new ArrayList<SimpleFeature>();
-                            SimpleFeatureType sft = null;
-                            for (Object listValue : list) {
-                                if (listValue instanceof SimpleFeature) {
-                                    SimpleFeature sf = (SimpleFeature) listValue;
-                                    if (sft == null) {
-                                        sft = sf.getType();
-                                    }
-                                    simpleFeatureList.add(sf);
-                                }
-                            }
-                            fc = new ListFeatureCollection(sft, simpleFeatureList);
-                        }
-                    }
-                }
-
-            }
-
-            gtHelper.checkGeometries(fc);
-
-        } catch (IOException | SAXException | ParserConfigurationException e) {
+            // the features are selected and copied while they are parsed
+            fc = StreamedFeatureCollection.pull(new PullParser(configuration, in, SimpleFeature.class), in);
+            fc = gtHelper.createFeatureCollection(selection.apply(GeometryFixupFeatureCollection.wrap(fc)),
+                    precision);
+        } catch (IOException | SAXException e) {
             LOGGER.error("Exception while handling parsed GML.", e);
             throw new RuntimeException(e);
         }
         return fc;
     }
 
+    /**
+     * Media types with selection parameters are supported like the plain
+     * media type, see {@link FeatureSelection#withoutSelection(Format)}.
+     */
+    @Override
+    public boolean isSupportedFormat(Format format) {
+        return super.isSupportedFormat(FeatureSelection.withoutSelection(format));
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream input,
             Format format) throws IOException, DecodingException {
 
+        FeatureSelection selection = FeatureSelection.fromFormat(format);
         try {
             File tempFile = FileConstants.writeTempFile(input);
-            GTVectorDataBinding data = parseXML(tempFile);
+            GTVectorDataBinding data = parseXML(tempFile, selection);
             return data;
         } catch (Exception e) {
             throw new IllegalArgumentException("Error while creating tempFile", e);
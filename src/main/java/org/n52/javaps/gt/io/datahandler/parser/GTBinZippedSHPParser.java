@@ -51,42 +51,138 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.geotools.data.DataStore;
-import org.geotools.data.shapefile.ShapefileDataStore;
+import javax.inject.Inject;
+
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Geometry;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
+import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.ColumnarFeatureCollection;
+import org.n52.javaps.gt.io.feature.FeatureIndex;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
 import org.n52.javaps.gt.io.util.FileConstants;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry.Lease;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
 import org.n52.javaps.io.InputHandler;
 import org.n52.javaps.utils.IOUtils;
 import org.n52.shetland.ogc.wps.Format;
+import org.opengis.feature.simple.SimpleFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
 
 @Properties(
         defaultPropertyFileName = "gtbinzippedshphandler.default.json",
         propertyFileName = "gtbinzippedshpparser.json")
 public class GTBinZippedSHPParser extends AbstractPropertiesInputOutputHandlerForFiles implements InputHandler {
 
+    private static Logger LOGGER = LoggerFactory.getLogger(GTBinZippedSHPParser.class);
+
+    private static final String COLUMNAR = "columnar";
+
+    private static final String SPATIAL_INDEX = "spatialindex";
+
+    @Inject
+    private GTHelper gtHelper;
+
     public GTBinZippedSHPParser() {
         super();
         addSupportedBinding(GTVectorDataBinding.class);
     }
 
+    /**
+     * @return whether the features are read into a
+     *         {@link ColumnarFeatureCollection} instead of being read from
+     *         the shapefile on each access
+     */
+    protected boolean isColumnar() {
+        try {
+            JsonNode properties = getProperties();
+            return properties != null && properties.hasNonNull(COLUMNAR) && properties.get(COLUMNAR).asBoolean();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, reading features from the shapefile.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return whether a {@link FeatureIndex} is built while reading the
+     *         features into columns
+     */
+    protected boolean isSpatialIndex() {
+        try {
+            JsonNode properties = getProperties();
+            return properties != null && properties.hasNonNull(SPATIAL_INDEX) && properties.get(SPATIAL_INDEX)
+                    .asBoolean();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, building the spatial index on demand.", e);
+            return false;
+        }
+    }
+
+    private SimpleFeatureCollection getFeatures(Lease lease,
+            FeatureSelection selection) throws IOException {
+        // without injection, e.g. when created directly, the store's
+        // default geometry factory is used
+        return lease.getFeatures(gtHelper != null ? gtHelper.getGeometryFactory() : null, selection);
+    }
+
+    /**
+     * Media types with selection parameters are supported like the plain
+     * media type, see {@link FeatureSelection#withoutSelection(Format)}.
+     */
+    @Override
+    public boolean isSupportedFormat(Format format) {
+        return super.isSupportedFormat(FeatureSelection.withoutSelection(format));
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream stream,
             Format format) throws IOException, DecodingException {
+        FeatureSelection selection = FeatureSelection.fromFormat(format);
         try {
             File tempFile = FileConstants.writeTempFile(stream, FileConstants.dot(FileConstants.SUFFIX_ZIP));
 
             File shp = IOUtils.unzip(tempFile, "shp").get(0);
-            DataStore store = new ShapefileDataStore(shp.toURI().toURL());
-            SimpleFeatureCollection features = store.getFeatureSource(store.getTypeNames()[0]).getFeatures();
+            Lease lease = ShapefileDataStoreRegistry.getInstance().acquire(shp);
 
-            return new GTVectorDataBinding(features);
+            if (!isColumnar()) {
+                try {
+                    return new GTVectorDataBinding(getFeatures(lease, selection), lease);
+                } catch (IOException | RuntimeException e) {
+                    lease.close();
+                    throw e;
+                }
+            }
+            try {
+                SimpleFeatureCollection features = getFeatures(lease, selection);
+                ColumnarFeatureCollection columns = new ColumnarFeatureCollection(features.getSchema(),
+                        gtHelper != null ? gtHelper.getGeometryFactory() : null);
+                FeatureIndex index = isSpatialIndex() ? new FeatureIndex(columns) : null;
+                try (SimpleFeatureIterator iterator = features.features()) {
+                    while (iterator.hasNext()) {
+                        SimpleFeature feature = iterator.next();
+                        columns.add(feature);
+                        if (index != null && feature.getDefaultGeometry() instanceof Geometry) {
+                            index.insert(columns.size() - 1, ((Geometry) feature.getDefaultGeometry())
+                                    .getEnvelopeInternal());
+                        }
+                    }
+                }
+                GTVectorDataBinding binding = new GTVectorDataBinding(columns);
+                binding.setIndex(index);
+                return binding;
+            } finally {
+                lease.close();
+            }
         } catch (Exception e) {
             throw new RuntimeException("An error has occurred while accessing provided data", e);
         }
@@ -59,7 +59,6 @@ import java.util.List;
 
 import javax.inject.Inject;
 
-import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.NameImpl;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
@@ -67,9 +66,11 @@ import org.geotools.geometry.jts.WKTReader2;
 import org.locationtech.jts.geom.Geometry;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
 import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.SpillingFeatureCollection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
@@ -120,18 +121,16 @@ public class GTBinZippedWKT64Parser extends AbstractPropertiesInputOutputHandler
         typeBuilder.setName(nameType);
         typeBuilder.add("GEOMETRY", geometries.get(0).getClass());
 
-        List<SimpleFeature> simpleFeatureList = new ArrayList<SimpleFeature>();
-
         SimpleFeatureType featureType = typeBuilder.buildFeatureType();
 
+        SpillingFeatureCollection collection = gtHelper.createFeatureCollection(featureType);
+
         for (int i = 0; i < geometries.size(); i++) {
             SimpleFeature feature = gtHelper.createFeature("" + i, geometries.get(i), featureType, new ArrayList<
                     Property>());
-            simpleFeatureList.add(feature);
+            collection.add(feature);
         }
 
-        SimpleFeatureCollection collection = new ListFeatureCollection(featureType, simpleFeatureList);
-
         return collection;
     }
 
@@ -157,13 +156,14 @@ public class GTBinZippedWKT64Parser extends AbstractPropertiesInputOutputHandler
             // please not that only 1 geometry is returned. If multiple
             // geometries are included, perhaps use the read(String wktstring)
             // method
+            CoordinatePrecision precision = getInputPrecision();
             for (int i = 0; i < wktFiles.size(); i++) {
                 File wktFile = wktFiles.get(i);
                 Reader fileReader = new InputStreamReader(new FileInputStream(wktFile), StandardCharsets.UTF_8);
 
-                WKTReader2 wktReader = new WKTReader2();
+                WKTReader2 wktReader = new WKTReader2(gtHelper.getGeometryFactory());
                 Geometry geometry = wktReader.read(fileReader);
-                geometries.add(geometry);
+                geometries.add(precision.snap(geometry));
             }
 
             SimpleFeatureCollection inputFeatureCollection = createFeatureCollection(geometries,
@@ -53,17 +53,30 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
 
 import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geojson.feature.FeatureJSON;
 import org.geotools.geojson.geom.GeometryJSON;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
+import org.n52.javaps.gt.io.CoordinatePrecision;
+import org.n52.javaps.gt.io.GTHelper;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.feature.ColumnarFeatureCollection;
+import org.n52.javaps.gt.io.feature.FeatureIndex;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
+import org.n52.javaps.gt.io.feature.StreamedFeatureCollection;
 import org.n52.javaps.io.AbstractPropertiesInputOutputHandler;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
@@ -71,9 +84,15 @@ import org.n52.javaps.io.InputHandler;
 import org.n52.javaps.io.data.binding.complex.JTSGeometryBinding;
 import org.n52.shetland.ogc.wps.Format;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 /**
  *
  *
@@ -89,12 +108,227 @@ public class GeoJSONParser extends AbstractPropertiesInputOutputHandler implemen
 
     private static Logger LOGGER = LoggerFactory.getLogger(GeoJSONParser.class);
 
+    private static final String COLUMNAR = "columnar";
+
+    private static final String SPATIAL_INDEX = "spatialindex";
+
+    @Inject
+    private GTHelper gtHelper;
+
     public GeoJSONParser() {
         super();
         addSupportedBinding(JTSGeometryBinding.class);
         addSupportedBinding(GTVectorDataBinding.class);
     }
 
+    /**
+     * @return whether feature collections are read into a
+     *         {@link ColumnarFeatureCollection}
+     */
+    protected boolean isColumnar() {
+        try {
+            JsonNode properties = getProperties();
+            return properties != null && properties.hasNonNull(COLUMNAR) && properties.get(COLUMNAR).asBoolean();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, reading features as objects.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return whether a {@link FeatureIndex} is built while reading features
+     *         into columns
+     */
+    protected boolean isSpatialIndex() {
+        try {
+            JsonNode properties = getProperties();
+            return properties != null && properties.hasNonNull(SPATIAL_INDEX) && properties.get(SPATIAL_INDEX)
+                    .asBoolean();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, building the spatial index on demand.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the precision parsed coordinates are snapped to
+     */
+    protected CoordinatePrecision getInputPrecision() {
+        try {
+            return CoordinatePrecision.forInput(getProperties());
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, keeping full coordinate precision.", e);
+            return CoordinatePrecision.FULL;
+        }
+    }
+
+    /**
+     * GeometryJSON creates coordinate array sequences, copies the geometry
+     * to the coordinate sequences configured for the parsers and snaps it to
+     * the input precision.
+     */
+    private Geometry pack(Geometry geometry,
+            CoordinatePrecision precision) {
+        return precision.snap(gtHelper != null ? gtHelper.pack(geometry) : geometry);
+    }
+
+    /**
+     * Replaces the geometry attributes by their snapped geometries.
+     */
+    private SimpleFeature snap(SimpleFeature feature,
+            CoordinatePrecision precision) {
+        if (precision.isReduced() || precision.isFloatCoordinates()) {
+            for (int i = 0; i < feature.getAttributeCount(); i++) {
+                Object value = feature.getAttribute(i);
+                if (value instanceof Geometry) {
+                    feature.setAttribute(i, precision.snap((Geometry) value));
+                }
+            }
+        }
+        return feature;
+    }
+
+    /**
+     * Reads the features in two passes: the first collects the attributes of
+     * all features into the schema, the second stores the features in
+     * columns of that schema.
+     *
+     * @return the features, <code>null</code> if there are none
+     */
+    private GTVectorDataBinding readColumnar(String geojson,
+            CoordinatePrecision precision,
+            FeatureSelection selection) throws IOException {
+        SimpleFeatureType schema = readSchema(geojson);
+        if (schema == null) {
+            return null;
+        }
+        // the columns only store the selected attributes
+        ColumnarFeatureCollection featureCollection = new ColumnarFeatureCollection(selection.project(schema),
+                gtHelper != null ? gtHelper.getGeometryFactory() : null);
+        FeatureIndex index = isSpatialIndex() ? new FeatureIndex(featureCollection) : null;
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureCollection.getSchema());
+        try (FeatureIterator<SimpleFeature> iterator = new FeatureJSON().streamFeatureCollection(geojson)) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = conform(iterator.next(), builder);
+                if (!selection.accepts(feature)) {
+                    continue;
+                }
+                featureCollection.add(snap(feature, precision));
+                if (index != null && feature.getDefaultGeometry() instanceof Geometry) {
+                    index.insert(featureCollection.size() - 1, ((Geometry) feature.getDefaultGeometry())
+                            .getEnvelopeInternal());
+                }
+            }
+        }
+        GTVectorDataBinding binding = new GTVectorDataBinding(featureCollection);
+        binding.setIndex(index);
+        return binding;
+    }
+
+    /**
+     * FeatureJSON types each streamed feature by its own properties. The
+     * schema has the attributes of all features in the order they first
+     * occur; numbers of different types are widened to Long or Double,
+     * geometries of different types to Geometry and other conflicting values
+     * to Object.
+     *
+     * @return the schema, <code>null</code> if there are no features
+     */
+    private SimpleFeatureType readSchema(String geojson) throws IOException {
+        Map<String, Class<?>> bindings = new LinkedHashMap<>();
+        String typeName = null;
+        String geometryName = null;
+        CoordinateReferenceSystem crs = null;
+        try (FeatureIterator<SimpleFeature> iterator = new FeatureJSON().streamFeatureCollection(geojson)) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                SimpleFeatureType type = feature.getFeatureType();
+                if (typeName == null) {
+                    typeName = type.getTypeName();
+                }
+                if (crs == null) {
+                    crs = type.getCoordinateReferenceSystem();
+                }
+                GeometryDescriptor geometry = type.getGeometryDescriptor();
+                if (geometryName == null && geometry != null) {
+                    geometryName = geometry.getLocalName();
+                }
+                for (AttributeDescriptor descriptor : type.getAttributeDescriptors()) {
+                    Object value = feature.getAttribute(descriptor.getName());
+                    Class<?> binding = bindings.get(descriptor.getLocalName());
+                    bindings.put(descriptor.getLocalName(), value == null ? binding : merge(binding, value
+                            .getClass()));
+                }
+            }
+        }
+        if (typeName == null) {
+            return null;
+        }
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(typeName);
+        builder.setCRS(crs);
+        for (Map.Entry<String, Class<?>> entry : bindings.entrySet()) {
+            Class<?> binding = entry.getValue();
+            if (binding == null) {
+                binding = entry.getKey().equals(geometryName) ? Geometry.class : Object.class;
+            }
+            builder.add(entry.getKey(), binding);
+        }
+        if (geometryName != null) {
+            builder.setDefaultGeometry(geometryName);
+        }
+        return builder.buildFeatureType();
+    }
+
+    private static Class<?> merge(Class<?> current,
+            Class<?> binding) {
+        if (current == null || current.equals(binding)) {
+            return binding;
+        }
+        if (Geometry.class.isAssignableFrom(current) && Geometry.class.isAssignableFrom(binding)) {
+            return Geometry.class;
+        }
+        if (Number.class.isAssignableFrom(current) && Number.class.isAssignableFrom(binding)) {
+            return isIntegral(current) && isIntegral(binding) ? Long.class : Double.class;
+        }
+        return Object.class;
+    }
+
+    private static boolean isIntegral(Class<?> binding) {
+        return Long.class.equals(binding) || Integer.class.equals(binding) || Short.class.equals(binding)
+                || Byte.class.equals(binding);
+    }
+
+    /**
+     * @return a feature of the type of the builder with the values of the
+     *         feature, numbers converted to the attribute type
+     */
+    private SimpleFeature conform(SimpleFeature feature,
+            SimpleFeatureBuilder builder) {
+        for (AttributeDescriptor descriptor : builder.getFeatureType().getAttributeDescriptors()) {
+            Object value = feature.getAttribute(descriptor.getLocalName());
+            Class<?> binding = descriptor.getType().getBinding();
+            if (value instanceof Number && !binding.isInstance(value)) {
+                if (Double.class.equals(binding)) {
+                    value = ((Number) value).doubleValue();
+                } else if (Long.class.equals(binding)) {
+                    value = ((Number) value).longValue();
+                }
+            }
+            builder.set(descriptor.getLocalName(), value);
+        }
+        return builder.buildFeature(feature.getID());
+    }
+
+    /**
+     * Media types with selection parameters are supported like the plain
+     * media type, see {@link FeatureSelection#withoutSelection(Format)}.
+     */
+    @Override
+    public boolean isSupportedFormat(Format format) {
+        return super.isSupportedFormat(FeatureSelection.withoutSelection(format));
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream input,
@@ -120,13 +354,30 @@ public class GeoJSONParser extends AbstractPropertiesInputOutputHandler implemen
             }
         }
 
+        CoordinatePrecision precision = getInputPrecision();
+
+        FeatureSelection selection = FeatureSelection.fromFormat(format);
+
         if (geojsonstring.contains("FeatureCollection")) {
 
             try {
-                SimpleFeatureCollection featureCollection = (SimpleFeatureCollection) new FeatureJSON()
-                        .readFeatureCollection(geojsonstring);
-
-                return new GTVectorDataBinding(featureCollection);
+                if (isColumnar()) {
+                    GTVectorDataBinding binding = readColumnar(geojsonstring, precision, selection);
+                    if (binding != null) {
+                        return binding;
+                    }
+                }
+                // without injection, e.g. when created directly, the
+                // features stay on the heap
+                if (gtHelper == null) {
+                    return new GTVectorDataBinding(selection.apply(
+                            (SimpleFeatureCollection) new FeatureJSON().readFeatureCollection(geojsonstring)));
+                }
+                // the features are selected and copied while they are read
+                SimpleFeatureCollection featureCollection = StreamedFeatureCollection.read(new FeatureJSON()
+                        .streamFeatureCollection(geojsonstring));
+                return new GTVectorDataBinding(gtHelper.createFeatureCollection(selection.apply(
+                        featureCollection), precision));
 
             } catch (IOException e) {
                 LOGGER.info("Could not read FeatureCollection from inputstream");
@@ -139,12 +390,12 @@ public class GeoJSONParser extends AbstractPropertiesInputOutputHandler implemen
 
                 List<SimpleFeature> featureList = new ArrayList<SimpleFeature>();
 
-                featureList.add(feature);
+                featureList.add(snap(feature, precision));
 
                 ListFeatureCollection featureCollection = new ListFeatureCollection(feature.getFeatureType(),
                         featureList);
 
-                return new GTVectorDataBinding(featureCollection);
+                return new GTVectorDataBinding(selection.apply(featureCollection));
 
             } catch (IOException e) {
                 LOGGER.info("Could not read Feature from inputstream");
@@ -155,7 +406,7 @@ public class GeoJSONParser extends AbstractPropertiesInputOutputHandler implemen
             try {
                 GeometryCollection g = new GeometryJSON().readGeometryCollection(geojsonstring);
 
-                return new JTSGeometryBinding(g);
+                return new JTSGeometryBinding(pack(g, precision));
 
             } catch (IOException e) {
                 LOGGER.info("Could not read GeometryCollection from inputstream.");
@@ -168,7 +419,7 @@ public class GeoJSONParser extends AbstractPropertiesInputOutputHandler implemen
             try {
                 Geometry g = new GeometryJSON().read(geojsonstring);
 
-                return new JTSGeometryBinding(g);
+                return new JTSGeometryBinding(pack(g, precision));
 
             } catch (IOException e) {
                 LOGGER.info("Could not read single Geometry from inputstream.");
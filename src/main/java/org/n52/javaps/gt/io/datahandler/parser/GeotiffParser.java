@@ -51,15 +51,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.media.jai.JAI;
-
-import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.gce.geotiff.GeoTiffReader;
 import org.geotools.util.factory.Hints;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
 import org.n52.javaps.gt.io.data.binding.complex.GTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyGTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.MappedGTRasterDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.tiff.MappedTiffImage;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
@@ -68,11 +68,15 @@ import org.n52.shetland.ogc.wps.Format;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 @Properties(
         defaultPropertyFileName = "geotiffhandler.default.json",
         propertyFileName = "geotiffparser.json")
 public class GeotiffParser extends AbstractPropertiesInputOutputHandlerForFiles implements InputHandler {
 
+    private static final String MEMORY_MAPPING = "memorymapping";
+
     private static Logger LOGGER = LoggerFactory.getLogger(GeotiffParser.class);
 
     public GeotiffParser() {
@@ -80,19 +84,42 @@ public class GeotiffParser extends AbstractPropertiesInputOutputHandlerForFiles
         addSupportedBinding(GTRasterDataBinding.class);
     }
 
-    private GTRasterDataBinding parseTiff(File file) {
-        JAI.getDefaultInstance().getTileCache().setMemoryCapacity(256 * 1024 * 1024);
+    /**
+     * @return whether uncompressed GeoTIFFs are read from a memory mapping
+     *         instead of ImageIO
+     */
+    protected boolean isMemoryMapping() {
+        try {
+            JsonNode properties = getProperties();
+            return properties == null || !properties.hasNonNull(MEMORY_MAPPING) || properties.get(MEMORY_MAPPING)
+                    .asBoolean();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, memory mapping enabled.", e);
+            return true;
+        }
+    }
 
+    private GTRasterDataBinding parseTiff(File file) {
         Hints hints = new Hints(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, Boolean.TRUE);
         GeoTiffReader reader;
         try {
             reader = new GeoTiffReader(file, hints);
-            GridCoverage2D coverage = reader.read(null);
-            return new GTRasterDataBinding(coverage);
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RuntimeException(e);
         }
+        if (isMemoryMapping()) {
+            try {
+                MappedTiffImage image = MappedTiffImage.open(file);
+                if (image != null) {
+                    LOGGER.debug("Reading memory mapped GeoTIFF " + file);
+                    return new MappedGTRasterDataBinding(reader, image);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not map GeoTIFF, reading it with ImageIO.", e);
+            }
+        }
+        return new LazyGTRasterDataBinding(reader);
     }
 
     @Override
@@ -50,15 +50,34 @@ package org.n52.javaps.gt.io.datahandler.parser;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipException;
+
+import javax.imageio.stream.ImageInputStream;
 
-import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.gce.geotiff.GeoTiffReader;
 import org.geotools.util.factory.Hints;
 import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
 import org.n52.javaps.gt.io.data.binding.complex.GTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyGTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyMosaicGTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyMosaicGTRasterDataBinding.Tile;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.util.FileConstants;
+import org.n52.javaps.gt.io.util.RangeImageInputStream;
+import org.n52.javaps.gt.io.util.SelectiveZipReader;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.Action;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.Entry;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.EntryOutsideDirectoryException;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.EntrySelector;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
 import org.n52.javaps.io.InputHandler;
@@ -67,6 +86,8 @@ import org.n52.shetland.ogc.wps.Format;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 @Properties(
         defaultPropertyFileName = "geotiffzippedparser.default.json",
         propertyFileName = "geotiffzippedparser.json")
@@ -74,24 +95,170 @@ public class GeotiffZippedParser extends AbstractPropertiesInputOutputHandlerFor
 
     private static Logger LOGGER = LoggerFactory.getLogger(GeotiffZippedParser.class);
 
+    private static final String MOSAIC = "mosaic";
+
+    private static final String[] SIDECAR_SUFFIXES = { ".tfw", ".tifw", ".tiffw", ".prj", ".aux.xml", ".ovr" };
+
     public GeotiffZippedParser() {
         super();
         addSupportedBinding(GTRasterDataBinding.class);
     }
 
-    private GTRasterDataBinding parseTiff(File file) {
+    private static boolean isTiff(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        return lowerCaseName.endsWith(FileConstants.dot(FileConstants.SUFFIX_TIF)) || lowerCaseName.endsWith(
+                FileConstants.dot(FileConstants.SUFFIX_TIFF));
+    }
+
+    private static boolean isSidecar(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        for (String suffix : SIDECAR_SUFFIXES) {
+            if (lowerCaseName.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the sidecar belongs to the tiff, i.e. is named like
+     *         <code>image.tfw</code> or <code>image.tif.aux.xml</code> for
+     *         <code>image.tif</code>
+     */
+    private static boolean isSidecarOf(String sidecarName,
+            String tiffName) {
+        String sidecar = sidecarName.toLowerCase(Locale.ROOT);
+        String tiff = tiffName.toLowerCase(Locale.ROOT);
+        String baseName = tiff.substring(0, tiff.lastIndexOf('.'));
+        return sidecar.startsWith(baseName + ".") && isSidecar(sidecar);
+    }
+
+    /**
+     * Locates the first tiff, or all tiffs for a mosaic, and extracts the
+     * sidecars, everything else is skipped.
+     */
+    private static final class TiffSelector implements EntrySelector {
+
+        private final boolean allTiffs;
+
+        private boolean tiffFound;
+
+        TiffSelector(boolean allTiffs) {
+            this.allTiffs = allTiffs;
+        }
+
+        @Override
+        public Action select(String name,
+                boolean stored) {
+            if (isTiff(name)) {
+                if (tiffFound && !allTiffs) {
+                    return Action.SKIP;
+                }
+                tiffFound = true;
+                return Action.LOCATE;
+            }
+            return isSidecar(name) ? Action.EXTRACT : Action.SKIP;
+        }
+    }
+
+    /**
+     * @return whether all tiffs of a zip file are combined to a
+     *         {@link LazyMosaicGTRasterDataBinding} instead of returning the
+     *         first one
+     */
+    protected boolean isMosaic() {
+        try {
+            JsonNode properties = getProperties();
+            return properties != null && properties.hasNonNull(MOSAIC) && properties.get(MOSAIC).asBoolean();
+        } catch (Exception e) {
+            LOGGER.error("Could not get properties, mosaic mode disabled.", e);
+            return false;
+        }
+    }
+
+    private LazyGTRasterDataBinding openTiff(File file) throws IOException {
         Hints hints = new Hints(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, Boolean.TRUE);
-        GeoTiffReader reader;
+        return new LazyGTRasterDataBinding(new GeoTiffReader(file, hints));
+    }
+
+    private LazyGTRasterDataBinding openTiff(File zippedFile,
+            Entry entry) throws IOException {
+        Hints hints = new Hints(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, Boolean.TRUE);
+        ImageInputStream stream = new RangeImageInputStream(zippedFile, entry.getDataOffset(), entry.getSize());
         try {
-            reader = new GeoTiffReader(file, hints);
-            GridCoverage2D coverage = reader.read(null);
-            return new GTRasterDataBinding(coverage);
+            return new LazyGTRasterDataBinding(new GeoTiffReader(stream, hints), stream);
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    private GTRasterDataBinding createBinding(List<Tile> tiles,
+            boolean mosaic) {
+        try {
+            if (mosaic && tiles.size() > 1) {
+                LOGGER.debug("Creating mosaic of " + tiles.size() + " tiffs.");
+                return new LazyMosaicGTRasterDataBinding(tiles);
+            }
+            return tiles.get(0).open();
         } catch (Exception e) {
             LOGGER.error("Exception while trying to create GTRasterDataBinding out of tiff.", e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Extracts only the first tiff, or all tiffs in mosaic mode, and their
+     * sidecars. A tiff that is stored uncompressed and has no sidecars is read
+     * in place from the zip file.
+     *
+     * @return the binding, <code>null</code> if the zip file contains no tiff
+     */
+    private GTRasterDataBinding parseSelective(File zippedFile,
+            boolean mosaic) throws IOException {
+        File directory = Files.createTempDirectory(new File(FileConstants.TMP_DIR_PATH).toPath(), "geotiff")
+                .toFile();
+        try {
+            SelectiveZipReader zipReader = new SelectiveZipReader(zippedFile);
+            List<Entry> entries = zipReader.read(new TiffSelector(mosaic), directory);
+            List<Tile> tiles = new ArrayList<>();
+            for (Entry tiff : entries) {
+                if (!isTiff(tiff.getName())) {
+                    continue;
+                }
+                boolean hasSidecars = entries.stream().anyMatch(entry -> isSidecarOf(entry.getName(), tiff
+                        .getName()));
+                if (tiff.getFile() == null && !hasSidecars) {
+                    LOGGER.debug("Reading uncompressed tiff " + tiff.getName() + " from zip file.");
+                    tiles.add(() -> openTiff(zippedFile, tiff));
+                    continue;
+                }
+                File file = tiff.getFile();
+                if (file == null) {
+                    // the sidecars are looked up next to the tiff
+                    file = new File(directory, tiff.getName());
+                    zipReader.extract(tiff, file);
+                }
+                File tiffFile = file;
+                tiles.add(() -> openTiff(tiffFile));
+            }
+            return tiles.isEmpty() ? null : createBinding(tiles, mosaic);
+        } finally {
+            addToFinalizeFiles(directory);
+        }
+    }
+
+    /**
+     * Adds the directory and everything in it to the files deleted on
+     * {@link #destroy()}, files before their directories.
+     */
+    private void addToFinalizeFiles(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            finalizeFiles.addAll(paths.sorted(Comparator.reverseOrder()).map(Path::toFile).collect(Collectors
+                    .toList()));
+        }
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream input,
@@ -102,15 +269,35 @@ public class GeotiffZippedParser extends AbstractPropertiesInputOutputHandlerFor
             zippedFile = IOUtils.writeStreamToFile(input, "zip");
             finalizeFiles.add(zippedFile);
 
+            boolean mosaic = isMosaic();
+            try {
+                GTRasterDataBinding binding = parseSelective(zippedFile, mosaic);
+                if (binding != null) {
+                    return binding;
+                }
+                throw new RuntimeException("Could not parse zipped geotiff.");
+            } catch (EntryOutsideDirectoryException e) {
+                throw e;
+            } catch (ZipException e) {
+                LOGGER.debug("Could not read zip file in a single pass, extracting all entries.", e);
+            }
+
             List<File> files = IOUtils.unzipAll(zippedFile);
             finalizeFiles.addAll(files);
 
+            List<Tile> tiles = new ArrayList<>();
             for (File file : files) {
-                if (file.getName().toLowerCase().endsWith(".tif") || file.getName().toLowerCase().endsWith(".tiff")) {
-                    return parseTiff(file);
+                if (isTiff(file.getName())) {
+                    tiles.add(() -> openTiff(file));
                 }
             }
+            if (!tiles.isEmpty()) {
+                return createBinding(tiles, mosaic);
+            }
 
+        } catch (EntryOutsideDirectoryException e) {
+            LOGGER.error("Refusing to unzip tiff.", e);
+            throw e;
         } catch (IOException e) {
             LOGGER.error("Exception while trying to unzip tiff.", e);
         }
@@ -60,6 +60,7 @@ import org.n52.javaps.annotation.Properties;
 import org.n52.javaps.description.TypedProcessInputDescription;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.AbstractPropertiesInputOutputHandlerForFiles;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
 import org.n52.javaps.gt.io.util.FileConstants;
 import org.n52.javaps.io.Data;
 import org.n52.javaps.io.DecodingException;
@@ -85,23 +86,35 @@ public class KMLParser extends AbstractPropertiesInputOutputHandlerForFiles impl
         addSupportedBinding(GTVectorDataBinding.class);
     }
 
-    private GTVectorDataBinding parseXML(File file) {
+    private GTVectorDataBinding parseXML(File file,
+            FeatureSelection selection) {
         Configuration configuration = new KMLConfiguration();
 
-        SimpleFeatureCollection fc = gml3BasicParser.parseFeatureCollection(file, configuration, true);
+        SimpleFeatureCollection fc = gml3BasicParser.parseFeatureCollection(file, configuration, true,
+                getInputPrecision(), selection);
 
         GTVectorDataBinding data = new GTVectorDataBinding(fc);
 
         return data;
     }
 
+    /**
+     * Media types with selection parameters are supported like the plain
+     * media type, see {@link FeatureSelection#withoutSelection(Format)}.
+     */
+    @Override
+    public boolean isSupportedFormat(Format format) {
+        return super.isSupportedFormat(FeatureSelection.withoutSelection(format));
+    }
+
     @Override
     public Data<?> parse(TypedProcessInputDescription<?> description,
             InputStream stream,
             Format format) throws IOException, DecodingException {
+        FeatureSelection selection = FeatureSelection.fromFormat(format);
         try {
             File tempFile = FileConstants.writeTempFile(stream, FileConstants.dot(FileConstants.SUFFIX_KML));
-            GTVectorDataBinding data = parseXML(tempFile);
+            GTVectorDataBinding data = parseXML(tempFile, selection);
             return data;
         } catch (Exception e) {
             throw new IllegalArgumentException("Error while creating tempFile", e);
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Deduplicates the string attribute values of the features read by one
+ * parse: equal values are replaced by the first instance seen, so values
+ * repeated for many features, like a road class or a state name, are kept
+ * once. The dictionary stops taking new values once it holds
+ * {@link #getCapacity()} of them, values seen after that are kept as they
+ * are, which bounds its size for attributes like names or ids that rarely
+ * repeat.
+ */
+public class AttributeDictionary {
+
+    /** The number of values kept if no capacity is configured. */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private final int capacity;
+
+    private long hits;
+
+    /**
+     * @param capacity
+     *            the maximum number of distinct values kept, 0 disables
+     *            deduplication
+     */
+    public AttributeDictionary(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * @param value
+     *            the value, may be <code>null</code>
+     * @return the equal value seen first, or the value
+     */
+    public String intern(String value) {
+        if (value == null || capacity == 0) {
+            return value;
+        }
+        String interned = values.get(value);
+        if (interned != null) {
+            hits++;
+            return interned;
+        }
+        if (values.size() < capacity) {
+            values.put(value, value);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the string attributes of a feature by their
+     * {@link #intern(String) interned} values.
+     *
+     * @param feature
+     *            the feature
+     * @return the feature
+     */
+    public SimpleFeature intern(SimpleFeature feature) {
+        if (capacity == 0) {
+            return feature;
+        }
+        for (int i = 0; i < feature.getAttributeCount(); i++) {
+            Object value = feature.getAttribute(i);
+            if (value instanceof String) {
+                String interned = intern((String) value);
+                if (interned != value) {
+                    feature.setAttribute(i, interned);
+                }
+            }
+        }
+        return feature;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of distinct values kept
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of values replaced by an equal one
+     */
+    public long getHits() {
+        return hits;
+    }
+
+}
@@ -0,0 +1,692 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.AbstractFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureImpl;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * A feature collection storing its features column by column instead of as
+ * feature objects: numbers, booleans and dates in primitive arrays, strings
+ * in a dictionary encoded column of at most
+ * {@link AttributeDictionary#DEFAULT_CAPACITY} distinct values, points as
+ * packed coordinates and other geometries with the coordinate sequences of
+ * a given geometry factory, packed coordinate sequences by default.
+ * Iterating creates a short lived {@link SimpleFeature} per row.
+ * <p>
+ * Features are copied when added: changes to features returned by an
+ * iterator are not kept, geometries other than points are shared between
+ * iterations and must not be modified. Attributes are copied by name,
+ * attributes the collection type does not have are dropped. A column
+ * falls back to storing objects once a value does not match its type.
+ */
+public class ColumnarFeatureCollection extends AbstractFeatureCollection {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Column[] columns;
+
+    private final ReferencedEnvelope bounds;
+
+    private final IdColumn ids = new IdColumn();
+
+    private int capacity;
+
+    private int size;
+
+    /**
+     * @param featureType
+     *            the type of the features
+     */
+    public ColumnarFeatureCollection(SimpleFeatureType featureType) {
+        this(featureType, null);
+    }
+
+    /**
+     * @param featureType
+     *            the type of the features
+     * @param geometryFactory
+     *            the factory whose coordinate sequences store geometries
+     *            other than points, e.g.
+     *            {@link org.n52.javaps.gt.io.GTHelper#getGeometryFactory()},
+     *            <code>null</code> for packed coordinate sequences. The
+     *            precision model and SRID of the added geometries are kept.
+     */
+    public ColumnarFeatureCollection(SimpleFeatureType featureType,
+            GeometryFactory geometryFactory) {
+        super(featureType);
+        this.bounds = new ReferencedEnvelope(featureType.getCoordinateReferenceSystem());
+        CoordinateSequenceFactory sequenceFactory = geometryFactory != null ? geometryFactory
+                .getCoordinateSequenceFactory() : PackedCoordinateSequenceFactory.DOUBLE_FACTORY;
+        List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        columns = new Column[descriptors.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = createColumn(descriptors.get(i), sequenceFactory);
+        }
+    }
+
+    private static Column createColumn(AttributeDescriptor descriptor,
+            CoordinateSequenceFactory sequenceFactory) {
+        Class<?> binding = descriptor.getType().getBinding();
+        if (descriptor instanceof GeometryDescriptor) {
+            CoordinateReferenceSystem crs = ((GeometryDescriptor) descriptor).getCoordinateReferenceSystem();
+            return Point.class.equals(binding) ? new PointColumn(crs) : new GeometryColumn(crs, sequenceFactory);
+        }
+        if (String.class.equals(binding)) {
+            return new StringColumn();
+        }
+        if (Integer.class.equals(binding) || Short.class.equals(binding) || Byte.class.equals(binding)) {
+            return new IntColumn(binding);
+        }
+        if (Long.class.equals(binding) || Date.class.equals(binding) || java.sql.Date.class.equals(binding)) {
+            return new LongColumn(binding);
+        }
+        if (Double.class.equals(binding) || Float.class.equals(binding)) {
+            return new DoubleColumn(binding);
+        }
+        if (Boolean.class.equals(binding)) {
+            return new BooleanColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    public synchronized void add(SimpleFeature feature) {
+        if (size == capacity) {
+            capacity = Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1));
+            ids.grow(capacity);
+            for (Column column : columns) {
+                column.grow(capacity);
+            }
+        }
+        String id = feature.getID();
+        ids.set(size, id != null ? id : SimpleFeatureBuilder.createDefaultFeatureId());
+        boolean sameType = feature.getFeatureType() == getSchema();
+        for (int i = 0; i < columns.length; i++) {
+            Object value = sameType ? feature.getAttribute(i) : feature.getAttribute(getSchema().getDescriptor(i)
+                    .getLocalName());
+            if (value != null) {
+                if (!columns[i].accepts(value)) {
+                    // e.g. GeoJSON, where the types are guessed from the
+                    // first feature
+                    columns[i] = new ObjectColumn(columns[i], size, capacity);
+                }
+                columns[i].set(size, value);
+            }
+        }
+        Object geometry = feature.getDefaultGeometry();
+        if (geometry instanceof Geometry) {
+            bounds.expandToInclude(((Geometry) geometry).getEnvelopeInternal());
+        }
+        size++;
+    }
+
+    public void addAll(Iterable<SimpleFeature> features) {
+        for (SimpleFeature feature : features) {
+            add(feature);
+        }
+    }
+
+    public void addAll(SimpleFeatureCollection features) {
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                add(iterator.next());
+            }
+        }
+    }
+
+    /**
+     * @param index
+     *            the row
+     * @return a new feature with the values of the row
+     */
+    public synchronized SimpleFeature get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].present.get(index)) {
+                values[i] = columns[i].get(index);
+            }
+        }
+        return new SimpleFeatureImpl(values, getSchema(), new FeatureIdImpl(ids.get(index)), false);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized ReferencedEnvelope getBounds() {
+        return new ReferencedEnvelope(bounds);
+    }
+
+    @Override
+    protected synchronized Iterator<SimpleFeature> openIterator() {
+        return new RowIterator(size);
+    }
+
+    private final class RowIterator implements Iterator<SimpleFeature>, SimpleFeatureIterator {
+
+        private final int count;
+
+        private int index;
+
+        private RowIterator(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (index >= count) {
+                throw new NoSuchElementException();
+            }
+            return get(index++);
+        }
+
+        @Override
+        public void close() {
+            index = count;
+        }
+    }
+
+    /**
+     * The values of one attribute; {@link #present} marks the rows with a
+     * value.
+     */
+    private abstract static class Column {
+
+        protected final BitSet present = new BitSet();
+
+        protected final Class<?> binding;
+
+        Column(Class<?> binding) {
+            this.binding = binding;
+        }
+
+        abstract void grow(int capacity);
+
+        boolean accepts(Object value) {
+            return binding.isInstance(value);
+        }
+
+        /**
+         * @param value
+         *            not <code>null</code>
+         */
+        void set(int row,
+                Object value) {
+            present.set(row);
+        }
+
+        abstract Object get(int row);
+    }
+
+    private static final class IntColumn extends Column {
+
+        private int[] values = new int[0];
+
+        private IntColumn(Class<?> binding) {
+            super(binding);
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            values[row] = ((Number) value).intValue();
+        }
+
+        @Override
+        Object get(int row) {
+            if (Short.class.equals(binding)) {
+                return (short) values[row];
+            }
+            if (Byte.class.equals(binding)) {
+                return (byte) values[row];
+            }
+            return values[row];
+        }
+    }
+
+    private static final class LongColumn extends Column {
+
+        private long[] values = new long[0];
+
+        private LongColumn(Class<?> binding) {
+            super(binding);
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        /**
+         * Subclasses of dates, e.g. timestamps, would lose their type.
+         */
+        @Override
+        boolean accepts(Object value) {
+            return value.getClass() == binding;
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            values[row] = value instanceof Date ? ((Date) value).getTime() : ((Number) value).longValue();
+        }
+
+        @Override
+        Object get(int row) {
+            if (Date.class.equals(binding)) {
+                return new Date(values[row]);
+            }
+            if (java.sql.Date.class.equals(binding)) {
+                return new java.sql.Date(values[row]);
+            }
+            return values[row];
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+
+        private double[] values = new double[0];
+
+        private DoubleColumn(Class<?> binding) {
+            super(binding);
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        Object get(int row) {
+            return Float.class.equals(binding) ? (Object) (float) values[row] : (Object) values[row];
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+
+        private final BitSet values = new BitSet();
+
+        private BooleanColumn() {
+            super(Boolean.class);
+        }
+
+        @Override
+        void grow(int capacity) {
+            // the bit set grows on its own
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            values.set(row, (Boolean) value);
+        }
+
+        @Override
+        Object get(int row) {
+            return values.get(row);
+        }
+    }
+
+    /**
+     * Stores each distinct string once, the rows refer to it by its index.
+     */
+    private static final class StringColumn extends Column {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private int[] values = new int[0];
+
+        private StringColumn() {
+            super(String.class);
+        }
+
+        /**
+         * Rejects new values once the dictionary is full, the column then
+         * falls back to storing objects, keeping the values seen so far
+         * shared.
+         */
+        @Override
+        boolean accepts(Object value) {
+            return super.accepts(value) && (dictionary.size() < AttributeDictionary.DEFAULT_CAPACITY || codes
+                    .containsKey(value));
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            String string = (String) value;
+            Integer code = codes.get(string);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(string);
+                codes.put(string, code);
+            }
+            values[row] = code;
+        }
+
+        @Override
+        Object get(int row) {
+            return dictionary.get(values[row]);
+        }
+    }
+
+    /**
+     * Stores the coordinates of points in a single array, the Z ordinates
+     * only once a point has one.
+     */
+    private static final class PointColumn extends Column {
+
+        private final CoordinateReferenceSystem crs;
+
+        private GeometryFactory geometryFactory;
+
+        private double[] xy = new double[0];
+
+        private double[] z;
+
+        private PointColumn(CoordinateReferenceSystem crs) {
+            super(Point.class);
+            this.crs = crs;
+        }
+
+        @Override
+        void grow(int capacity) {
+            xy = Arrays.copyOf(xy, capacity * 2);
+            if (z != null) {
+                z = grow(z, capacity);
+            }
+        }
+
+        private static double[] grow(double[] values,
+                int capacity) {
+            int length = values.length;
+            double[] grown = Arrays.copyOf(values, capacity);
+            Arrays.fill(grown, length, capacity, Double.NaN);
+            return grown;
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            Point point = (Point) value;
+            if (geometryFactory == null) {
+                geometryFactory = new GeometryFactory(point.getPrecisionModel(), point.getSRID());
+            }
+            if (point.isEmpty()) {
+                // stored as null
+                return;
+            }
+            super.set(row, value);
+            Coordinate coordinate = point.getCoordinate();
+            xy[2 * row] = coordinate.x;
+            xy[2 * row + 1] = coordinate.y;
+            if (!Double.isNaN(coordinate.getZ())) {
+                if (z == null) {
+                    z = grow(new double[0], xy.length / 2);
+                }
+                z[row] = coordinate.getZ();
+            }
+        }
+
+        @Override
+        Object get(int row) {
+            Point point = geometryFactory.createPoint(new Coordinate(xy[2 * row], xy[2 * row + 1], z == null
+                    ? Double.NaN : z[row]));
+            point.setUserData(crs);
+            return point;
+        }
+    }
+
+    /**
+     * Stores geometries copied to the coordinate sequences of the collection,
+     * by default packed coordinate sequences, which keep the ordinates in a
+     * primitive array instead of coordinate objects.
+     */
+    private static final class GeometryColumn extends Column {
+
+        private final CoordinateReferenceSystem crs;
+
+        private final CoordinateSequenceFactory sequenceFactory;
+
+        private GeometryFactory geometryFactory;
+
+        private Geometry[] values = new Geometry[0];
+
+        private GeometryColumn(CoordinateReferenceSystem crs,
+                CoordinateSequenceFactory sequenceFactory) {
+            super(Geometry.class);
+            this.crs = crs;
+            this.sequenceFactory = sequenceFactory;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            Geometry geometry = (Geometry) value;
+            if (geometryFactory == null) {
+                geometryFactory = new GeometryFactory(geometry.getPrecisionModel(), geometry.getSRID(),
+                        sequenceFactory);
+            }
+            values[row] = geometryFactory.createGeometry(geometry);
+            values[row].setUserData(crs);
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+
+        private Object[] values = new Object[0];
+
+        private ObjectColumn() {
+            super(Object.class);
+        }
+
+        /**
+         * Copies the values of a column that cannot store a value.
+         */
+        private ObjectColumn(Column column,
+                int size,
+                int capacity) {
+            super(Object.class);
+            values = new Object[capacity];
+            for (int row = column.present.nextSetBit(0); row >= 0 && row < size; row = column.present.nextSetBit(row
+                    + 1)) {
+                values[row] = column.get(row);
+            }
+            present.or(column.present);
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row,
+                Object value) {
+            super.set(row, value);
+            values[row] = value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * Stores ids sharing a prefix followed by a number, like the ones
+     * generated by GeoTools, as the numbers only. Falls back to storing the
+     * ids once an id does not match.
+     */
+    private static final class IdColumn {
+
+        private String prefix;
+
+        private long[] numbers = new long[0];
+
+        private String[] strings;
+
+        void grow(int capacity) {
+            if (strings != null) {
+                strings = Arrays.copyOf(strings, capacity);
+            } else {
+                numbers = Arrays.copyOf(numbers, capacity);
+            }
+        }
+
+        void set(int row,
+                String id) {
+            if (strings == null) {
+                if (prefix == null) {
+                    prefix = getPrefix(id);
+                }
+                if (prefix != null && id.startsWith(prefix)) {
+                    String suffix = id.substring(prefix.length());
+                    try {
+                        long number = Long.parseLong(suffix);
+                        if (Long.toString(number).equals(suffix)) {
+                            numbers[row] = number;
+                            return;
+                        }
+                    } catch (NumberFormatException e) {
+                        // not a generated id
+                    }
+                }
+                strings = new String[numbers.length];
+                for (int i = 0; i < row; i++) {
+                    strings[i] = prefix + numbers[i];
+                }
+                numbers = null;
+            }
+            strings[row] = id;
+        }
+
+        private static String getPrefix(String id) {
+            int end = id.length();
+            while (end > 0 && Character.isDigit(id.charAt(end - 1))) {
+                end--;
+            }
+            return end < id.length() ? id.substring(0, end) : null;
+        }
+
+        String get(int row) {
+            return strings != null ? strings[row] : prefix + numbers[row];
+        }
+    }
+
+}
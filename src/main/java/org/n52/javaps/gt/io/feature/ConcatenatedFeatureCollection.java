@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.AbstractFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+/**
+ * Iterates over several collections as one, without copying them. This is how
+ * shapefiles that were split into parts (see
+ * {@link org.n52.javaps.gt.io.util.ShapefileSplitter}) or by geometry type
+ * (see {@link org.n52.javaps.gt.io.util.TypeSplitShapefileExporter}) are read
+ * back. The schema is the one of the first collection; if the geometry types
+ * of the collections differ, its default geometry is generalized to
+ * {@link Geometry}. Features of other types are retyped by attribute name.
+ */
+public class ConcatenatedFeatureCollection extends AbstractFeatureCollection {
+
+    private final List<SimpleFeatureCollection> collections;
+
+    /**
+     * @param collections
+     *            the collections, at least one
+     */
+    public ConcatenatedFeatureCollection(List<SimpleFeatureCollection> collections) {
+        super(createSchema(collections));
+        this.collections = Collections.unmodifiableList(new ArrayList<>(collections));
+    }
+
+    private static SimpleFeatureType createSchema(List<SimpleFeatureCollection> collections) {
+        if (collections.isEmpty()) {
+            throw new IllegalArgumentException("At least one collection is required.");
+        }
+        SimpleFeatureType first = collections.get(0).getSchema();
+        GeometryDescriptor geometry = first.getGeometryDescriptor();
+        if (geometry == null) {
+            return first;
+        }
+        Class<?> binding = geometry.getType().getBinding();
+        boolean mixed = false;
+        for (SimpleFeatureCollection collection : collections) {
+            GeometryDescriptor other = collection.getSchema().getGeometryDescriptor();
+            if (other != null && !other.getType().getBinding().equals(binding)) {
+                mixed = true;
+            }
+        }
+        if (!mixed) {
+            return first;
+        }
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(first.getName());
+        builder.setCRS(first.getCoordinateReferenceSystem());
+        for (AttributeDescriptor descriptor : first.getAttributeDescriptors()) {
+            if (descriptor == geometry) {
+                builder.add(descriptor.getLocalName(), Geometry.class);
+            } else {
+                builder.add(descriptor);
+            }
+        }
+        builder.setDefaultGeometry(geometry.getLocalName());
+        return builder.buildFeatureType();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (SimpleFeatureCollection collection : collections) {
+            size += collection.size();
+        }
+        return size;
+    }
+
+    @Override
+    public ReferencedEnvelope getBounds() {
+        ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema().getCoordinateReferenceSystem());
+        for (SimpleFeatureCollection collection : collections) {
+            ReferencedEnvelope collectionBounds = collection.getBounds();
+            if (collectionBounds != null && !collectionBounds.isNull()) {
+                bounds.expandToInclude(collectionBounds);
+            }
+        }
+        return bounds;
+    }
+
+    @Override
+    protected Iterator<SimpleFeature> openIterator() {
+        return new ConcatenatingIterator();
+    }
+
+    /**
+     * Opens the iterator of each collection once the previous one is
+     * exhausted.
+     */
+    private final class ConcatenatingIterator implements Iterator<SimpleFeature>, SimpleFeatureIterator {
+
+        private int index;
+
+        private SimpleFeatureIterator current;
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                if (index >= collections.size()) {
+                    return false;
+                }
+                current = collections.get(index++).features();
+            }
+            return true;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SimpleFeature feature = current.next();
+            if (feature.getFeatureType() == getSchema()) {
+                return feature;
+            }
+            return SimpleFeatureBuilder.retype(feature, getSchema());
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            index = collections.size();
+        }
+    }
+}
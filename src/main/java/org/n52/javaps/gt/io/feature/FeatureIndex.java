@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * An STR-tree over the default geometries of a feature collection. Features
+ * are inserted one by one, e.g. while a parser decodes them, and the tree
+ * is packed on the first query; no features can be inserted afterwards.
+ * <p>
+ * An index over a collection holds the position of each feature in the
+ * collection. The features of the hits are created from the rows of a
+ * {@link ColumnarFeatureCollection}; other collections, e.g. spilled to disk
+ * or backed by a data store, are read once per query to find the hits, so
+ * their features do not stay on the heap. An index created without a
+ * collection holds the inserted features themselves.
+ */
+public class FeatureIndex {
+
+    private final STRtree tree = new STRtree();
+
+    private final SimpleFeatureCollection rows;
+
+    private boolean built;
+
+    /**
+     * Creates an index holding features.
+     */
+    public FeatureIndex() {
+        this(null);
+    }
+
+    /**
+     * Creates an index holding the positions of the features of a
+     * collection.
+     *
+     * @param rows
+     *            the collection the features are read from, its iteration
+     *            order must not change
+     */
+    public FeatureIndex(SimpleFeatureCollection rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * @param features
+     *            the features
+     * @return an index of all features with a default geometry
+     */
+    public static FeatureIndex build(SimpleFeatureCollection features) {
+        FeatureIndex index = new FeatureIndex(features);
+        int row = 0;
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                index.insert(row++, getEnvelope(iterator.next()));
+            }
+        }
+        return index;
+    }
+
+    private static Envelope getEnvelope(SimpleFeature feature) {
+        Object geometry = feature.getDefaultGeometry();
+        return geometry instanceof Geometry ? ((Geometry) geometry).getEnvelopeInternal() : null;
+    }
+
+    /**
+     * @param feature
+     *            the feature, ignored if it has no default geometry
+     */
+    public synchronized void insert(SimpleFeature feature) {
+        if (rows != null) {
+            throw new IllegalStateException("The index holds positions of features in a collection.");
+        }
+        insert(getEnvelope(feature), feature);
+    }
+
+    /**
+     * @param row
+     *            the position of the feature in the collection
+     * @param envelope
+     *            the envelope of the default geometry of the feature, ignored
+     *            if <code>null</code> or empty
+     */
+    public synchronized void insert(int row,
+            Envelope envelope) {
+        if (rows == null) {
+            throw new IllegalStateException("The index holds features.");
+        }
+        insert(envelope, row);
+    }
+
+    private void insert(Envelope envelope,
+            Object item) {
+        if (built) {
+            throw new IllegalStateException("The index has been queried, no features can be inserted.");
+        }
+        if (envelope != null && !envelope.isNull()) {
+            tree.insert(envelope, item);
+        }
+    }
+
+    /**
+     * @param envelope
+     *            the envelope, in the coordinate reference system of the
+     *            features
+     * @return the features whose default geometry envelope intersects the
+     *         envelope
+     */
+    public synchronized List<SimpleFeature> query(Envelope envelope) {
+        built = true;
+        List<?> items = tree.query(envelope);
+        if (rows != null && !(rows instanceof ColumnarFeatureCollection)) {
+            return read(items);
+        }
+        List<SimpleFeature> features = new ArrayList<>(items.size());
+        for (Object item : items) {
+            features.add(item instanceof Integer ? ((ColumnarFeatureCollection) rows).get((Integer) item)
+                    : (SimpleFeature) item);
+        }
+        return features;
+    }
+
+    /**
+     * Reads the features at the given positions in one pass over the
+     * collection.
+     */
+    private List<SimpleFeature> read(List<?> items) {
+        int[] positions = new int[items.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = (Integer) items.get(i);
+        }
+        Arrays.sort(positions);
+        List<SimpleFeature> features = new ArrayList<>(positions.length);
+        if (positions.length == 0) {
+            return features;
+        }
+        int row = 0;
+        try (SimpleFeatureIterator iterator = rows.features()) {
+            while (iterator.hasNext() && features.size() < positions.length) {
+                SimpleFeature feature = iterator.next();
+                if (row++ == positions[features.size()]) {
+                    features.add(feature);
+                }
+            }
+        }
+        return features;
+    }
+
+    /**
+     * @param geometry
+     *            the geometry, in the coordinate reference system of the
+     *            features
+     * @return the features whose default geometry intersects the geometry
+     */
+    public List<SimpleFeature> queryIntersecting(Geometry geometry) {
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        List<SimpleFeature> features = new ArrayList<>();
+        for (SimpleFeature feature : query(geometry.getEnvelopeInternal())) {
+            if (prepared.intersects((Geometry) feature.getDefaultGeometry())) {
+                features.add(feature);
+            }
+        }
+        return features;
+    }
+
+    /**
+     * @return the number of indexed features
+     */
+    public synchronized int size() {
+        return tree.size();
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.n52.javaps.io.DecodingException;
+import org.n52.shetland.ogc.wps.Format;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+/**
+ * The part of an input a process uses: the features whose default geometry
+ * envelope intersects a bounding box, reduced to some attributes. It is
+ * read from the parameters of the input's media type, e.g.
+ * <code>application/x-zipped-shp; bbox=5,50,10,55; propertyname=NAME,TYPE</code>.
+ * The bounding box is given in the coordinate reference system of the
+ * features, the default geometry is always kept.
+ */
+public class FeatureSelection {
+
+    /** The media type parameter of the bounding box. */
+    public static final String BBOX = "bbox";
+
+    /** The media type parameter of the attribute names. */
+    public static final String PROPERTY_NAME = "propertyname";
+
+    /** Selects all features and attributes. */
+    public static final FeatureSelection ALL = new FeatureSelection(null, null);
+
+    private final Envelope bbox;
+
+    private final List<String> propertyNames;
+
+    /**
+     * @param bbox
+     *            the bounding box, <code>null</code> for all features
+     * @param propertyNames
+     *            the attributes to keep, <code>null</code> for all
+     */
+    public FeatureSelection(Envelope bbox,
+            List<String> propertyNames) {
+        this.bbox = bbox;
+        this.propertyNames = propertyNames != null ? Collections.unmodifiableList(new ArrayList<>(propertyNames))
+                : null;
+    }
+
+    /**
+     * @param format
+     *            the format of the input, may be <code>null</code>
+     * @return the selection from the media type parameters
+     * @throws DecodingException
+     *             if the bounding box is malformed
+     */
+    public static FeatureSelection fromFormat(Format format) throws DecodingException {
+        if (format == null || !format.getMimeType().isPresent()) {
+            return ALL;
+        }
+        return fromMimeType(format.getMimeType().get());
+    }
+
+    /**
+     * @param mimeType
+     *            the media type with parameters
+     * @return the selection from the media type parameters
+     * @throws DecodingException
+     *             if the bounding box has not four numbers
+     */
+    public static FeatureSelection fromMimeType(String mimeType) throws DecodingException {
+        Envelope bbox = null;
+        List<String> propertyNames = null;
+        String[] parameters = mimeType.split(";");
+        for (int i = 1; i < parameters.length; i++) {
+            int separator = parameters[i].indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String name = parameters[i].substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            String value = parameters[i].substring(separator + 1).trim().replace("\"", "");
+            if (BBOX.equals(name)) {
+                bbox = parseBBox(value);
+            } else if (PROPERTY_NAME.equals(name)) {
+                propertyNames = new ArrayList<>();
+                for (String propertyName : value.split(",")) {
+                    if (!propertyName.trim().isEmpty()) {
+                        propertyNames.add(propertyName.trim());
+                    }
+                }
+            }
+        }
+        return bbox == null && propertyNames == null ? ALL : new FeatureSelection(bbox, propertyNames);
+    }
+
+    /**
+     * Removes the selection parameters from the media type, so a handler
+     * that supports the plain media type is found for a selected input.
+     *
+     * @param format
+     *            the format of the input, may be <code>null</code>
+     * @return the format without the {@link #BBOX} and
+     *         {@link #PROPERTY_NAME} parameters
+     */
+    public static Format withoutSelection(Format format) {
+        if (format == null || !format.getMimeType().isPresent()) {
+            return format;
+        }
+        String[] parameters = format.getMimeType().get().split(";");
+        StringBuilder mimeType = new StringBuilder(parameters[0]);
+        for (int i = 1; i < parameters.length; i++) {
+            int separator = parameters[i].indexOf('=');
+            String name = separator < 0 ? "" : parameters[i].substring(0, separator).trim().toLowerCase(
+                    Locale.ROOT);
+            if (!BBOX.equals(name) && !PROPERTY_NAME.equals(name)) {
+                mimeType.append(';').append(parameters[i]);
+            }
+        }
+        return mimeType.length() == format.getMimeType().get().length() ? format : format.withMimeType(mimeType
+                .toString());
+    }
+
+    private static Envelope parseBBox(String value) throws DecodingException {
+        String[] ordinates = value.split(",");
+        if (ordinates.length != 4) {
+            throw new DecodingException("Expected minx,miny,maxx,maxy as bbox, got " + value);
+        }
+        try {
+            return new Envelope(Double.parseDouble(ordinates[0].trim()), Double.parseDouble(ordinates[2].trim()),
+                    Double.parseDouble(ordinates[1].trim()), Double.parseDouble(ordinates[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new DecodingException("Expected minx,miny,maxx,maxy as bbox, got " + value, e);
+        }
+    }
+
+    public Envelope getBBox() {
+        return bbox;
+    }
+
+    /**
+     * @return the attributes to keep, <code>null</code> for all
+     */
+    public List<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    /**
+     * @return whether all features and attributes are selected
+     */
+    public boolean isAll() {
+        return bbox == null && propertyNames == null;
+    }
+
+    /**
+     * @param feature
+     *            the feature
+     * @return whether the envelope of the default geometry intersects the
+     *         bounding box; features without geometry are only selected
+     *         without a bounding box
+     */
+    public boolean accepts(SimpleFeature feature) {
+        if (bbox == null) {
+            return true;
+        }
+        Object geometry = feature.getDefaultGeometry();
+        return geometry instanceof Geometry && bbox.intersects(((Geometry) geometry).getEnvelopeInternal());
+    }
+
+    /**
+     * @param featureType
+     *            the type of the features
+     * @return the type reduced to the default geometry and the selected
+     *         attributes it has, in their original order
+     */
+    public SimpleFeatureType project(SimpleFeatureType featureType) {
+        if (propertyNames == null) {
+            return featureType;
+        }
+        String[] names = getAttributeNames(featureType);
+        return names.length == featureType.getAttributeCount() ? featureType : SimpleFeatureTypeBuilder.retype(
+                featureType, names);
+    }
+
+    private String[] getAttributeNames(SimpleFeatureType featureType) {
+        GeometryDescriptor geometry = featureType.getGeometryDescriptor();
+        List<String> names = new ArrayList<>();
+        featureType.getAttributeDescriptors().forEach(descriptor -> {
+            String name = descriptor.getLocalName();
+            if (descriptor == geometry || propertyNames.contains(name)) {
+                names.add(name);
+            }
+        });
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Restricts a query on a data store to the selection, so the store can
+     * use its spatial index and skip unselected attributes.
+     *
+     * @param query
+     *            the query, changed in place
+     * @param featureType
+     *            the type of the queried features
+     * @return the query
+     */
+    public Query apply(Query query,
+            SimpleFeatureType featureType) {
+        GeometryDescriptor geometry = featureType.getGeometryDescriptor();
+        if (bbox != null && geometry != null) {
+            FilterFactory2 filterFactory = CommonFactoryFinder.getFilterFactory2();
+            query.setFilter(filterFactory.bbox(filterFactory.property(geometry.getLocalName()),
+                    new ReferencedEnvelope(bbox, geometry.getCoordinateReferenceSystem())));
+        } else if (bbox != null) {
+            query.setFilter(Filter.EXCLUDE);
+        }
+        if (propertyNames != null) {
+            query.setPropertyNames(getAttributeNames(featureType));
+        }
+        return query;
+    }
+
+    /**
+     * @param features
+     *            the features
+     * @return the selected features with the selected attributes, filtered
+     *         and copied while iterating
+     */
+    public SimpleFeatureCollection apply(SimpleFeatureCollection features) {
+        if (isAll() || features == null || features.getSchema() == null) {
+            return features;
+        }
+        SimpleFeatureType projected = project(features.getSchema());
+        return new DecoratingSimpleFeatureCollection(features) {
+            @Override
+            public SimpleFeatureType getSchema() {
+                return projected;
+            }
+
+            @Override
+            public SimpleFeatureIterator features() {
+                return new SelectingIterator(delegate.features(), projected);
+            }
+
+            @Override
+            public int size() {
+                return bbox == null ? delegate.size() : DataUtilities.count(this);
+            }
+
+            @Override
+            public ReferencedEnvelope getBounds() {
+                return bbox == null ? delegate.getBounds() : DataUtilities.bounds(this);
+            }
+        };
+    }
+
+    /**
+     * Skips the features outside the bounding box and retypes the others.
+     */
+    private final class SelectingIterator implements SimpleFeatureIterator {
+
+        private final SimpleFeatureIterator delegate;
+
+        private final SimpleFeatureType featureType;
+
+        private SimpleFeature next;
+
+        private SelectingIterator(SimpleFeatureIterator delegate,
+                SimpleFeatureType featureType) {
+            this.delegate = delegate;
+            this.featureType = featureType;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && delegate.hasNext()) {
+                SimpleFeature feature = delegate.next();
+                if (accepts(feature)) {
+                    next = feature.getFeatureType() == featureType ? feature : SimpleFeatureBuilder.retype(
+                            GeometryFixupFeatureCollection.materialize(feature), featureType);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SimpleFeature feature = next;
+            next = null;
+            return feature;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.util.List;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.DecoratingFeature;
+import org.geotools.feature.GeometryAttributeImpl;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.collection.DecoratingSimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.type.GeometryDescriptorImpl;
+import org.geotools.feature.type.GeometryTypeImpl;
+import org.geotools.filter.identity.GmlObjectIdImpl;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.GeometryType;
+import org.opengis.feature.type.Name;
+
+/**
+ * Provides a default geometry for parsed features that have none, e.g.
+ * because the schema declares the geometry as a plain attribute: the last
+ * attribute holding a {@link Geometry} becomes the default geometry. Which
+ * attributes may hold a geometry is decided once from the feature type, and
+ * a feature only looks at their values the first time its default geometry
+ * is requested.
+ * <p>
+ * If the type declares no default geometry, the schema of the collection
+ * declares the last of these attributes as default geometry. Copies of the
+ * features that keep the resolved geometry, e.g. in a
+ * {@link SpillingFeatureCollection}, are made with
+ * {@link #materialize(SimpleFeature)}.
+ */
+public class GeometryFixupFeatureCollection extends DecoratingSimpleFeatureCollection {
+
+    private final int[] candidates;
+
+    private final SimpleFeatureType schema;
+
+    private GeometryFixupFeatureCollection(SimpleFeatureCollection delegate,
+            int[] candidates) {
+        super(delegate);
+        this.candidates = candidates;
+        this.schema = createSchema(delegate.getSchema(), candidates[candidates.length - 1]);
+    }
+
+    /**
+     * @param features
+     *            the parsed features
+     * @return the features decorated to find their default geometry, or the
+     *         features if their type has no attribute besides the default
+     *         geometry that may hold one
+     */
+    public static SimpleFeatureCollection wrap(SimpleFeatureCollection features) {
+        if (features == null || features.getSchema() == null) {
+            return features;
+        }
+        int[] candidates = getCandidates(features.getSchema());
+        return candidates.length == 0 ? features : new GeometryFixupFeatureCollection(features, candidates);
+    }
+
+    /**
+     * @return the indexes of the attributes other than the default geometry
+     *         whose binding allows a geometry
+     */
+    private static int[] getCandidates(SimpleFeatureType featureType) {
+        GeometryDescriptor defaultGeometry = featureType.getGeometryDescriptor();
+        List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        int[] candidates = new int[descriptors.size()];
+        int count = 0;
+        for (int i = 0; i < descriptors.size(); i++) {
+            AttributeDescriptor descriptor = descriptors.get(i);
+            Class<?> binding = descriptor.getType().getBinding();
+            if (descriptor != defaultGeometry && (Geometry.class.isAssignableFrom(binding) || binding
+                    .isAssignableFrom(Geometry.class))) {
+                candidates[count++] = i;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(candidates, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * @return the type, or for a type without default geometry a copy
+     *         declaring the attribute at the given index as default geometry
+     */
+    private static SimpleFeatureType createSchema(SimpleFeatureType featureType,
+            int geometryIndex) {
+        if (featureType.getGeometryDescriptor() != null) {
+            return featureType;
+        }
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(featureType.getName());
+        builder.setCRS(featureType.getCoordinateReferenceSystem());
+        List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        for (int i = 0; i < descriptors.size(); i++) {
+            AttributeDescriptor descriptor = descriptors.get(i);
+            if (i == geometryIndex) {
+                Class<?> binding = descriptor.getType().getBinding();
+                builder.add(descriptor.getLocalName(), Geometry.class.isAssignableFrom(binding) ? binding
+                        : Geometry.class);
+                builder.setDefaultGeometry(descriptor.getLocalName());
+            } else {
+                builder.add(descriptor);
+            }
+        }
+        return builder.buildFeatureType();
+    }
+
+    /**
+     * Copies a feature returned by this collection, storing its resolved
+     * default geometry in the default geometry attribute of the
+     * {@link #getSchema() schema}. Other features are returned as they are.
+     *
+     * @param feature
+     *            a feature
+     * @return the copy, or the feature
+     */
+    public static SimpleFeature materialize(SimpleFeature feature) {
+        if (feature instanceof GeometryFixupFeature) {
+            return ((GeometryFixupFeature) feature).materialize();
+        }
+        return feature;
+    }
+
+    @Override
+    public SimpleFeatureType getSchema() {
+        return schema;
+    }
+
+    @Override
+    public SimpleFeatureIterator features() {
+        return new DecoratingSimpleFeatureIterator(delegate.features()) {
+            @Override
+            public SimpleFeature next() {
+                return new GeometryFixupFeature(super.next(), candidates, schema);
+            }
+        };
+    }
+
+    /**
+     * Resolves the default geometry on first access, changing an attribute
+     * resolves it again.
+     */
+    private static final class GeometryFixupFeature extends DecoratingFeature {
+
+        private final int[] candidates;
+
+        private final SimpleFeatureType schema;
+
+        private boolean resolved;
+
+        private GeometryAttribute defaultGeometry;
+
+        private GeometryFixupFeature(SimpleFeature delegate,
+                int[] candidates,
+                SimpleFeatureType schema) {
+            super(delegate);
+            this.candidates = candidates;
+            this.schema = schema;
+        }
+
+        private SimpleFeature materialize() {
+            GeometryAttribute attribute = resolve();
+            SimpleFeature copy = SimpleFeatureBuilder.build(schema, delegate.getAttributes(), delegate.getID());
+            copy.setDefaultGeometry(attribute != null ? attribute.getValue() : null);
+            copy.getUserData().putAll(delegate.getUserData());
+            return copy;
+        }
+
+        private GeometryAttribute resolve() {
+            if (resolved) {
+                return defaultGeometry;
+            }
+            resolved = true;
+            defaultGeometry = delegate.getDefaultGeometryProperty();
+            if (defaultGeometry != null && defaultGeometry.getValue() != null) {
+                return defaultGeometry;
+            }
+            for (int i = candidates.length - 1; i >= 0; i--) {
+                Object value = delegate.getAttribute(candidates[i]);
+                if (value instanceof Geometry) {
+                    defaultGeometry = createAttribute((Geometry) value, schema.getDescriptor(candidates[i]));
+                    break;
+                }
+            }
+            return defaultGeometry;
+        }
+
+        private GeometryAttribute createAttribute(Geometry geometry,
+                AttributeDescriptor descriptor) {
+            GeometryDescriptor geometryDescriptor;
+            if (descriptor instanceof GeometryDescriptor) {
+                geometryDescriptor = (GeometryDescriptor) descriptor;
+            } else {
+                Name name = descriptor.getName();
+                GeometryType type = new GeometryTypeImpl(name, geometry.getClass(), schema
+                        .getCoordinateReferenceSystem(), false, false, null, null, null);
+                geometryDescriptor = new GeometryDescriptorImpl(type, name, 0, 1, true, null);
+            }
+            return new GeometryAttributeImpl(geometry, geometryDescriptor, new GmlObjectIdImpl(delegate.getID()));
+        }
+
+        @Override
+        public SimpleFeatureType getFeatureType() {
+            return schema;
+        }
+
+        @Override
+        public SimpleFeatureType getType() {
+            return schema;
+        }
+
+        @Override
+        public Object getDefaultGeometry() {
+            GeometryAttribute attribute = resolve();
+            return attribute != null ? attribute.getValue() : null;
+        }
+
+        @Override
+        public GeometryAttribute getDefaultGeometryProperty() {
+            return resolve();
+        }
+
+        @Override
+        public void setDefaultGeometry(Object geometry) {
+            super.setDefaultGeometry(geometry);
+            resolved = false;
+        }
+
+        @Override
+        public void setDefaultGeometryProperty(GeometryAttribute geometryAttribute) {
+            super.setDefaultGeometryProperty(geometryAttribute);
+            resolved = false;
+        }
+
+        @Override
+        public void setAttribute(int index,
+                Object value) {
+            super.setAttribute(index, value);
+            resolved = false;
+        }
+
+        @Override
+        public void setAttribute(String path,
+                Object value) {
+            super.setAttribute(path, value);
+            resolved = false;
+        }
+
+        @Override
+        public void setAttribute(Name name,
+                Object value) {
+            super.setAttribute(name, value);
+            resolved = false;
+        }
+
+        @Override
+        public void setAttributes(List<Object> values) {
+            super.setAttributes(values);
+            resolved = false;
+        }
+
+        @Override
+        public void setAttributes(Object[] values) {
+            super.setAttributes(values);
+            resolved = false;
+        }
+    }
+
+}
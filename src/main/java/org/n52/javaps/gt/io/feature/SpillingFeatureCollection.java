@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.AbstractFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Geometry;
+import org.n52.javaps.gt.io.binary.VectorCodec;
+import org.n52.javaps.gt.io.binary.VectorCodec.FeatureStream;
+import org.n52.javaps.gt.io.binary.VectorCodec.FeatureWriter;
+import org.n52.javaps.gt.io.util.FileConstants;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A feature collection that keeps its features on the heap until their
+ * estimated size exceeds a budget. The features are then encoded with
+ * {@link VectorCodec} into a scratch file, and so are all features added
+ * later. Iterating over spilled features decodes them from a read only
+ * memory mapping of the scratch file, which is kept between iterations.
+ * <p>
+ * Features are copied when spilled: changes to features returned by an
+ * iterator are not kept. {@link #close()} deletes the scratch file; a
+ * collection that is not closed deletes it once it has been collected.
+ */
+public class SpillingFeatureCollection extends AbstractFeatureCollection implements Closeable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SpillingFeatureCollection.class);
+
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private static final int FEATURE_OVERHEAD = 96;
+
+    private static final int ATTRIBUTE_OVERHEAD = 16;
+
+    private static final int COORDINATE_SIZE = 48;
+
+    private static final ReferenceQueue<SpillingFeatureCollection> COLLECTED = new ReferenceQueue<>();
+
+    /**
+     * Keeps the references of unclosed scratch files reachable until they
+     * are enqueued.
+     */
+    private static final Set<Scratch> SCRATCHES = Collections.synchronizedSet(Collections.newSetFromMap(
+            new IdentityHashMap<Scratch, Boolean>()));
+
+    static {
+        Thread cleaner = new Thread(SpillingFeatureCollection::deleteCollectedScratchFiles,
+                "spilled-features-cleaner");
+        cleaner.setDaemon(true);
+        cleaner.start();
+    }
+
+    private final long heapBudget;
+
+    private final ReferencedEnvelope bounds;
+
+    private List<SimpleFeature> features = new ArrayList<>();
+
+    private long heapSize;
+
+    private int size;
+
+    private File scratchFile;
+
+    private Scratch scratch;
+
+    private FeatureWriter writer;
+
+    private int spilledCount;
+
+    private long mappedLength;
+
+    private List<MappedByteBuffer> segments;
+
+    /**
+     * @param featureType
+     *            the type of the features
+     * @param heapBudget
+     *            the estimated size in bytes of the features kept on the
+     *            heap
+     */
+    public SpillingFeatureCollection(SimpleFeatureType featureType,
+            long heapBudget) {
+        super(featureType);
+        this.heapBudget = heapBudget;
+        this.bounds = new ReferencedEnvelope(featureType.getCoordinateReferenceSystem());
+    }
+
+    public synchronized void add(SimpleFeature feature) {
+        Object geometry = feature.getDefaultGeometry();
+        if (geometry instanceof Geometry) {
+            bounds.expandToInclude(((Geometry) geometry).getEnvelopeInternal());
+        }
+        size++;
+        try {
+            if (writer != null) {
+                writer.write(conform(feature));
+                spilledCount++;
+                return;
+            }
+            features.add(feature);
+            heapSize += estimateSize(feature);
+            if (heapSize > heapBudget) {
+                spill();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not spill features to " + scratchFile, e);
+            throw new RuntimeException("Could not spill features.", e);
+        }
+    }
+
+    public void addAll(Iterable<SimpleFeature> features) {
+        for (SimpleFeature feature : features) {
+            add(feature);
+        }
+    }
+
+    /**
+     * @return whether the features were spilled to the scratch file
+     */
+    public synchronized boolean isSpilled() {
+        return scratchFile != null;
+    }
+
+    private void spill() throws IOException {
+        scratchFile = File.createTempFile("features", FileConstants.dot(FileConstants.SUFFIX_TMP), new File(
+                FileConstants.TMP_DIR_PATH));
+        LOGGER.debug("Spilling " + features.size() + " features of " + getSchema().getTypeName() + " to "
+                + scratchFile);
+        scratch = new Scratch(this, scratchFile, new FileOutputStream(scratchFile));
+        SCRATCHES.add(scratch);
+        writer = new VectorCodec().openWriter(getSchema(), scratch.output);
+        for (SimpleFeature feature : features) {
+            writer.write(conform(feature));
+        }
+        spilledCount = features.size();
+        features = null;
+        heapSize = 0;
+    }
+
+    /**
+     * Parsers may return features whose type lacks attributes of the
+     * collection type, those are encoded with the collection type.
+     */
+    private SimpleFeature conform(SimpleFeature feature) {
+        if (feature.getFeatureType() == getSchema() || feature.getFeatureType().equals(getSchema())) {
+            return feature;
+        }
+        return SimpleFeatureBuilder.retype(feature, getSchema());
+    }
+
+    /**
+     * A rough estimate of the heap used by a feature.
+     */
+    static long estimateSize(SimpleFeature feature) {
+        long estimate = FEATURE_OVERHEAD + 2L * feature.getID().length();
+        for (Object value : feature.getAttributes()) {
+            estimate += ATTRIBUTE_OVERHEAD;
+            if (value instanceof Geometry) {
+                estimate += FEATURE_OVERHEAD + (long) COORDINATE_SIZE * ((Geometry) value).getNumPoints();
+            } else if (value instanceof CharSequence) {
+                estimate += 2L * ((CharSequence) value).length();
+            }
+        }
+        return estimate;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized ReferencedEnvelope getBounds() {
+        return new ReferencedEnvelope(bounds);
+    }
+
+    @Override
+    protected synchronized Iterator<SimpleFeature> openIterator() {
+        if (writer == null) {
+            return new HeapIterator(features, features.size());
+        }
+        try {
+            writer.flush();
+            return new SpilledIterator(new VectorCodec().open(new SegmentInputStream(getSegments()), getSchema()),
+                    spilledCount);
+        } catch (IOException e) {
+            LOGGER.error("Could not read spilled features from " + scratchFile, e);
+            throw new RuntimeException("Could not read spilled features.", e);
+        }
+    }
+
+    /**
+     * Maps the scratch file again only if it grew since the last iteration.
+     */
+    private List<MappedByteBuffer> getSegments() throws IOException {
+        long length = scratchFile.length();
+        if (segments != null && length == mappedLength) {
+            return segments;
+        }
+        List<MappedByteBuffer> mapped = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(scratchFile, "r");
+                FileChannel channel = file.getChannel()) {
+            for (long position = 0; position < length; position += MAX_SEGMENT_SIZE) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_SEGMENT_SIZE, length
+                        - position)));
+            }
+        }
+        segments = mapped;
+        mappedLength = length;
+        return segments;
+    }
+
+    @Override
+    public synchronized void close() {
+        features = new ArrayList<>();
+        segments = null;
+        if (scratch != null) {
+            SCRATCHES.remove(scratch);
+            scratch.delete();
+            scratch = null;
+            writer = null;
+            scratchFile = null;
+        }
+        size = 0;
+        spilledCount = 0;
+        heapSize = 0;
+    }
+
+    private static void deleteCollectedScratchFiles() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Scratch collected = (Scratch) COLLECTED.remove();
+                if (SCRATCHES.remove(collected)) {
+                    LOGGER.debug("Deleting scratch file of unclosed collection " + collected.file);
+                    collected.delete();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The scratch file and its output stream, released once the collection
+     * is closed or collected.
+     */
+    private static final class Scratch extends PhantomReference<SpillingFeatureCollection> {
+
+        private final File file;
+
+        private final OutputStream output;
+
+        private Scratch(SpillingFeatureCollection collection,
+                File file,
+                OutputStream output) {
+            super(collection, COLLECTED);
+            this.file = file;
+            this.output = output;
+        }
+
+        private void delete() {
+            try {
+                output.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close " + file, e);
+            }
+            if (!file.delete()) {
+                LOGGER.debug("Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Iterates over the features on the heap when the iterator was opened,
+     * without copying them.
+     */
+    private static final class HeapIterator implements Iterator<SimpleFeature>, SimpleFeatureIterator {
+
+        private final List<SimpleFeature> features;
+
+        private final int count;
+
+        private int index;
+
+        private HeapIterator(List<SimpleFeature> features,
+                int count) {
+            this.features = features;
+            this.count = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (index >= count) {
+                throw new NoSuchElementException();
+            }
+            return features.get(index++);
+        }
+
+        @Override
+        public void close() {
+            index = count;
+        }
+    }
+
+    /**
+     * Iterates over the features spilled when the iterator was opened; the
+     * scratch file may hold more.
+     */
+    private static final class SpilledIterator implements Iterator<SimpleFeature>, SimpleFeatureIterator {
+
+        private final FeatureStream stream;
+
+        private int remaining;
+
+        private SpilledIterator(FeatureStream stream,
+                int count) {
+            this.stream = stream;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            return stream.next();
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+        }
+    }
+
+    /**
+     * Reads consecutive mapped segments, each iterator with its own
+     * positions.
+     */
+    private static final class SegmentInputStream extends InputStream {
+
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+
+        private int index;
+
+        private SegmentInputStream(List<MappedByteBuffer> segments) {
+            for (MappedByteBuffer segment : segments) {
+                buffers.add(segment.duplicate());
+            }
+        }
+
+        private ByteBuffer current() {
+            while (index < buffers.size() && !buffers.get(index).hasRemaining()) {
+                index++;
+            }
+            return index < buffers.size() ? buffers.get(index) : null;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = current();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b,
+                int off,
+                int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+
+}
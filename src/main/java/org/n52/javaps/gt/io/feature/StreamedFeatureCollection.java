@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.feature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.collection.AbstractFeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.xsd.PullParser;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.xml.sax.SAXException;
+
+/**
+ * Passes features on while they are read, e.g. by a {@link PullParser}, so the
+ * parsed document is never held in memory as a whole. The collection can be
+ * iterated once: it is meant to be handed to
+ * {@link org.n52.javaps.gt.io.GTHelper#createFeatureCollection(SimpleFeatureCollection)},
+ * which selects and copies the features, possibly to disk, as they are read.
+ * The schema is the type of the first feature.
+ */
+public class StreamedFeatureCollection extends AbstractFeatureCollection {
+
+    /**
+     * Reads features one by one.
+     */
+    public interface FeatureReader extends Closeable {
+
+        /**
+         * @return the next feature, <code>null</code> at the end
+         * @throws IOException
+         *             if the feature cannot be read
+         */
+        SimpleFeature read() throws IOException;
+    }
+
+    private final FeatureReader reader;
+
+    private SimpleFeature first;
+
+    private boolean opened;
+
+    private StreamedFeatureCollection(FeatureReader reader,
+            SimpleFeature first) {
+        super(first.getFeatureType());
+        this.reader = reader;
+        this.first = first;
+    }
+
+    /**
+     * Reads the first feature to determine the schema.
+     *
+     * @param reader
+     *            the reader, closed once the features are read
+     * @return the features, an empty collection without type if there are
+     *         none
+     * @throws IOException
+     *             if the first feature cannot be read
+     */
+    public static SimpleFeatureCollection read(FeatureReader reader) throws IOException {
+        SimpleFeature first;
+        try {
+            first = reader.read();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        return create(reader, first);
+    }
+
+    /**
+     * @param iterator
+     *            the iterator, e.g. of
+     *            {@link org.geotools.geojson.feature.FeatureJSON#streamFeatureCollection(Object)}
+     * @return the features, an empty collection without type if there are
+     *         none
+     * @throws IOException
+     *             if the first feature cannot be read
+     */
+    public static SimpleFeatureCollection read(final FeatureIterator<SimpleFeature> iterator) throws IOException {
+        return read(new FeatureReader() {
+            @Override
+            public SimpleFeature read() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() {
+                iterator.close();
+            }
+        });
+    }
+
+    /**
+     * Pulls the features of a GML or KML document. Features that contain
+     * other features, e.g. a KML Document or a GML feature collection that
+     * the configuration parses into a feature, are skipped, their members
+     * are returned as they are parsed.
+     *
+     * @param parser
+     *            the parser, created for {@link SimpleFeature} or the element
+     *            of the features
+     * @param input
+     *            the document the parser reads, closed once the features
+     *            are read
+     * @return the features, an empty collection without type if there are
+     *         none
+     * @throws IOException
+     *             if the document cannot be read
+     * @throws SAXException
+     *             if the first feature cannot be parsed
+     */
+    public static SimpleFeatureCollection pull(final PullParser parser,
+            final InputStream input) throws IOException, SAXException {
+        SimpleFeature first;
+        try {
+            first = pull(parser);
+        } catch (IOException | SAXException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+        return create(new FeatureReader() {
+            @Override
+            public SimpleFeature read() throws IOException {
+                try {
+                    return pull(parser);
+                } catch (SAXException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                input.close();
+            }
+        }, first);
+    }
+
+    private static SimpleFeature pull(PullParser parser) throws IOException, SAXException {
+        try {
+            for (Object parsed = parser.parse(); parsed != null; parsed = parser.parse()) {
+                if (parsed instanceof SimpleFeature && !isContainer((SimpleFeature) parsed)) {
+                    return (SimpleFeature) parsed;
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static boolean isContainer(SimpleFeature feature) {
+        for (Object value : feature.getAttributes()) {
+            if (value instanceof FeatureCollection) {
+                return true;
+            }
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    if (element instanceof Feature) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static SimpleFeatureCollection create(FeatureReader reader,
+            SimpleFeature first) throws IOException {
+        if (first == null) {
+            reader.close();
+            return new DefaultFeatureCollection(null, null);
+        }
+        return new StreamedFeatureCollection(reader, first);
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *             counting would consume the features
+     */
+    @Override
+    public int size() {
+        throw new UnsupportedOperationException("The features can only be read once.");
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     *             computing the bounds would consume the features
+     */
+    @Override
+    public ReferencedEnvelope getBounds() {
+        throw new UnsupportedOperationException("The features can only be read once.");
+    }
+
+    @Override
+    protected Iterator<SimpleFeature> openIterator() {
+        if (opened) {
+            throw new IllegalStateException("The features can only be read once.");
+        }
+        opened = true;
+        return new StreamingIterator();
+    }
+
+    /**
+     * Returns the first feature and then reads the others, closes the reader
+     * at the end.
+     */
+    private final class StreamingIterator implements Iterator<SimpleFeature>, SimpleFeatureIterator {
+
+        private SimpleFeature next = first;
+
+        private boolean closed;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) {
+                try {
+                    next = reader.read();
+                } catch (IOException e) {
+                    close();
+                    throw new RuntimeException(e);
+                }
+                if (next == null) {
+                    close();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SimpleFeature feature = next;
+            next = null;
+            first = null;
+            return feature;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,743 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.n52.javaps.gt.io.util.CompressionExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a {@link RenderedImage} as tiled, little endian (Geo)TIFF with the
+ * compression, predictor and tile size of a {@link GeoTiffWriteProfile}.
+ * The image file directories are written directly after the header with
+ * placeholder tile offsets and patched once all tiles are written, so the
+ * output stream has to be seekable. With a Cloud Optimized profile the
+ * output contains overviews and follows the COG layout. Tiles are read and
+ * compressed on the shared {@link CompressionExecutor}, at most as many at a
+ * time as the parallelism of the profile allows, and written in order, so the
+ * output does not depend on the number of threads. Images
+ * that may exceed 4 GB are written as BigTIFF.
+ * <p>
+ * Palette images and images whose samples are not 8, 16, 32 or 64 bits wide
+ * are not supported, see {@link #canEncode(RenderedImage)}; those are left to
+ * the GeoTools GeoTIFF writer.
+ */
+public class GeoTiffEncoder {
+
+    static final int NEW_SUBFILE_TYPE = 254;
+
+    static final int IMAGE_WIDTH = 256;
+
+    static final int IMAGE_LENGTH = 257;
+
+    static final int BITS_PER_SAMPLE = 258;
+
+    static final int COMPRESSION = 259;
+
+    static final int PHOTOMETRIC_INTERPRETATION = 262;
+
+    static final int SAMPLES_PER_PIXEL = 277;
+
+    static final int PLANAR_CONFIGURATION = 284;
+
+    static final int PREDICTOR = 317;
+
+    static final int TILE_WIDTH = 322;
+
+    static final int TILE_LENGTH = 323;
+
+    static final int TILE_OFFSETS = 324;
+
+    static final int TILE_BYTE_COUNTS = 325;
+
+    static final int EXTRA_SAMPLES = 338;
+
+    static final int SAMPLE_FORMAT = 339;
+
+    private static final int PHOTOMETRIC_MIN_IS_BLACK = 1;
+
+    private static final int PHOTOMETRIC_RGB = 2;
+
+    private static final int SAMPLE_FORMAT_UINT = 1;
+
+    private static final int SAMPLE_FORMAT_INT = 2;
+
+    private static final int SAMPLE_FORMAT_IEEEFP = 3;
+
+    private static final int EXTRA_SAMPLE_UNSPECIFIED = 0;
+
+    private static final int EXTRA_SAMPLE_ASSOCIATED_ALPHA = 1;
+
+    private static final int EXTRA_SAMPLE_UNASSOCIATED_ALPHA = 2;
+
+    private static final long SUBFILE_REDUCED_RESOLUTION = 1;
+
+    private static final int TIFF_VERSION = 42;
+
+    private static final int BIG_TIFF_VERSION = 43;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int BIG_HEADER_SIZE = 16;
+
+    private static final long DIRECTORY_RESERVE = 64 * 1024;
+
+    private static final String CLASSIC_TIFF_EXCEEDED = "Image exceeds the 4 GB limit of classic TIFF, "
+            + "enable BigTIFF output.";
+
+    private static Logger LOGGER = LoggerFactory.getLogger(GeoTiffEncoder.class);
+
+    private final GeoTiffWriteProfile profile;
+
+    public GeoTiffEncoder(GeoTiffWriteProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @param image
+     *            an image
+     * @return <code>true</code> if the image can be written by this encoder
+     */
+    public static boolean canEncode(RenderedImage image) {
+        if (image.getColorModel() instanceof IndexColorModel) {
+            return false;
+        }
+        return getSampleSize(image.getSampleModel()) > 0;
+    }
+
+    /**
+     * Writes the image. In Cloud Optimized mode the image is followed by
+     * overviews down to the size of a single tile; the directories of all
+     * levels come first, full resolution first, and the tiles of the smallest
+     * overview are written first, so a client can read the layout with one
+     * request and each level with contiguous ranges.
+     *
+     * @param image
+     *            the image
+     * @param tags
+     *            the GeoTIFF tags, <code>null</code> for a plain TIFF
+     * @param out
+     *            a seekable stream positioned at its start
+     * @throws IOException
+     *             if writing fails
+     */
+    public void encode(RenderedImage image,
+            GeoTiffTags tags,
+            ImageOutputStream out) throws IOException {
+        boolean bigTiff = useBigTiff(image);
+        List<TileLayout> levels = createLevels(image);
+        List<TiffDirectory> directories = createDirectories(levels, tags, bigTiff);
+        long[] directoryOffsets = getDirectoryOffsets(directories, bigTiff);
+
+        out.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(out, bigTiff);
+        writeDirectories(out, directories, directoryOffsets);
+
+        int parallelism = getParallelism();
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            TileLayout level = levels.get(i);
+            long[] offsets = new long[level.getTileCount()];
+            long[] byteCounts = new long[offsets.length];
+            encodeTiles(level, parallelism, (tile, data) -> {
+                offsets[tile] = out.getStreamPosition();
+                byteCounts[tile] = data.length;
+                out.write(data);
+                if (!bigTiff && out.getStreamPosition() > GeoTiffWriteProfile.CLASSIC_TIFF_LIMIT) {
+                    throw new IOException(CLASSIC_TIFF_EXCEEDED);
+                }
+            });
+            setTileOffsets(directories.get(i), offsets, byteCounts);
+        }
+        long end = out.getStreamPosition();
+
+        out.seek(directoryOffsets[0]);
+        writeDirectories(out, directories, directoryOffsets);
+        out.seek(end);
+        out.flush();
+    }
+
+    /**
+     * Encodes the image without a seekable destination. The compressed tiles
+     * are collected first, in memory up to the stream buffer size of the
+     * profile and in a temporary file beyond it, and then returned behind
+     * the header and directories. The layout is the same as written by
+     * {@link #encode(RenderedImage, GeoTiffTags, ImageOutputStream)}.
+     *
+     * @param image
+     *            the image
+     * @param tags
+     *            the GeoTIFF tags, <code>null</code> for a plain TIFF
+     * @return the encoded image, the stream has to be closed
+     * @throws IOException
+     *             if encoding fails
+     */
+    public InputStream encode(RenderedImage image,
+            GeoTiffTags tags) throws IOException {
+        boolean bigTiff = useBigTiff(image);
+        List<TileLayout> levels = createLevels(image);
+        List<TiffDirectory> directories = createDirectories(levels, tags, bigTiff);
+        long[] directoryOffsets = getDirectoryOffsets(directories, bigTiff);
+        int last = directories.size() - 1;
+        long dataOffset = directoryOffsets[last] + directories.get(last).getSize();
+
+        TileBuffer buffer = new TileBuffer(profile.getStreamBufferSize());
+        int parallelism = getParallelism();
+        try {
+            for (int i = last; i >= 0; i--) {
+                TileLayout level = levels.get(i);
+                long[] offsets = new long[level.getTileCount()];
+                long[] byteCounts = new long[offsets.length];
+                encodeTiles(level, parallelism, (tile, data) -> {
+                    offsets[tile] = dataOffset + buffer.append(data);
+                    byteCounts[tile] = data.length;
+                });
+                if (!bigTiff && dataOffset + buffer.size() > GeoTiffWriteProfile.CLASSIC_TIFF_LIMIT) {
+                    throw new IOException(CLASSIC_TIFF_EXCEEDED);
+                }
+                setTileOffsets(directories.get(i), offsets, byteCounts);
+            }
+
+            ByteArrayOutputStream head = new ByteArrayOutputStream((int) dataOffset);
+            try (ImageOutputStream out = new MemoryCacheImageOutputStream(head)) {
+                out.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+                writeHeader(out, bigTiff);
+                writeDirectories(out, directories, directoryOffsets);
+            }
+            return buffer.toInputStream(head.toByteArray());
+        } catch (IOException | RuntimeException e) {
+            buffer.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the parallelism of the profile, bounded by the threads of the
+     *         shared pool
+     */
+    private int getParallelism() {
+        return Math.min(profile.getParallelism(), CompressionExecutor.getThreads());
+    }
+
+    /**
+     * Encodes the tiles of a level and passes them to the sink in tile
+     * order. With a parallelism above 1, up to twice as many tiles are read
+     * and compressed on the shared pool ahead of the one being written.
+     */
+    private void encodeTiles(TileLayout level,
+            int parallelism,
+            TileSink sink) throws IOException {
+        int count = level.getTileCount();
+        if (parallelism <= 1 || count == 1) {
+            for (int tile = 0; tile < count; tile++) {
+                sink.accept(tile, level.encodeTile(tile));
+            }
+            return;
+        }
+        ExecutorService executor = CompressionExecutor.get();
+        int window = parallelism * 2;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            for (int tile = 0; tile < count; tile++) {
+                while (next < count && pending.size() < window) {
+                    int index = next++;
+                    pending.add(executor.submit(() -> level.encodeTile(index)));
+                }
+                sink.accept(tile, pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding tiles.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Could not encode tile.", cause);
+        } finally {
+            for (Future<byte[]> task : pending) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Estimates the size of the encoded image from its uncompressed tiles
+     * and the worst case ratio of the compression, before anything is
+     * encoded.
+     *
+     * @param image
+     *            the image
+     * @return an upper bound of the file size in bytes
+     */
+    public long estimateSize(RenderedImage image) {
+        SampleModel sampleModel = image.getSampleModel();
+        long bitsPerPixel = 0;
+        for (int band = 0; band < sampleModel.getNumBands(); band++) {
+            bitsPerPixel += sampleModel.getSampleSize(band);
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int tileSize = profile.getTileSize(width, height, sampleModel.getDataType(), sampleModel.getNumBands());
+        long tileBytes = (tileSize * (long) tileSize * bitsPerPixel + 7) / 8;
+        long maximumTileBytes = profile.getCompression().getMaximumSize(tileBytes);
+
+        long tiles = 0;
+        while (true) {
+            tiles += (long) ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize);
+            if (!profile.isCloudOptimized() || Math.max(width, height) <= tileSize) {
+                break;
+            }
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+        }
+        // tile offsets and byte counts, plus the other fields and tags
+        return tiles * (maximumTileBytes + 16) + DIRECTORY_RESERVE;
+    }
+
+    /**
+     * @param image
+     *            the image
+     * @return <code>true</code> if the image is written as BigTIFF, either
+     *         because the profile requires it or because the estimated size
+     *         exceeds the classic TIFF limit
+     */
+    public boolean useBigTiff(RenderedImage image) {
+        long estimatedSize = estimateSize(image);
+        boolean bigTiff = profile.useBigTiff(estimatedSize);
+        if (profile.getBigTiff() == null && bigTiff) {
+            LOGGER.info("Writing " + image.getWidth() + "x" + image.getHeight() + " image as BigTIFF, it may need "
+                    + estimatedSize + " bytes.");
+        } else if (!bigTiff && estimatedSize > GeoTiffWriteProfile.CLASSIC_TIFF_LIMIT) {
+            LOGGER.warn("BigTIFF output is disabled, but the image may need " + estimatedSize + " bytes.");
+        }
+        return bigTiff;
+    }
+
+    private List<TileLayout> createLevels(RenderedImage image) {
+        if (!canEncode(image)) {
+            throw new IllegalArgumentException("Unsupported image layout: " + image.getSampleModel());
+        }
+        List<TileLayout> levels = new ArrayList<>();
+        levels.add(new TileLayout(image));
+        if (profile.isCloudOptimized()) {
+            TileLayout level = levels.get(0);
+            while (Math.max(level.width, level.height) > level.tileSize) {
+                level = level.createOverview(profile.getOverviewResampling());
+                levels.add(level);
+            }
+        }
+        LOGGER.debug("Writing " + image.getWidth() + "x" + image.getHeight() + " image with " + (levels.size()
+                - 1) + " overviews and " + profile);
+        return levels;
+    }
+
+    private List<TiffDirectory> createDirectories(List<TileLayout> levels,
+            GeoTiffTags tags,
+            boolean bigTiff) {
+        List<TiffDirectory> directories = new ArrayList<>();
+        for (int i = 0; i < levels.size(); i++) {
+            directories.add(levels.get(i).createDirectory(i == 0 ? tags : null, i > 0, bigTiff));
+        }
+        return directories;
+    }
+
+    /**
+     * @return the offsets of the directories, which directly follow the
+     *         header
+     */
+    private long[] getDirectoryOffsets(List<TiffDirectory> directories,
+            boolean bigTiff) {
+        long[] offsets = new long[directories.size()];
+        long offset = bigTiff ? BIG_HEADER_SIZE : HEADER_SIZE;
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = offset;
+            offset += directories.get(i).getSize();
+        }
+        return offsets;
+    }
+
+    private void setTileOffsets(TiffDirectory directory,
+            long[] offsets,
+            long[] byteCounts) {
+        directory.put(directory.get(TILE_OFFSETS).withLongs(offsets));
+        directory.put(directory.get(TILE_BYTE_COUNTS).withLongs(byteCounts));
+    }
+
+    private void writeDirectories(ImageOutputStream out,
+            List<TiffDirectory> directories,
+            long[] offsets) throws IOException {
+        for (int i = 0; i < directories.size(); i++) {
+            directories.get(i).write(out, i + 1 < offsets.length ? offsets[i + 1] : 0);
+        }
+    }
+
+    private void writeHeader(ImageOutputStream out,
+            boolean bigTiff) throws IOException {
+        out.writeByte('I');
+        out.writeByte('I');
+        if (bigTiff) {
+            out.writeShort(BIG_TIFF_VERSION);
+            // offset size and padding
+            out.writeShort(8);
+            out.writeShort(0);
+            out.writeLong(BIG_HEADER_SIZE);
+        } else {
+            out.writeShort(TIFF_VERSION);
+            out.writeInt(HEADER_SIZE);
+        }
+    }
+
+    /**
+     * @return the number of bits per sample if all bands share it and it is
+     *         supported, otherwise 0
+     */
+    private static int getSampleSize(SampleModel sampleModel) {
+        int size = sampleModel.getSampleSize(0);
+        for (int band = 1; band < sampleModel.getNumBands(); band++) {
+            if (sampleModel.getSampleSize(band) != size) {
+                return 0;
+            }
+        }
+        int dataType = sampleModel.getDataType();
+        switch (size) {
+        case 8:
+            return dataType == DataBuffer.TYPE_BYTE || dataType == DataBuffer.TYPE_INT ? size : 0;
+        case 16:
+            return dataType == DataBuffer.TYPE_USHORT || dataType == DataBuffer.TYPE_SHORT ? size : 0;
+        case 32:
+            return dataType == DataBuffer.TYPE_INT || dataType == DataBuffer.TYPE_FLOAT ? size : 0;
+        case 64:
+            return dataType == DataBuffer.TYPE_DOUBLE ? size : 0;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Receives encoded tiles in tile order.
+     */
+    @FunctionalInterface
+    private interface TileSink {
+
+        void accept(int tile,
+                byte[] data) throws IOException;
+    }
+
+    /**
+     * Sample layout and tiling of one resolution level.
+     */
+    private final class TileLayout {
+
+        private final Function<Rectangle, Raster> source;
+
+        private final SampleModel sampleModel;
+
+        private final ColorModel colorModel;
+
+        private final int minX;
+
+        private final int minY;
+
+        private final int width;
+
+        private final int height;
+
+        private final int dataType;
+
+        private final int bands;
+
+        private final int bytesPerSample;
+
+        private final int tileSize;
+
+        private final int tilesAcross;
+
+        private final int tilesDown;
+
+        private final TiffPredictor predictor;
+
+        TileLayout(RenderedImage image) {
+            this(image::getData, image.getSampleModel(), image.getColorModel(), image.getMinX(), image.getMinY(),
+                    image.getWidth(), image.getHeight(), 0);
+        }
+
+        private TileLayout(Function<Rectangle, Raster> source,
+                SampleModel sampleModel,
+                ColorModel colorModel,
+                int minX,
+                int minY,
+                int width,
+                int height,
+                int tileSize) {
+            this.source = source;
+            this.sampleModel = sampleModel;
+            this.colorModel = colorModel;
+            this.minX = minX;
+            this.minY = minY;
+            this.width = width;
+            this.height = height;
+            this.bands = sampleModel.getNumBands();
+            this.bytesPerSample = getSampleSize(sampleModel) / 8;
+            // 8 bit samples packed into ints are written as bytes
+            this.dataType = bytesPerSample == 1 ? DataBuffer.TYPE_BYTE : sampleModel.getDataType();
+            // overviews share the tile size of the full resolution image
+            this.tileSize = tileSize > 0 ? tileSize : profile.getTileSize(width, height, dataType, bands);
+            this.tilesAcross = (width + this.tileSize - 1) / this.tileSize;
+            this.tilesDown = (height + this.tileSize - 1) / this.tileSize;
+            this.predictor = profile.getPredictor(dataType);
+        }
+
+        int getTileCount() {
+            return tilesAcross * tilesDown;
+        }
+
+        /**
+         * Creates the next overview level. Its tiles are computed when they
+         * are encoded, each from the matching region of this level read in
+         * strips, so no level is held in memory as a whole.
+         */
+        TileLayout createOverview(OverviewResampling resampling) {
+            int overviewWidth = (width + 1) / 2;
+            int overviewHeight = (height + 1) / 2;
+            return new TileLayout(rectangle -> reduce(rectangle, resampling), sampleModel
+                    .createCompatibleSampleModel(overviewWidth, overviewHeight), colorModel, 0, 0, overviewWidth,
+                    overviewHeight, tileSize);
+        }
+
+        /**
+         * @param rectangle
+         *            a region of the next overview level
+         * @return the region, computed from twice its size of this level
+         */
+        private Raster reduce(Rectangle rectangle,
+                OverviewResampling resampling) {
+            WritableRaster overview = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(
+                    rectangle.width, rectangle.height), rectangle.getLocation());
+            boolean integral = dataType != DataBuffer.TYPE_FLOAT && dataType != DataBuffer.TYPE_DOUBLE;
+
+            int sourceX = minX + 2 * rectangle.x;
+            int sourceY = minY + 2 * rectangle.y;
+            int sourceWidth = Math.min(2 * rectangle.width, minX + width - sourceX);
+            int sourceHeight = Math.min(2 * rectangle.height, minY + height - sourceY);
+            double[] upper = new double[sourceWidth * bands];
+            double[] lower = new double[sourceWidth * bands];
+            double[] target = new double[rectangle.width * bands];
+            int stripHeight = Math.max(2, tileSize & ~1);
+            for (int stripY = 0; stripY < sourceHeight; stripY += stripHeight) {
+                int rows = Math.min(stripHeight, sourceHeight - stripY);
+                Raster strip = source.apply(new Rectangle(sourceX, sourceY + stripY, sourceWidth, rows));
+                for (int row = 0; row < rows; row += 2) {
+                    strip.getPixels(sourceX, sourceY + stripY + row, sourceWidth, 1, upper);
+                    strip.getPixels(sourceX, sourceY + stripY + Math.min(row + 1, rows - 1), sourceWidth, 1, lower);
+                    resampling.reduce(upper, lower, sourceWidth, bands, integral, target);
+                    overview.setPixels(rectangle.x, rectangle.y + (stripY + row) / 2, rectangle.width, 1, target);
+                }
+            }
+            return overview;
+        }
+
+        TiffDirectory createDirectory(GeoTiffTags tags,
+                boolean reducedResolution,
+                boolean bigTiff) {
+            TiffDirectory directory = new TiffDirectory(bigTiff);
+            if (reducedResolution) {
+                directory.put(TiffField.ofLongs(NEW_SUBFILE_TYPE, TiffField.LONG, SUBFILE_REDUCED_RESOLUTION));
+            }
+            directory.put(TiffField.ofLongs(IMAGE_WIDTH, TiffField.LONG, width));
+            directory.put(TiffField.ofLongs(IMAGE_LENGTH, TiffField.LONG, height));
+
+            int[] bitsPerSample = new int[bands];
+            int[] sampleFormat = new int[bands];
+            for (int band = 0; band < bands; band++) {
+                bitsPerSample[band] = bytesPerSample * 8;
+                sampleFormat[band] = getSampleFormat();
+            }
+            directory.put(TiffField.ofShorts(BITS_PER_SAMPLE, bitsPerSample));
+            directory.put(TiffField.ofShorts(SAMPLE_FORMAT, sampleFormat));
+            directory.put(TiffField.ofShorts(COMPRESSION, profile.getCompression().getCode()));
+            directory.put(TiffField.ofShorts(SAMPLES_PER_PIXEL, bands));
+            directory.put(TiffField.ofShorts(PLANAR_CONFIGURATION, 1));
+            if (predictor != TiffPredictor.NONE) {
+                directory.put(TiffField.ofShorts(PREDICTOR, predictor.getCode()));
+            }
+
+            boolean rgb = colorModel != null && colorModel.getColorSpace().getType() == ColorSpace.TYPE_RGB
+                    && bands >= 3;
+            int colorBands = rgb ? 3 : 1;
+            directory.put(TiffField.ofShorts(PHOTOMETRIC_INTERPRETATION, rgb ? PHOTOMETRIC_RGB
+                    : PHOTOMETRIC_MIN_IS_BLACK));
+            if (bands > colorBands) {
+                int[] extraSamples = new int[bands - colorBands];
+                if (colorModel != null && colorModel.hasAlpha()) {
+                    extraSamples[0] = colorModel.isAlphaPremultiplied() ? EXTRA_SAMPLE_ASSOCIATED_ALPHA
+                            : EXTRA_SAMPLE_UNASSOCIATED_ALPHA;
+                }
+                for (int i = 1; i < extraSamples.length; i++) {
+                    extraSamples[i] = EXTRA_SAMPLE_UNSPECIFIED;
+                }
+                directory.put(TiffField.ofShorts(EXTRA_SAMPLES, extraSamples));
+            }
+
+            directory.put(TiffField.ofLongs(TILE_WIDTH, TiffField.LONG, tileSize));
+            directory.put(TiffField.ofLongs(TILE_LENGTH, TiffField.LONG, tileSize));
+            int offsetType = bigTiff ? TiffField.LONG8 : TiffField.LONG;
+            directory.put(TiffField.ofLongs(TILE_OFFSETS, offsetType, new long[getTileCount()]));
+            directory.put(TiffField.ofLongs(TILE_BYTE_COUNTS, offsetType, new long[getTileCount()]));
+
+            if (tags != null) {
+                for (TiffField field : tags.getFields()) {
+                    directory.put(field);
+                }
+            }
+            return directory;
+        }
+
+        private int getSampleFormat() {
+            switch (dataType) {
+            case DataBuffer.TYPE_FLOAT:
+            case DataBuffer.TYPE_DOUBLE:
+                return SAMPLE_FORMAT_IEEEFP;
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_INT:
+                return SAMPLE_FORMAT_INT;
+            default:
+                return SAMPLE_FORMAT_UINT;
+            }
+        }
+
+        byte[] encodeTile(int index) {
+            byte[] tile = readTile(index % tilesAcross, index / tilesAcross);
+            predictor.apply(tile, tileSize, tileSize, bands, bytesPerSample);
+            return profile.getCompression().compress(tile, tileSize * bands * bytesPerSample, profile
+                    .getCompressionLevel());
+        }
+
+        /**
+         * Reads a tile as little endian, pixel interleaved samples. Tiles at
+         * the right and bottom edge are padded with zeros.
+         */
+        private byte[] readTile(int tileX,
+                int tileY) {
+            int x = minX + tileX * tileSize;
+            int y = minY + tileY * tileSize;
+            int tileWidth = Math.min(tileSize, minX + width - x);
+            int tileHeight = Math.min(tileSize, minY + height - y);
+            Raster raster = source.apply(new Rectangle(x, y, tileWidth, tileHeight));
+
+            int rowLength = tileSize * bands * bytesPerSample;
+            byte[] tile = new byte[rowLength * tileSize];
+            ByteBuffer buffer = ByteBuffer.wrap(tile).order(ByteOrder.LITTLE_ENDIAN);
+            int samples = tileWidth * bands;
+            switch (dataType) {
+            case DataBuffer.TYPE_FLOAT:
+                float[] floats = new float[samples];
+                for (int row = 0; row < tileHeight; row++) {
+                    raster.getPixels(x, y + row, tileWidth, 1, floats);
+                    buffer.position(row * rowLength);
+                    buffer.asFloatBuffer().put(floats);
+                }
+                break;
+            case DataBuffer.TYPE_DOUBLE:
+                double[] doubles = new double[samples];
+                for (int row = 0; row < tileHeight; row++) {
+                    raster.getPixels(x, y + row, tileWidth, 1, doubles);
+                    buffer.position(row * rowLength);
+                    buffer.asDoubleBuffer().put(doubles);
+                }
+                break;
+            default:
+                int[] ints = new int[samples];
+                for (int row = 0; row < tileHeight; row++) {
+                    raster.getPixels(x, y + row, tileWidth, 1, ints);
+                    int position = row * rowLength;
+                    for (int i = 0; i < samples; i++) {
+                        int value = ints[i];
+                        tile[position++] = (byte) value;
+                        if (bytesPerSample > 1) {
+                            tile[position++] = (byte) (value >> 8);
+                        }
+                        if (bytesPerSample > 2) {
+                            tile[position++] = (byte) (value >> 16);
+                            tile[position++] = (byte) (value >> 24);
+                        }
+                    }
+                }
+                break;
+            }
+            return tile;
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.opengis.coverage.grid.GridCoverage;
+import org.opengis.metadata.spatial.PixelOrientation;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.referencing.datum.PixelInCell;
+import org.opengis.referencing.operation.MathTransform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The georeferencing fields of a GeoTIFF (model transformation, tie points,
+ * GeoKey directory, GDAL metadata and no data value).
+ * <p>
+ * The fields are produced by the GeoTools GeoTIFF writer for a single pixel
+ * coverage with the grid geometry of the original coverage, so the CRS
+ * encoding stays exactly the one of GeoTools while the pixels are written by
+ * {@link GeoTiffEncoder}.
+ */
+public final class GeoTiffTags {
+
+    static final int MODEL_PIXEL_SCALE = 33550;
+
+    static final int MODEL_TIEPOINT = 33922;
+
+    static final int MODEL_TRANSFORMATION = 34264;
+
+    static final int GEO_KEY_DIRECTORY = 34735;
+
+    static final int GEO_DOUBLE_PARAMS = 34736;
+
+    static final int GEO_ASCII_PARAMS = 34737;
+
+    static final int GDAL_METADATA = 42112;
+
+    static final int GDAL_NODATA = 42113;
+
+    private static final Set<Integer> GEO_TAGS = new HashSet<>(Arrays.asList(MODEL_PIXEL_SCALE, MODEL_TIEPOINT,
+            MODEL_TRANSFORMATION, GEO_KEY_DIRECTORY, GEO_DOUBLE_PARAMS, GEO_ASCII_PARAMS, GDAL_METADATA,
+            GDAL_NODATA));
+
+    private static Logger LOGGER = LoggerFactory.getLogger(GeoTiffTags.class);
+
+    private final List<TiffField> fields;
+
+    private GeoTiffTags(List<TiffField> fields) {
+        this.fields = Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * Derives the GeoTIFF fields of a coverage.
+     *
+     * @param coverage
+     *            the coverage
+     * @return the fields, <code>null</code> if the grid to world
+     *         transformation of the coverage is not affine
+     * @throws IOException
+     *             if the fields could not be created
+     */
+    public static GeoTiffTags fromCoverage(GridCoverage2D coverage) throws IOException {
+        MathTransform gridToCRS = coverage.getGridGeometry().getGridToCRS2D(PixelOrientation.UPPER_LEFT);
+        if (!(gridToCRS instanceof AffineTransform)) {
+            LOGGER.debug("Grid to world transformation is not affine: " + gridToCRS);
+            return null;
+        }
+        AffineTransform transform = new AffineTransform((AffineTransform) gridToCRS);
+        // the encoder writes the image starting at its minimum pixel
+        transform.translate(coverage.getRenderedImage().getMinX(), coverage.getRenderedImage().getMinY());
+
+        BufferedImage pixel = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        GridGeometry2D gridGeometry = new GridGeometry2D(new GridEnvelope2D(0, 0, 1, 1), PixelInCell.CELL_CORNER,
+                new AffineTransform2D(transform), coverage.getCoordinateReferenceSystem(), null);
+        GridCoverage template = new GridCoverageFactory().create(coverage.getName().toString(), pixel,
+                gridGeometry, null, null, coverage.getProperties());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes);
+        GeoTiffWriter writer = new GeoTiffWriter(out);
+        try {
+            writer.write(template, new GeneralParameterValue[0]);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes
+                .toByteArray()))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads the GeoTIFF fields of the first image file directory of a
+     * (Big)TIFF.
+     *
+     * @param in
+     *            the stream positioned at the start of the file
+     * @return the fields
+     * @throws IOException
+     *             if the stream is not a TIFF
+     */
+    public static GeoTiffTags read(ImageInputStream in) throws IOException {
+        return new GeoTiffTags(readFields(in, GEO_TAGS));
+    }
+
+    /**
+     * Reads fields of the first image file directory of a (Big)TIFF and sets
+     * the byte order of the stream to the one of the file.
+     *
+     * @param in
+     *            the stream positioned at the start of the file
+     * @param tags
+     *            the tags of the fields to read
+     * @return the fields present in the directory
+     * @throws IOException
+     *             if the stream is not a TIFF
+     */
+    static List<TiffField> readFields(ImageInputStream in,
+            Set<Integer> tags) throws IOException {
+        int order = in.readUnsignedShort();
+        if (order == 0x4949) {
+            in.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        } else if (order == 0x4D4D) {
+            in.setByteOrder(ByteOrder.BIG_ENDIAN);
+        } else {
+            throw new IOException("Not a TIFF file.");
+        }
+        int version = in.readUnsignedShort();
+        boolean bigTiff = version == 43;
+        if (!bigTiff && version != 42) {
+            throw new IOException("Unknown TIFF version " + version);
+        }
+        long directoryOffset;
+        if (bigTiff) {
+            in.skipBytes(4);
+            directoryOffset = in.readLong();
+        } else {
+            directoryOffset = in.readUnsignedInt();
+        }
+
+        in.seek(directoryOffset);
+        long entries = bigTiff ? in.readLong() : in.readUnsignedShort();
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+        List<TiffField> fields = new ArrayList<>();
+        for (long i = 0; i < entries; i++) {
+            long entryStart = directoryOffset + (bigTiff ? 8 : 2) + i * entrySize;
+            in.seek(entryStart);
+            int tag = in.readUnsignedShort();
+            int type = in.readUnsignedShort();
+            long count = bigTiff ? in.readLong() : in.readUnsignedInt();
+            if (!tags.contains(tag)) {
+                continue;
+            }
+            long valueSize = count * TiffField.getTypeSize(type);
+            if (valueSize > inlineSize) {
+                in.seek(bigTiff ? in.readLong() : in.readUnsignedInt());
+            }
+            fields.add(readValues(in, tag, type, (int) count));
+        }
+        return fields;
+    }
+
+    private static TiffField readValues(ImageInputStream in,
+            int tag,
+            int type,
+            int count) throws IOException {
+        switch (type) {
+        case TiffField.SHORT:
+        case TiffField.SSHORT:
+        case TiffField.LONG:
+        case TiffField.SLONG:
+        case TiffField.LONG8:
+        case TiffField.SLONG8:
+        case TiffField.RATIONAL:
+        case TiffField.SRATIONAL:
+            int values = type == TiffField.RATIONAL || type == TiffField.SRATIONAL ? count * 2 : count;
+            long[] longs = new long[values];
+            for (int i = 0; i < values; i++) {
+                switch (type) {
+                case TiffField.SHORT:
+                    longs[i] = in.readUnsignedShort();
+                    break;
+                case TiffField.SSHORT:
+                    longs[i] = in.readShort();
+                    break;
+                case TiffField.LONG:
+                case TiffField.RATIONAL:
+                    longs[i] = in.readUnsignedInt();
+                    break;
+                case TiffField.SLONG:
+                case TiffField.SRATIONAL:
+                    longs[i] = in.readInt();
+                    break;
+                default:
+                    longs[i] = in.readLong();
+                    break;
+                }
+            }
+            return TiffField.of(tag, type, count, longs, null, null);
+        case TiffField.FLOAT:
+        case TiffField.DOUBLE:
+            double[] doubles = new double[count];
+            for (int i = 0; i < count; i++) {
+                doubles[i] = type == TiffField.FLOAT ? in.readFloat() : in.readDouble();
+            }
+            return TiffField.ofDoubles(tag, type, doubles);
+        default:
+            byte[] bytes = new byte[count * TiffField.getTypeSize(type)];
+            in.readFully(bytes);
+            return TiffField.of(tag, type, count, null, null, bytes);
+        }
+    }
+
+    List<TiffField> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "GeoTiffTags " + fields;
+    }
+
+}
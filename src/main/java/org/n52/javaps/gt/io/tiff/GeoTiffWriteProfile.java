@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.awt.image.DataBuffer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Compression, predictor and tiling settings for GeoTIFF output. By default
+ * no predictor is used, like the previous writer. With the predictor set to
+ * <code>auto</code> it is chosen per image: integer rasters use horizontal
+ * differencing, floating point rasters the floating point predictor. The tile
+ * size is chosen per image when it is not set: tiles are a power of two between
+ * 16 and 512 pixels, small enough that an uncompressed tile stays below 1 MB
+ * and not larger than the image requires.
+ * <p>
+ * Cloud Optimized output adds overviews, computed with the configured
+ * resampling method, until the smallest one fits into a single tile.
+ */
+public class GeoTiffWriteProfile {
+
+    public static final String COMPRESSION = "compression";
+
+    public static final String PREDICTOR = "predictor";
+
+    public static final String TILE_SIZE = "tilesize";
+
+    public static final String COMPRESSION_LEVEL = "compressionlevel";
+
+    public static final String CLOUD_OPTIMIZED = "cog";
+
+    public static final String OVERVIEW_RESAMPLING = "overviewresampling";
+
+    public static final String STREAM_BUFFER_SIZE = "streambuffersizemb";
+
+    public static final String THREADS = "threads";
+
+    public static final String BIG_TIFF = "bigtiff";
+
+    /**
+     * The largest offset of a classic TIFF file.
+     */
+    public static final long CLASSIC_TIFF_LIMIT = 0xFFFFFFFFL;
+
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    public static final long DEFAULT_STREAM_BUFFER_SIZE = 64L * 1024 * 1024;
+
+    private static final String AUTO = "AUTO";
+
+    private static final int MIN_TILE_SIZE = 16;
+
+    private static final int MAX_TILE_SIZE = 4096;
+
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final int LARGE_TILE_SIZE = 512;
+
+    private static final int LARGE_IMAGE_SIZE = 8192;
+
+    private static final long MAX_TILE_BYTES = 1024 * 1024;
+
+    private TiffCompression compression = TiffCompression.LZW;
+
+    private TiffPredictor predictor = TiffPredictor.NONE;
+
+    private int tileSize;
+
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+
+    private boolean cloudOptimized;
+
+    private OverviewResampling overviewResampling = OverviewResampling.AVERAGE;
+
+    private long streamBufferSize = DEFAULT_STREAM_BUFFER_SIZE;
+
+    private int threads;
+
+    private Boolean bigTiff;
+
+    /**
+     * Reads a profile from handler properties, missing or empty values keep
+     * their defaults.
+     *
+     * @param properties
+     *            the handler properties, may be <code>null</code>
+     * @return the profile
+     */
+    public static GeoTiffWriteProfile fromProperties(JsonNode properties) {
+        GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+        if (properties == null) {
+            return profile;
+        }
+        if (properties.hasNonNull(COMPRESSION)) {
+            profile.setCompression(TiffCompression.fromName(properties.get(COMPRESSION).asText()));
+        }
+        if (properties.hasNonNull(PREDICTOR)) {
+            String name = properties.get(PREDICTOR).asText().trim().toUpperCase().replace("FLOATINGPOINT",
+                    TiffPredictor.FLOATING_POINT.name());
+            profile.setPredictor(name.isEmpty() || name.equals(AUTO) ? null : TiffPredictor.valueOf(name));
+        }
+        if (properties.hasNonNull(TILE_SIZE)) {
+            profile.setTileSize(properties.get(TILE_SIZE).asInt());
+        }
+        if (properties.hasNonNull(COMPRESSION_LEVEL)) {
+            profile.setCompressionLevel(properties.get(COMPRESSION_LEVEL).asInt(DEFAULT_COMPRESSION_LEVEL));
+        }
+        if (properties.hasNonNull(CLOUD_OPTIMIZED)) {
+            profile.setCloudOptimized(properties.get(CLOUD_OPTIMIZED).asBoolean());
+        }
+        if (properties.hasNonNull(OVERVIEW_RESAMPLING)) {
+            profile.setOverviewResampling(OverviewResampling.fromName(properties.get(OVERVIEW_RESAMPLING)
+                    .asText()));
+        }
+        if (properties.hasNonNull(STREAM_BUFFER_SIZE)) {
+            profile.setStreamBufferSize(properties.get(STREAM_BUFFER_SIZE).asLong() * 1024 * 1024);
+        }
+        if (properties.hasNonNull(THREADS)) {
+            profile.setThreads(properties.get(THREADS).asInt());
+        }
+        if (properties.hasNonNull(BIG_TIFF)) {
+            String value = properties.get(BIG_TIFF).asText().trim().toUpperCase();
+            profile.setBigTiff(value.isEmpty() || value.equals(AUTO) ? null : Boolean.valueOf(value));
+        }
+        return profile;
+    }
+
+    public TiffCompression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(TiffCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return the configured predictor, <code>null</code> to choose one per
+     *         image
+     */
+    public TiffPredictor getPredictor() {
+        return predictor;
+    }
+
+    public void setPredictor(TiffPredictor predictor) {
+        this.predictor = predictor;
+    }
+
+    /**
+     * @return the configured tile size, 0 to choose one per image
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return <code>true</code> if the output is laid out as Cloud Optimized
+     *         GeoTIFF with internal overviews
+     */
+    public boolean isCloudOptimized() {
+        return cloudOptimized;
+    }
+
+    public void setCloudOptimized(boolean cloudOptimized) {
+        this.cloudOptimized = cloudOptimized;
+    }
+
+    public OverviewResampling getOverviewResampling() {
+        return overviewResampling;
+    }
+
+    public void setOverviewResampling(OverviewResampling overviewResampling) {
+        this.overviewResampling = overviewResampling;
+    }
+
+    /**
+     * @return the number of bytes of compressed tiles kept in memory when
+     *         encoding to a stream, larger outputs are buffered in a
+     *         temporary file
+     */
+    public long getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    public void setStreamBufferSize(long streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    /**
+     * @return the configured number of tile encoding threads, 0 for one per
+     *         available processor
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return the number of threads to encode tiles with
+     */
+    public int getParallelism() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return <code>true</code> or <code>false</code> to force or prevent
+     *         BigTIFF output, <code>null</code> to choose it by size
+     */
+    public Boolean getBigTiff() {
+        return bigTiff;
+    }
+
+    public void setBigTiff(Boolean bigTiff) {
+        this.bigTiff = bigTiff;
+    }
+
+    /**
+     * @param estimatedSize
+     *            an upper bound of the size of the output
+     * @return <code>true</code> if the output is written as BigTIFF
+     */
+    public boolean useBigTiff(long estimatedSize) {
+        return bigTiff != null ? bigTiff : estimatedSize > CLASSIC_TIFF_LIMIT;
+    }
+
+    /**
+     * @param dataType
+     *            the {@link DataBuffer} type of the image
+     * @return the predictor to use for the image; readers ignore predictors
+     *         of uncompressed and PackBits data, and the floating point
+     *         predictor is only used for floating point data
+     */
+    public TiffPredictor getPredictor(int dataType) {
+        if (compression == TiffCompression.NONE || compression == TiffCompression.PACKBITS) {
+            return TiffPredictor.NONE;
+        }
+        boolean floatingPoint = dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE;
+        if (predictor != null) {
+            return predictor == TiffPredictor.FLOATING_POINT && !floatingPoint ? TiffPredictor.HORIZONTAL
+                    : predictor;
+        }
+        return floatingPoint ? TiffPredictor.FLOATING_POINT : TiffPredictor.HORIZONTAL;
+    }
+
+    /**
+     * @param width
+     *            the image width
+     * @param height
+     *            the image height
+     * @param dataType
+     *            the {@link DataBuffer} type of the image
+     * @param bands
+     *            the number of bands
+     * @return the tile width and height to use, always a power of two and a
+     *         multiple of 16 as required by TIFF
+     */
+    public int getTileSize(int width,
+            int height,
+            int dataType,
+            int bands) {
+        if (tileSize > 0) {
+            int size = Integer.highestOneBit(tileSize);
+            return Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, size));
+        }
+        long bytesPerPixel = (long) bands * DataBuffer.getDataTypeSize(dataType) / 8;
+        int size = Math.min(width, height) >= LARGE_IMAGE_SIZE ? LARGE_TILE_SIZE : DEFAULT_TILE_SIZE;
+        while (size > MIN_TILE_SIZE && (long) size * size * bytesPerPixel > MAX_TILE_BYTES) {
+            size /= 2;
+        }
+        int covering = MIN_TILE_SIZE;
+        while (covering < Math.max(width, height) && covering < size) {
+            covering *= 2;
+        }
+        return Math.min(size, covering);
+    }
+
+    @Override
+    public String toString() {
+        return "GeoTiffWriteProfile [compression=" + compression + ", predictor=" + (predictor == null ? AUTO
+                : predictor) + ", tileSize=" + (tileSize == 0 ? AUTO : tileSize) + ", compressionLevel="
+                + compressionLevel + ", cloudOptimized=" + cloudOptimized + ", overviewResampling="
+                + overviewResampling + ", threads=" + (threads == 0 ? AUTO : threads) + ", bigTiff="
+                + (bigTiff == null ? AUTO : bigTiff) + "]";
+    }
+
+}
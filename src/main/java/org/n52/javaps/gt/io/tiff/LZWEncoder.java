@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.util.Arrays;
+
+/**
+ * TIFF LZW encoder that mirrors the code width and table reset behaviour of
+ * libtiff (codes are packed MSB first, the code width grows one code early
+ * and the table is reset when it is full).
+ */
+final class LZWEncoder {
+
+    private static final int CLEAR = 256;
+
+    private static final int EOI = 257;
+
+    private static final int FIRST = 258;
+
+    private static final int MIN_BITS = 9;
+
+    private static final int MAX_CODE = (1 << 12) - 1;
+
+    private static final int HASH_SIZE = 1 << 13;
+
+    private final int[] hashKeys = new int[HASH_SIZE];
+
+    private final short[] hashCodes = new short[HASH_SIZE];
+
+    private byte[] out;
+
+    private int outLength;
+
+    private int bitBuffer;
+
+    private int bitCount;
+
+    private int bits;
+
+    private int maxCode;
+
+    private int freeEntry;
+
+    byte[] encode(byte[] data,
+            int length) {
+        out = new byte[Math.max(64, length / 2)];
+        outLength = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        resetTable();
+
+        if (length > 0) {
+            put(CLEAR);
+            int entry = data[0] & 0xFF;
+            for (int i = 1; i < length; i++) {
+                int c = data[i] & 0xFF;
+                int key = (entry << 8) | c;
+                int code = lookup(key);
+                if (code >= 0) {
+                    entry = code;
+                    continue;
+                }
+                put(entry);
+                entry = c;
+                insert(key, freeEntry++);
+                if (freeEntry == MAX_CODE - 1) {
+                    put(CLEAR);
+                    resetTable();
+                } else if (freeEntry > maxCode) {
+                    bits++;
+                    maxCode = (1 << bits) - 1;
+                }
+            }
+            put(entry);
+            freeEntry++;
+            if (freeEntry == MAX_CODE - 1) {
+                put(CLEAR);
+                bits = MIN_BITS;
+            } else if (freeEntry > maxCode) {
+                bits++;
+            }
+        }
+        put(EOI);
+        if (bitCount > 0) {
+            write(bitBuffer << (8 - bitCount));
+        }
+        return Arrays.copyOf(out, outLength);
+    }
+
+    private void resetTable() {
+        Arrays.fill(hashKeys, -1);
+        bits = MIN_BITS;
+        maxCode = (1 << bits) - 1;
+        freeEntry = FIRST;
+    }
+
+    private int lookup(int key) {
+        int slot = hash(key);
+        while (hashKeys[slot] != -1) {
+            if (hashKeys[slot] == key) {
+                return hashCodes[slot];
+            }
+            slot = (slot + 1) & (HASH_SIZE - 1);
+        }
+        return -1;
+    }
+
+    private void insert(int key,
+            int code) {
+        int slot = hash(key);
+        while (hashKeys[slot] != -1) {
+            slot = (slot + 1) & (HASH_SIZE - 1);
+        }
+        hashKeys[slot] = key;
+        hashCodes[slot] = (short) code;
+    }
+
+    private static int hash(int key) {
+        return (key * 0x9E3779B1 >>> 19) & (HASH_SIZE - 1);
+    }
+
+    private void put(int code) {
+        bitBuffer = (bitBuffer << bits) | code;
+        bitCount += bits;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            write(bitBuffer >>> bitCount);
+        }
+        bitBuffer &= (1 << bitCount) - 1;
+    }
+
+    private void write(int value) {
+        if (outLength == out.length) {
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+        out[outLength++] = (byte) value;
+    }
+
+}
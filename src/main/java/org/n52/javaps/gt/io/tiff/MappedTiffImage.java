@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.awt.Point;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PlanarImage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The first image of an uncompressed, pixel interleaved (Big)TIFF, read from
+ * a memory mapping of the file. The strips or tiles of the file are the
+ * tiles of the image; a tile is copied from the mapping with a single bulk
+ * transfer when it is requested and is not retained, so neither the image
+ * nor the decoding buffers of ImageIO occupy the heap.
+ * <p>
+ * The tiles are standard rasters rather than views of the mapping, since
+ * JAI operations access the arrays of the standard data buffers directly.
+ */
+public final class MappedTiffImage extends PlanarImage {
+
+    private static final int STRIP_OFFSETS = 273;
+
+    private static final int ROWS_PER_STRIP = 278;
+
+    private static final int STRIP_BYTE_COUNTS = 279;
+
+    private static final int PHOTOMETRIC_MIN_IS_BLACK = 1;
+
+    private static final int PHOTOMETRIC_RGB = 2;
+
+    private static final int SAMPLE_FORMAT_UINT = 1;
+
+    private static final int SAMPLE_FORMAT_INT = 2;
+
+    private static final int SAMPLE_FORMAT_IEEEFP = 3;
+
+    private static final int PLANAR_CONFIGURATION_CHUNKY = 1;
+
+    /** The maximum size of a single mapping. */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final Set<Integer> TAGS = new HashSet<>(Arrays.asList(GeoTiffEncoder.IMAGE_WIDTH,
+            GeoTiffEncoder.IMAGE_LENGTH, GeoTiffEncoder.BITS_PER_SAMPLE, GeoTiffEncoder.COMPRESSION,
+            GeoTiffEncoder.PHOTOMETRIC_INTERPRETATION, STRIP_OFFSETS, GeoTiffEncoder.SAMPLES_PER_PIXEL,
+            ROWS_PER_STRIP, STRIP_BYTE_COUNTS, GeoTiffEncoder.PLANAR_CONFIGURATION, GeoTiffEncoder.TILE_WIDTH,
+            GeoTiffEncoder.TILE_LENGTH, GeoTiffEncoder.TILE_OFFSETS, GeoTiffEncoder.TILE_BYTE_COUNTS,
+            GeoTiffEncoder.SAMPLE_FORMAT));
+
+    private static Logger LOGGER = LoggerFactory.getLogger(MappedTiffImage.class);
+
+    private final ByteBuffer[] segments;
+
+    private final int[] tileSegments;
+
+    private final int[] tilePositions;
+
+    private final int[] tileLengths;
+
+    private final int tileSize;
+
+    private final int tilesAcross;
+
+    private MappedTiffImage(ImageLayout layout,
+            ByteBuffer[] segments,
+            int[] tileSegments,
+            int[] tilePositions,
+            int[] tileLengths) {
+        super(layout, null, null);
+        this.segments = segments;
+        this.tileSegments = tileSegments;
+        this.tilePositions = tilePositions;
+        this.tileLengths = tileLengths;
+        this.tileSize = tileWidth * tileHeight * sampleModel.getNumBands();
+        this.tilesAcross = getNumXTiles();
+    }
+
+    /**
+     * Maps a TIFF file.
+     *
+     * @param file
+     *            the file
+     * @return the image, <code>null</code> if the file is compressed or its
+     *         layout is not supported
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static MappedTiffImage open(File file) throws IOException {
+        Map<Integer, TiffField> fields = new HashMap<>();
+        ByteOrder byteOrder;
+        try (ImageInputStream in = new FileImageInputStream(file)) {
+            for (TiffField field : GeoTiffTags.readFields(in, TAGS)) {
+                fields.put(field.getTag(), field);
+            }
+            byteOrder = in.getByteOrder();
+        }
+
+        if (getInt(fields, GeoTiffEncoder.COMPRESSION, 1) != TiffCompression.NONE.getCode()) {
+            return unsupported(file, "compressed");
+        }
+        if (getInt(fields, GeoTiffEncoder.PLANAR_CONFIGURATION,
+                PLANAR_CONFIGURATION_CHUNKY) != PLANAR_CONFIGURATION_CHUNKY) {
+            return unsupported(file, "planar configuration");
+        }
+        int photometric = getInt(fields, GeoTiffEncoder.PHOTOMETRIC_INTERPRETATION, PHOTOMETRIC_MIN_IS_BLACK);
+        if (photometric != PHOTOMETRIC_MIN_IS_BLACK && photometric != PHOTOMETRIC_RGB) {
+            return unsupported(file, "photometric interpretation " + photometric);
+        }
+        int width = getInt(fields, GeoTiffEncoder.IMAGE_WIDTH, 0);
+        int height = getInt(fields, GeoTiffEncoder.IMAGE_LENGTH, 0);
+        int bands = getInt(fields, GeoTiffEncoder.SAMPLES_PER_PIXEL, 1);
+        TiffField bitsPerSample = fields.get(GeoTiffEncoder.BITS_PER_SAMPLE);
+        int bits = bitsPerSample == null ? 1 : (int) bitsPerSample.getLong(0);
+        for (int i = 1; bitsPerSample != null && i < bitsPerSample.getCount(); i++) {
+            if (bitsPerSample.getLong(i) != bits) {
+                return unsupported(file, "different sample sizes");
+            }
+        }
+        int dataType = getDataType(bits, getInt(fields, GeoTiffEncoder.SAMPLE_FORMAT, SAMPLE_FORMAT_UINT));
+        if (width <= 0 || height <= 0 || dataType == DataBuffer.TYPE_UNDEFINED) {
+            return unsupported(file, bits + " bit samples");
+        }
+
+        TiffField offsets;
+        TiffField byteCounts;
+        int tileWidth;
+        int tileHeight;
+        if (fields.containsKey(GeoTiffEncoder.TILE_OFFSETS)) {
+            offsets = fields.get(GeoTiffEncoder.TILE_OFFSETS);
+            byteCounts = fields.get(GeoTiffEncoder.TILE_BYTE_COUNTS);
+            tileWidth = getInt(fields, GeoTiffEncoder.TILE_WIDTH, 0);
+            tileHeight = getInt(fields, GeoTiffEncoder.TILE_LENGTH, 0);
+        } else {
+            offsets = fields.get(STRIP_OFFSETS);
+            byteCounts = fields.get(STRIP_BYTE_COUNTS);
+            tileWidth = width;
+            tileHeight = (int) Math.min(height, getLong(fields, ROWS_PER_STRIP, height));
+        }
+        int tileCount = tileWidth <= 0 || tileHeight <= 0 ? 0 : ((width + tileWidth - 1) / tileWidth)
+                * ((height + tileHeight - 1) / tileHeight);
+        if (offsets == null || byteCounts == null || tileCount == 0 || offsets.getCount() != tileCount
+                || byteCounts.getCount() != tileCount) {
+            return unsupported(file, "tile layout");
+        }
+        long tileBytes = (long) tileWidth * tileHeight * bands * (bits / 8);
+        if (tileBytes > Integer.MAX_VALUE) {
+            return unsupported(file, "tile size");
+        }
+
+        SampleModel sampleModel = new PixelInterleavedSampleModel(dataType, tileWidth, tileHeight, bands, tileWidth
+                * bands, IntStream.range(0, bands).toArray());
+        ColorModel colorModel = PlanarImage.createColorModel(sampleModel);
+        ImageLayout layout = new ImageLayout(0, 0, width, height, 0, 0, tileWidth, tileHeight, sampleModel,
+                colorModel);
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            long fileLength = channel.size();
+            long[] tileOffsets = new long[tileCount];
+            int[] tileLengths = new int[tileCount];
+            for (int i = 0; i < tileCount; i++) {
+                tileOffsets[i] = offsets.getLong(i);
+                // the last strip may be shorter
+                tileLengths[i] = (int) Math.min(byteCounts.getLong(i), tileBytes);
+                if (tileOffsets[i] < 0 || tileOffsets[i] + tileLengths[i] > fileLength) {
+                    return unsupported(file, "tile offsets");
+                }
+            }
+            return map(layout, channel, tileOffsets, tileLengths, byteOrder);
+        }
+    }
+
+    /**
+     * Maps the tiles in segments of at most {@link #SEGMENT_SIZE} bytes, each
+     * tile lying within a single segment.
+     */
+    private static MappedTiffImage map(ImageLayout layout,
+            FileChannel channel,
+            long[] tileOffsets,
+            int[] tileLengths,
+            ByteOrder byteOrder) throws IOException {
+        int tileCount = tileOffsets.length;
+        Integer[] order = new Integer[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> tileOffsets[i]));
+
+        List<ByteBuffer> segments = new ArrayList<>();
+        int[] tileSegments = new int[tileCount];
+        int[] tilePositions = new int[tileCount];
+        int first = 0;
+        while (first < tileCount) {
+            long start = tileOffsets[order[first]];
+            long end = start;
+            int last = first;
+            while (last < tileCount) {
+                int tile = order[last];
+                long tileEnd = tileOffsets[tile] + tileLengths[tile];
+                if (tileEnd - start > SEGMENT_SIZE && last > first) {
+                    break;
+                }
+                end = Math.max(end, tileEnd);
+                tileSegments[tile] = segments.size();
+                tilePositions[tile] = (int) (tileOffsets[tile] - start);
+                last++;
+            }
+            segments.add(channel.map(MapMode.READ_ONLY, start, end - start).order(byteOrder));
+            first = last;
+        }
+        LOGGER.debug("Mapped " + tileCount + " tiles in " + segments.size() + " segments.");
+        return new MappedTiffImage(layout, segments.toArray(new ByteBuffer[segments.size()]), tileSegments,
+                tilePositions, tileLengths);
+    }
+
+    private static MappedTiffImage unsupported(File file,
+            String reason) {
+        LOGGER.debug("Cannot map " + file + ": " + reason);
+        return null;
+    }
+
+    private static int getDataType(int bits,
+            int sampleFormat) {
+        switch (sampleFormat) {
+        case SAMPLE_FORMAT_UINT:
+            // there is no unsigned 32 bit data buffer, TYPE_INT would turn
+            // large values negative, so those images are left to the reader
+            return bits == 8 ? DataBuffer.TYPE_BYTE : bits == 16 ? DataBuffer.TYPE_USHORT
+                    : DataBuffer.TYPE_UNDEFINED;
+        case SAMPLE_FORMAT_INT:
+            return bits == 16 ? DataBuffer.TYPE_SHORT : bits == 32 ? DataBuffer.TYPE_INT
+                    : DataBuffer.TYPE_UNDEFINED;
+        case SAMPLE_FORMAT_IEEEFP:
+            return bits == 32 ? DataBuffer.TYPE_FLOAT : bits == 64 ? DataBuffer.TYPE_DOUBLE
+                    : DataBuffer.TYPE_UNDEFINED;
+        default:
+            return DataBuffer.TYPE_UNDEFINED;
+        }
+    }
+
+    private static long getLong(Map<Integer, TiffField> fields,
+            int tag,
+            long defaultValue) {
+        TiffField field = fields.get(tag);
+        return field == null ? defaultValue : field.getLong(0);
+    }
+
+    private static int getInt(Map<Integer, TiffField> fields,
+            int tag,
+            int defaultValue) {
+        return (int) getLong(fields, tag, defaultValue);
+    }
+
+    /**
+     * @return the number of mappings backing the image
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public Raster getTile(int tileX,
+            int tileY) {
+        if (tileX < getMinTileX() || tileX > getMaxTileX() || tileY < getMinTileY() || tileY > getMaxTileY()) {
+            return null;
+        }
+        int tile = (tileY - getMinTileY()) * tilesAcross + tileX - getMinTileX();
+        ByteBuffer buffer = segments[tileSegments[tile]].duplicate();
+        buffer.position(tilePositions[tile]);
+        buffer.limit(tilePositions[tile] + tileLengths[tile]);
+        buffer = buffer.slice().order(segments[tileSegments[tile]].order());
+
+        DataBuffer dataBuffer;
+        switch (sampleModel.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            byte[] bytes = new byte[tileSize];
+            buffer.get(bytes, 0, Math.min(tileSize, buffer.remaining()));
+            dataBuffer = new DataBufferByte(bytes, tileSize);
+            break;
+        case DataBuffer.TYPE_USHORT:
+            short[] ushorts = new short[tileSize];
+            buffer.asShortBuffer().get(ushorts, 0, Math.min(tileSize, buffer.remaining() / 2));
+            dataBuffer = new DataBufferUShort(ushorts, tileSize);
+            break;
+        case DataBuffer.TYPE_SHORT:
+            short[] shorts = new short[tileSize];
+            buffer.asShortBuffer().get(shorts, 0, Math.min(tileSize, buffer.remaining() / 2));
+            dataBuffer = new DataBufferShort(shorts, tileSize);
+            break;
+        case DataBuffer.TYPE_INT:
+            int[] ints = new int[tileSize];
+            buffer.asIntBuffer().get(ints, 0, Math.min(tileSize, buffer.remaining() / 4));
+            dataBuffer = new DataBufferInt(ints, tileSize);
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            float[] floats = new float[tileSize];
+            buffer.asFloatBuffer().get(floats, 0, Math.min(tileSize, buffer.remaining() / 4));
+            dataBuffer = new DataBufferFloat(floats, tileSize);
+            break;
+        default:
+            double[] doubles = new double[tileSize];
+            buffer.asDoubleBuffer().get(doubles, 0, Math.min(tileSize, buffer.remaining() / 8));
+            dataBuffer = new DataBufferDouble(doubles, tileSize);
+            break;
+        }
+        return Raster.createRaster(sampleModel, dataBuffer, new Point(tileXToX(tileX), tileYToY(tileY)));
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+/**
+ * Resampling methods for the reduced resolution images of a Cloud Optimized
+ * GeoTIFF. Every overview halves the width and height of the previous level,
+ * so each output pixel is computed from a block of up to 2x2 source pixels.
+ */
+public enum OverviewResampling {
+
+    /**
+     * Takes the upper left pixel of each block; keeps class values of
+     * categorical rasters intact.
+     */
+    NEAREST,
+
+    /**
+     * Averages the pixels of each block; suited for continuous data and
+     * imagery.
+     */
+    AVERAGE;
+
+    /**
+     * Reduces two source rows to one overview row.
+     *
+     * @param upper
+     *            the upper source row, pixel interleaved
+     * @param lower
+     *            the lower source row, the upper row again at the bottom of
+     *            an image with an odd height
+     * @param sourceWidth
+     *            the number of pixels of a source row
+     * @param bands
+     *            the number of bands
+     * @param integral
+     *            whether the samples are integers and averages have to be
+     *            rounded
+     * @param target
+     *            the overview row, <code>(sourceWidth + 1) / 2</code> pixels
+     */
+    void reduce(double[] upper,
+            double[] lower,
+            int sourceWidth,
+            int bands,
+            boolean integral,
+            double[] target) {
+        int targetWidth = (sourceWidth + 1) / 2;
+        for (int x = 0; x < targetWidth; x++) {
+            int left = 2 * x * bands;
+            int right = Math.min(2 * x + 1, sourceWidth - 1) * bands;
+            for (int band = 0; band < bands; band++) {
+                double value;
+                if (this == NEAREST) {
+                    value = upper[left + band];
+                } else {
+                    value = (upper[left + band] + upper[right + band] + lower[left + band] + lower[right + band])
+                            / 4;
+                    if (integral) {
+                        value = Math.floor(value + 0.5);
+                    }
+                }
+                target[x * bands + band] = value;
+            }
+        }
+    }
+
+    /**
+     * @param name
+     *            the name of a resampling method, case insensitive
+     * @return the resampling method, {@link #AVERAGE} for empty names
+     */
+    public static OverviewResampling fromName(String name) {
+        String trimmed = name == null ? "" : name.trim();
+        return trimmed.isEmpty() ? AVERAGE : valueOf(trimmed.toUpperCase());
+    }
+
+}
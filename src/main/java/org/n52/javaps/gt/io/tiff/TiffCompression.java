@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * The compression schemes supported by {@link GeoTiffEncoder}.
+ */
+public enum TiffCompression {
+
+    NONE(1),
+
+    LZW(5),
+
+    /** Adobe style deflate, i.e. zlib streams. */
+    DEFLATE(8),
+
+    PACKBITS(32773);
+
+    private final int code;
+
+    TiffCompression(int code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the value of the TIFF Compression tag
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Compresses a tile.
+     *
+     * @param data
+     *            the (predicted) tile data
+     * @param rowLength
+     *            the number of bytes per tile row, PackBits does not encode
+     *            runs across rows
+     * @param level
+     *            the deflate level
+     * @return the compressed tile
+     */
+    public byte[] compress(byte[] data,
+            int rowLength,
+            int level) {
+        switch (this) {
+        case LZW:
+            return new LZWEncoder().encode(data, data.length);
+        case DEFLATE:
+            return deflate(data, level);
+        case PACKBITS:
+            return packBits(data, rowLength);
+        default:
+            return data;
+        }
+    }
+
+    /**
+     * @param size
+     *            the size of an uncompressed tile
+     * @return an upper bound of the compressed size of the tile
+     */
+    public long getMaximumSize(long size) {
+        switch (this) {
+        case LZW:
+            // at most one 12 bit code per byte
+            return size * 3 / 2 + 16;
+        case DEFLATE:
+            // stored blocks, 5 bytes per 64 KB, plus zlib header and trailer
+            return size + size / 1024 + 64;
+        case PACKBITS:
+            return size + size / 64 + 16;
+        default:
+            return size;
+        }
+    }
+
+    /**
+     * Parses a compression name as used in the handler configuration.
+     *
+     * @param name
+     *            the name, case insensitive
+     * @return the compression
+     */
+    public static TiffCompression fromName(String name) {
+        String normalized = name.trim().toUpperCase();
+        if (normalized.equals("ZIP") || normalized.equals("ZLIB")) {
+            return DEFLATE;
+        }
+        if (normalized.equals("NONE") || normalized.isEmpty()) {
+            return NONE;
+        }
+        return valueOf(normalized);
+    }
+
+    private static byte[] deflate(byte[] data,
+            int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, data.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] packBits(byte[] data,
+            int rowLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + data.length / 128 + 1);
+        for (int rowStart = 0; rowStart < data.length; rowStart += rowLength) {
+            int end = Math.min(data.length, rowStart + rowLength);
+            int i = rowStart;
+            while (i < end) {
+                int run = 1;
+                while (i + run < end && run < 128 && data[i + run] == data[i]) {
+                    run++;
+                }
+                if (run > 1) {
+                    out.write(1 - run);
+                    out.write(data[i]);
+                    i += run;
+                    continue;
+                }
+                int start = i;
+                int literal = 0;
+                while (i < end && literal < 128) {
+                    if (i + 2 < end && data[i] == data[i + 1] && data[i] == data[i + 2]) {
+                        break;
+                    }
+                    i++;
+                    literal++;
+                }
+                out.write(literal - 1);
+                out.write(data, start, literal);
+            }
+        }
+        return out.toByteArray();
+    }
+
+}
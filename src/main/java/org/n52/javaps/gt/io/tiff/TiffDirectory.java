@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * An image file directory. Fields are written in ascending tag order; values
+ * that do not fit into an entry are stored right after the entries, so the
+ * size of a directory only depends on its fields and can be reserved before
+ * the offsets it contains are known. BigTIFF directories use 8 byte counts
+ * and offsets.
+ */
+final class TiffDirectory {
+
+    private static final int ENTRY_SIZE = 12;
+
+    private static final int BIG_ENTRY_SIZE = 20;
+
+    private final Map<Integer, TiffField> fields = new TreeMap<>();
+
+    private final boolean bigTiff;
+
+    TiffDirectory(boolean bigTiff) {
+        this.bigTiff = bigTiff;
+    }
+
+    boolean isBigTiff() {
+        return bigTiff;
+    }
+
+    void put(TiffField field) {
+        fields.put(field.getTag(), field);
+    }
+
+    TiffField get(int tag) {
+        return fields.get(tag);
+    }
+
+    private int getInlineSize() {
+        return bigTiff ? 8 : 4;
+    }
+
+    /**
+     * @return the size of the entry count, the entries and the offset of the
+     *         next directory
+     */
+    private long getEntriesSize() {
+        return bigTiff ? 8 + (long) BIG_ENTRY_SIZE * fields.size() + 8 : 2 + (long) ENTRY_SIZE * fields.size()
+                + 4;
+    }
+
+    /**
+     * @return the number of bytes the directory occupies, including the
+     *         values stored outside the entries
+     */
+    long getSize() {
+        long size = getEntriesSize();
+        for (TiffField field : fields.values()) {
+            long valueSize = field.getValueSize();
+            if (valueSize > getInlineSize()) {
+                size += valueSize + (valueSize & 1);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the directory at the current (even) position of the stream.
+     *
+     * @param out
+     *            the stream
+     * @param nextDirectoryOffset
+     *            the offset of the following directory, 0 for the last one
+     * @throws IOException
+     *             if writing fails
+     */
+    void write(ImageOutputStream out,
+            long nextDirectoryOffset) throws IOException {
+        long start = out.getStreamPosition();
+        long dataOffset = start + getEntriesSize();
+        int inlineSize = getInlineSize();
+        List<TiffField> outOfLine = new ArrayList<>();
+
+        if (bigTiff) {
+            out.writeLong(fields.size());
+        } else {
+            out.writeShort(fields.size());
+        }
+        for (TiffField field : fields.values()) {
+            out.writeShort(field.getTag());
+            out.writeShort(field.getType());
+            writeOffset(out, field.getCount());
+            long valueSize = field.getValueSize();
+            if (valueSize > inlineSize) {
+                writeOffset(out, dataOffset);
+                dataOffset += valueSize + (valueSize & 1);
+                outOfLine.add(field);
+            } else {
+                field.writeValues(out);
+                for (long i = valueSize; i < inlineSize; i++) {
+                    out.write(0);
+                }
+            }
+        }
+        writeOffset(out, nextDirectoryOffset);
+
+        for (TiffField field : outOfLine) {
+            field.writeValues(out);
+            if ((field.getValueSize() & 1) != 0) {
+                out.write(0);
+            }
+        }
+    }
+
+    private void writeOffset(ImageOutputStream out,
+            long value) throws IOException {
+        if (bigTiff) {
+            out.writeLong(value);
+        } else {
+            out.writeInt((int) value);
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * A single TIFF field (tag, type and values) as it is written to an image
+ * file directory. Integral values are kept as <code>long</code>s, floating
+ * point values as <code>double</code>s and byte-like values as raw bytes.
+ */
+final class TiffField implements Comparable<TiffField> {
+
+    static final int BYTE = 1;
+
+    static final int ASCII = 2;
+
+    static final int SHORT = 3;
+
+    static final int LONG = 4;
+
+    static final int RATIONAL = 5;
+
+    static final int SBYTE = 6;
+
+    static final int UNDEFINED = 7;
+
+    static final int SSHORT = 8;
+
+    static final int SLONG = 9;
+
+    static final int SRATIONAL = 10;
+
+    static final int FLOAT = 11;
+
+    static final int DOUBLE = 12;
+
+    static final int LONG8 = 16;
+
+    static final int SLONG8 = 17;
+
+    private final int tag;
+
+    private final int type;
+
+    private final int count;
+
+    private final long[] longs;
+
+    private final double[] doubles;
+
+    private final byte[] bytes;
+
+    private TiffField(int tag,
+            int type,
+            int count,
+            long[] longs,
+            double[] doubles,
+            byte[] bytes) {
+        this.tag = tag;
+        this.type = type;
+        this.count = count;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.bytes = bytes;
+    }
+
+    static TiffField ofShorts(int tag,
+            int... values) {
+        long[] longs = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            longs[i] = values[i];
+        }
+        return new TiffField(tag, SHORT, values.length, longs, null, null);
+    }
+
+    static TiffField ofLongs(int tag,
+            int type,
+            long... values) {
+        return new TiffField(tag, type, values.length, values, null, null);
+    }
+
+    static TiffField ofDoubles(int tag,
+            int type,
+            double... values) {
+        return new TiffField(tag, type, values.length, null, values, null);
+    }
+
+    static TiffField ofBytes(int tag,
+            int type,
+            byte... values) {
+        return new TiffField(tag, type, values.length, null, null, values);
+    }
+
+    static TiffField ofAscii(int tag,
+            String value) {
+        byte[] ascii = (value + '\0').getBytes(StandardCharsets.US_ASCII);
+        return ofBytes(tag, ASCII, ascii);
+    }
+
+    /**
+     * Creates a field of the given type from values read from a file.
+     * Rational values are passed as numerator/denominator pairs.
+     */
+    static TiffField of(int tag,
+            int type,
+            int count,
+            long[] longs,
+            double[] doubles,
+            byte[] bytes) {
+        return new TiffField(tag, type, count, longs, doubles, bytes);
+    }
+
+    int getTag() {
+        return tag;
+    }
+
+    int getType() {
+        return type;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getLong(int index) {
+        return longs[index];
+    }
+
+    /**
+     * @return a copy of this field with other integral values of the same
+     *         type
+     */
+    TiffField withLongs(long... values) {
+        return new TiffField(tag, type, values.length, values, null, null);
+    }
+
+    static int getTypeSize(int type) {
+        switch (type) {
+        case BYTE:
+        case ASCII:
+        case SBYTE:
+        case UNDEFINED:
+            return 1;
+        case SHORT:
+        case SSHORT:
+            return 2;
+        case LONG:
+        case SLONG:
+        case FLOAT:
+            return 4;
+        case RATIONAL:
+        case SRATIONAL:
+        case DOUBLE:
+        case LONG8:
+        case SLONG8:
+            return 8;
+        default:
+            throw new IllegalArgumentException("Unsupported TIFF field type: " + type);
+        }
+    }
+
+    long getValueSize() {
+        return (long) count * getTypeSize(type);
+    }
+
+    void writeValues(ImageOutputStream out) throws IOException {
+        switch (type) {
+        case BYTE:
+        case ASCII:
+        case SBYTE:
+        case UNDEFINED:
+            out.write(bytes, 0, count);
+            break;
+        case SHORT:
+        case SSHORT:
+            for (int i = 0; i < count; i++) {
+                out.writeShort((int) longs[i]);
+            }
+            break;
+        case LONG:
+        case SLONG:
+            for (int i = 0; i < count; i++) {
+                out.writeInt((int) longs[i]);
+            }
+            break;
+        case RATIONAL:
+        case SRATIONAL:
+            for (int i = 0; i < 2 * count; i++) {
+                out.writeInt((int) longs[i]);
+            }
+            break;
+        case FLOAT:
+            for (int i = 0; i < count; i++) {
+                out.writeFloat((float) doubles[i]);
+            }
+            break;
+        case DOUBLE:
+            for (int i = 0; i < count; i++) {
+                out.writeDouble(doubles[i]);
+            }
+            break;
+        case LONG8:
+        case SLONG8:
+            for (int i = 0; i < count; i++) {
+                out.writeLong(longs[i]);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported TIFF field type: " + type);
+        }
+    }
+
+    @Override
+    public int compareTo(TiffField other) {
+        return Integer.compare(tag, other.tag);
+    }
+
+    @Override
+    public String toString() {
+        return "TiffField [tag=" + tag + ", type=" + type + ", count=" + count + ", values=" + (longs != null
+                ? Arrays.toString(longs) : doubles != null ? Arrays.toString(doubles) : Arrays.toString(bytes)) + "]";
+    }
+
+}
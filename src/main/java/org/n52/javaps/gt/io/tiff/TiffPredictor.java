@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+/**
+ * The TIFF predictors supported by {@link GeoTiffEncoder}. Predictors are
+ * applied in place to little endian, pixel interleaved tile data before it is
+ * compressed.
+ */
+public enum TiffPredictor {
+
+    NONE(1),
+
+    /** Horizontal differencing of integer samples. */
+    HORIZONTAL(2),
+
+    /**
+     * Floating point predictor: the bytes of each row are split into planes,
+     * most significant byte first, and then differenced.
+     */
+    FLOATING_POINT(3);
+
+    private final int code;
+
+    TiffPredictor(int code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the value of the TIFF Predictor tag
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Applies the predictor to a tile.
+     *
+     * @param data
+     *            the tile data, overwritten
+     * @param width
+     *            the tile width in pixels
+     * @param rows
+     *            the number of rows
+     * @param samplesPerPixel
+     *            the number of samples per pixel
+     * @param bytesPerSample
+     *            the number of bytes per sample
+     */
+    public void apply(byte[] data,
+            int width,
+            int rows,
+            int samplesPerPixel,
+            int bytesPerSample) {
+        int rowLength = width * samplesPerPixel * bytesPerSample;
+        switch (this) {
+        case HORIZONTAL:
+            for (int row = 0; row < rows; row++) {
+                horizontal(data, row * rowLength, width * samplesPerPixel, samplesPerPixel, bytesPerSample);
+            }
+            break;
+        case FLOATING_POINT:
+            byte[] buffer = new byte[rowLength];
+            for (int row = 0; row < rows; row++) {
+                floatingPoint(data, row * rowLength, rowLength, samplesPerPixel, bytesPerSample, buffer);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static void horizontal(byte[] data,
+            int offset,
+            int samples,
+            int stride,
+            int bytesPerSample) {
+        // differences are computed back to front, so every sample is
+        // reduced by its unmodified predecessor
+        for (int i = samples - 1; i >= stride; i--) {
+            int position = offset + i * bytesPerSample;
+            int previous = position - stride * bytesPerSample;
+            switch (bytesPerSample) {
+            case 1:
+                data[position] = (byte) (data[position] - data[previous]);
+                break;
+            case 2:
+                putShort(data, position, getShort(data, position) - getShort(data, previous));
+                break;
+            case 4:
+                putInt(data, position, getInt(data, position) - getInt(data, previous));
+                break;
+            default:
+                putLong(data, position, getLong(data, position) - getLong(data, previous));
+                break;
+            }
+        }
+    }
+
+    private static void floatingPoint(byte[] data,
+            int offset,
+            int length,
+            int stride,
+            int bytesPerSample,
+            byte[] buffer) {
+        int samples = length / bytesPerSample;
+        for (int i = 0; i < samples; i++) {
+            for (int b = 0; b < bytesPerSample; b++) {
+                // little endian input, plane 0 holds the most significant
+                // bytes
+                buffer[(bytesPerSample - b - 1) * samples + i] = data[offset + i * bytesPerSample + b];
+            }
+        }
+        for (int i = length - 1; i >= stride; i--) {
+            buffer[i] = (byte) (buffer[i] - buffer[i - stride]);
+        }
+        System.arraycopy(buffer, 0, data, offset, length);
+    }
+
+    private static int getShort(byte[] data,
+            int position) {
+        return (data[position] & 0xFF) | (data[position + 1] << 8);
+    }
+
+    private static void putShort(byte[] data,
+            int position,
+            int value) {
+        data[position] = (byte) value;
+        data[position + 1] = (byte) (value >> 8);
+    }
+
+    private static int getInt(byte[] data,
+            int position) {
+        return (data[position] & 0xFF) | ((data[position + 1] & 0xFF) << 8) | ((data[position + 2] & 0xFF) << 16)
+                | (data[position + 3] << 24);
+    }
+
+    private static void putInt(byte[] data,
+            int position,
+            int value) {
+        data[position] = (byte) value;
+        data[position + 1] = (byte) (value >> 8);
+        data[position + 2] = (byte) (value >> 16);
+        data[position + 3] = (byte) (value >> 24);
+    }
+
+    private static long getLong(byte[] data,
+            int position) {
+        return (getInt(data, position) & 0xFFFFFFFFL) | ((long) getInt(data, position + 4) << 32);
+    }
+
+    private static void putLong(byte[] data,
+            int position,
+            long value) {
+        putInt(data, position, (int) value);
+        putInt(data, position + 4, (int) (value >> 32));
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.tiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects compressed tiles while the directories that point to them are not
+ * written yet. Tiles are kept in memory up to a limit; beyond it they are
+ * appended to a temporary file, which is deleted when the stream returned by
+ * {@link #toInputStream(byte[])} is closed.
+ */
+final class TileBuffer {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(TileBuffer.class);
+
+    private final long memoryLimit;
+
+    private final List<byte[]> tiles = new ArrayList<>();
+
+    private long memorySize;
+
+    private long size;
+
+    private File spillFile;
+
+    private OutputStream spillStream;
+
+    TileBuffer(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Appends a tile.
+     *
+     * @return the offset of the tile relative to the first tile
+     */
+    long append(byte[] tile) throws IOException {
+        long offset = size;
+        if (spillStream == null && memorySize + tile.length > memoryLimit) {
+            spillFile = File.createTempFile("tiles", ".tmp");
+            spillFile.deleteOnExit();
+            spillStream = Files.newOutputStream(spillFile.toPath());
+            LOGGER.debug("Tile buffer exceeds " + memoryLimit + " bytes, spilling to " + spillFile);
+        }
+        if (spillStream != null) {
+            spillStream.write(tile);
+        } else {
+            tiles.add(tile);
+            memorySize += tile.length;
+        }
+        size += tile.length;
+        return offset;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @param head
+     *            the bytes preceding the tiles
+     * @return a stream of the head followed by all tiles
+     */
+    InputStream toInputStream(byte[] head) throws IOException {
+        List<InputStream> parts = new ArrayList<>();
+        parts.add(new ByteArrayInputStream(head));
+        for (byte[] tile : tiles) {
+            parts.add(new ByteArrayInputStream(tile));
+        }
+        InputStream stream = new SequenceInputStream(Collections.enumeration(parts));
+        if (spillStream == null) {
+            return stream;
+        }
+        spillStream.close();
+        final File file = spillFile;
+        return new FilterInputStream(new SequenceInputStream(stream, new FileInputStream(file))) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!file.delete()) {
+                        LOGGER.warn("Could not delete " + file);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Releases the buffer after a failure.
+     */
+    void discard() {
+        tiles.clear();
+        if (spillStream != null) {
+            try {
+                spillStream.close();
+            } catch (IOException e) {
+                LOGGER.warn(e.getMessage(), e);
+            }
+            if (!spillFile.delete()) {
+                LOGGER.warn("Could not delete " + spillFile);
+            }
+        }
+    }
+
+}
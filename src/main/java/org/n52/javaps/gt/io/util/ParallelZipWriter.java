@@ -0,0 +1,571 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes ZIP archives whose entries are deflated concurrently on the shared
+ * {@link CompressionExecutor}. Large entries are split into chunks that are
+ * compressed independently (each chunk primed with the preceding 32 KiB as
+ * preset dictionary and terminated with a sync flush), so a single big .dbf
+ * or .tif scales across cores as well. Chunks are written in order, CRCs are
+ * combined and the archive switches to ZIP64 records where sizes or offsets
+ * require it.
+ */
+public final class ParallelZipWriter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int VERSION_DEFAULT = 20;
+
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelZipWriter.class);
+
+    private static final ParallelZipWriter DEFAULT_WRITER = new ParallelZipWriter();
+
+    private final int maxPendingChunks;
+
+    private final int chunkSize;
+
+    private final int level;
+
+    public ParallelZipWriter() {
+        this(Runtime.getRuntime().availableProcessors() * 2, DEFAULT_CHUNK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param maxPendingChunks
+     *            the number of chunks of one archive submitted to the shared
+     *            {@link CompressionExecutor} ahead of writing, so at most
+     *            this many of its threads work on the archive at the same
+     *            time; the number of threads itself is that of the pool
+     * @param chunkSize
+     *            the uncompressed size of a chunk in bytes
+     * @param level
+     *            the deflate compression level
+     */
+    public ParallelZipWriter(int maxPendingChunks,
+            int chunkSize,
+            int level) {
+        if (maxPendingChunks < 1) {
+            throw new IllegalArgumentException("Number of pending chunks must be positive: " + maxPendingChunks);
+        }
+        if (chunkSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be at least " + DICTIONARY_SIZE + " bytes: "
+                    + chunkSize);
+        }
+        this.maxPendingChunks = maxPendingChunks;
+        this.chunkSize = chunkSize;
+        this.level = level;
+    }
+
+    /**
+     * Zips the given files into a new temporary archive using the default
+     * writer, which keeps two chunks per available processor pending. Files
+     * that do not exist are skipped.
+     *
+     * @param files
+     *            the files to zip, stored by their name
+     * @return the zip file
+     * @throws IOException
+     *             if reading a file or writing the archive fails
+     */
+    public static File zip(File... files) throws IOException {
+        return DEFAULT_WRITER.zipToTempFile(files);
+    }
+
+    public File zipToTempFile(File... files) throws IOException {
+        File zip = File.createTempFile("zip" + UUID.randomUUID(), FileConstants.dot(FileConstants.SUFFIX_ZIP));
+        zip.deleteOnExit();
+        write(zip, files);
+        return zip;
+    }
+
+    public void write(File target,
+            File... files) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<ChunkTask> tasks = new ArrayList<>();
+        for (File file : files) {
+            if (file == null || !file.isFile()) {
+                LOGGER.debug("Could not zip " + file + ", file does not exist.");
+                continue;
+            }
+            Entry entry = new Entry(file);
+            entries.add(entry);
+            long length = entry.size;
+            long offset = 0;
+            do {
+                int chunkLength = (int) Math.min(chunkSize, length - offset);
+                boolean last = offset + chunkLength >= length;
+                tasks.add(new ChunkTask(entry, offset, chunkLength, last));
+                offset += chunkLength;
+            } while (offset < length);
+        }
+
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeEntries(channel, CompressionExecutor.get(), tasks);
+            writeCentralDirectory(channel, entries);
+        }
+    }
+
+    private void writeEntries(FileChannel channel,
+            ExecutorService executor,
+            List<ChunkTask> tasks) throws IOException {
+        // chunks of this archive compressed ahead, more than two per pool
+        // thread would only wait in the queue of the shared pool
+        int window = Math.min(maxPendingChunks, CompressionExecutor.getThreads() * 2);
+        Deque<Future<Chunk>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            while (next < tasks.size() || !pending.isEmpty()) {
+                while (next < tasks.size() && pending.size() < window) {
+                    pending.add(executor.submit(tasks.get(next++)));
+                }
+                Chunk chunk = pending.poll().get();
+                Entry entry = chunk.task.entry;
+                if (chunk.task.offset == 0) {
+                    entry.localHeaderOffset = channel.position();
+                    writeFully(channel, localHeader(entry));
+                }
+                writeFully(channel, ByteBuffer.wrap(chunk.data, 0, chunk.length));
+                entry.compressedSize += chunk.length;
+                entry.crc = crc32Combine(entry.crc, chunk.crc, chunk.task.length);
+                if (chunk.task.last) {
+                    long end = channel.position();
+                    channel.position(entry.localHeaderOffset);
+                    writeFully(channel, localHeader(entry));
+                    channel.position(end);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing zip entries.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not compress zip entry.", cause);
+        } finally {
+            for (Future<Chunk> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void writeCentralDirectory(FileChannel channel,
+            List<Entry> entries) throws IOException {
+        long centralDirectoryOffset = channel.position();
+        for (Entry entry : entries) {
+            writeFully(channel, centralHeader(entry));
+        }
+        long centralDirectoryEnd = channel.position();
+        long centralDirectorySize = centralDirectoryEnd - centralDirectoryOffset;
+
+        boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC
+                || centralDirectorySize >= ZIP64_MAGIC;
+        if (zip64) {
+            ByteBuffer buffer = newBuffer(56 + 20);
+            buffer.putInt(ZIP64_END_SIGNATURE);
+            buffer.putLong(44);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putLong(entries.size());
+            buffer.putLong(entries.size());
+            buffer.putLong(centralDirectorySize);
+            buffer.putLong(centralDirectoryOffset);
+            buffer.putInt(ZIP64_LOCATOR_SIGNATURE);
+            buffer.putInt(0);
+            buffer.putLong(centralDirectoryEnd);
+            buffer.putInt(1);
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+        ByteBuffer buffer = newBuffer(22);
+        buffer.putInt(END_SIGNATURE);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        buffer.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        buffer.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+        buffer.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        buffer.putShort((short) 0);
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    private ByteBuffer localHeader(Entry entry) {
+        ByteBuffer buffer = newBuffer(30 + entry.name.length + (entry.zip64 ? 20 : 0));
+        buffer.putInt(LOCAL_HEADER_SIGNATURE);
+        buffer.putShort((short) (entry.zip64 ? VERSION_ZIP64 : VERSION_DEFAULT));
+        buffer.putShort((short) FLAG_UTF8);
+        buffer.putShort((short) METHOD_DEFLATED);
+        buffer.putShort((short) entry.dosTime);
+        buffer.putShort((short) entry.dosDate);
+        buffer.putInt((int) entry.crc);
+        if (entry.zip64) {
+            buffer.putInt((int) ZIP64_MAGIC);
+            buffer.putInt((int) ZIP64_MAGIC);
+        } else {
+            buffer.putInt((int) entry.compressedSize);
+            buffer.putInt((int) entry.size);
+        }
+        buffer.putShort((short) entry.name.length);
+        buffer.putShort((short) (entry.zip64 ? 20 : 0));
+        buffer.put(entry.name);
+        if (entry.zip64) {
+            buffer.putShort((short) ZIP64_EXTRA_ID);
+            buffer.putShort((short) 16);
+            buffer.putLong(entry.size);
+            buffer.putLong(entry.compressedSize);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private ByteBuffer centralHeader(Entry entry) {
+        boolean offsetZip64 = entry.localHeaderOffset >= ZIP64_MAGIC;
+        int extraLength = (entry.zip64 ? 16 : 0) + (offsetZip64 ? 8 : 0);
+        if (extraLength > 0) {
+            extraLength += 4;
+        }
+        int version = extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT;
+        ByteBuffer buffer = newBuffer(46 + entry.name.length + extraLength);
+        buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+        buffer.putShort((short) version);
+        buffer.putShort((short) version);
+        buffer.putShort((short) FLAG_UTF8);
+        buffer.putShort((short) METHOD_DEFLATED);
+        buffer.putShort((short) entry.dosTime);
+        buffer.putShort((short) entry.dosDate);
+        buffer.putInt((int) entry.crc);
+        buffer.putInt((int) (entry.zip64 ? ZIP64_MAGIC : entry.compressedSize));
+        buffer.putInt((int) (entry.zip64 ? ZIP64_MAGIC : entry.size));
+        buffer.putShort((short) entry.name.length);
+        buffer.putShort((short) extraLength);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putInt(0);
+        buffer.putInt((int) (offsetZip64 ? ZIP64_MAGIC : entry.localHeaderOffset));
+        buffer.put(entry.name);
+        if (extraLength > 0) {
+            buffer.putShort((short) ZIP64_EXTRA_ID);
+            buffer.putShort((short) (extraLength - 4));
+            if (entry.zip64) {
+                buffer.putLong(entry.size);
+                buffer.putLong(entry.compressedSize);
+            }
+            if (offsetZip64) {
+                buffer.putLong(entry.localHeaderOffset);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel channel,
+            ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel,
+            ByteBuffer buffer,
+            long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at position " + current);
+            }
+            current += read;
+        }
+    }
+
+    /**
+     * Combines the CRC-32 of two consecutive byte sequences, see
+     * <code>crc32_combine</code> in zlib.
+     */
+    static long crc32Combine(long crc1,
+            long crc2,
+            long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        long crc = crc1;
+        long length = length2;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length & 1) != 0) {
+                crc = gf2MatrixTimes(even, crc);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length & 1) != 0) {
+                crc = gf2MatrixTimes(odd, crc);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return crc ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix,
+            long vector) {
+        long sum = 0;
+        long remaining = vector;
+        int i = 0;
+        while (remaining != 0) {
+            if ((remaining & 1) != 0) {
+                sum ^= matrix[i];
+            }
+            remaining >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square,
+            long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private static final class Entry {
+
+        private final File file;
+
+        private final byte[] name;
+
+        private final long size;
+
+        private final boolean zip64;
+
+        private final int dosTime;
+
+        private final int dosDate;
+
+        private long localHeaderOffset;
+
+        private long compressedSize;
+
+        private long crc;
+
+        Entry(File file) {
+            this.file = file;
+            this.name = file.getName().getBytes(StandardCharsets.UTF_8);
+            this.size = file.length();
+            // leave room for the (small) deflate overhead of incompressible
+            // data, the decision has to be taken before the data is written
+            this.zip64 = size >= ZIP64_MAGIC - (size >>> 8) - 65536;
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(file.lastModified());
+            int year = calendar.get(Calendar.YEAR);
+            if (year < 1980) {
+                this.dosTime = 0;
+                this.dosDate = (1 << 5) | 1;
+            } else {
+                this.dosTime = (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5)
+                        | (calendar.get(Calendar.SECOND) >> 1);
+                this.dosDate = ((year - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5) | calendar.get(
+                        Calendar.DAY_OF_MONTH);
+            }
+        }
+    }
+
+    private static final class Chunk {
+
+        private final ChunkTask task;
+
+        private final byte[] data;
+
+        private final int length;
+
+        private final long crc;
+
+        Chunk(ChunkTask task,
+                byte[] data,
+                int length,
+                long crc) {
+            this.task = task;
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private final class ChunkTask implements Callable<Chunk> {
+
+        private final Entry entry;
+
+        private final long offset;
+
+        private final int length;
+
+        private final boolean last;
+
+        ChunkTask(Entry entry,
+                long offset,
+                int length,
+                boolean last) {
+            this.entry = entry;
+            this.offset = offset;
+            this.length = length;
+            this.last = last;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            int dictionaryLength = (int) Math.min(DICTIONARY_SIZE, offset);
+            byte[] input = new byte[dictionaryLength + length];
+            try (FileChannel channel = FileChannel.open(entry.file.toPath(), StandardOpenOption.READ)) {
+                readFully(channel, ByteBuffer.wrap(input), offset - dictionaryLength);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(input, dictionaryLength, length);
+
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionaryLength > 0) {
+                    deflater.setDictionary(input, 0, dictionaryLength);
+                }
+                deflater.setInput(input, dictionaryLength, length);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+                byte[] buffer = new byte[64 * 1024];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(buffer);
+                        out.write(buffer, 0, count);
+                    }
+                } else {
+                    int count;
+                    do {
+                        count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        out.write(buffer, 0, count);
+                    } while (count == buffer.length);
+                }
+                byte[] data = out.toByteArray();
+                return new Chunk(this, data, data.length, crc.getValue());
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a zip file in a single pass over its local headers. For every entry
+ * an {@link EntrySelector} decides from the name whether the entry is
+ * skipped, extracted or only located; skipped entries are not decompressed
+ * if their size is known from the local header, located entries stored
+ * without compression can be read in place (see
+ * {@link Entry#getDataOffset()}).
+ * <p>
+ * Extracted entries keep their relative path below the target directory;
+ * entries whose path would leave the directory are rejected.
+ */
+public final class SelectiveZipReader {
+
+    /**
+     * What to do with an entry.
+     */
+    public enum Action {
+        SKIP, EXTRACT, LOCATE
+    }
+
+    /**
+     * Decides about entries by name.
+     */
+    @FunctionalInterface
+    public interface EntrySelector {
+
+        /**
+         * @param name
+         *            the entry name, a relative path
+         * @param stored
+         *            whether the entry is stored without compression
+         * @return the action for the entry
+         */
+        Action select(String name,
+                boolean stored);
+    }
+
+    /**
+     * Thrown for an entry whose name leaves the target directory. Unlike the
+     * other {@link ZipException}s, this is not a reason to retry with another
+     * zip reader.
+     */
+    public static final class EntryOutsideDirectoryException extends ZipException {
+
+        private static final long serialVersionUID = 1L;
+
+        EntryOutsideDirectoryException(String name) {
+            super("Entry " + name + " is outside of the target directory.");
+        }
+    }
+
+    /**
+     * An extracted or located entry.
+     */
+    public static final class Entry {
+
+        private final String name;
+
+        private final boolean stored;
+
+        private final long dataOffset;
+
+        private final long size;
+
+        private File file;
+
+        Entry(String name,
+                boolean stored,
+                long dataOffset,
+                long size) {
+            this.name = name;
+            this.stored = stored;
+            this.dataOffset = dataOffset;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return <code>true</code> if the entry is stored without
+         *         compression
+         */
+        public boolean isStored() {
+            return stored;
+        }
+
+        /**
+         * @return the offset of the entry data in the zip file
+         */
+        public long getDataOffset() {
+            return dataOffset;
+        }
+
+        /**
+         * @return the size of the entry data in the zip file
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the extracted file, <code>null</code> for located entries
+         */
+        public File getFile() {
+            return file;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry [name=" + name + ", stored=" + stored + ", dataOffset=" + dataOffset + ", size=" + size
+                    + ", file=" + file + "]";
+        }
+    }
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int METHOD_STORED = 0;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset CP437 = Charset.forName("IBM437");
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SelectiveZipReader.class);
+
+    private final File zipFile;
+
+    public SelectiveZipReader(File zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    /**
+     * Reads the zip file.
+     *
+     * @param selector
+     *            decides about each entry
+     * @param directory
+     *            the directory to extract entries to
+     * @return the extracted and located entries in zip order
+     * @throws ZipException
+     *             if the zip file cannot be read in a single pass, e.g. an
+     *             uncompressed entry of unknown size, or an
+     *             {@link EntryOutsideDirectoryException} if an entry name
+     *             leaves the directory
+     * @throws IOException
+     *             if reading or extracting fails
+     */
+    public List<Entry> read(EntrySelector selector,
+            File directory) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        String directoryPath = directory.getCanonicalPath() + File.separator;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (RandomAccessFile in = new RandomAccessFile(zipFile, "r")) {
+            while (in.getFilePointer() + 4 <= in.length() && readIntLE(in) == LOCAL_HEADER_SIGNATURE) {
+                in.skipBytes(2);
+                int flags = readShortLE(in);
+                int method = readShortLE(in);
+                in.skipBytes(8);
+                long compressedSize = readIntLE(in) & ZIP64_MAGIC;
+                long uncompressedSize = readIntLE(in) & ZIP64_MAGIC;
+                int nameLength = readShortLE(in);
+                int extraLength = readShortLE(in);
+                byte[] nameBytes = new byte[nameLength];
+                in.readFully(nameBytes);
+                byte[] extra = new byte[extraLength];
+                in.readFully(extra);
+                boolean zip64 = false;
+                if (compressedSize == ZIP64_MAGIC || uncompressedSize == ZIP64_MAGIC) {
+                    long[] sizes = readZip64Sizes(extra, uncompressedSize, compressedSize);
+                    uncompressedSize = sizes[0];
+                    compressedSize = sizes[1];
+                    zip64 = true;
+                }
+                String name = new String(nameBytes, (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : CP437);
+                boolean stored = method == METHOD_STORED;
+                boolean sizeKnown = (flags & FLAG_DATA_DESCRIPTOR) == 0;
+                if (!stored && method != METHOD_DEFLATED) {
+                    throw new ZipException("Unsupported compression method " + method + " of entry " + name);
+                }
+                if (stored && !sizeKnown) {
+                    throw new ZipException("Size of stored entry " + name + " is unknown.");
+                }
+
+                long dataOffset = in.getFilePointer();
+                Action action = name.endsWith("/") ? Action.SKIP : selector.select(name, stored);
+                if (action == Action.LOCATE && !stored) {
+                    action = Action.EXTRACT;
+                }
+                switch (action) {
+                case EXTRACT:
+                    File target = new File(directory, name);
+                    if (!target.getCanonicalPath().startsWith(directoryPath)) {
+                        throw new EntryOutsideDirectoryException(name);
+                    }
+                    File parent = target.getParentFile();
+                    if (!parent.isDirectory() && !parent.mkdirs()) {
+                        throw new IOException("Could not create directory: " + parent);
+                    }
+                    try (OutputStream out = Files.newOutputStream(target.toPath())) {
+                        compressedSize = copy(in, stored, compressedSize, sizeKnown, out, buffer);
+                    }
+                    Entry extracted = new Entry(name, stored, dataOffset, compressedSize);
+                    extracted.file = target;
+                    entries.add(extracted);
+                    LOGGER.debug("Extracted " + name);
+                    break;
+                case LOCATE:
+                    entries.add(new Entry(name, true, dataOffset, compressedSize));
+                    in.seek(dataOffset + compressedSize);
+                    break;
+                default:
+                    if (sizeKnown) {
+                        in.seek(dataOffset + compressedSize);
+                    } else {
+                        compressedSize = copy(in, false, compressedSize, false, null, buffer);
+                    }
+                    break;
+                }
+                if (!sizeKnown) {
+                    skipDataDescriptor(in, zip64);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Extracts an entry located by {@link #read(EntrySelector, File)}.
+     *
+     * @param entry
+     *            the entry
+     * @param target
+     *            the file to write
+     * @throws IOException
+     *             if extracting fails
+     */
+    public void extract(Entry entry,
+            File target) throws IOException {
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory: " + parent);
+        }
+        try (RandomAccessFile in = new RandomAccessFile(zipFile, "r");
+                OutputStream out = Files.newOutputStream(target.toPath())) {
+            in.seek(entry.getDataOffset());
+            copy(in, true, entry.getSize(), true, out, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    /**
+     * Copies or skips entry data, starting at the current position and
+     * leaving the file positioned after the data.
+     *
+     * @return the compressed size of the entry
+     */
+    private long copy(RandomAccessFile in,
+            boolean stored,
+            long compressedSize,
+            boolean sizeKnown,
+            OutputStream out,
+            byte[] buffer) throws IOException {
+        long start = in.getFilePointer();
+        if (stored) {
+            long remaining = compressedSize;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new ZipException("Unexpected end of zip file.");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            return compressedSize;
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            byte[] input = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    int read = in.read(input);
+                    if (read < 0) {
+                        throw new ZipException("Unexpected end of zip file.");
+                    }
+                    inflater.setInput(input, 0, read);
+                }
+                int inflated = inflater.inflate(buffer);
+                if (inflated > 0 && out != null) {
+                    out.write(buffer, 0, inflated);
+                }
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("Invalid deflate data.");
+                }
+            }
+            long consumed = inflater.getBytesRead();
+            if (sizeKnown && consumed != compressedSize) {
+                throw new ZipException("Compressed size mismatch: " + consumed + " != " + compressedSize);
+            }
+            in.seek(start + consumed);
+            return consumed;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflate data: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void skipDataDescriptor(RandomAccessFile in,
+            boolean zip64) throws IOException {
+        long position = in.getFilePointer();
+        if (readIntLE(in) != DATA_DESCRIPTOR_SIGNATURE) {
+            in.seek(position);
+        }
+        // crc and sizes
+        in.skipBytes(4 + (zip64 ? 16 : 8));
+    }
+
+    private long[] readZip64Sizes(byte[] extra,
+            long uncompressedSize,
+            long compressedSize) throws ZipException {
+        int position = 0;
+        while (position + 4 <= extra.length) {
+            int id = (extra[position] & 0xff) | (extra[position + 1] & 0xff) << 8;
+            int length = (extra[position + 2] & 0xff) | (extra[position + 3] & 0xff) << 8;
+            position += 4;
+            if (id == ZIP64_EXTRA_ID) {
+                long[] sizes = { uncompressedSize, compressedSize };
+                int field = position;
+                for (int i = 0; i < 2; i++) {
+                    if (sizes[i] == ZIP64_MAGIC && field + 8 <= position + length) {
+                        sizes[i] = readLongLE(extra, field);
+                        field += 8;
+                    }
+                }
+                return sizes;
+            }
+            position += length;
+        }
+        throw new ZipException("Missing zip64 extra field.");
+    }
+
+    private static long readLongLE(byte[] bytes,
+            int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int readIntLE(RandomAccessFile in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static int readShortLE(RandomAccessFile in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xffff;
+    }
+
+}
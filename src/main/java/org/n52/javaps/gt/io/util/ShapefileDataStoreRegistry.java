@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.data.Query;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.geotools.feature.collection.DecoratingSimpleFeatureIterator;
+import org.geotools.util.factory.Hints;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the {@link ShapefileDataStore}s opened for reading. Stores
+ * are reference counted per shapefile: acquiring a file that is already open
+ * hands out the same store, and the store is disposed as soon as the last
+ * {@link Lease} is released. Remaining stores are disposed when the registry
+ * is destroyed.
+ * <p>
+ * A lease is released when it is closed, e.g. by
+ * {@link org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding#dispose()},
+ * or otherwise once neither the lease nor a feature collection or iterator
+ * it returned is reachable any more: bindings are not disposed by the
+ * engine, so a background thread releases the leases of collected bindings.
+ */
+public final class ShapefileDataStoreRegistry implements Destroyable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ShapefileDataStoreRegistry.class);
+
+    private static final ShapefileDataStoreRegistry INSTANCE = new ShapefileDataStoreRegistry();
+
+    private final Map<String, Entry> stores = new HashMap<>();
+
+    private final ReferenceQueue<Lease> collectedLeases = new ReferenceQueue<>();
+
+    /**
+     * Keeps the references of open leases reachable until they are enqueued.
+     */
+    private final Set<LeaseReference> openLeases = new HashSet<>();
+
+    private long openedCount;
+
+    private long reuseCount;
+
+    private long disposedCount;
+
+    private long collectedCount;
+
+    private ShapefileDataStoreRegistry() {
+        Thread reaper = new Thread(this::releaseCollectedLeases, "shapefile-lease-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    public static ShapefileDataStoreRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Opens the given shapefile or reuses the store that is already open for
+     * it.
+     *
+     * @param shpFile
+     *            the .shp file
+     * @return a lease on the store, which should be closed when the features
+     *         are no longer needed
+     * @throws IOException
+     *             if the store can not be created
+     */
+    public synchronized Lease acquire(File shpFile) throws IOException {
+        String key = shpFile.getCanonicalPath();
+        Entry entry = stores.get(key);
+        if (entry == null) {
+            entry = new Entry(key, new ShapefileDataStore(shpFile.toURI().toURL()));
+            stores.put(key, entry);
+            openedCount++;
+            LOGGER.debug("Opened shapefile data store for " + key);
+        } else {
+            reuseCount++;
+        }
+        entry.references++;
+        Lease lease = new Lease(entry);
+        openLeases.add(lease.reference);
+        return lease;
+    }
+
+    /**
+     * Releases the leases that were collected without being closed, until
+     * the thread is interrupted.
+     */
+    private void releaseCollectedLeases() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                release((LeaseReference) collectedLeases.remove());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void release(LeaseReference reference) {
+        if (reference.released) {
+            return;
+        }
+        reference.released = true;
+        openLeases.remove(reference);
+        collectedCount++;
+        LOGGER.debug("Releasing unclosed lease on shapefile data store for " + reference.entry.key);
+        release(reference.entry);
+    }
+
+    /**
+     * @return the number of stores currently open
+     */
+    public synchronized int getOpenStoreCount() {
+        return stores.size();
+    }
+
+    /**
+     * @return the number of leases currently held on open stores
+     */
+    public synchronized int getLeaseCount() {
+        int leases = 0;
+        for (Entry entry : stores.values()) {
+            leases += entry.references;
+        }
+        return leases;
+    }
+
+    /**
+     * @return the paths of the shapefiles currently open
+     */
+    public synchronized List<String> getOpenFiles() {
+        return new ArrayList<>(stores.keySet());
+    }
+
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    public synchronized long getDisposedCount() {
+        return disposedCount;
+    }
+
+    /**
+     * @return the number of leases released because they were collected
+     *         without being closed
+     */
+    public synchronized long getCollectedCount() {
+        return collectedCount;
+    }
+
+    /**
+     * Disposes all open stores, regardless of outstanding leases. The
+     * outstanding leases count as released. The registry is shared, so it
+     * stays usable afterwards, e.g. by the next application context.
+     */
+    @Override
+    public synchronized void destroy() {
+        for (LeaseReference reference : openLeases) {
+            reference.released = true;
+        }
+        openLeases.clear();
+        for (Entry entry : stores.values()) {
+            if (entry.references > 0) {
+                LOGGER.info("Disposing shapefile data store for " + entry.key + " with " + entry.references
+                        + " open lease(s).");
+            }
+            dispose(entry);
+        }
+        stores.clear();
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.references--;
+        if (entry.references <= 0 && stores.get(entry.key) == entry) {
+            stores.remove(entry.key);
+            dispose(entry);
+        }
+    }
+
+    private void dispose(Entry entry) {
+        try {
+            entry.store.dispose();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not dispose shapefile data store for " + entry.key, e);
+        }
+        disposedCount++;
+        LOGGER.debug("Disposed shapefile data store for " + entry.key);
+    }
+
+    private static final class Entry {
+
+        private final String key;
+
+        private final ShapefileDataStore store;
+
+        private int references;
+
+        Entry(String key,
+                ShapefileDataStore store) {
+            this.key = key;
+            this.store = store;
+        }
+    }
+
+    /**
+     * Tracks whether a lease has been released, also after the lease itself
+     * was collected.
+     */
+    private static final class LeaseReference extends WeakReference<Lease> {
+
+        private final Entry entry;
+
+        private boolean released;
+
+        LeaseReference(Lease lease,
+                Entry entry,
+                ReferenceQueue<Lease> queue) {
+            super(lease, queue);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Keeps the lease reachable as long as the features, their iterators or
+     * collections derived from them are.
+     */
+    private static final class LeasedFeatureCollection extends DecoratingSimpleFeatureCollection {
+
+        private final Lease lease;
+
+        LeasedFeatureCollection(SimpleFeatureCollection delegate,
+                Lease lease) {
+            super(delegate);
+            this.lease = lease;
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            return new LeasedFeatureIterator(delegate.features(), lease);
+        }
+
+        @Override
+        public SimpleFeatureCollection subCollection(Filter filter) {
+            return new LeasedFeatureCollection(delegate.subCollection(filter), lease);
+        }
+
+        @Override
+        public SimpleFeatureCollection sort(SortBy order) {
+            return new LeasedFeatureCollection(delegate.sort(order), lease);
+        }
+    }
+
+    /**
+     * Keeps the lease reachable as long as the iterator is.
+     */
+    private static final class LeasedFeatureIterator extends DecoratingSimpleFeatureIterator {
+
+        @SuppressWarnings("unused")
+        private final Lease lease;
+
+        LeasedFeatureIterator(SimpleFeatureIterator delegate,
+                Lease lease) {
+            super(delegate);
+            this.lease = lease;
+        }
+    }
+
+    /**
+     * A reference to an open store. Closing it more than once has no effect.
+     */
+    public final class Lease implements Closeable {
+
+        private final Entry entry;
+
+        private final LeaseReference reference;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+            this.reference = new LeaseReference(this, entry, collectedLeases);
+        }
+
+        public ShapefileDataStore getDataStore() {
+            return entry.store;
+        }
+
+        public SimpleFeatureCollection getFeatures() throws IOException {
+            return new LeasedFeatureCollection(entry.store.getFeatureSource(entry.store.getTypeNames()[0])
+                    .getFeatures(), this);
+        }
+
+        /**
+         * @param geometryFactory
+         *            the factory of the geometries read
+         * @return the features
+         * @throws IOException
+         *             if the store cannot be read
+         */
+        public SimpleFeatureCollection getFeatures(GeometryFactory geometryFactory) throws IOException {
+            return getFeatures(geometryFactory, FeatureSelection.ALL);
+        }
+
+        /**
+         * @param geometryFactory
+         *            the factory of the geometries read, <code>null</code> for
+         *            the default factory of the store
+         * @param selection
+         *            the features and attributes to read, passed to the store
+         *            as query
+         * @return the features
+         * @throws IOException
+         *             if the store cannot be read
+         */
+        public SimpleFeatureCollection getFeatures(GeometryFactory geometryFactory,
+                FeatureSelection selection) throws IOException {
+            String typeName = entry.store.getTypeNames()[0];
+            Query query = new Query(typeName);
+            if (geometryFactory != null) {
+                query.setHints(new Hints(Hints.JTS_GEOMETRY_FACTORY, geometryFactory));
+            }
+            selection.apply(query, entry.store.getSchema(typeName));
+            return new LeasedFeatureCollection(entry.store.getFeatureSource(typeName).getFeatures(query), this);
+        }
+
+        @Override
+        public void close() {
+            synchronized (ShapefileDataStoreRegistry.this) {
+                if (reference.released) {
+                    return;
+                }
+                reference.released = true;
+                openLeases.remove(reference);
+                release(entry);
+            }
+        }
+    }
+
+}
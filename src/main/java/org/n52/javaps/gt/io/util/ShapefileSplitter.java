@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Puntal;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams features into one or more shapefile sets. The .shp and .dbf files
+ * address their content with 32 bit offsets, so a set is closed as soon as the
+ * next record would push either file over {@link #DEFAULT_MAX_PART_SIZE} and
+ * writing continues in a new set named <code>&lt;base&gt;_part_N</code>. The
+ * first set keeps the base name, so single part output is unchanged. Features
+ * are written one at a time through an append {@link FeatureWriter}, nothing
+ * is buffered.
+ */
+public class ShapefileSplitter implements Closeable {
+
+    public static final long DEFAULT_MAX_PART_SIZE = Integer.MAX_VALUE;
+
+    public static final String PART_SUFFIX = "_part_";
+
+    private static final String SHP = ".shp";
+
+    private static final String DBF = ".dbf";
+
+    private static final String[] PART_EXTENSIONS = { SHP, ".shx", DBF, ".prj", ".qix", ".fix", ".cpg" };
+
+    private static final int SHP_HEADER_SIZE = 100;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ShapefileSplitter.class);
+
+    private final File directory;
+
+    private final String baseName;
+
+    private final SimpleFeatureType featureType;
+
+    private final int geometryIndex;
+
+    private final int[] attributeIndices;
+
+    private final List<File> shpFiles = new ArrayList<>();
+
+    private long maxPartSize = DEFAULT_MAX_PART_SIZE;
+
+    private CoordinateReferenceSystem crs;
+
+    private boolean createSpatialIndex;
+
+    private ShapefileDataStore dataStore;
+
+    private FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+
+    private int[] storeAttributeIndices;
+
+    private long shpSize;
+
+    private long dbfSize;
+
+    private long dbfRecordSize;
+
+    private long partCount;
+
+    /**
+     * @param shpFile
+     *            the .shp file of the first part, further parts are created
+     *            next to it
+     * @param featureType
+     *            the type of the features that will be written
+     */
+    public ShapefileSplitter(File shpFile,
+            SimpleFeatureType featureType) {
+        String path = shpFile.getAbsolutePath();
+        if (path.toLowerCase().endsWith(SHP)) {
+            path = path.substring(0, path.length() - SHP.length());
+        }
+        File base = new File(path);
+        this.directory = base.getParentFile();
+        this.baseName = base.getName();
+        this.featureType = featureType;
+        this.crs = featureType.getCoordinateReferenceSystem();
+
+        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
+        this.geometryIndex = geometryDescriptor == null ? -1 : featureType.indexOf(geometryDescriptor.getName());
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < featureType.getAttributeCount(); i++) {
+            if (!(featureType.getDescriptor(i) instanceof GeometryDescriptor)) {
+                indices.add(i);
+            }
+        }
+        this.attributeIndices = toArray(indices);
+    }
+
+    public void setMaxPartSize(long maxPartSize) {
+        if (maxPartSize <= SHP_HEADER_SIZE) {
+            throw new IllegalArgumentException("Maximum part size too small: " + maxPartSize);
+        }
+        this.maxPartSize = maxPartSize;
+    }
+
+    public void setCoordinateReferenceSystem(CoordinateReferenceSystem crs) {
+        this.crs = crs;
+    }
+
+    public void setCreateSpatialIndex(boolean createSpatialIndex) {
+        this.createSpatialIndex = createSpatialIndex;
+    }
+
+    public void write(SimpleFeature feature) throws IOException {
+        Geometry geometry = geometryIndex < 0 ? null : (Geometry) feature.getAttribute(geometryIndex);
+        long shpRecordSize = RECORD_HEADER_SIZE + estimateContentLength(geometry);
+
+        if (writer == null) {
+            startPart();
+        } else if (partCount > 0 && (shpSize + shpRecordSize > maxPartSize || dbfSize
+                + dbfRecordSize > maxPartSize)) {
+            finishPart();
+            startPart();
+        }
+
+        SimpleFeature target = writer.next();
+        if (geometryIndex >= 0) {
+            target.setDefaultGeometry(geometry);
+        }
+        int count = Math.min(attributeIndices.length, storeAttributeIndices.length);
+        for (int i = 0; i < count; i++) {
+            target.setAttribute(storeAttributeIndices[i], feature.getAttribute(attributeIndices[i]));
+        }
+        writer.write();
+
+        shpSize += shpRecordSize;
+        dbfSize += dbfRecordSize;
+        partCount++;
+    }
+
+    /**
+     * @return the .shp files written so far, the first part first
+     */
+    public List<File> getShpFiles() {
+        return new ArrayList<>(shpFiles);
+    }
+
+    /**
+     * Closes the current part. If no feature was written an empty shapefile
+     * is created, so there is always at least one part.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer == null && shpFiles.isEmpty()) {
+            startPart();
+        }
+        finishPart();
+    }
+
+    /**
+     * Looks up the additional parts written next to the first part of a split
+     * shapefile.
+     *
+     * @param shpFile
+     *            the .shp file of the first part
+     * @return the .shp files of the following parts, in order; empty if the
+     *         shapefile was not split
+     */
+    public static List<File> getAdditionalParts(File shpFile) {
+        List<File> parts = new ArrayList<>();
+        String path = shpFile.getAbsolutePath();
+        if (!path.toLowerCase().endsWith(SHP)) {
+            return parts;
+        }
+        String base = path.substring(0, path.length() - SHP.length());
+        for (int part = 2;; part++) {
+            File next = new File(base + PART_SUFFIX + part + SHP);
+            if (!next.exists()) {
+                return parts;
+            }
+            parts.add(next);
+        }
+    }
+
+    private void startPart() throws IOException {
+        String name = shpFiles.isEmpty() ? baseName : baseName + PART_SUFFIX + (shpFiles.size() + 1);
+        File shp = new File(directory, name + SHP);
+        for (String extension : PART_EXTENSIONS) {
+            new File(directory, name + extension).deleteOnExit();
+        }
+
+        Map<String, Serializable> params = new HashMap<String, Serializable>();
+        params.put(ShapefileDataStoreFactory.URLP.key, shp.toURI().toURL());
+        params.put(ShapefileDataStoreFactory.CREATE_SPATIAL_INDEX.key, createSpatialIndex);
+        dataStore = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(params);
+        dataStore.createSchema(featureType);
+        if (crs != null) {
+            dataStore.forceSchemaCRS(crs);
+        }
+
+        SimpleFeatureType storeType = dataStore.getSchema();
+        List<Integer> indices = new ArrayList<>();
+        for (AttributeDescriptor descriptor : storeType.getAttributeDescriptors()) {
+            if (!(descriptor instanceof GeometryDescriptor)) {
+                indices.add(storeType.indexOf(descriptor.getName()));
+            }
+        }
+        storeAttributeIndices = toArray(indices);
+
+        writer = dataStore.getFeatureWriterAppend(Transaction.AUTO_COMMIT);
+
+        readDbfHeader(new File(directory, name + DBF));
+        shpSize = SHP_HEADER_SIZE;
+        partCount = 0;
+        shpFiles.add(shp);
+        if (shpFiles.size() > 1) {
+            LOGGER.info("Shapefile size limit reached, continuing with " + shp.getName());
+        }
+    }
+
+    private void finishPart() throws IOException {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } finally {
+            writer = null;
+            if (dataStore != null) {
+                dataStore.dispose();
+                dataStore = null;
+            }
+        }
+    }
+
+    private void readDbfHeader(File dbf) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(dbf, "r")) {
+            file.seek(8);
+            int headerLength = file.readUnsignedByte() | (file.readUnsignedByte() << 8);
+            int recordLength = file.readUnsignedByte() | (file.readUnsignedByte() << 8);
+            // header plus the end of file marker
+            dbfSize = headerLength + 1;
+            dbfRecordSize = recordLength;
+        }
+    }
+
+    /**
+     * Estimates the length of a shape record's content (without the record
+     * header). Measured (Z) shapes are assumed whenever the first coordinate
+     * has a z value, which slightly overestimates mixed collections.
+     */
+    static long estimateContentLength(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return 4;
+        }
+        Coordinate first = geometry.getCoordinate();
+        boolean hasZ = first != null && !Double.isNaN(first.getZ());
+        long points = geometry.getNumPoints();
+
+        if (geometry instanceof Point) {
+            return hasZ ? 36 : 20;
+        }
+        long length;
+        if (geometry instanceof Puntal) {
+            length = 40 + 16 * points;
+        } else {
+            length = 44 + 4 * countParts(geometry) + 16 * points;
+        }
+        if (hasZ) {
+            length += 32 + 16 * points;
+        }
+        return length;
+    }
+
+    private static long countParts(Geometry geometry) {
+        long parts = 0;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof Polygon) {
+                parts += 1 + ((Polygon) part).getNumInteriorRing();
+            } else {
+                parts++;
+            }
+        }
+        return parts;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+}
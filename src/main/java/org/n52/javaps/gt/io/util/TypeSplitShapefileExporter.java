@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.javaps.gt.io.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.Lineal;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.Puntal;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a collection with mixed geometry types into one shapefile per
+ * geometry type, in a single pass. Features are routed while streaming to
+ * <code>&lt;base&gt;_point</code>, <code>&lt;base&gt;_line</code> and
+ * <code>&lt;base&gt;_polygon</code>; each of them is a
+ * {@link ShapefileSplitter} that is only created once the first feature of its
+ * type arrives. Single geometries are promoted to their multi counterpart and
+ * homogeneous geometry collections are converted, heterogeneous ones and null
+ * geometries are skipped.
+ */
+public class TypeSplitShapefileExporter implements Closeable {
+
+    public static final String POINT_SUFFIX = "_point";
+
+    public static final String LINE_SUFFIX = "_line";
+
+    public static final String POLYGON_SUFFIX = "_polygon";
+
+    private static final String[] SUFFIXES = { POINT_SUFFIX, LINE_SUFFIX, POLYGON_SUFFIX };
+
+    private static final String SHP = ".shp";
+
+    private static Logger LOGGER = LoggerFactory.getLogger(TypeSplitShapefileExporter.class);
+
+    private final String basePath;
+
+    private final SimpleFeatureType featureType;
+
+    private final List<AttributeDescriptor> attributes = new ArrayList<>();
+
+    private final Map<String, TypeWriter> writers = new LinkedHashMap<>();
+
+    private long maxPartSize = ShapefileSplitter.DEFAULT_MAX_PART_SIZE;
+
+    private CoordinateReferenceSystem crs;
+
+    private boolean createSpatialIndex;
+
+    private long skipped;
+
+    /**
+     * @param shpFile
+     *            the file name the type specific shapefiles are derived from,
+     *            the file itself is not written
+     * @param featureType
+     *            the type of the features that will be written
+     */
+    public TypeSplitShapefileExporter(File shpFile,
+            SimpleFeatureType featureType) {
+        String path = shpFile.getAbsolutePath();
+        if (path.toLowerCase().endsWith(SHP)) {
+            path = path.substring(0, path.length() - SHP.length());
+        }
+        this.basePath = path;
+        this.featureType = featureType;
+        for (AttributeDescriptor descriptor : featureType.getAttributeDescriptors()) {
+            if (descriptor instanceof GeometryDescriptor) {
+                continue;
+            }
+            if (isSupportedAttributeType(descriptor.getType().getBinding())) {
+                attributes.add(descriptor);
+            } else {
+                LOGGER.debug("Attribute " + descriptor.getLocalName() + " can not be stored in a shapefile.");
+            }
+        }
+    }
+
+    /**
+     * @param featureType
+     *            a feature type
+     * @return <code>true</code> if the default geometry of the type does not
+     *         restrict the geometry type, so features have to be split by
+     *         geometry type to be stored as shapefile
+     */
+    public static boolean hasGenericGeometry(SimpleFeatureType featureType) {
+        GeometryDescriptor descriptor = featureType.getGeometryDescriptor();
+        if (descriptor == null) {
+            return false;
+        }
+        Class<?> binding = descriptor.getType().getBinding();
+        return binding.equals(Geometry.class) || binding.equals(GeometryCollection.class);
+    }
+
+    /**
+     * Exports a collection in a single traversal.
+     *
+     * @param collection
+     *            the collection
+     * @param shpFile
+     *            the file name the type specific shapefiles are derived from
+     * @return the first .shp file of each geometry type that occurred
+     * @throws IOException
+     *             if writing a shapefile fails
+     */
+    public static List<File> export(FeatureCollection<?, ?> collection,
+            File shpFile) throws IOException {
+        TypeSplitShapefileExporter exporter = new TypeSplitShapefileExporter(shpFile, (SimpleFeatureType) collection
+                .getSchema());
+        FeatureIterator<?> iterator = collection.features();
+        try {
+            while (iterator.hasNext()) {
+                exporter.write((SimpleFeature) iterator.next());
+            }
+        } finally {
+            iterator.close();
+            exporter.close();
+        }
+        return exporter.getShpFiles();
+    }
+
+    /**
+     * Looks up the shapefiles of the other geometry types that were written
+     * together with the given one.
+     *
+     * @param shpFile
+     *            a .shp file written by this exporter
+     * @return the .shp files of the other geometry types; empty if the file
+     *         is not part of a type split export
+     */
+    public static List<File> getRelatedShapefiles(File shpFile) {
+        List<File> related = new ArrayList<>();
+        String path = shpFile.getAbsolutePath();
+        if (!path.toLowerCase().endsWith(SHP)) {
+            return related;
+        }
+        String base = path.substring(0, path.length() - SHP.length());
+        for (String suffix : SUFFIXES) {
+            if (base.endsWith(suffix)) {
+                String prefix = base.substring(0, base.length() - suffix.length());
+                for (String other : SUFFIXES) {
+                    File candidate = new File(prefix + other + SHP);
+                    if (!other.equals(suffix) && candidate.exists()) {
+                        related.add(candidate);
+                    }
+                }
+                break;
+            }
+        }
+        return related;
+    }
+
+    public void setMaxPartSize(long maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    /**
+     * @param crs
+     *            the coordinate reference system written to the .prj files
+     *            instead of the one of the feature type
+     */
+    public void setCoordinateReferenceSystem(CoordinateReferenceSystem crs) {
+        this.crs = crs;
+    }
+
+    public void setCreateSpatialIndex(boolean createSpatialIndex) {
+        this.createSpatialIndex = createSpatialIndex;
+    }
+
+    public void write(SimpleFeature feature) throws IOException {
+        Geometry geometry = normalize((Geometry) feature.getDefaultGeometry());
+        String suffix = geometry == null ? null : getSuffix(geometry);
+        if (suffix == null) {
+            skipped++;
+            return;
+        }
+        TypeWriter writer = writers.get(suffix);
+        if (writer == null) {
+            writer = new TypeWriter(suffix, geometry.getClass());
+            writers.put(suffix, writer);
+        }
+        writer.write(feature, geometry);
+    }
+
+    /**
+     * @return the first .shp file of each geometry type written so far
+     */
+    public List<File> getShpFiles() {
+        List<File> files = new ArrayList<>();
+        for (TypeWriter writer : writers.values()) {
+            files.add(writer.shpFile);
+        }
+        return files;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (skipped > 0) {
+            LOGGER.info("Skipped " + skipped + " features without geometry or with mixed geometry collections.");
+        }
+        IOException exception = null;
+        for (TypeWriter writer : writers.values()) {
+            try {
+                writer.splitter.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static Geometry normalize(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        if (geometry instanceof Point) {
+            return geometry.getFactory().createMultiPoint(new Point[] { (Point) geometry });
+        } else if (geometry instanceof LineString) {
+            return geometry.getFactory().createMultiLineString(new LineString[] { (LineString) geometry });
+        } else if (geometry instanceof Polygon) {
+            return geometry.getFactory().createMultiPolygon(new Polygon[] { (Polygon) geometry });
+        } else if (geometry instanceof MultiPoint || geometry instanceof MultiLineString
+                || geometry instanceof MultiPolygon) {
+            return geometry;
+        }
+        // plain geometry collection, buildGeometry returns a multi geometry
+        // if all members have the same type
+        List<Geometry> members = new ArrayList<>();
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry member = normalize(geometry.getGeometryN(i));
+            if (member != null) {
+                for (int j = 0; j < member.getNumGeometries(); j++) {
+                    members.add(member.getGeometryN(j));
+                }
+            }
+        }
+        Geometry result = geometry.getFactory().buildGeometry(members);
+        return result instanceof GeometryCollection && !(result instanceof MultiPoint
+                || result instanceof MultiLineString || result instanceof MultiPolygon) ? null : normalize(result);
+    }
+
+    private static String getSuffix(Geometry geometry) {
+        if (geometry instanceof Puntal) {
+            return POINT_SUFFIX;
+        } else if (geometry instanceof Lineal) {
+            return LINE_SUFFIX;
+        } else if (geometry instanceof Polygonal) {
+            return POLYGON_SUFFIX;
+        }
+        return null;
+    }
+
+    private static boolean isSupportedAttributeType(Class<?> binding) {
+        return Number.class.isAssignableFrom(binding) || String.class.equals(binding) || Boolean.class.equals(
+                binding) || Date.class.isAssignableFrom(binding);
+    }
+
+    private class TypeWriter {
+
+        private final File shpFile;
+
+        private final ShapefileSplitter splitter;
+
+        private final SimpleFeatureBuilder builder;
+
+        TypeWriter(String suffix,
+                Class<?> geometryBinding) {
+            SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+            typeBuilder.setName(featureType.getTypeName() + suffix);
+            typeBuilder.setNamespaceURI(featureType.getName().getNamespaceURI());
+            typeBuilder.setCRS(featureType.getCoordinateReferenceSystem());
+            typeBuilder.add(featureType.getGeometryDescriptor().getLocalName(), geometryBinding);
+            for (AttributeDescriptor descriptor : attributes) {
+                typeBuilder.add(descriptor);
+            }
+            SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+            shpFile = new File(basePath + suffix + SHP);
+            splitter = new ShapefileSplitter(shpFile, type);
+            splitter.setMaxPartSize(maxPartSize);
+            splitter.setCreateSpatialIndex(createSpatialIndex);
+            if (crs != null) {
+                splitter.setCoordinateReferenceSystem(crs);
+            }
+            builder = new SimpleFeatureBuilder(type);
+        }
+
+        void write(SimpleFeature feature,
+                Geometry geometry) throws IOException {
+            builder.add(geometry);
+            for (AttributeDescriptor descriptor : attributes) {
+                builder.add(feature.getAttribute(descriptor.getName()));
+            }
+            splitter.write(builder.buildFeature(feature.getID()));
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.n52.javaps.gt.io.CoordinatePrecision;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class CoordinatePrecisionTest {
+
+    private static LineString createLine() {
+        return new GeometryFactory().createLineString(new Coordinate[] { new Coordinate(7.123456789, 51.987654321),
+                new Coordinate(7.5, 52.000049) });
+    }
+
+    @Test
+    public void testProperties() {
+        ObjectNode properties = new ObjectMapper().createObjectNode();
+        assertFalse(CoordinatePrecision.forInput(properties).isReduced());
+        assertFalse(CoordinatePrecision.forOutput(null).isReduced());
+
+        properties.put(CoordinatePrecision.INPUT_DECIMALS, 3);
+        properties.put(CoordinatePrecision.FLOAT_COORDINATES, true);
+        properties.put(CoordinatePrecision.OUTPUT_DECIMALS, 5);
+        CoordinatePrecision input = CoordinatePrecision.forInput(properties);
+        assertEquals(3, input.getDecimals());
+        assertTrue(input.isFloatCoordinates());
+        CoordinatePrecision output = CoordinatePrecision.forOutput(properties);
+        assertEquals(5, output.getDecimals());
+        assertFalse(output.isFloatCoordinates());
+        assertEquals(4, CoordinatePrecision.FULL.getDecimals(4));
+    }
+
+    @Test
+    public void testSnap() {
+        LineString line = createLine();
+        Geometry snapped = new CoordinatePrecision(3, false).snap(line);
+        assertSame(line, snapped);
+        assertEquals(7.123, snapped.getCoordinates()[0].x, 0);
+        assertEquals(51.988, snapped.getCoordinates()[0].y, 0);
+        assertEquals(52.0, snapped.getCoordinates()[1].y, 0);
+    }
+
+    @Test
+    public void testSnapToFloat() {
+        LineString line = createLine();
+        line.setSRID(4326);
+        Geometry snapped = new CoordinatePrecision(2, true).snap(line);
+        assertNotSame(line, snapped);
+        assertSame(PackedCoordinateSequenceFactory.FLOAT_FACTORY, snapped.getFactory()
+                .getCoordinateSequenceFactory());
+        assertEquals(4326, snapped.getSRID());
+        assertEquals(7.12, snapped.getCoordinates()[0].x, 1e-6);
+    }
+
+    @Test
+    public void testReduce() {
+        LineString line = createLine();
+        Geometry reduced = new CoordinatePrecision(1, false).reduce(line);
+        assertNotSame(line, reduced);
+        assertEquals(7.1, reduced.getCoordinates()[0].x, 0);
+        assertEquals(7.123456789, line.getCoordinates()[0].x, 0);
+        assertSame(line, CoordinatePrecision.FULL.reduce(line));
+    }
+
+    @Test
+    public void testReduceFeatures() {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(10);
+        SimpleFeatureCollection reduced = new CoordinatePrecision(0, false).reduce(source);
+        assertEquals(source.size(), reduced.size());
+        try (SimpleFeatureIterator iterator = reduced.features()) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                Coordinate coordinate = ((Geometry) feature.getDefaultGeometry()).getCoordinate();
+                assertEquals(Math.rint(coordinate.x), coordinate.x, 0);
+                assertEquals(Math.rint(coordinate.y), coordinate.y, 0);
+            }
+        }
+        assertSame(source, CoordinatePrecision.FULL.reduce(source));
+    }
+
+}
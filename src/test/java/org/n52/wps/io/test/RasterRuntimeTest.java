@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
+import javax.media.jai.TileScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.javaps.gt.io.RasterRuntime;
+import org.n52.javaps.gt.io.util.CompressionExecutor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class RasterRuntimeTest {
+
+    private long capacity;
+
+    private float threshold;
+
+    private int parallelism;
+
+    private int prefetchParallelism;
+
+    private int threads;
+
+    @Before
+    public void saveSettings() {
+        TileCache tileCache = JAI.getDefaultInstance().getTileCache();
+        TileScheduler scheduler = JAI.getDefaultInstance().getTileScheduler();
+        capacity = tileCache.getMemoryCapacity();
+        threshold = tileCache.getMemoryThreshold();
+        parallelism = scheduler.getParallelism();
+        prefetchParallelism = scheduler.getPrefetchParallelism();
+        threads = CompressionExecutor.getThreads();
+    }
+
+    @After
+    public void restoreSettings() {
+        TileCache tileCache = JAI.getDefaultInstance().getTileCache();
+        TileScheduler scheduler = JAI.getDefaultInstance().getTileScheduler();
+        tileCache.setMemoryCapacity(capacity);
+        tileCache.setMemoryThreshold(threshold);
+        scheduler.setParallelism(parallelism);
+        scheduler.setPrefetchParallelism(prefetchParallelism);
+        CompressionExecutor.setThreads(threads);
+    }
+
+    private static RasterRuntime createRuntime(final JsonNode properties) {
+        return new RasterRuntime() {
+            @Override
+            public JsonNode getProperties() {
+                return properties;
+            }
+        };
+    }
+
+    @Test
+    public void testConfiguredSettings() {
+        ObjectNode properties = new ObjectMapper().createObjectNode();
+        properties.put("tilecachecapacitymb", 64);
+        properties.put("tilecachememorythreshold", 0.5);
+        properties.put("tileschedulerparallelism", 3);
+        properties.put("tileschedulerprefetchparallelism", 2);
+        properties.put("compressionthreads", 5);
+
+        RasterRuntime runtime = createRuntime(properties);
+        runtime.init();
+
+        TileScheduler scheduler = JAI.getDefaultInstance().getTileScheduler();
+        assertEquals(64L * 1024 * 1024, runtime.getMemoryCapacity());
+        assertEquals(0.5f, JAI.getDefaultInstance().getTileCache().getMemoryThreshold(), 0f);
+        assertEquals(3, scheduler.getParallelism());
+        assertEquals(2, scheduler.getPrefetchParallelism());
+        assertEquals(5, CompressionExecutor.getThreads());
+    }
+
+    @Test
+    public void testDefaultSettings() {
+        RasterRuntime runtime = createRuntime(new ObjectMapper().createObjectNode());
+        runtime.init();
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        TileScheduler scheduler = JAI.getDefaultInstance().getTileScheduler();
+        assertEquals(Runtime.getRuntime().maxMemory() / 4, runtime.getMemoryCapacity());
+        assertEquals(processors, scheduler.getParallelism());
+        assertEquals(processors, scheduler.getPrefetchParallelism());
+        assertEquals(processors, CompressionExecutor.getThreads());
+    }
+
+    @Test
+    public void testStatisticsWithoutDiagnostics() {
+        RasterRuntime runtime = createRuntime(new ObjectMapper().createObjectNode());
+        runtime.init();
+
+        // the default tile cache reports its memory and tiles anyway
+        assertTrue(runtime.getMemoryUsed() >= 0);
+        assertTrue(runtime.getTileCount() >= 0);
+        assertEquals(-1, runtime.getHitCount());
+        assertEquals(-1, runtime.getMissCount());
+        assertEquals(-1, runtime.getHitRate(), 0);
+    }
+
+}
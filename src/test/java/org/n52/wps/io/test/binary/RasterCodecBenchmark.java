@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.binary;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.n52.javaps.gt.io.binary.RasterCodec;
+
+/**
+ * Compares the {@link RasterCodec} round trip of a single band float
+ * coverage with writing and reading it as GeoTIFF through a temporary file.
+ * Not run as part of the test suite, start it with
+ * <code>java org.n52.wps.io.test.binary.RasterCodecBenchmark [size]</code>
+ * from the test classpath.
+ */
+public final class RasterCodecBenchmark {
+
+    private RasterCodecBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        GridCoverage2D coverage = RasterCodecTest.createCoverage(size, size);
+
+        // warm up
+        codec(coverage, true);
+        geoTiff(coverage);
+
+        System.out.println("format\twrite ms\tread ms\tsize");
+        print("codec deflate", codec(coverage, true));
+        print("codec stored", codec(coverage, false));
+        print("geotiff", geoTiff(coverage));
+    }
+
+    private static void print(String format,
+            long[] result) {
+        System.out.println(String.format("%s\t%d\t%d\t%d", format, result[0], result[1], result[2]));
+    }
+
+    /**
+     * @return the write and read time in milliseconds and the size
+     */
+    private static long[] codec(GridCoverage2D coverage,
+            boolean compress) throws IOException {
+        RasterCodec codec = new RasterCodec(compress, RasterCodec.DEFAULT_TILE_SIZE);
+        File file = File.createTempFile("benchmark", ".bin");
+        file.deleteOnExit();
+        long start = System.nanoTime();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            codec.write(coverage, out);
+        }
+        long written = System.nanoTime();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            codec.read(in).getRenderedImage().getData();
+        }
+        long read = System.nanoTime();
+        long size = file.length();
+        file.delete();
+        return new long[] { (written - start) / 1000000, (read - written) / 1000000, size };
+    }
+
+    private static long[] geoTiff(GridCoverage2D coverage) throws IOException {
+        File file = File.createTempFile("benchmark", ".tif");
+        file.deleteOnExit();
+        long start = System.nanoTime();
+        GeoTiffWriter writer = new GeoTiffWriter(file);
+        try {
+            writer.write(coverage, null);
+        } finally {
+            writer.dispose();
+        }
+        long written = System.nanoTime();
+        GeoTiffReader reader = new GeoTiffReader(file);
+        try {
+            reader.read(null).getRenderedImage().getData();
+        } finally {
+            reader.dispose();
+        }
+        long read = System.nanoTime();
+        long size = file.length();
+        file.delete();
+        return new long[] { (written - start) / 1000000, (read - written) / 1000000, size };
+    }
+
+}
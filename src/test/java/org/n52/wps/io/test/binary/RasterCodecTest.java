@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.n52.javaps.gt.io.binary.RasterCodec;
+import org.n52.javaps.gt.io.binary.RasterCodec.Header;
+import org.n52.javaps.gt.io.data.binding.complex.GTRasterDataBinding;
+
+public class RasterCodecTest {
+
+    static GridCoverage2D createCoverage(int width,
+            int height) {
+        WritableRaster raster = Raster.createWritableRaster(new PixelInterleavedSampleModel(DataBuffer.TYPE_FLOAT,
+                width, height, 1, width, new int[] { 0 }), null);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.setSample(x, y, 0, (float) (100 * Math.sin(x / 50.0) * Math.cos(y / 70.0)));
+            }
+        }
+        BufferedImage image = new BufferedImage(new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_FLOAT), raster, false, null);
+        return new GridCoverageFactory().create("test", image, new ReferencedEnvelope(5, 10, 50, 55,
+                DefaultGeographicCRS.WGS84));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        GridCoverage2D coverage = createCoverage(600, 400);
+        for (boolean compress : new boolean[] { true, false }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            RasterCodec codec = new RasterCodec(compress, 128);
+            codec.write(coverage, out);
+
+            Header header = codec.readHeader(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(600, header.getWidth());
+            assertEquals(DataBuffer.TYPE_FLOAT, header.getDataType());
+            assertTrue(CRS.equalsIgnoreMetadata(DefaultGeographicCRS.WGS84, header.getCoordinateReferenceSystem()));
+            assertEquals(5, header.getEnvelope().getMinimum(0), 1e-9);
+
+            GridCoverage2D read = codec.read(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(coverage.getEnvelope2D().getMaxX(), read.getEnvelope2D().getMaxX(), 1e-9);
+            assertEquals(coverage.getEnvelope2D().getMinY(), read.getEnvelope2D().getMinY(), 1e-9);
+            assertSamplesEqual(coverage.getRenderedImage(), read.getRenderedImage(), new Rectangle(0, 0, 600, 400));
+        }
+    }
+
+    @Test
+    public void testPartialRead() throws IOException {
+        GridCoverage2D coverage = createCoverage(600, 400);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RasterCodec codec = new RasterCodec(true, 128);
+        codec.write(coverage, out);
+
+        Rectangle region = new Rectangle(300, 200, 50, 40);
+        GridCoverage2D read = codec.read(new ByteArrayInputStream(out.toByteArray()), region);
+        assertNotNull(read);
+        assertEquals(region, read.getRenderedImage().getData().getBounds());
+        assertSamplesEqual(coverage.getRenderedImage(), read.getRenderedImage(), region);
+        // pixel 300 of 600 is the middle of the envelope
+        assertEquals(7.5, read.getEnvelope2D().getMinX(), 1e-9);
+
+        assertNull(codec.read(new ByteArrayInputStream(out.toByteArray()), new Rectangle(700, 0, 10, 10)));
+    }
+
+    @Test
+    public void testBindingSerialization() throws IOException, ClassNotFoundException {
+        GridCoverage2D coverage = createCoverage(300, 200);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new GTRasterDataBinding(coverage));
+            out.writeObject("after");
+        }
+        try (InputStream in = new ByteArrayInputStream(bytes.toByteArray());
+                ObjectInputStream objects = new ObjectInputStream(in)) {
+            GTRasterDataBinding binding = (GTRasterDataBinding) objects.readObject();
+            assertSamplesEqual(coverage.getRenderedImage(), binding.getPayload().getRenderedImage(),
+                    new Rectangle(0, 0, 300, 200));
+            assertEquals("after", objects.readObject());
+        }
+    }
+
+    private void assertSamplesEqual(RenderedImage expected,
+            RenderedImage actual,
+            Rectangle region) {
+        Raster expectedData = expected.getData(region);
+        Raster actualData = actual.getData(region);
+        for (int y = region.y; y < region.y + region.height; y++) {
+            for (int x = region.x; x < region.x + region.width; x++) {
+                assertEquals("at " + x + "," + y, expectedData.getSampleFloat(x, y, 0), actualData.getSampleFloat(x,
+                        y, 0), 0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.n52.javaps.gt.io.GTHelper;
+import org.n52.javaps.gt.io.binary.VectorCodec;
+import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.datahandler.generator.GML3BasicGenerator;
+import org.n52.javaps.gt.io.datahandler.parser.GML3BasicParser;
+import org.n52.shetland.ogc.wps.Format;
+
+/**
+ * Compares the {@link VectorCodec} round trip of point features with the
+ * GML 3 generator and parser previously used to serialize
+ * {@link GTVectorDataBinding}. The last line gives how many times slower and
+ * larger GML 3 is than the codec. Not run as part of the test suite, start it
+ * with
+ * <code>java org.n52.wps.io.test.binary.VectorCodecBenchmark [features]</code>
+ * from the test classpath.
+ */
+public final class VectorCodecBenchmark {
+
+    private VectorCodecBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        SimpleFeatureCollection features = VectorCodecTest.createFeatures(count);
+
+        // warm up
+        codec(features);
+        gml(features);
+
+        System.out.println("format\twrite ms\tread ms\tsize");
+        long[] codec = codec(features);
+        long[] gml = gml(features);
+        print("codec", codec);
+        print("gml3", gml);
+        System.out.println(String.format("gml3/codec\t%.1f\t%.1f\t%.1f", ratio(gml[0], codec[0]), ratio(gml[1],
+                codec[1]), ratio(gml[2], codec[2])));
+    }
+
+    private static double ratio(long value,
+            long base) {
+        return (double) value / Math.max(base, 1);
+    }
+
+    private static void print(String format,
+            long[] result) {
+        System.out.println(String.format("%s\t%d\t%d\t%d", format, result[0], result[1], result[2]));
+    }
+
+    /**
+     * @return the write and read time in milliseconds and the size
+     */
+    private static long[] codec(SimpleFeatureCollection features) throws Exception {
+        VectorCodec codec = new VectorCodec();
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(features, out);
+        long written = System.nanoTime();
+        codec.read(new ByteArrayInputStream(out.toByteArray()));
+        long read = System.nanoTime();
+        return new long[] { (written - start) / 1000000, (read - written) / 1000000, out.size() };
+    }
+
+    /**
+     * The handlers are injected in the service, set their helper here.
+     */
+    private static <T> T withHelper(T handler) throws ReflectiveOperationException {
+        Field field = handler.getClass().getDeclaredField("gtHelper");
+        field.setAccessible(true);
+        field.set(handler, new GTHelper());
+        return handler;
+    }
+
+    private static long[] gml(SimpleFeatureCollection features) throws Exception {
+        GML3BasicGenerator generator = withHelper(new GML3BasicGenerator());
+        GML3BasicParser parser = withHelper(new GML3BasicParser());
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.writeToStream(new GTVectorDataBinding(features), out);
+        long written = System.nanoTime();
+        parser.parse(null, new ByteArrayInputStream(out.toByteArray()), new Format("text/xml"));
+        long read = System.nanoTime();
+        return new long[] { (written - start) / 1000000, (read - written) / 1000000, out.size() };
+    }
+
+}
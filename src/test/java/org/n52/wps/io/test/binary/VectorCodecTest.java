@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.n52.javaps.gt.io.binary.VectorCodec;
+import org.n52.javaps.gt.io.binary.VectorCodec.FeatureStream;
+import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class VectorCodecTest {
+
+    public static SimpleFeatureCollection createFeatures(int count) {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("sample");
+        typeBuilder.setNamespaceURI("http://www.52north.org/test");
+        typeBuilder.crs(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", Point.class);
+        typeBuilder.add("name", String.class);
+        typeBuilder.add("count", Integer.class);
+        typeBuilder.add("value", Double.class);
+        typeBuilder.add("id", Long.class);
+        typeBuilder.add("date", Date.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<SimpleFeature> features = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            features.add(SimpleFeatureBuilder.build(type, new Object[] { geometryFactory.createPoint(new Coordinate(
+                    i % 360 - 180, i % 180 - 90)), i % 7 == 0 ? null : "feature " + i, i, i / 3.0, i * 1000000000L,
+                    new Date(1500000000000L + i) }, "sample." + i));
+        }
+        return new ListFeatureCollection(type, features);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        SimpleFeatureCollection features = createFeatures(2500);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new VectorCodec().write(features, out);
+
+        SimpleFeatureCollection read = new VectorCodec().read(new ByteArrayInputStream(out.toByteArray()));
+        SimpleFeatureType type = read.getSchema();
+        assertEquals("sample", type.getTypeName());
+        assertEquals("http://www.52north.org/test", type.getName().getNamespaceURI());
+        assertEquals("the_geom", type.getGeometryDescriptor().getLocalName());
+        assertEquals(Point.class, type.getGeometryDescriptor().getType().getBinding());
+        assertTrue(CRS.equalsIgnoreMetadata(DefaultGeographicCRS.WGS84, type.getCoordinateReferenceSystem()));
+        assertEquals(features.size(), read.size());
+
+        try (SimpleFeatureIterator expected = features.features();
+                SimpleFeatureIterator actual = read.features()) {
+            while (expected.hasNext()) {
+                SimpleFeature expectedFeature = expected.next();
+                SimpleFeature actualFeature = actual.next();
+                assertEquals(expectedFeature.getID(), actualFeature.getID());
+                assertEquals(expectedFeature.getAttributes(), actualFeature.getAttributes());
+            }
+        }
+    }
+
+    @Test
+    public void testStreaming() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new VectorCodec().write(createFeatures(3000), out);
+        out.writeUTF("after");
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        FeatureStream stream = new VectorCodec().open(in);
+        assertEquals("sample", stream.getFeatureType().getTypeName());
+        int count = 0;
+        while (stream.hasNext()) {
+            SimpleFeature feature = stream.next();
+            assertEquals("sample." + count, feature.getID());
+            count++;
+        }
+        assertEquals(3000, count);
+        assertEquals("after", in.readUTF());
+    }
+
+    @Test
+    public void testBindingSerialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new GTVectorDataBinding(createFeatures(10)));
+            out.writeObject(new GTVectorDataBinding(null));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            GTVectorDataBinding binding = (GTVectorDataBinding) in.readObject();
+            assertEquals(10, binding.getPayload().size());
+            assertNull(((GTVectorDataBinding) in.readObject()).getPayload());
+        }
+    }
+
+}
@@ -47,16 +47,39 @@
  */
 package org.n52.wps.io.test.data;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
 import org.n52.javaps.gt.io.data.GenericFileDataWithGT;
+import org.n52.javaps.gt.io.util.ShapefileSplitter;
 import org.n52.javaps.io.GenericFileDataConstants;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
 public class GenericFileDataTest{
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testUnzipData(){
 
@@ -69,4 +92,113 @@ public class GenericFileDataTest{
         assertTrue(unzippedFilePath != null && !unzippedFilePath.equals(""));
     }
 
+    @Test
+    public void testSplitShapefileRoundTrip() throws Exception {
+
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("points");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.length(10).add("name", String.class);
+        typeBuilder.add("the_geom", Point.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(type);
+
+        File shp = new File(folder.getRoot(), "points.shp");
+        try (ShapefileSplitter splitter = new ShapefileSplitter(shp, type)) {
+            splitter.setMaxPartSize(100 + 10 * 28);
+            for (int i = 0; i < 25; i++) {
+                featureBuilder.add("point" + i);
+                featureBuilder.add(geometryFactory.createPoint(new Coordinate(i, i)));
+                splitter.write(featureBuilder.buildFeature("points." + i));
+            }
+        }
+        assertEquals(2, ShapefileSplitter.getAdditionalParts(shp).size());
+
+        GenericFileDataWithGT data = new GenericFileDataWithGT(shp, GenericFileDataConstants.MIME_TYPE_ZIPPED_SHP);
+        SimpleFeatureCollection features = data.getAsGTVectorDataBinding().getPayload();
+
+        assertEquals(25, features.size());
+        Set<String> names = new HashSet<>();
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                names.add((String) iterator.next().getAttribute("name"));
+            }
+        }
+        assertEquals(25, names.size());
+    }
+
+    @Test
+    public void testMixedGeometryRoundTrip() throws Exception {
+
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("mixed");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.length(10).add("name", String.class);
+        typeBuilder.add("the_geom", Geometry.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(type);
+        ListFeatureCollection collection = new ListFeatureCollection(type);
+        featureBuilder.add("point");
+        featureBuilder.add(geometryFactory.createPoint(new Coordinate(1, 1)));
+        collection.add(featureBuilder.buildFeature("mixed.1"));
+        featureBuilder.add("line");
+        featureBuilder.add(geometryFactory.createLineString(new Coordinate[] { new Coordinate(0, 0), new Coordinate(
+                1, 1) }));
+        collection.add(featureBuilder.buildFeature("mixed.2"));
+        featureBuilder.add("polygon");
+        featureBuilder.add(geometryFactory.createPolygon(new Coordinate[] { new Coordinate(0, 0), new Coordinate(1,
+                0), new Coordinate(1, 1), new Coordinate(0, 0) }));
+        collection.add(featureBuilder.buildFeature("mixed.3"));
+
+        GenericFileDataWithGT data = new GenericFileDataWithGT(collection);
+        File workspace = folder.newFolder();
+        data.writeData(workspace);
+        File[] files = workspace.listFiles();
+        assertTrue(files != null && files.length >= 9);
+
+        SimpleFeatureCollection features = new GenericFileDataWithGT(collection).getAsGTVectorDataBinding()
+                .getPayload();
+
+        assertEquals(3, features.size());
+        Set<String> geometryTypes = new HashSet<>();
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                geometryTypes.add(((Geometry) feature.getDefaultGeometry()).getGeometryType());
+            }
+        }
+        assertEquals(3, geometryTypes.size());
+    }
+
+    @Test
+    public void testMixedGeometryWithoutCRS() throws Exception {
+
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("mixed");
+        typeBuilder.length(10).add("name", String.class);
+        typeBuilder.add("the_geom", Geometry.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(type);
+        ListFeatureCollection collection = new ListFeatureCollection(type);
+        featureBuilder.add("point");
+        featureBuilder.add(geometryFactory.createPoint(new Coordinate(1, 1)));
+        collection.add(featureBuilder.buildFeature("mixed.1"));
+        featureBuilder.add("line");
+        featureBuilder.add(geometryFactory.createLineString(new Coordinate[] { new Coordinate(0, 0), new Coordinate(
+                1, 1) }));
+        collection.add(featureBuilder.buildFeature("mixed.2"));
+
+        SimpleFeatureCollection features = new GenericFileDataWithGT(collection).getAsGTVectorDataBinding()
+                .getPayload();
+
+        assertEquals(2, features.size());
+        assertNotNull(features.getSchema().getCoordinateReferenceSystem());
+    }
+
 }
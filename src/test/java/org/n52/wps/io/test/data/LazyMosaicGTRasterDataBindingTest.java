@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.geometry.GeneralEnvelope;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.javaps.gt.io.data.binding.complex.LazyGTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyMosaicGTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyMosaicGTRasterDataBinding.Tile;
+
+public class LazyMosaicGTRasterDataBindingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTilesAreOpenedOnDemand() throws IOException {
+
+        File scene = folder.newFile("scene.tif");
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("6_UTM2GTIF.tif")) {
+            Files.copy(input, scene.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        LazyGTRasterDataBinding source = new LazyGTRasterDataBinding(new GeoTiffReader(scene));
+        GeneralEnvelope envelope = source.getEnvelope();
+
+        // split the scene into a western and an eastern tile
+        List<File> tileFiles = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            GeneralEnvelope half = new GeneralEnvelope(new double[] { i == 0 ? envelope.getMinimum(0) : envelope
+                    .getMedian(0), envelope.getMinimum(1) }, new double[] { i == 0 ? envelope.getMedian(0)
+                            : envelope.getMaximum(0), envelope.getMaximum(1) });
+            half.setCoordinateReferenceSystem(envelope.getCoordinateReferenceSystem());
+            File tileFile = folder.newFile("tile" + i + ".tif");
+            GeoTiffWriter writer = new GeoTiffWriter(tileFile);
+            try {
+                writer.write(source.read(half, 0, null), null);
+            } finally {
+                writer.dispose();
+            }
+            tileFiles.add(tileFile);
+        }
+        source.dispose();
+
+        AtomicInteger opened = new AtomicInteger();
+        List<Tile> tiles = new ArrayList<>();
+        for (File tileFile : tileFiles) {
+            tiles.add(() -> {
+                opened.incrementAndGet();
+                return new LazyGTRasterDataBinding(new GeoTiffReader(tileFile));
+            });
+        }
+        LazyMosaicGTRasterDataBinding mosaic = new LazyMosaicGTRasterDataBinding(tiles);
+        assertEquals(2, opened.get());
+        assertEquals(2, mosaic.getTileCount());
+        assertEquals(0, mosaic.getOpenTileCount());
+        assertEquals(envelope.getMinimum(0), mosaic.getEnvelope().getMinimum(0), 1e-6);
+        assertEquals(envelope.getMaximum(0), mosaic.getEnvelope().getMaximum(0), 1e-6);
+
+        GeneralEnvelope west = new GeneralEnvelope(new double[] { envelope.getMinimum(0), envelope.getMinimum(1) },
+                new double[] { envelope.getMinimum(0) + envelope.getSpan(0) / 4, envelope.getMedian(1) });
+        west.setCoordinateReferenceSystem(envelope.getCoordinateReferenceSystem());
+        assertNotNull(mosaic.read(west, 0, null));
+        assertEquals(1, mosaic.getOpenTileCount());
+
+        GeneralEnvelope outside = new GeneralEnvelope(new double[] { envelope.getMaximum(0) + 1, envelope
+                .getMinimum(1) }, new double[] { envelope.getMaximum(0) + 2, envelope.getMaximum(1) });
+        outside.setCoordinateReferenceSystem(envelope.getCoordinateReferenceSystem());
+        assertNull(mosaic.read(outside, 0, null));
+
+        GridCoverage2D payload = mosaic.getPayload();
+        assertEquals(2, mosaic.getOpenTileCount());
+        assertEquals(envelope.getSpan(0), payload.getEnvelope2D().getWidth(), envelope.getSpan(0) / 100);
+
+        mosaic.dispose();
+        assertEquals(0, mosaic.getOpenTileCount());
+    }
+
+}
@@ -50,11 +50,15 @@ package org.n52.wps.io.test.datahandler;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import javax.inject.Inject;
 
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.junit.Assert;
 import org.junit.Test;
+import org.locationtech.jts.geom.Point;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.generator.GeoJSONGenerator;
 import org.n52.javaps.gt.io.datahandler.parser.GeoJSONParser;
@@ -64,6 +68,7 @@ import org.n52.javaps.io.EncodingException;
 import org.n52.javaps.io.data.binding.complex.JTSGeometryBinding;
 import org.n52.javaps.test.AbstractTestCase;
 import org.n52.shetland.ogc.wps.Format;
+import org.opengis.feature.simple.SimpleFeature;
 
 /**
  * Test class for GeoJSON parser and generator
@@ -281,4 +286,64 @@ public class GeoJSONParserGeneratorTest extends AbstractTestCase {
 
     }
 
+    @Test
+    public void testParseFeatureCollectionWithVaryingProperties() throws IOException, DecodingException {
+
+        String featureCollectionString = "{\"type\": \"FeatureCollection\", \"features\": ["
+                + "{\"type\": \"Feature\", \"id\": \"f1\", \"geometry\": null, \"properties\": {\"count\": 1}},"
+                + "{\"type\": \"Feature\", \"id\": \"f2\","
+                + " \"geometry\": {\"type\": \"Point\", \"coordinates\": [7.0, 51.0]},"
+                + " \"properties\": {\"count\": 1.5, \"name\": \"second\"}}]}";
+
+        // columnar reading is off by default
+        GeoJSONParser parser = new GeoJSONParser() {
+            @Override
+            protected boolean isColumnar() {
+                return true;
+            }
+        };
+
+        Format format = parser.getSupportedFormats().iterator().next();
+
+        GTVectorDataBinding binding = (GTVectorDataBinding) parser.parse(null, new ByteArrayInputStream(
+                featureCollectionString.getBytes(StandardCharsets.UTF_8)), format);
+
+        SimpleFeatureCollection features = binding.getPayload();
+        Assert.assertEquals(2, features.size());
+        Assert.assertNotNull(features.getSchema().getGeometryDescriptor());
+        Assert.assertEquals(Double.class, features.getSchema().getDescriptor("count").getType().getBinding());
+
+        try (SimpleFeatureIterator iterator = features.features()) {
+            SimpleFeature first = iterator.next();
+            Assert.assertEquals(1.0, first.getAttribute("count"));
+            Assert.assertNull(first.getAttribute("name"));
+            SimpleFeature second = iterator.next();
+            Assert.assertEquals(1.5, second.getAttribute("count"));
+            Assert.assertEquals("second", second.getAttribute("name"));
+            Assert.assertTrue(second.getDefaultGeometry() instanceof Point);
+        }
+    }
+
+    @Test
+    public void testSelectionOfSingleFeature() throws IOException, DecodingException {
+
+        String featureString = "{\"type\": \"Feature\", \"id\": \"f1\","
+                + " \"geometry\": {\"type\": \"Point\", \"coordinates\": [7.66, 51.94]},"
+                + " \"properties\": {\"TYPE\": \"City\", \"NAME\": \"Muenster\"}}";
+
+        GTVectorDataBinding binding = (GTVectorDataBinding) theParser.parse(null, new ByteArrayInputStream(
+                featureString.getBytes(StandardCharsets.UTF_8)), new Format(
+                        "application/vnd.geo+json; bbox=0,0,1,1"));
+        Assert.assertTrue(binding.getPayload().isEmpty());
+
+        binding = (GTVectorDataBinding) theParser.parse(null, new ByteArrayInputStream(featureString.getBytes(
+                StandardCharsets.UTF_8)), new Format("application/vnd.geo+json; bbox=7,51,8,52; propertyname=NAME"));
+        SimpleFeatureCollection features = binding.getPayload();
+        Assert.assertEquals(1, features.size());
+        Assert.assertNull(features.getSchema().getDescriptor("TYPE"));
+        try (SimpleFeatureIterator iterator = features.features()) {
+            Assert.assertEquals("Muenster", iterator.next().getAttribute("NAME"));
+        }
+    }
+
 }
@@ -52,9 +52,12 @@ import java.io.InputStream;
 
 import javax.inject.Inject;
 
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.GeneralEnvelope;
 import org.junit.Assert;
 import org.junit.Test;
 import org.n52.javaps.gt.io.data.binding.complex.GTRasterDataBinding;
+import org.n52.javaps.gt.io.data.binding.complex.LazyGTRasterDataBinding;
 import org.n52.javaps.gt.io.datahandler.generator.GeotiffGenerator;
 import org.n52.javaps.gt.io.datahandler.parser.GeotiffParser;
 import org.n52.javaps.io.DecodingException;
@@ -105,4 +108,28 @@ public class GeotiffParserGeneratorTest extends AbstractTestCase {
 
     }
 
+    @Test
+    public void testWindowedRead() throws IOException, DecodingException {
+
+        Format format = theParser.getSupportedFormats().iterator().next();
+
+        InputStream input = getClass().getClassLoader().getResourceAsStream("6_UTM2GTIF.tif");
+
+        LazyGTRasterDataBinding theBinding = (LazyGTRasterDataBinding) theParser.parse(null, input, format);
+
+        GeneralEnvelope envelope = theBinding.getEnvelope();
+        GeneralEnvelope quarter = new GeneralEnvelope(new double[] { envelope.getMinimum(0), envelope.getMinimum(
+                1) }, new double[] { envelope.getMedian(0), envelope.getMedian(1) });
+        quarter.setCoordinateReferenceSystem(envelope.getCoordinateReferenceSystem());
+
+        GridCoverage2D window = theBinding.read(quarter, 0, new int[] { 0 });
+
+        Assert.assertNotNull(window);
+        Assert.assertEquals(1, window.getNumSampleDimensions());
+        Assert.assertTrue(window.getRenderedImage().getWidth() < theBinding.getPayload().getRenderedImage()
+                .getWidth());
+
+        theBinding.dispose();
+    }
+
 }
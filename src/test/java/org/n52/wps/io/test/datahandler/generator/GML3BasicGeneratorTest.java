@@ -53,11 +53,19 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.inject.Inject;
 
 import org.junit.Assert;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
 import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
 import org.n52.javaps.gt.io.datahandler.generator.GML3BasicGenerator;
 import org.n52.javaps.gt.io.datahandler.parser.GML3BasicParser;
@@ -65,6 +73,8 @@ import org.n52.javaps.io.DecodingException;
 import org.n52.javaps.io.EncodingException;
 import org.n52.javaps.test.AbstractTestCase;
 import org.n52.shetland.ogc.wps.Format;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
 public class GML3BasicGeneratorTest extends AbstractTestCase {
 
@@ -109,4 +119,27 @@ public class GML3BasicGeneratorTest extends AbstractTestCase {
 
     }
 
+    @Test
+    public void testFeatureWithEmptyGeometryIsSkipped() throws IOException, EncodingException, DecodingException {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("sites");
+        typeBuilder.add("the_geom", Point.class);
+        typeBuilder.add("name", String.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<SimpleFeature> features = new ArrayList<>();
+        features.add(SimpleFeatureBuilder.build(type, new Object[] { geometryFactory.createPoint(new Coordinate(1,
+                2)), "site" }, "sites.1"));
+        features.add(SimpleFeatureBuilder.build(type, new Object[] { geometryFactory.createPoint(), "empty" },
+                "sites.2"));
+
+        Format format = new Format("text/xml; subtype=gml/3.1.1", StandardCharsets.UTF_8,
+                "http://schemas.opengis.net/gml/3.1.1/base/feature.xsd");
+        InputStream resultStream = dataHandler.generate(null, new GTVectorDataBinding(new ListFeatureCollection(type,
+                features)), format);
+
+        GTVectorDataBinding parsed = (GTVectorDataBinding) theParser.parse(null, resultStream, format);
+        Assert.assertEquals(1, parsed.getPayload().size());
+    }
+
 }
@@ -89,4 +89,18 @@ public class GTBinZippedSHPParserTest extends AbstractTestCase {
 
     }
 
+    @Test
+    public void testMediaTypeWithSelectionIsSupported() {
+        Assert.assertTrue(dataHandler.isSupportedFormat(new Format("application/x-zipped-shp; bbox=5,50,10,55")));
+        Assert.assertTrue(dataHandler.isSupportedFormat(new Format(
+                "application/x-zipped-shp; bbox=5,50,10,55; propertyname=NAME", "base64")));
+        Assert.assertFalse(dataHandler.isSupportedFormat(new Format("application/zip; bbox=5,50,10,55")));
+    }
+
+    @Test(expected = DecodingException.class)
+    public void testMalformedBBox() throws IOException, DecodingException {
+        dataHandler.parse(null, getResource("tasmania_roads.zip"), new Format(
+                "application/x-zipped-shp; bbox=5,50,10"));
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.datahandler.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.geometry.jts.WKTReader2;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.io.ParseException;
+import org.n52.javaps.gt.io.GTHelper;
+
+/**
+ * Compares the heap retained by large polygons read with the geometry
+ * factories selectable through the <code>coordinatesequence</code> property
+ * of {@link GTHelper}. Not run as part of the test suite, start it with
+ * <code>java org.n52.wps.io.test.datahandler.parser.PackedCoordinatesBenchmark
+ * [polygons] [vertices]</code> from the test classpath.
+ */
+public final class PackedCoordinatesBenchmark {
+
+    private PackedCoordinatesBenchmark() {
+    }
+
+    public static void main(String[] args) throws ParseException {
+        int polygons = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int vertices = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        String wkt = createPolygon(vertices);
+
+        System.out.println("sequence\theap MB\tparse ms\tpolygons");
+        print("array", polygons, wkt, new GeometryFactory());
+        print("double", polygons, wkt, new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY));
+        print("float", polygons, wkt, new GeometryFactory(PackedCoordinateSequenceFactory.FLOAT_FACTORY));
+    }
+
+    private static String createPolygon(int vertices) {
+        StringBuilder wkt = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = 10 + (i % 2);
+            wkt.append(radius * Math.cos(angle)).append(' ').append(radius * Math.sin(angle)).append(", ");
+        }
+        return wkt.append("11 0))").toString();
+    }
+
+    private static void print(String sequence,
+            int polygons,
+            String wkt,
+            GeometryFactory geometryFactory) throws ParseException {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        WKTReader2 reader = new WKTReader2(geometryFactory);
+        List<Geometry> geometries = new ArrayList<>(polygons);
+        for (int i = 0; i < polygons; i++) {
+            geometries.add(reader.read(wkt));
+        }
+        long parsed = System.nanoTime();
+        long memory = usedMemory() - before;
+        // keeps the geometries reachable until measured
+        System.out.println(String.format("%s\t%d\t%d\t%d", sequence, memory >> 20, (parsed - start) / 1000000,
+                geometries.size()));
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.datahandler.parser.GTBinZippedSHPParser;
+import org.n52.javaps.gt.io.feature.AttributeDictionary;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Compares the heap retained by the features of the states and Tasmania
+ * roads shapefiles, read the given number of times, with and without an
+ * {@link AttributeDictionary}. Each read creates new attribute strings, like
+ * parsing a document repeating the same values would, and the share of the
+ * heap saved by the dictionary is printed per dataset. Not run as part of
+ * the test suite, start it with
+ * <code>java org.n52.wps.io.test.feature.AttributeDictionaryBenchmark [copies]</code>
+ * from the test classpath.
+ */
+public final class AttributeDictionaryBenchmark {
+
+    private AttributeDictionaryBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        System.out.println("dataset\tdictionary\theap MB\tfeatures\tvalues\thits");
+        for (String dataset : new String[] { "states.zip", "tasmania_roads.zip" }) {
+            GTVectorDataBinding binding = read(dataset);
+            SimpleFeatureCollection features = (SimpleFeatureCollection) binding.getPayload();
+            try {
+                long plain = print(dataset, features, copies, new AttributeDictionary(0));
+                long interned = print(dataset, features, copies, new AttributeDictionary(
+                        AttributeDictionary.DEFAULT_CAPACITY));
+                System.out.println(String.format("%s\tsaved %d%%", dataset, plain > 0 ? 100 * (plain - interned)
+                        / plain : 0));
+            } finally {
+                binding.dispose();
+            }
+        }
+    }
+
+    private static GTVectorDataBinding read(String dataset) throws Exception {
+        try (InputStream input = AttributeDictionaryBenchmark.class.getClassLoader().getResourceAsStream(
+                dataset)) {
+            return (GTVectorDataBinding) new GTBinZippedSHPParser().parse(null, input, null);
+        }
+    }
+
+    /**
+     * @return the heap retained by the features in bytes
+     */
+    private static long print(String dataset,
+            SimpleFeatureCollection features,
+            int copies,
+            AttributeDictionary dictionary) {
+        long before = usedMemory();
+        List<SimpleFeature> retained = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            // the shapefile reader creates new features and strings on
+            // each pass
+            try (SimpleFeatureIterator iterator = features.features()) {
+                while (iterator.hasNext()) {
+                    retained.add(dictionary.intern(iterator.next()));
+                }
+            }
+        }
+        long memory = usedMemory() - before;
+        // keeps the features reachable until measured
+        System.out.println(String.format("%s\t%d\t%d\t%d\t%d\t%d", dataset, dictionary.getCapacity(), memory >> 20,
+                retained.size(), dictionary.size(), dictionary.getHits()));
+        return memory;
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
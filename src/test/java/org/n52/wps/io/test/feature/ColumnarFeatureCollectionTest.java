@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.impl.CoordinateArraySequence;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.n52.javaps.gt.io.feature.ColumnarFeatureCollection;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class ColumnarFeatureCollectionTest {
+
+    private static List<SimpleFeature> toList(SimpleFeatureCollection features) {
+        List<SimpleFeature> list = new ArrayList<>();
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+        }
+        return list;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(2000);
+        ColumnarFeatureCollection columns = new ColumnarFeatureCollection(source.getSchema());
+        columns.addAll(source);
+
+        assertEquals(2000, columns.size());
+        assertEquals(source.getBounds(), columns.getBounds());
+        List<SimpleFeature> expected = toList(source);
+        List<SimpleFeature> actual = toList(columns);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getID(), actual.get(i).getID());
+            assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+            assertEquals(source.getSchema(), actual.get(i).getFeatureType());
+        }
+        assertNull(columns.get(0).getAttribute("name"));
+        assertEquals("feature 1", columns.get(1).getAttribute("name"));
+    }
+
+    @Test
+    public void testMixedValues() {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("mixed");
+        typeBuilder.crs(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", Geometry.class);
+        typeBuilder.add("location", Point.class);
+        typeBuilder.add("value", Integer.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        LineString line = geometryFactory.createLineString(new Coordinate[] { new Coordinate(0, 0), new Coordinate(
+                1, 1) });
+        Point point = geometryFactory.createPoint(new Coordinate(1, 2, 3));
+
+        ColumnarFeatureCollection columns = new ColumnarFeatureCollection(type);
+        columns.add(SimpleFeatureBuilder.build(type, new Object[] { line, point, 1 }, "mixed.1"));
+        columns.add(SimpleFeatureBuilder.build(type, new Object[] { point, null, null }, "other"));
+        // not an integer, the column falls back to objects
+        SimpleFeature feature = SimpleFeatureBuilder.build(type, new Object[] { null, point, null }, "mixed.3");
+        feature.setAttribute("value", 2.5);
+        columns.add(feature);
+
+        assertTrue(line.equalsExact((Geometry) columns.get(0).getAttribute("the_geom")));
+        assertEquals(3.0, ((Point) columns.get(0).getAttribute("location")).getCoordinate().getZ(), 0.0);
+        assertEquals(1, columns.get(0).getAttribute("value"));
+        assertEquals("other", columns.get(1).getID());
+        assertNull(columns.get(1).getAttribute("location"));
+        assertEquals("mixed.3", columns.get(2).getID());
+        assertEquals(2.5, columns.get(2).getAttribute("value"));
+    }
+
+    @Test
+    public void testGeometryFactory() {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("lines");
+        typeBuilder.add("the_geom", LineString.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        LineString line = new GeometryFactory().createLineString(new Coordinate[] { new Coordinate(0, 0),
+                new Coordinate(1, 1) });
+        SimpleFeature feature = SimpleFeatureBuilder.build(type, new Object[] { line }, "lines.1");
+
+        ColumnarFeatureCollection packed = new ColumnarFeatureCollection(type);
+        packed.add(feature);
+        assertTrue(((LineString) packed.get(0).getDefaultGeometry())
+                .getCoordinateSequence() instanceof PackedCoordinateSequence);
+
+        ColumnarFeatureCollection arrays = new ColumnarFeatureCollection(type, new GeometryFactory(
+                CoordinateArraySequenceFactory.instance()));
+        arrays.add(feature);
+        LineString stored = (LineString) arrays.get(0).getDefaultGeometry();
+        assertTrue(stored.getCoordinateSequence() instanceof CoordinateArraySequence);
+        assertTrue(line.equalsExact(stored));
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.feature.ColumnarFeatureCollection;
+import org.n52.javaps.gt.io.feature.FeatureIndex;
+import org.n52.javaps.gt.io.feature.SpillingFeatureCollection;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+
+public class FeatureIndexTest {
+
+    private static Set<String> scan(SimpleFeatureCollection features,
+            Envelope envelope) {
+        Set<String> ids = new HashSet<>();
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                if (envelope.intersects(((Geometry) feature.getDefaultGeometry()).getEnvelopeInternal())) {
+                    ids.add(feature.getID());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> ids(Iterable<SimpleFeature> features) {
+        Set<String> ids = new HashSet<>();
+        for (SimpleFeature feature : features) {
+            ids.add(feature.getID());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testQuery() {
+        SimpleFeatureCollection features = VectorCodecTest.createFeatures(1000);
+        FeatureIndex index = FeatureIndex.build(features);
+        assertEquals(1000, index.size());
+        Envelope envelope = new Envelope(-20, 30, -10, 45);
+        assertEquals(scan(features, envelope), ids(index.query(envelope)));
+    }
+
+    @Test
+    public void testSpilledQuery() {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(1000);
+        try (SpillingFeatureCollection features = new SpillingFeatureCollection(source.getSchema(), 1024)) {
+            features.addAll(DataUtilities.list(source));
+            assertTrue(features.isSpilled());
+            FeatureIndex index = FeatureIndex.build(features);
+            assertEquals(1000, index.size());
+            Envelope envelope = new Envelope(-20, 30, -10, 45);
+            assertEquals(scan(features, envelope), ids(index.query(envelope)));
+        }
+    }
+
+    @Test
+    public void testColumnarQuery() {
+        ColumnarFeatureCollection features = new ColumnarFeatureCollection(VectorCodecTest.createFeatures(1)
+                .getSchema());
+        features.addAll(VectorCodecTest.createFeatures(1000));
+        GTVectorDataBinding binding = new GTVectorDataBinding(features);
+        Envelope envelope = new Envelope(100, 180, 0, 90);
+        assertEquals(scan(features, envelope), ids(binding.query(envelope)));
+
+        Geometry polygon = new GeometryFactory().toGeometry(envelope);
+        assertEquals(scan(features, envelope), ids(binding.queryIntersecting(polygon)));
+    }
+
+    @Test
+    public void testInsertAfterQuery() {
+        FeatureIndex index = new FeatureIndex();
+        index.query(new Envelope(new Coordinate(0, 0)));
+        try {
+            index.insert(VectorCodecTest.createFeatures(1).features().next());
+            fail("Inserted into a built index.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+}
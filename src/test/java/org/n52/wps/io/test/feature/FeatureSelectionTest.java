@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.n52.javaps.gt.io.feature.FeatureSelection;
+import org.n52.javaps.io.DecodingException;
+import org.n52.shetland.ogc.wps.Format;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.Filter;
+
+public class FeatureSelectionTest {
+
+    @Test
+    public void testFromMimeType() throws DecodingException {
+        assertSame(FeatureSelection.ALL, FeatureSelection.fromMimeType("application/vnd.geo+json"));
+
+        FeatureSelection selection = FeatureSelection.fromMimeType(
+                "application/x-zipped-shp; bbox=5,50,10,55; propertyName=\"name,count\"");
+        assertEquals(new Envelope(5, 10, 50, 55), selection.getBBox());
+        assertEquals(Arrays.asList("name", "count"), selection.getPropertyNames());
+
+        selection = FeatureSelection.fromMimeType("text/xml; propertyname=name");
+        assertNull(selection.getBBox());
+        assertEquals(Arrays.asList("name"), selection.getPropertyNames());
+    }
+
+    @Test(expected = DecodingException.class)
+    public void testInvalidBBox() throws DecodingException {
+        FeatureSelection.fromMimeType("text/xml; bbox=5,50,10");
+    }
+
+    @Test
+    public void testWithoutSelection() {
+        Format plain = new Format("text/xml; subtype=gml/3.1.1");
+        assertSame(plain, FeatureSelection.withoutSelection(plain));
+        assertEquals(plain, FeatureSelection.withoutSelection(new Format(
+                "text/xml; subtype=gml/3.1.1; bbox=5,50,10,55; propertyName=\"name,count\"")));
+        assertEquals(new Format("application/x-zipped-shp"), FeatureSelection.withoutSelection(new Format(
+                "application/x-zipped-shp; bbox=5,50,10,55")));
+    }
+
+    @Test
+    public void testApply() {
+        SimpleFeatureCollection features = VectorCodecTest.createFeatures(1000);
+        Envelope bbox = new Envelope(-20, 30, -10, 45);
+        FeatureSelection selection = new FeatureSelection(bbox, Arrays.asList("count"));
+
+        int expected = 0;
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                Geometry geometry = (Geometry) iterator.next().getDefaultGeometry();
+                if (bbox.intersects(geometry.getEnvelopeInternal())) {
+                    expected++;
+                }
+            }
+        }
+
+        SimpleFeatureCollection selected = selection.apply(features);
+        assertEquals(2, selected.getSchema().getAttributeCount());
+        assertEquals(expected, selected.size());
+        int count = 0;
+        try (SimpleFeatureIterator iterator = selected.features()) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                assertEquals(2, feature.getAttributeCount());
+                assertTrue(bbox.intersects(((Geometry) feature.getDefaultGeometry()).getEnvelopeInternal()));
+                count++;
+            }
+        }
+        assertEquals(expected, count);
+        assertSame(features, FeatureSelection.ALL.apply(features));
+    }
+
+    @Test
+    public void testQuery() {
+        SimpleFeatureCollection features = VectorCodecTest.createFeatures(1);
+        Query query = new FeatureSelection(new Envelope(0, 1, 0, 1), Arrays.asList("name")).apply(new Query(
+                "sample"), features.getSchema());
+        assertNotEquals(Filter.INCLUDE, query.getFilter());
+        assertArrayEquals(new String[] { "the_geom", "name" }, query.getPropertyNames());
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.n52.javaps.gt.io.feature.GeometryFixupFeatureCollection;
+import org.n52.javaps.gt.io.feature.SpillingFeatureCollection;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class GeometryFixupFeatureCollectionTest {
+
+    @Test
+    public void testTypeWithDefaultGeometry() {
+        SimpleFeatureCollection features = VectorCodecTest.createFeatures(10);
+        assertSame(features, GeometryFixupFeatureCollection.wrap(features));
+    }
+
+    @Test
+    public void testGeometryAttribute() {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("untyped");
+        typeBuilder.add("name", String.class);
+        typeBuilder.add("location", Object.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        Point point = new GeometryFactory().createPoint(new Coordinate(7, 51));
+        List<SimpleFeature> list = new ArrayList<>();
+        list.add(SimpleFeatureBuilder.build(type, new Object[] { "with geometry", point }, "untyped.1"));
+        list.add(SimpleFeatureBuilder.build(type, new Object[] { "without geometry", "none" }, "untyped.2"));
+        SimpleFeatureCollection features = GeometryFixupFeatureCollection.wrap(new ListFeatureCollection(type,
+                list));
+
+        try (SimpleFeatureIterator iterator = features.features()) {
+            SimpleFeature feature = iterator.next();
+            assertSame(point, feature.getDefaultGeometry());
+            assertEquals("location", feature.getDefaultGeometryProperty().getName().getLocalPart());
+            assertEquals("with geometry", feature.getAttribute("name"));
+
+            Point moved = new GeometryFactory().createPoint(new Coordinate(8, 52));
+            feature.setAttribute("location", moved);
+            assertSame(moved, feature.getDefaultGeometry());
+
+            assertNull(iterator.next().getDefaultGeometry());
+        }
+    }
+
+    @Test
+    public void testResolvedGeometryIsKeptWhenSpilled() {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("untyped");
+        typeBuilder.add("name", String.class);
+        typeBuilder.add("location", Object.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<SimpleFeature> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(SimpleFeatureBuilder.build(type, new Object[] { "feature" + i, geometryFactory.createPoint(
+                    new Coordinate(i, i)) }, "untyped." + i));
+        }
+        SimpleFeatureCollection features = GeometryFixupFeatureCollection.wrap(new ListFeatureCollection(type,
+                list));
+        assertEquals("location", features.getSchema().getGeometryDescriptor().getLocalName());
+
+        try (SpillingFeatureCollection copy = new SpillingFeatureCollection(features.getSchema(), 1024)) {
+            try (SimpleFeatureIterator iterator = features.features()) {
+                while (iterator.hasNext()) {
+                    copy.add(GeometryFixupFeatureCollection.materialize(iterator.next()));
+                }
+            }
+            assertTrue(copy.isSpilled());
+            try (SimpleFeatureIterator iterator = copy.features()) {
+                for (int i = 0; i < 1000; i++) {
+                    SimpleFeature feature = iterator.next();
+                    assertEquals(geometryFactory.createPoint(new Coordinate(i, i)), feature.getDefaultGeometry());
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.Test;
+import org.n52.javaps.gt.io.feature.SpillingFeatureCollection;
+import org.n52.javaps.gt.io.util.FileConstants;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+
+public class SpillingFeatureCollectionTest {
+
+    private static List<SimpleFeature> toList(SimpleFeatureCollection features) {
+        List<SimpleFeature> list = new ArrayList<>();
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+        }
+        return list;
+    }
+
+    private static void assertSameFeatures(List<SimpleFeature> expected,
+            List<SimpleFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getID(), actual.get(i).getID());
+            assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+        }
+    }
+
+    @Test
+    public void testHeap() {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(100);
+        try (SpillingFeatureCollection features = new SpillingFeatureCollection(source.getSchema(),
+                Long.MAX_VALUE)) {
+            features.addAll(toList(source));
+            assertFalse(features.isSpilled());
+            assertEquals(100, features.size());
+            assertSameFeatures(toList(source), toList(features));
+            assertEquals(source.getBounds(), features.getBounds());
+        }
+    }
+
+    @Test
+    public void testSpill() {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(5000);
+        List<SimpleFeature> expected = toList(source);
+        try (SpillingFeatureCollection features = new SpillingFeatureCollection(source.getSchema(), 64 * 1024)) {
+            features.addAll(expected.subList(0, 3000));
+            assertTrue(features.isSpilled());
+            assertSameFeatures(expected.subList(0, 3000), toList(features));
+
+            // appended after an iteration, iterated twice
+            features.addAll(expected.subList(3000, 5000));
+            assertEquals(5000, features.size());
+            assertSameFeatures(expected, toList(features));
+            assertSameFeatures(expected, toList(features));
+            assertEquals(source.getSchema(), features.features().next().getFeatureType());
+            assertEquals(source.getBounds(), features.getBounds());
+
+            features.close();
+            assertEquals(0, features.size());
+        }
+    }
+
+    @Test
+    public void testScratchFileIsDeletedWhenCollected() throws InterruptedException {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(5000);
+        Set<File> before = listScratchFiles();
+
+        SpillingFeatureCollection features = new SpillingFeatureCollection(source.getSchema(), 64 * 1024);
+        features.addAll(toList(source));
+        assertTrue(features.isSpilled());
+        Set<File> scratchFiles = listScratchFiles();
+        scratchFiles.removeAll(before);
+        assertEquals(1, scratchFiles.size());
+        File scratchFile = scratchFiles.iterator().next();
+
+        features = null;
+        for (int i = 0; i < 50 && scratchFile.exists(); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertFalse(scratchFile.exists());
+    }
+
+    private static Set<File> listScratchFiles() {
+        File[] files = new File(FileConstants.TMP_DIR_PATH).listFiles((directory,
+                name) -> name.startsWith("features") && name.endsWith(FileConstants.dot(FileConstants.SUFFIX_TMP)));
+        return files == null ? new HashSet<>() : new HashSet<>(Arrays.asList(files));
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.Test;
+import org.n52.javaps.gt.io.feature.StreamedFeatureCollection;
+import org.n52.wps.io.test.binary.VectorCodecTest;
+import org.opengis.feature.simple.SimpleFeature;
+
+public class StreamedFeatureCollectionTest {
+
+    @Test
+    public void testFeaturesAreReadOnce() throws Exception {
+        SimpleFeatureCollection source = VectorCodecTest.createFeatures(10);
+        CountingReader reader = new CountingReader(DataUtilities.list(source).iterator());
+        SimpleFeatureCollection features = StreamedFeatureCollection.read(reader);
+
+        // only the first feature is read to determine the schema
+        assertEquals(1, reader.reads);
+        assertSame(source.getSchema(), features.getSchema());
+
+        int count = 0;
+        try (SimpleFeatureIterator iterator = features.features()) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+                assertFalse(reader.closed);
+            }
+        }
+        assertEquals(10, count);
+        assertTrue(reader.closed);
+
+        try {
+            features.features();
+            throw new AssertionError("The features were read twice.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNoFeatures() throws Exception {
+        CountingReader reader = new CountingReader(DataUtilities.list(VectorCodecTest.createFeatures(0))
+                .iterator());
+        SimpleFeatureCollection features = StreamedFeatureCollection.read(reader);
+
+        assertNull(features.getSchema());
+        assertTrue(features.isEmpty());
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void testClosingStopsReading() throws Exception {
+        CountingReader reader = new CountingReader(DataUtilities.list(VectorCodecTest.createFeatures(10))
+                .iterator());
+        SimpleFeatureCollection features = StreamedFeatureCollection.read(reader);
+
+        try (SimpleFeatureIterator iterator = features.features()) {
+            iterator.next();
+            iterator.next();
+        }
+        assertEquals(2, reader.reads);
+        assertTrue(reader.closed);
+    }
+
+    private static final class CountingReader implements StreamedFeatureCollection.FeatureReader {
+
+        private final Iterator<SimpleFeature> features;
+
+        private int reads;
+
+        private boolean closed;
+
+        private CountingReader(Iterator<SimpleFeature> features) {
+            this.features = features;
+        }
+
+        @Override
+        public SimpleFeature read() {
+            reads++;
+            return features.hasNext() ? features.next() : null;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
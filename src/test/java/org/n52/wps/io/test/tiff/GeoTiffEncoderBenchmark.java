@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.tiff;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.n52.javaps.gt.io.tiff.GeoTiffEncoder;
+import org.n52.javaps.gt.io.tiff.GeoTiffWriteProfile;
+import org.n52.javaps.gt.io.tiff.TiffCompression;
+import org.n52.javaps.gt.io.util.CompressionExecutor;
+
+/**
+ * Measures how {@link GeoTiffEncoder} scales with the number of tile
+ * encoding threads for a single band float raster, from 1 to 32 threads of
+ * the {@link CompressionExecutor}. Not run as part of the test suite, start
+ * it with
+ * <code>java org.n52.wps.io.test.tiff.GeoTiffEncoderBenchmark [size] [compression]</code>
+ * from the test classpath.
+ */
+public final class GeoTiffEncoderBenchmark {
+
+    private static final int MAX_THREADS = 32;
+
+    private GeoTiffEncoderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8192;
+        TiffCompression compression = args.length > 1 ? TiffCompression.fromName(args[1]) : TiffCompression.LZW;
+
+        WritableRaster raster = Raster.createWritableRaster(new PixelInterleavedSampleModel(DataBuffer.TYPE_FLOAT,
+                size, size, 1, size, new int[] { 0 }), null);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                raster.setSample(x, y, 0, (float) (100 * Math.sin(x / 200.0) * Math.cos(y / 300.0)));
+            }
+        }
+        BufferedImage image = new BufferedImage(new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_FLOAT), raster, false, null);
+
+        // warm up
+        encode(image, compression, 1);
+
+        System.out.println("threads\tmillis\tMB/s\tspeedup\tsize");
+        double megabytes = (double) image.getWidth() * image.getHeight() * 4 / (1024 * 1024);
+        long baseline = 0;
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            long[] result = encode(image, compression, threads);
+            long millis = result[0];
+            if (threads == 1) {
+                baseline = millis;
+            }
+            System.out.println(String.format("%d\t%d\t%.1f\t%.2f\t%d", threads, millis, megabytes / millis
+                    * 1000, (double) baseline / millis, result[1]));
+        }
+    }
+
+    /**
+     * @return the encoding time in milliseconds and the file size
+     */
+    private static long[] encode(BufferedImage image,
+            TiffCompression compression,
+            int threads) throws IOException {
+        GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+        profile.setCompression(compression);
+        profile.setThreads(threads);
+        // the encoder uses no more threads than the shared pool has
+        CompressionExecutor.setThreads(threads);
+        File output = File.createTempFile("benchmark", ".tif");
+        output.deleteOnExit();
+        long start = System.nanoTime();
+        try (ImageOutputStream out = new FileImageOutputStream(output)) {
+            new GeoTiffEncoder(profile).encode(image, null, out);
+        }
+        long millis = Math.max((System.nanoTime() - start) / 1000000, 1);
+        long size = output.length();
+        output.delete();
+        return new long[] { millis, size };
+    }
+
+}
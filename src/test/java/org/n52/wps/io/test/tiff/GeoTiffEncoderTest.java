@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.tiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.javaps.gt.io.tiff.GeoTiffEncoder;
+import org.n52.javaps.gt.io.tiff.GeoTiffWriteProfile;
+import org.n52.javaps.gt.io.tiff.OverviewResampling;
+import org.n52.javaps.gt.io.tiff.TiffCompression;
+import org.n52.javaps.gt.io.tiff.TiffPredictor;
+
+public class GeoTiffEncoderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                raster.setPixel(x, y, new int[] { x & 0xff, y & 0xff, (x * y) & 0xff });
+            }
+        }
+        assertTrue(GeoTiffEncoder.canEncode(image));
+
+        for (TiffCompression compression : TiffCompression.values()) {
+            for (TiffPredictor predictor : new TiffPredictor[] { TiffPredictor.NONE, TiffPredictor.HORIZONTAL }) {
+                GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+                profile.setCompression(compression);
+                profile.setPredictor(predictor);
+                profile.setTileSize(64);
+
+                File file = folder.newFile("image_" + compression + "_" + predictor + ".tif");
+                try (ImageOutputStream out = new FileImageOutputStream(file)) {
+                    new GeoTiffEncoder(profile).encode(image, null, out);
+                }
+
+                BufferedImage read = ImageIO.read(file);
+                assertNotNull(read);
+                Raster readRaster = read.getRaster();
+                assertEquals(image.getWidth(), readRaster.getWidth());
+                assertEquals(image.getHeight(), readRaster.getHeight());
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        for (int band = 0; band < 3; band++) {
+                            assertEquals(compression + " " + predictor + " at " + x + "," + y, raster.getSample(x,
+                                    y, band), readRaster.getSample(x, y, band));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCloudOptimizedLayout() throws IOException {
+        BufferedImage image = new BufferedImage(1000, 700, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                raster.setSample(x, y, 0, (x + 2 * y) & 0xff);
+            }
+        }
+        GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+        profile.setTileSize(128);
+        profile.setCloudOptimized(true);
+        profile.setOverviewResampling(OverviewResampling.AVERAGE);
+
+        File file = folder.newFile("cog.tif");
+        try (ImageOutputStream out = new FileImageOutputStream(file)) {
+            new GeoTiffEncoder(profile).encode(image, null, out);
+        }
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            reader.setInput(in);
+            int[] widths = { 1000, 500, 250, 125 };
+            int[] heights = { 700, 350, 175, 88 };
+            assertEquals(widths.length, reader.getNumImages(true));
+            for (int level = 0; level < widths.length; level++) {
+                assertEquals(widths[level], reader.getWidth(level));
+                assertEquals(heights[level], reader.getHeight(level));
+                assertEquals(128, reader.getTileWidth(level));
+            }
+            Raster overview = reader.read(1).getRaster();
+            int expected = (int) Math.floor((raster.getSample(20, 30, 0) + raster.getSample(21, 30, 0) + raster
+                    .getSample(20, 31, 0) + raster.getSample(21, 31, 0)) / 4.0 + 0.5);
+            assertEquals(expected, overview.getSample(10, 15, 0));
+            reader.dispose();
+        }
+    }
+
+    @Test
+    public void testStreamMatchesSeekableOutput() throws IOException {
+        BufferedImage image = new BufferedImage(700, 500, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                raster.setSample(x, y, 0, x * y);
+            }
+        }
+        for (long bufferSize : new long[] { GeoTiffWriteProfile.DEFAULT_STREAM_BUFFER_SIZE, 4096 }) {
+            GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+            profile.setTileSize(128);
+            profile.setCloudOptimized(true);
+            profile.setStreamBufferSize(bufferSize);
+
+            File file = folder.newFile("seekable_" + bufferSize + ".tif");
+            try (ImageOutputStream out = new FileImageOutputStream(file)) {
+                new GeoTiffEncoder(profile).encode(image, null, out);
+            }
+            byte[] streamed;
+            try (InputStream in = new GeoTiffEncoder(profile).encode(image, null)) {
+                streamed = IOUtils.toByteArray(in);
+            }
+            assertArrayEquals(Files.readAllBytes(file.toPath()), streamed);
+        }
+    }
+
+    @Test
+    public void testParallelOutputMatchesSequential() throws IOException {
+        BufferedImage image = new BufferedImage(900, 600, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x * 31 + y * 17);
+            }
+        }
+        byte[] expected = null;
+        for (int threads : new int[] { 1, 2, 7 }) {
+            GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+            profile.setCompression(TiffCompression.LZW);
+            profile.setTileSize(64);
+            profile.setThreads(threads);
+            byte[] encoded;
+            try (InputStream in = new GeoTiffEncoder(profile).encode(image, null)) {
+                encoded = IOUtils.toByteArray(in);
+            }
+            if (expected == null) {
+                expected = encoded;
+            } else {
+                assertArrayEquals("threads: " + threads, expected, encoded);
+            }
+        }
+    }
+
+    @Test
+    public void testBigTiffSelection() throws IOException {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY);
+        GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+        profile.setTileSize(64);
+
+        GeoTiffEncoder encoder = new GeoTiffEncoder(profile);
+        assertTrue(encoder.estimateSize(image) >= 300 * 200);
+        assertFalse(encoder.useBigTiff(image));
+        assertTrue(profile.useBigTiff(5L * 1024 * 1024 * 1024));
+
+        profile.setBigTiff(false);
+        assertFalse(profile.useBigTiff(5L * 1024 * 1024 * 1024));
+
+        profile.setBigTiff(true);
+        profile.setCloudOptimized(true);
+        File file = folder.newFile("big.tif");
+        try (ImageOutputStream out = new FileImageOutputStream(file)) {
+            new GeoTiffEncoder(profile).encode(image, null, out);
+        }
+        byte[] written = Files.readAllBytes(file.toPath());
+        assertArrayEquals(new byte[] { 'I', 'I', 43, 0, 8, 0, 0, 0, 16, 0, 0, 0, 0, 0, 0, 0 }, Arrays.copyOf(
+                written, 16));
+        try (InputStream in = new GeoTiffEncoder(profile).encode(image, null)) {
+            assertArrayEquals(written, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void testProfileDefaults() {
+        GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+
+        assertEquals(TiffCompression.LZW, profile.getCompression());
+        assertEquals(TiffPredictor.NONE, profile.getPredictor(DataBuffer.TYPE_SHORT));
+        assertEquals(TiffPredictor.NONE, profile.getPredictor(DataBuffer.TYPE_FLOAT));
+
+        profile.setPredictor(null);
+        assertEquals(TiffPredictor.HORIZONTAL, profile.getPredictor(DataBuffer.TYPE_SHORT));
+        assertEquals(TiffPredictor.FLOATING_POINT, profile.getPredictor(DataBuffer.TYPE_FLOAT));
+        assertEquals(256, profile.getTileSize(1000, 1000, DataBuffer.TYPE_BYTE, 3));
+        assertEquals(512, profile.getTileSize(10000, 9000, DataBuffer.TYPE_BYTE, 1));
+        assertEquals(128, profile.getTileSize(1000, 1000, DataBuffer.TYPE_DOUBLE, 4));
+        assertEquals(32, profile.getTileSize(20, 30, DataBuffer.TYPE_BYTE, 1));
+
+        profile.setPredictor(TiffPredictor.FLOATING_POINT);
+        assertEquals(TiffPredictor.HORIZONTAL, profile.getPredictor(DataBuffer.TYPE_INT));
+
+        profile.setCompression(TiffCompression.PACKBITS);
+        assertEquals(TiffPredictor.NONE, profile.getPredictor(DataBuffer.TYPE_FLOAT));
+
+        profile.setTileSize(300);
+        assertEquals(256, profile.getTileSize(1000, 1000, DataBuffer.TYPE_BYTE, 1));
+
+        assertFalse(GeoTiffEncoder.canEncode(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_INDEXED)));
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.tiff;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.n52.javaps.gt.io.tiff.GeoTiffEncoder;
+import org.n52.javaps.gt.io.tiff.GeoTiffWriteProfile;
+import org.n52.javaps.gt.io.tiff.TiffCompression;
+import org.n52.javaps.gt.io.tiff.TiffPredictor;
+
+/**
+ * Compares encode time and file size of the GeoTIFF write profiles for
+ * integer and floating point rasters. Not run as part of the test suite,
+ * start it with
+ * <code>java org.n52.wps.io.test.tiff.GeoTiffProfileBenchmark [size]</code>
+ * from the test classpath.
+ */
+public final class GeoTiffProfileBenchmark {
+
+    private GeoTiffProfileBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+
+        System.out.println("type\tcompression\tpredictor\ttile\tmillis\tsize\tratio");
+        for (int dataType : new int[] { DataBuffer.TYPE_BYTE, DataBuffer.TYPE_SHORT, DataBuffer.TYPE_FLOAT }) {
+            BufferedImage image = createImage(dataType, size);
+            for (TiffCompression compression : TiffCompression.values()) {
+                for (TiffPredictor predictor : TiffPredictor.values()) {
+                    GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+                    profile.setCompression(compression);
+                    profile.setPredictor(predictor);
+                    if (profile.getPredictor(dataType) != predictor) {
+                        continue;
+                    }
+                    run(image, profile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a smooth, elevation-like single band image with some noise.
+     */
+    private static BufferedImage createImage(int dataType,
+            int size) {
+        WritableRaster raster = Raster.createWritableRaster(new PixelInterleavedSampleModel(dataType, size, size, 1,
+                size, new int[] { 0 }), null);
+        Random random = new Random(52);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double value = 100 * Math.sin(x / 200.0) * Math.cos(y / 300.0) + 0.01 * (x + y) + random
+                        .nextGaussian();
+                if (dataType == DataBuffer.TYPE_BYTE) {
+                    value = (value + 128) / 2;
+                }
+                raster.setSample(x, y, 0, dataType == DataBuffer.TYPE_FLOAT ? value : Math.round(value));
+            }
+        }
+        ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+                Transparency.OPAQUE, dataType);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    private static void run(BufferedImage image,
+            GeoTiffWriteProfile profile) throws IOException {
+        File output = File.createTempFile("benchmark", ".tif");
+        output.deleteOnExit();
+        int dataType = image.getSampleModel().getDataType();
+        long start = System.nanoTime();
+        try (ImageOutputStream out = new FileImageOutputStream(output)) {
+            new GeoTiffEncoder(profile).encode(image, null, out);
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+        long raw = (long) image.getWidth() * image.getHeight() * DataBuffer.getDataTypeSize(dataType) / 8;
+        System.out.println(String.format("%d\t%s\t%s\t%d\t%d\t%d\t%.2f", dataType, profile.getCompression(),
+                profile.getPredictor(dataType), profile.getTileSize(image.getWidth(), image.getHeight(),
+                        dataType, 1), millis, output.length(), (double) raw / output.length()));
+        output.delete();
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.tiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.javaps.gt.io.tiff.GeoTiffEncoder;
+import org.n52.javaps.gt.io.tiff.GeoTiffWriteProfile;
+import org.n52.javaps.gt.io.tiff.MappedTiffImage;
+import org.n52.javaps.gt.io.tiff.TiffCompression;
+
+public class MappedTiffImageTest {
+
+    private static final int SAMPLE_FORMAT = 339;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTiledImages() throws IOException {
+        BufferedImage ushort = new BufferedImage(700, 500, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = ushort.getRaster();
+        for (int y = 0; y < ushort.getHeight(); y++) {
+            for (int x = 0; x < ushort.getWidth(); x++) {
+                raster.setSample(x, y, 0, (x * 97 + y * 31) & 0xffff);
+            }
+        }
+        assertSamplesEqual(ushort, MappedTiffImage.open(encode(ushort, TiffCompression.NONE, "ushort.tif")));
+
+        WritableRaster floatRaster = Raster.createWritableRaster(new PixelInterleavedSampleModel(
+                DataBuffer.TYPE_FLOAT, 300, 200, 2, 600, new int[] { 0, 1 }), null);
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 300; x++) {
+                floatRaster.setSample(x, y, 0, (float) Math.sin(x / 20.0));
+                floatRaster.setSample(x, y, 1, y - 100.5f);
+            }
+        }
+        BufferedImage floats = new BufferedImage(new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_FLOAT), floatRaster, false, null);
+        MappedTiffImage mapped = MappedTiffImage.open(encode(floats, TiffCompression.NONE, "float.tif"));
+        assertSamplesEqual(floats, mapped);
+        assertEquals(1, mapped.getSegmentCount());
+    }
+
+    @Test
+    public void testStrippedFile() throws IOException {
+        File file = folder.newFile("stripped.tif");
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("6_UTM2GTIF.tif")) {
+            Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        MappedTiffImage mapped = MappedTiffImage.open(file);
+        assertNotNull(mapped);
+        // one strip per tile row
+        assertEquals(mapped.getWidth(), mapped.getTileWidth());
+        assertSamplesEqual(ImageIO.read(file), mapped);
+    }
+
+    @Test
+    public void testCompressedFileIsNotMapped() throws IOException {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_BYTE_GRAY);
+        assertNull(MappedTiffImage.open(encode(image, TiffCompression.DEFLATE, "deflate.tif")));
+    }
+
+    @Test
+    public void testUnsignedIntFileIsNotMapped() throws IOException {
+        WritableRaster raster = Raster.createWritableRaster(new PixelInterleavedSampleModel(DataBuffer.TYPE_INT, 100,
+                100, 1, 100, new int[] { 0 }), null);
+        BufferedImage image = new BufferedImage(new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_INT), raster, false, null);
+        File file = encode(image, TiffCompression.NONE, "uint.tif");
+        assertNotNull(MappedTiffImage.open(file));
+
+        // the encoder writes signed 32 bit samples
+        setSampleFormat(file, 1);
+        assertNull(MappedTiffImage.open(file));
+    }
+
+    /**
+     * Overwrites the sample format of the first image of a classic tiff with
+     * one band.
+     */
+    private void setSampleFormat(File file,
+            int sampleFormat) throws IOException {
+        ByteBuffer tiff = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int directory = tiff.getInt(4);
+        int entries = tiff.getShort(directory) & 0xffff;
+        for (int i = 0; i < entries; i++) {
+            int entry = directory + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xffff) == SAMPLE_FORMAT) {
+                tiff.putShort(entry + 8, (short) sampleFormat);
+            }
+        }
+        Files.write(file.toPath(), tiff.array());
+    }
+
+    private File encode(RenderedImage image,
+            TiffCompression compression,
+            String name) throws IOException {
+        GeoTiffWriteProfile profile = new GeoTiffWriteProfile();
+        profile.setCompression(compression);
+        profile.setTileSize(128);
+        File file = folder.newFile(name);
+        try (ImageOutputStream out = new FileImageOutputStream(file)) {
+            new GeoTiffEncoder(profile).encode(image, null, out);
+        }
+        return file;
+    }
+
+    private void assertSamplesEqual(RenderedImage expected,
+            MappedTiffImage actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        Raster expectedData = expected.getData();
+        Raster actualData = actual.getData();
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                for (int band = 0; band < expectedData.getNumBands(); band++) {
+                    assertEquals("at " + x + "," + y, expectedData.getSampleDouble(x, y, band), actualData
+                            .getSampleDouble(x, y, band), 0);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.n52.javaps.gt.io.util.CompressionExecutor;
+import org.n52.javaps.gt.io.util.ParallelZipWriter;
+
+/**
+ * Measures how {@link ParallelZipWriter} scales with the number of threads
+ * of the {@link CompressionExecutor}, from one up to the available
+ * processors. Not run as part of the test suite, start it with
+ * <code>java org.n52.wps.io.test.util.ParallelZipWriterBenchmark [sizeInMB]</code>
+ * from the test classpath.
+ */
+public final class ParallelZipWriterBenchmark {
+
+    private ParallelZipWriterBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int sizeInMB = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+
+        File input = File.createTempFile("benchmark", ".dbf");
+        input.deleteOnExit();
+        Random random = new Random(52);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(input))) {
+            long size = sizeInMB * 1024L * 1024L;
+            long written = 0;
+            while (written < size) {
+                byte[] record = String.format("%-20s%12d%12.4f", "state" + random.nextInt(50), random.nextInt(),
+                        random.nextDouble()).getBytes(StandardCharsets.US_ASCII);
+                out.write(record);
+                written += record.length;
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("threads\tmillis\tMB/s\tsize");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            run(input, threads);
+        }
+        if (Integer.bitCount(cores) != 1) {
+            run(input, cores);
+        }
+    }
+
+    private static void run(File input,
+            int threads) throws IOException {
+        File output = File.createTempFile("benchmark", ".zip");
+        output.deleteOnExit();
+        CompressionExecutor.setThreads(threads);
+        ParallelZipWriter writer = new ParallelZipWriter(threads * 2, ParallelZipWriter.DEFAULT_CHUNK_SIZE,
+                Deflater.DEFAULT_COMPRESSION);
+        long start = System.nanoTime();
+        writer.write(output, input);
+        long millis = (System.nanoTime() - start) / 1000000;
+        double throughput = input.length() / (1024.0 * 1024.0) / Math.max(millis, 1) * 1000;
+        System.out.println(String.format("%d\t%d\t%.1f\t%d", threads, millis, throughput, output.length()));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.javaps.gt.io.util.ParallelZipWriter;
+
+public class ParallelZipWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChunkedEntriesAreReadable() throws IOException {
+
+        Random random = new Random(52);
+
+        File dbf = folder.newFile("big.dbf");
+        try (OutputStream out = new FileOutputStream(dbf)) {
+            for (int i = 0; i < 200000; i++) {
+                out.write(("record" + (i % 1000) + " " + random.nextInt(50) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        File shp = folder.newFile("random.shp");
+        byte[] randomBytes = new byte[300000];
+        random.nextBytes(randomBytes);
+        Files.write(shp.toPath(), randomBytes);
+        File prj = folder.newFile("empty.prj");
+
+        File zip = folder.newFile("out.zip");
+        new ParallelZipWriter(3, 64 * 1024, Deflater.DEFAULT_COMPRESSION).write(zip, dbf, shp, prj, new File(folder
+                .getRoot(), "missing.shx"));
+
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            assertEquals(3, zipFile.size());
+            assertNull(zipFile.getEntry("missing.shx"));
+            for (File file : new File[] { dbf, shp, prj }) {
+                ZipEntry entry = zipFile.getEntry(file.getName());
+                assertNotNull(entry);
+                byte[] expected = Files.readAllBytes(file.toPath());
+                CRC32 crc = new CRC32();
+                crc.update(expected);
+                assertEquals(crc.getValue(), entry.getCrc());
+                assertArrayEquals(expected, readAll(zipFile.getInputStream(entry)));
+            }
+        }
+
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip.toPath()))) {
+            int count = 0;
+            while (in.getNextEntry() != null) {
+                readAll(in);
+                count++;
+            }
+            assertEquals(3, count);
+        }
+    }
+
+    private byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.javaps.gt.io.util.RangeImageInputStream;
+import org.n52.javaps.gt.io.util.SelectiveZipReader;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.Action;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.Entry;
+import org.n52.javaps.gt.io.util.SelectiveZipReader.EntryOutsideDirectoryException;
+
+public class SelectiveZipReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSelectiveExtraction() throws IOException {
+
+        Random random = new Random(52);
+        byte[] tiff = new byte[200000];
+        random.nextBytes(tiff);
+        byte[] worldFile = "10.0\n0.0\n0.0\n-10.0\n500000.0\n4000000.0\n".getBytes(StandardCharsets.UTF_8);
+        byte[] overview = new byte[50000];
+        random.nextBytes(overview);
+
+        File zip = folder.newFile("in.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip.toPath()))) {
+            // deflated entries are written with a data descriptor
+            putDeflated(out, "docs/readme.txt", new byte[100000]);
+            putStored(out, "data/image.tif", tiff);
+            putDeflated(out, "data/image.tfw", worldFile);
+            putDeflated(out, "data/image.tif.ovr", overview);
+            putStored(out, "data/unused.bin", new byte[1000]);
+        }
+
+        File directory = folder.newFolder("out");
+        List<Entry> entries = new SelectiveZipReader(zip).read((name,
+                stored) -> name.endsWith(".tif") ? Action.LOCATE : name.startsWith("data/image.") ? Action.EXTRACT
+                        : Action.SKIP, directory);
+
+        assertEquals(3, entries.size());
+        Entry tiffEntry = entries.get(0);
+        assertEquals("data/image.tif", tiffEntry.getName());
+        assertTrue(tiffEntry.isStored());
+        assertNull(tiffEntry.getFile());
+        assertEquals(tiff.length, tiffEntry.getSize());
+
+        assertArrayEquals(worldFile, Files.readAllBytes(entries.get(1).getFile().toPath()));
+        assertArrayEquals(overview, Files.readAllBytes(entries.get(2).getFile().toPath()));
+        assertEquals(new File(directory, "data/image.tfw").getCanonicalFile(), entries.get(1).getFile()
+                .getCanonicalFile());
+        assertFalse(new File(directory, "docs").exists());
+        assertFalse(new File(directory, "data/unused.bin").exists());
+
+        byte[] read = new byte[tiff.length];
+        try (RangeImageInputStream in = new RangeImageInputStream(zip, tiffEntry.getDataOffset(), tiffEntry
+                .getSize())) {
+            in.readFully(read);
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(tiff, read);
+
+        File extracted = new File(directory, "image.tif");
+        new SelectiveZipReader(zip).extract(tiffEntry, extracted);
+        assertArrayEquals(tiff, Files.readAllBytes(extracted.toPath()));
+    }
+
+    @Test(
+            expected = EntryOutsideDirectoryException.class)
+    public void testEntryOutsideOfDirectoryIsRejected() throws IOException {
+        File zip = folder.newFile("slip.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip.toPath()))) {
+            putDeflated(out, "../image.tfw", new byte[10]);
+        }
+        new SelectiveZipReader(zip).read((name,
+                stored) -> Action.EXTRACT, folder.newFolder("out"));
+    }
+
+    private void putDeflated(ZipOutputStream out,
+            String name,
+            byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private void putStored(ZipOutputStream out,
+            String name,
+            byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.n52.javaps.gt.io.data.binding.complex.GTVectorDataBinding;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry;
+import org.n52.javaps.gt.io.util.ShapefileDataStoreRegistry.Lease;
+import org.n52.javaps.gt.io.util.ShapefileSplitter;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class ShapefileDataStoreRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoresAreSharedAndDisposed() throws IOException {
+
+        File shp = writePoints();
+
+        ShapefileDataStoreRegistry registry = ShapefileDataStoreRegistry.getInstance();
+        int openStores = registry.getOpenStoreCount();
+        long reused = registry.getReuseCount();
+        long disposed = registry.getDisposedCount();
+
+        Lease first = registry.acquire(shp);
+        Lease second = registry.acquire(shp);
+
+        assertSame(first.getDataStore(), second.getDataStore());
+        assertEquals(openStores + 1, registry.getOpenStoreCount());
+        assertEquals(reused + 1, registry.getReuseCount());
+        assertEquals(1, second.getFeatures().size());
+
+        first.close();
+        first.close();
+        assertEquals(openStores + 1, registry.getOpenStoreCount());
+
+        second.close();
+        assertEquals(openStores, registry.getOpenStoreCount());
+        assertEquals(disposed + 1, registry.getDisposedCount());
+    }
+
+    @Test
+    public void testUnclosedLeasesAreReleasedWhenCollected() throws IOException, InterruptedException {
+
+        File shp = writePoints();
+
+        ShapefileDataStoreRegistry registry = ShapefileDataStoreRegistry.getInstance();
+        int openStores = registry.getOpenStoreCount();
+        long collected = registry.getCollectedCount();
+
+        SimpleFeatureCollection features = registry.acquire(shp).getFeatures();
+        System.gc();
+        assertEquals(openStores + 1, registry.getOpenStoreCount());
+        assertEquals(1, features.size());
+
+        features = null;
+        for (int i = 0; i < 50 && registry.getOpenStoreCount() > openStores; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertEquals(openStores, registry.getOpenStoreCount());
+        assertEquals(collected + 1, registry.getCollectedCount());
+    }
+
+    @Test
+    public void testIteratorKeepsLeaseOpen() throws IOException, InterruptedException {
+
+        File shp = writePoints();
+
+        ShapefileDataStoreRegistry registry = ShapefileDataStoreRegistry.getInstance();
+        int openStores = registry.getOpenStoreCount();
+
+        SimpleFeatureIterator iterator = registry.acquire(shp).getFeatures().features();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertEquals(openStores + 1, registry.getOpenStoreCount());
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        iterator.close();
+
+        iterator = null;
+        for (int i = 0; i < 50 && registry.getOpenStoreCount() > openStores; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertEquals(openStores, registry.getOpenStoreCount());
+    }
+
+    @Test
+    public void testDisposingTheBindingReleasesTheLease() throws IOException {
+
+        File shp = writePoints();
+
+        ShapefileDataStoreRegistry registry = ShapefileDataStoreRegistry.getInstance();
+        int openStores = registry.getOpenStoreCount();
+
+        Lease lease = registry.acquire(shp);
+        GTVectorDataBinding binding = new GTVectorDataBinding(lease.getFeatures(), lease);
+        assertEquals(openStores + 1, registry.getOpenStoreCount());
+
+        binding.dispose();
+        assertEquals(openStores, registry.getOpenStoreCount());
+    }
+
+    @Test
+    public void testLeasesAreReleasedAfterDestroy() throws IOException, InterruptedException {
+
+        File shp = writePoints();
+
+        ShapefileDataStoreRegistry registry = ShapefileDataStoreRegistry.getInstance();
+        Lease outstanding = registry.acquire(shp);
+        registry.destroy();
+        assertEquals(0, registry.getOpenStoreCount());
+        // released by destroy, closing it has no effect
+        outstanding.close();
+
+        long collected = registry.getCollectedCount();
+        SimpleFeatureCollection features = registry.acquire(shp).getFeatures();
+        assertEquals(1, registry.getOpenStoreCount());
+        assertEquals(1, features.size());
+
+        features = null;
+        for (int i = 0; i < 50 && registry.getOpenStoreCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertEquals(0, registry.getOpenStoreCount());
+        assertEquals(collected + 1, registry.getCollectedCount());
+    }
+
+    private File writePoints() throws IOException {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("points");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", Point.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        File shp = new File(folder.getRoot(), "points.shp");
+        try (ShapefileSplitter splitter = new ShapefileSplitter(shp, type)) {
+            SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(type);
+            featureBuilder.add(new GeometryFactory().createPoint(new Coordinate(1, 1)));
+            splitter.write(featureBuilder.buildFeature("points.1"));
+        }
+        return shp;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * As an exception to the terms of the GPL, you may copy, modify,
+ * propagate, and distribute a work formed by combining 52°North WPS
+ * GeoTools Modules with the Eclipse Libraries, or a work derivative of
+ * such a combination, even if such copying, modification, propagation, or
+ * distribution would otherwise violate the terms of the GPL. Nothing in
+ * this exception exempts you from complying with the GPL in all respects
+ * for all of the code used other than the Eclipse Libraries. You may
+ * include this exception and its grant of permissions when you distribute
+ * 52°North WPS GeoTools Modules. Inclusion of this notice with such a
+ * distribution constitutes a grant of such permissions. If you do not wish
+ * to grant these permissions, remove this paragraph from your
+ * distribution. "52°North WPS GeoTools Modules" means the 52°North WPS
+ * modules using GeoTools functionality - software licensed under version 2
+ * or any later version of the GPL, or a work based on such software and
+ * licensed under the GPL. "Eclipse Libraries" means Eclipse Modeling
+ * Framework Project and XML Schema Definition software distributed by the
+ * Eclipse Foundation and licensed under the Eclipse Public License Version
+ * 1.0 ("EPL"), or a work based on such software and licensed under the EPL.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.io.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.n52.javaps.gt.io.util.ShapefileSplitter;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class ShapefileSplitterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRollsOverToNewPart() throws IOException {
+
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("points");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.length(10).add("name", String.class);
+        typeBuilder.add("the_geom", Point.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory geometryFactory = new GeometryFactory();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(type);
+
+        File shp = new File(folder.getRoot(), "points.shp");
+
+        // 100 byte header and 28 bytes per point record, so 10 points fit
+        // into a part; the .dbf stays smaller with 11 byte records
+        try (ShapefileSplitter splitter = new ShapefileSplitter(shp, type)) {
+            splitter.setMaxPartSize(100 + 10 * 28);
+            for (int i = 0; i < 25; i++) {
+                featureBuilder.add("point" + i);
+                featureBuilder.add(geometryFactory.createPoint(new Coordinate(i, i)));
+                splitter.write(featureBuilder.buildFeature("points." + i));
+            }
+        }
+
+        List<File> parts = ShapefileSplitter.getAdditionalParts(shp);
+        assertEquals(2, parts.size());
+        assertTrue(parts.get(0).getName().equals("points_part_2.shp"));
+
+        int count = countFeatures(shp);
+        for (File part : parts) {
+            assertTrue(part.length() <= 100 + 10 * 28);
+            count += countFeatures(part);
+        }
+        assertEquals(25, count);
+    }
+
+    private int countFeatures(File shp) throws IOException {
+        ShapefileDataStore store = new ShapefileDataStore(shp.toURI().toURL());
+        try {
+            return store.getFeatureSource().getFeatures().size();
+        } finally {
+            store.dispose();
+        }
+    }
+
+}